@@ -0,0 +1,822 @@
+package common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Read-only archive of records moved out of a live store, kept as compressed
+ * columnar segment files.
+ *
+ * <p>
+ * Each move writes one segment, {@code <name>.<number>.seg}. A
+ * {@link RowCodec} turns every record into a row of {@code long} columns,
+ * the first of which is the record time; the rows are sorted by time and cut
+ * into blocks of {@value #BLOCK_ROWS}, and each column of a block is stored
+ * with its own {@link ColumnEncoding}, so steadily growing times take a few
+ * bits, IDs from a small vocabulary become positions in a dictionary kept
+ * once per segment, and mostly constant columns collapse into runs. The
+ * block index at the end of the segment holds each block's checksum and
+ * the smallest and largest value of every column (a zone map), so a query on
+ * a column range reads only the blocks that may hold matches. Segments are
+ * never changed once written. The manifest, {@code <name>.manifest}, lists
+ * them with their record count and time range, so segments outside a time
+ * range are not opened at all. Both live next to the other database files
+ * and are backed up with them.
+ * </p>
+ *
+ * <p>
+ * Moving records between the live store and the archive takes two saves, so
+ * the manifest marks the change as pending together with the saved state of
+ * the live store before the move (its stamp). The owner saves the live store
+ * and then {@linkplain #commitPending() commits} the change. After a crash in
+ * between, {@link #recover(long, long)} compares the stamp with the live
+ * store as loaded: if it is unchanged the live store still holds the records
+ * and the change is undone, otherwise the save went through and the change
+ * is completed. Instances are thread-safe.
+ * </p>
+ *
+ * @param <T> the type of the records
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class ArchiveStore<T> {
+    /** Suffix of a segment file */
+    public static final String SEGMENT_SUFFIX = ".seg";
+
+    /** "LMSA" */
+    private static final int MANIFEST_MAGIC = 0x4C4D5341;
+    /** "LMSG" */
+    private static final int SEGMENT_MAGIC = 0x4C4D5347;
+    private static final short MANIFEST_VERSION = 1;
+    private static final short SEGMENT_VERSION = 2;
+    /**
+     * Header length and CRC32C, block index offset, length and CRC32C, and
+     * magic at the end of a columnar segment
+     */
+    private static final int COLUMN_SEGMENT_FOOTER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+    /** Rows per block of a columnar segment */
+    public static final int BLOCK_ROWS = 4096;
+    private static final byte NO_CHANGE = 0;
+    private static final byte APPEND = 1;
+    private static final byte CLEAR = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives archived records.
+     *
+     * @param <T> the type of the records
+     */
+    @FunctionalInterface
+    public interface RecordVisitor<T> {
+        /**
+         * Visits one record.
+         *
+         * @param record the record
+         * @throws IOException if the record cannot be processed
+         */
+        void visit(T record) throws IOException;
+    }
+
+    /**
+     * Converts records to and from rows of {@code long} columns.
+     *
+     * @param <T> the type of the records
+     */
+    public interface RowCodec<T> {
+        /**
+         * Returns how each column is stored. Column 0 holds the record time.
+         *
+         * @return the encoding of each column
+         */
+        ColumnEncoding[] getEncodings();
+
+        /**
+         * Fills a row with the columns of a record.
+         *
+         * @param record the record
+         * @param row    receives the columns
+         */
+        void toRow(T record, long[] row);
+
+        /**
+         * Builds a record from a row.
+         *
+         * @param row the columns, reused for the next row
+         * @return the record
+         */
+        T fromRow(long[] row);
+    }
+
+    /**
+     * One segment as listed in the manifest.
+     */
+    private static class Segment {
+        private final long number;
+        private final int recordCount;
+        private final long minTime;
+        private final long maxTime;
+        private final long size;
+
+        private Segment(long number, int recordCount, long minTime, long maxTime, long size) {
+            this.number = number;
+            this.recordCount = recordCount;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.size = size;
+        }
+    }
+
+    private final File dir;
+    private final String name;
+    private final File manifest;
+    private final RowCodec<T> codec;
+    private final ColumnEncoding[] encodings;
+    private final List<Segment> segments = new ArrayList<>();
+    private long nextNumber = 1;
+    private byte pendingChange = NO_CHANGE;
+    private long pendingTag;
+    private long pendingLength;
+    /** Manifest as last read by {@link #open()}, or null if the archive may be written */
+    private byte[] openedManifest;
+
+    /**
+     * Creates an archive; {@link #load()} reads it.
+     *
+     * @param baseName the database directory and name of the archive files,
+     *                 such as {@code ./db/loanArchive}
+     * @param codec    converts the records to rows and back
+     */
+    public ArchiveStore(String baseName, RowCodec<T> codec) {
+        File base = new File(baseName);
+        this.dir = base.getAbsoluteFile().getParentFile();
+        this.name = base.getName();
+        this.manifest = new File(this.dir, this.name + ".manifest");
+        this.codec = codec;
+        this.encodings = codec.getEncodings().clone();
+    }
+
+    /**
+     * Reads the manifest, if there is one, and deletes segment and temporary
+     * files it does not list, left over from an interrupted move.
+     *
+     * @throws IOException if the manifest is damaged
+     */
+    public synchronized void load() throws IOException {
+        this.segments.clear();
+        this.nextNumber = 1;
+        this.pendingChange = NO_CHANGE;
+        this.openedManifest = null;
+        if (this.manifest.exists()) {
+            this.readManifest(Files.readAllBytes(this.manifest.toPath()));
+        }
+        Set<String> listed = new HashSet<>();
+        for (Segment segment : this.segments) {
+            listed.add(this.segmentFile(segment.number).getName());
+        }
+        File[] files = this.dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String fileName = file.getName();
+                if (fileName.startsWith(this.name + ".") && !listed.contains(fileName)
+                        && (fileName.endsWith(SEGMENT_SUFFIX) || fileName.endsWith(utils.TEMP_SUFFIX))) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the manifest for reading only, leaving every file as it is, so a
+     * process other than the one that moves records into the archive can read
+     * it. Such an archive cannot be written.
+     *
+     * @throws IOException if the manifest is damaged
+     * @see #view(long, long)
+     * @see #isUnchanged()
+     */
+    public synchronized void open() throws IOException {
+        this.segments.clear();
+        this.nextNumber = 1;
+        this.pendingChange = NO_CHANGE;
+        this.openedManifest = this.manifest.exists() ? Files.readAllBytes(this.manifest.toPath()) : new byte[0];
+        if (this.openedManifest.length > 0) {
+            this.readManifest(this.openedManifest);
+        }
+    }
+
+    /**
+     * Settles a pending change in memory only, given the saved state of the
+     * live store as loaded, the way {@link #recover(long, long)} would settle
+     * it on disk.
+     *
+     * @param tag    the first part of the live store's stamp
+     * @param length the second part of the live store's stamp
+     */
+    public synchronized void view(long tag, long length) {
+        if (this.pendingChange == NO_CHANGE) {
+            return;
+        }
+        boolean saved = tag != this.pendingTag || length != this.pendingLength;
+        if (this.pendingChange == APPEND && !saved) {
+            this.segments.remove(this.segments.size() - 1);
+        } else if (this.pendingChange == CLEAR && saved) {
+            this.segments.clear();
+        }
+        this.pendingChange = NO_CHANGE;
+    }
+
+    /**
+     * Returns whether the manifest is still the one {@link #open()} read. A
+     * reader that loads the live store after opening the archive checks this
+     * afterwards to know that no move ran in between.
+     *
+     * @return true if the manifest has not been replaced since it was opened
+     * @throws IOException if the manifest cannot be read
+     */
+    public synchronized boolean isUnchanged() throws IOException {
+        if (this.openedManifest == null) {
+            throw new IllegalStateException(this.name + " was not opened for reading");
+        }
+        byte[] current = this.manifest.exists() ? Files.readAllBytes(this.manifest.toPath()) : new byte[0];
+        return Arrays.equals(current, this.openedManifest);
+    }
+
+    /**
+     * Resolves a change left pending by a crash, given the saved state of the
+     * live store as loaded.
+     *
+     * @param tag    the first part of the live store's stamp
+     * @param length the second part of the live store's stamp
+     * @return true if a pending change was completed, false if there was none
+     *         or it was undone
+     * @throws IOException if the manifest cannot be written
+     */
+    public synchronized boolean recover(long tag, long length) throws IOException {
+        this.checkWritable();
+        if (this.pendingChange == NO_CHANGE) {
+            return false;
+        }
+        if (tag == this.pendingTag && length == this.pendingLength) {
+            this.abortPending();
+            return false;
+        }
+        this.commitPending();
+        return true;
+    }
+
+    /**
+     * Writes records to a new segment, pending until
+     * {@link #commitPending()}.
+     *
+     * @param records the records to archive
+     * @param tag     the first part of the live store's stamp before the move
+     * @param length  the second part of the live store's stamp before the move
+     * @throws IOException           if the segment or manifest cannot be
+     *                               written
+     * @throws IllegalStateException if another change is pending
+     */
+    public synchronized void append(List<T> records, long tag, long length) throws IOException {
+        this.checkNoPendingChange();
+        long number = this.nextNumber++;
+        File file = this.segmentFile(number);
+        File temp = new File(file.getPath() + utils.TEMP_SUFFIX);
+        long[][] rows = new long[records.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new long[this.encodings.length];
+            this.codec.toRow(records.get(i), rows[i]);
+        }
+        Arrays.sort(rows, Comparator.comparingLong(row -> row[0]));
+        long minTime = rows.length > 0 ? rows[0][0] : Long.MAX_VALUE;
+        long maxTime = rows.length > 0 ? rows[rows.length - 1][0] : Long.MIN_VALUE;
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                this.encodeSegment(rows).writeTo(out);
+                out.getFD().sync();
+            }
+            utils.DB_LOCK.readLock().lock();
+            try {
+                utils.replaceFile(temp, file);
+                utils.journal(file);
+            } finally {
+                utils.DB_LOCK.readLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        this.segments.add(new Segment(number, records.size(), minTime, maxTime, file.length()));
+        this.pendingChange = APPEND;
+        this.pendingTag = tag;
+        this.pendingLength = length;
+        try {
+            this.saveManifest();
+        } catch (IOException e) {
+            this.segments.remove(this.segments.size() - 1);
+            this.pendingChange = NO_CHANGE;
+            throw e;
+        }
+    }
+
+    /**
+     * Marks every segment for removal, pending until
+     * {@link #commitPending()}; used when the live store is replaced by a
+     * list that already holds every record.
+     *
+     * @param tag    the first part of the live store's stamp before the
+     *               replacement is saved
+     * @param length the second part of the live store's stamp before the
+     *               replacement is saved
+     * @throws IOException           if the manifest cannot be written
+     * @throws IllegalStateException if another change is pending
+     */
+    public synchronized void beginClear(long tag, long length) throws IOException {
+        this.checkNoPendingChange();
+        this.pendingChange = CLEAR;
+        this.pendingTag = tag;
+        this.pendingLength = length;
+        try {
+            this.saveManifest();
+        } catch (IOException e) {
+            this.pendingChange = NO_CHANGE;
+            throw e;
+        }
+    }
+
+    /**
+     * Completes the pending change once the live store is saved.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    public synchronized void commitPending() throws IOException {
+        if (this.pendingChange == NO_CHANGE) {
+            return;
+        }
+        this.checkWritable();
+        List<Segment> removed = new ArrayList<>();
+        if (this.pendingChange == CLEAR) {
+            removed.addAll(this.segments);
+            this.segments.clear();
+        }
+        this.pendingChange = NO_CHANGE;
+        this.saveManifest();
+        for (Segment segment : removed) {
+            Files.deleteIfExists(this.segmentFile(segment.number).toPath());
+        }
+    }
+
+    /**
+     * Undoes the pending change, after the live store could not be saved.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    public synchronized void abortPending() throws IOException {
+        if (this.pendingChange == NO_CHANGE) {
+            return;
+        }
+        this.checkWritable();
+        Segment appended = null;
+        if (this.pendingChange == APPEND) {
+            appended = this.segments.remove(this.segments.size() - 1);
+        }
+        this.pendingChange = NO_CHANGE;
+        this.saveManifest();
+        if (appended != null) {
+            Files.deleteIfExists(this.segmentFile(appended.number).toPath());
+        }
+    }
+
+    /**
+     * Visits every archived record, segment by segment in the order they were
+     * archived. Only one segment is held in memory at a time.
+     *
+     * @param visitor receives the records
+     * @throws IOException if a segment is damaged or the visitor fails
+     */
+    public synchronized void forEach(RecordVisitor<T> visitor) throws IOException {
+        this.forEach(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits every archived record with a visitor of its own per segment,
+     * reading the segments in parallel on the common fork/join pool. Each
+     * visitor sees the records of one segment in time order, on one thread.
+     * This suits aggregates that do not depend on the order of the records
+     * and can be merged afterwards. The segments are read without holding
+     * the store's lock, so other reads can run at the same time; the caller
+     * makes sure no segment is removed meanwhile.
+     *
+     * @param <V>      the type of the visitors
+     * @param visitors creates the visitor of one segment
+     * @return the visitors, one per segment in the order they were archived
+     * @throws IOException if a segment is damaged or a visitor fails
+     */
+    public <V extends RecordVisitor<T>> List<V> forEachSegment(Supplier<V> visitors) throws IOException {
+        List<Segment> segments;
+        synchronized (this) {
+            segments = new ArrayList<>(this.segments);
+        }
+        List<V> result = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            result.add(visitors.get());
+        }
+        try {
+            IntStream.range(0, segments.size()).parallel().forEach(i -> {
+                try {
+                    this.readSegment(segments.get(i), 0, Long.MIN_VALUE, Long.MAX_VALUE, result.get(i));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return result;
+    }
+
+    /**
+     * Visits the archived records whose time lies in a range. Segments and
+     * blocks entirely outside the range are not read.
+     *
+     * @param fromTime the first time included
+     * @param toTime   the last time included
+     * @param visitor  receives the records
+     * @throws IOException if a segment is damaged or the visitor fails
+     */
+    public synchronized void forEach(long fromTime, long toTime, RecordVisitor<T> visitor) throws IOException {
+        this.forEach(0, fromTime, toTime, visitor);
+    }
+
+    /**
+     * Visits the archived records whose value in a column lies in a range,
+     * in time order within each segment. Blocks whose zone map excludes the
+     * range are skipped.
+     *
+     * @param column   the column number
+     * @param minValue the smallest value included
+     * @param maxValue the largest value included
+     * @param visitor  receives the records
+     * @throws IOException if a segment is damaged or the visitor fails
+     */
+    public synchronized void forEach(int column, long minValue, long maxValue, RecordVisitor<T> visitor)
+            throws IOException {
+        if (column < 0 || column >= this.encodings.length) {
+            throw new IllegalArgumentException("No column " + column);
+        }
+        for (Segment segment : this.segments) {
+            if (column == 0 && (segment.maxTime < minValue || segment.minTime > maxValue)) {
+                continue;
+            }
+            this.readSegment(segment, column, minValue, maxValue, visitor);
+        }
+    }
+
+    /**
+     * Reads every archived record into a list.
+     *
+     * @return the records, in the order they were archived
+     * @throws IOException if a segment is damaged
+     */
+    public synchronized List<T> readAll() throws IOException {
+        List<T> records = new ArrayList<>(this.getRecordCount());
+        this.forEach(records::add);
+        return records;
+    }
+
+    /**
+     * Returns the number of archived records.
+     *
+     * @return the record count
+     */
+    public synchronized int getRecordCount() {
+        int count = 0;
+        for (Segment segment : this.segments) {
+            count += segment.recordCount;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of segments.
+     *
+     * @return the segment count
+     */
+    public synchronized int getSegmentCount() {
+        return this.segments.size();
+    }
+
+    /**
+     * Returns the total size of the segment files.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        long size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    private void checkWritable() {
+        if (this.openedManifest != null) {
+            throw new IllegalStateException(this.name + " is open for reading only");
+        }
+    }
+
+    private void checkNoPendingChange() {
+        this.checkWritable();
+        if (this.pendingChange != NO_CHANGE) {
+            throw new IllegalStateException("A change to " + this.name + " is already pending");
+        }
+    }
+
+    private File segmentFile(long number) {
+        return new File(this.dir, String.format("%s.%06d%s", this.name, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Encodes sorted rows as a columnar segment: the header with the column
+     * encodings and dictionaries, the blocks, the block index with the zone
+     * maps and checksums, and the footer locating the header and index.
+     */
+    private ByteArrayOutputStream encodeSegment(long[][] rows) throws IOException {
+        int columns = this.encodings.length;
+        long[][] dictionaries = new long[columns][];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(SEGMENT_MAGIC);
+        data.writeShort(SEGMENT_VERSION);
+        data.writeInt(rows.length);
+        data.writeByte(columns);
+        for (ColumnEncoding encoding : this.encodings) {
+            data.writeByte(encoding.ordinal());
+        }
+        for (int column = 0; column < columns; column++) {
+            if (this.encodings[column] == ColumnEncoding.DICTIONARY) {
+                long[] values = new long[rows.length];
+                for (int i = 0; i < rows.length; i++) {
+                    values[i] = rows[i][column];
+                }
+                dictionaries[column] = Arrays.stream(values).sorted().distinct().toArray();
+                data.writeInt(dictionaries[column].length);
+                ColumnEncoding.DELTA_OF_DELTA.encode(data, dictionaries[column], dictionaries[column].length, null);
+            }
+        }
+        data.flush();
+        int headerLength = bytes.size();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray(), 0, headerLength);
+        int headerCrc = (int) crc.getValue();
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream indexData = new DataOutputStream(index);
+        indexData.writeInt((rows.length + BLOCK_ROWS - 1) / BLOCK_ROWS);
+        ByteArrayOutputStream block = new ByteArrayOutputStream(BUFFER_SIZE);
+        DataOutputStream blockData = new DataOutputStream(block);
+        long[] values = new long[BLOCK_ROWS];
+        for (int start = 0; start < rows.length; start += BLOCK_ROWS) {
+            int count = Math.min(BLOCK_ROWS, rows.length - start);
+            long[] min = new long[columns];
+            long[] max = new long[columns];
+            block.reset();
+            for (int column = 0; column < columns; column++) {
+                min[column] = Long.MAX_VALUE;
+                max[column] = Long.MIN_VALUE;
+                for (int i = 0; i < count; i++) {
+                    values[i] = rows[start + i][column];
+                    min[column] = Math.min(min[column], values[i]);
+                    max[column] = Math.max(max[column], values[i]);
+                }
+                this.encodings[column].encode(blockData, values, count, dictionaries[column]);
+            }
+            blockData.flush();
+            crc.reset();
+            crc.update(block.toByteArray());
+            indexData.writeLong(bytes.size());
+            indexData.writeInt(block.size());
+            indexData.writeInt(count);
+            indexData.writeInt((int) crc.getValue());
+            for (int column = 0; column < columns; column++) {
+                indexData.writeLong(min[column]);
+                indexData.writeLong(max[column]);
+            }
+            block.writeTo(bytes);
+        }
+        indexData.flush();
+        long indexOffset = bytes.size();
+        crc.reset();
+        crc.update(index.toByteArray());
+        index.writeTo(bytes);
+        data.writeInt(headerLength);
+        data.writeInt(headerCrc);
+        data.writeLong(indexOffset);
+        data.writeInt(index.size());
+        data.writeInt((int) crc.getValue());
+        data.writeInt(SEGMENT_MAGIC);
+        data.flush();
+        return bytes;
+    }
+
+    /**
+     * Visits the records of a segment whose value in a column lies in a
+     * range.
+     */
+    private void readSegment(Segment segment, int column, long minValue, long maxValue, RecordVisitor<T> visitor)
+            throws IOException {
+        File file = this.segmentFile(segment.number);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 6) {
+                throw new IOException(file.getPath() + " is not a segment of " + this.name);
+            }
+            ByteBuffer start = read(channel, 0, 6);
+            if (start.getInt() != SEGMENT_MAGIC) {
+                throw new IOException(file.getPath() + " is not a segment of " + this.name);
+            }
+            short version = start.getShort();
+            if (version != SEGMENT_VERSION) {
+                throw new IOException(file.getPath() + " has unknown version " + version);
+            }
+            this.readColumnSegment(channel, file, size, segment, column, minValue, maxValue, visitor);
+        }
+    }
+
+    /**
+     * Reads the blocks of a columnar segment whose zone map for the column
+     * overlaps the range, checking each against its checksum.
+     */
+    private void readColumnSegment(FileChannel channel, File file, long size, Segment segment, int column,
+            long minValue, long maxValue, RecordVisitor<T> visitor) throws IOException {
+        if (size < COLUMN_SEGMENT_FOOTER_SIZE) {
+            throw new IOException(file.getPath() + " is damaged");
+        }
+        ByteBuffer footer = read(channel, size - COLUMN_SEGMENT_FOOTER_SIZE, COLUMN_SEGMENT_FOOTER_SIZE);
+        int headerLength = footer.getInt();
+        int headerCrc = footer.getInt();
+        long indexOffset = footer.getLong();
+        int indexLength = footer.getInt();
+        int indexCrc = footer.getInt();
+        if (footer.getInt() != SEGMENT_MAGIC || headerLength < 0 || headerLength > indexOffset || indexOffset < 0
+                || indexLength < 4 || indexOffset + indexLength != size - COLUMN_SEGMENT_FOOTER_SIZE) {
+            throw new IOException(file.getPath() + " is damaged");
+        }
+        ByteBuffer header = checked(file, read(channel, 0, headerLength), headerCrc);
+        header.position(6);
+        int columns = this.encodings.length;
+        if (header.getInt() != segment.recordCount || header.get() != columns) {
+            throw new IOException(file.getPath() + " does not match " + this.manifest.getName());
+        }
+        ColumnEncoding[] segmentEncodings = new ColumnEncoding[columns];
+        for (int i = 0; i < columns; i++) {
+            int ordinal = header.get();
+            if (ordinal < 0 || ordinal >= ColumnEncoding.values().length) {
+                throw new IOException(file.getPath() + " has unknown encoding " + ordinal);
+            }
+            segmentEncodings[i] = ColumnEncoding.values()[ordinal];
+        }
+        long[][] dictionaries = new long[columns][];
+        for (int i = 0; i < columns; i++) {
+            if (segmentEncodings[i] == ColumnEncoding.DICTIONARY) {
+                int length = header.getInt();
+                if (length < 0 || length > segment.recordCount) {
+                    throw new IOException(file.getPath() + " is damaged");
+                }
+                dictionaries[i] = new long[length];
+                ColumnEncoding.DELTA_OF_DELTA.decode(header, dictionaries[i], length, null);
+            }
+        }
+
+        ByteBuffer index = checked(file, read(channel, indexOffset, indexLength), indexCrc);
+        int blockCount = index.getInt();
+        if (blockCount != (segment.recordCount + BLOCK_ROWS - 1) / BLOCK_ROWS
+                || indexLength != 4 + blockCount * (8 + 4 + 4 + 4 + columns * 16)) {
+            throw new IOException(file.getPath() + " is damaged");
+        }
+        long[][] values = new long[columns][BLOCK_ROWS];
+        long[] row = new long[columns];
+        for (int block = 0; block < blockCount; block++) {
+            long offset = index.getLong();
+            int length = index.getInt();
+            int count = index.getInt();
+            int crc = index.getInt();
+            int zoneMap = index.position() + column * 16;
+            index.position(index.position() + columns * 16);
+            if (index.getLong(zoneMap + 8) < minValue || index.getLong(zoneMap) > maxValue) {
+                continue;
+            }
+            if (offset < headerLength || length < 0 || offset + length > indexOffset || count < 1
+                    || count > BLOCK_ROWS) {
+                throw new IOException(file.getPath() + " is damaged");
+            }
+            ByteBuffer data = checked(file, read(channel, offset, length), crc);
+            for (int i = 0; i < columns; i++) {
+                segmentEncodings[i].decode(data, values[i], count, dictionaries[i]);
+            }
+            for (int r = 0; r < count; r++) {
+                if (values[column][r] < minValue || values[column][r] > maxValue) {
+                    continue;
+                }
+                for (int i = 0; i < columns; i++) {
+                    row[i] = values[i][r];
+                }
+                visitor.visit(this.codec.fromRow(row));
+            }
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer checked(File file, ByteBuffer buffer, int expectedCrc) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.limit());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException(file.getPath() + " is damaged");
+        }
+        return buffer;
+    }
+
+    private void readManifest(byte[] bytes) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, Math.max(0, bytes.length - 4));
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length < 39 || in.getInt() != MANIFEST_MAGIC || in.getShort() != MANIFEST_VERSION
+                || in.getInt(bytes.length - 4) != (int) crc.getValue()) {
+            throw new IOException(this.manifest.getPath() + " is damaged");
+        }
+        this.nextNumber = in.getLong();
+        this.pendingChange = in.get();
+        this.pendingTag = in.getLong();
+        this.pendingLength = in.getLong();
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            this.segments.add(new Segment(in.getLong(), in.getInt(), in.getLong(), in.getLong(), in.getLong()));
+        }
+    }
+
+    /**
+     * Replaces the manifest with the current segment list and pending change.
+     */
+    private void saveManifest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MANIFEST_MAGIC);
+        data.writeShort(MANIFEST_VERSION);
+        data.writeLong(this.nextNumber);
+        data.writeByte(this.pendingChange);
+        data.writeLong(this.pendingTag);
+        data.writeLong(this.pendingLength);
+        data.writeInt(this.segments.size());
+        for (Segment segment : this.segments) {
+            data.writeLong(segment.number);
+            data.writeInt(segment.recordCount);
+            data.writeLong(segment.minTime);
+            data.writeLong(segment.maxTime);
+            data.writeLong(segment.size);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        data.writeInt((int) crc.getValue());
+        File temp = new File(this.manifest.getPath() + utils.TEMP_SUFFIX);
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                bytes.writeTo(out);
+                out.getFD().sync();
+            }
+            utils.DB_LOCK.readLock().lock();
+            try {
+                utils.replaceFile(temp, this.manifest);
+                utils.journal(this.manifest);
+            } finally {
+                utils.DB_LOCK.readLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+}
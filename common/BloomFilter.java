@@ -0,0 +1,129 @@
+package common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloom filter over byte array keys.
+ *
+ * <p>
+ * A key that was added is always reported as possibly present; a key that was
+ * not is reported absent except with a small false positive rate, about 1% at
+ * ten bits per key. Each key sets a number of bits derived from two halves of
+ * one 64-bit hash. The filter is serialized with its bit and hash counts so
+ * it can be stored next to the keys it covers.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates an empty filter sized for a number of keys.
+     *
+     * @param expectedKeys the number of keys that will be added
+     * @param bitsPerKey   the bits to spend per key
+     */
+    public BloomFilter(int expectedKeys, int bitsPerKey) {
+        this.bitCount = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 63, (long) expectedKeys * bitsPerKey));
+        this.bits = new long[(this.bitCount + 63) / 64];
+        this.hashCount = Math.max(1, Math.min(30, (int) Math.round(bitsPerKey * 0.69)));
+    }
+
+    private BloomFilter(long[] bits, int bitCount, int hashCount) {
+        this.bits = bits;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key the key
+     */
+    public void add(byte[] key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < this.hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, this.bitCount);
+            this.bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param key the key
+     * @return false if the key was certainly not added
+     */
+    public boolean mightContain(byte[] key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < this.hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, this.bitCount);
+            if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serializes the filter.
+     *
+     * @return the bit count, hash count and bits
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + this.bits.length * 8);
+        buffer.putInt(this.bitCount);
+        buffer.putInt(this.hashCount);
+        for (long word : this.bits) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a filter written by {@link #toBytes()}.
+     *
+     * @param bytes the serialized filter
+     * @return the filter
+     * @throws IllegalArgumentException if the bytes are not a filter
+     */
+    public static BloomFilter fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int bitCount = buffer.getInt();
+        int hashCount = buffer.getInt();
+        if (bitCount < 64 || hashCount < 1 || bytes.length != 8 + (bitCount + 63) / 64 * 8) {
+            throw new IllegalArgumentException("Not a bloom filter");
+        }
+        long[] bits = new long[(bitCount + 63) / 64];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return new BloomFilter(bits, bitCount, hashCount);
+    }
+
+    /**
+     * 64-bit FNV-1a hash with a final avalanche, so both halves are usable.
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,243 @@
+package common;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pre-aggregated borrowing counters by day, month and year.
+ *
+ * <p>
+ * Every recorded issue increments one bucket at each level, and each bucket
+ * holds a total plus a breakdown by book category, member type and book type.
+ * A date-range query walks the range from the coarsest bucket that fits to the
+ * finest, so it touches at most a few dozen buckets per year boundary instead
+ * of every issue in the history.
+ * </p>
+ *
+ * <p>
+ * Rollups built over disjoint parts of a history can be combined with
+ * {@link #merge(BorrowingRollup)}, so a rebuild can fill one rollup per part
+ * in parallel and merge them. Instances are not thread-safe.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class BorrowingRollup {
+    /** Member types broken down by the rollup, as used by {@link MemberPolicy} */
+    public static final String[] MEMBER_TYPES = { "Student", "Faculty", "Regular" };
+
+    /** Book types broken down by the rollup */
+    public static final String[] BOOK_TYPES = { "Physical Book", "EBook", "Audio Book" };
+
+    private static final BookCategory[] CATEGORIES = BookCategory.values();
+    private static final int TOTAL_INDEX = 0;
+    private static final int CATEGORY_OFFSET = 1;
+    private static final int MEMBER_TYPE_OFFSET = CATEGORY_OFFSET + CATEGORIES.length;
+    private static final int BOOK_TYPE_OFFSET = MEMBER_TYPE_OFFSET + MEMBER_TYPES.length;
+    private static final int WIDTH = BOOK_TYPE_OFFSET + BOOK_TYPES.length;
+
+    /** Buckets keyed by epoch day */
+    private final Map<Long, long[]> days = new HashMap<>();
+
+    /** Buckets keyed by {@code year * 12 + month - 1} */
+    private final Map<Long, long[]> months = new HashMap<>();
+
+    /** Buckets keyed by year */
+    private final Map<Long, long[]> years = new HashMap<>();
+
+    private long firstDay = Long.MAX_VALUE;
+    private long lastDay = Long.MIN_VALUE;
+
+    /**
+     * Borrowing counts for one date range.
+     */
+    public static class Counts {
+        private final long[] values = new long[WIDTH];
+
+        /**
+         * Returns the number of books borrowed.
+         *
+         * @return the total count
+         */
+        public long getTotal() {
+            return this.values[TOTAL_INDEX];
+        }
+
+        /**
+         * Returns the number of books borrowed in a category.
+         *
+         * @param category the book category
+         * @return the count for the category
+         */
+        public long getCategoryCount(BookCategory category) {
+            return this.values[CATEGORY_OFFSET + category.ordinal()];
+        }
+
+        /**
+         * Returns the number of books borrowed by a member type.
+         *
+         * @param index the index into {@link BorrowingRollup#MEMBER_TYPES}
+         * @return the count for the member type
+         */
+        public long getMemberTypeCount(int index) {
+            return this.values[MEMBER_TYPE_OFFSET + index];
+        }
+
+        /**
+         * Returns the number of books borrowed of a book type.
+         *
+         * @param index the index into {@link BorrowingRollup#BOOK_TYPES}
+         * @return the count for the book type
+         */
+        public long getBookTypeCount(int index) {
+            return this.values[BOOK_TYPE_OFFSET + index];
+        }
+
+        private void add(long[] bucket) {
+            if (bucket != null) {
+                for (int i = 0; i < WIDTH; i++) {
+                    this.values[i] += bucket[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Records one issue.
+     * <p>
+     * Member and book types outside {@link #MEMBER_TYPES} and
+     * {@link #BOOK_TYPES} are counted in the total only.
+     *
+     * @param issueDate  the issue time in epoch milliseconds
+     * @param category   the category of the issued book, or null if unknown
+     * @param memberType the type of the borrowing member, or null if unknown
+     * @param bookType   the type of the issued book, or null if unknown
+     */
+    public void record(long issueDate, BookCategory category, String memberType, String bookType) {
+        LocalDate date = utils.convertEpochToDate(issueDate);
+        long epochDay = date.toEpochDay();
+        this.firstDay = Math.min(this.firstDay, epochDay);
+        this.lastDay = Math.max(this.lastDay, epochDay);
+
+        int categoryIndex = category == null ? -1 : CATEGORY_OFFSET + category.ordinal();
+        int memberTypeIndex = indexOf(MEMBER_TYPES, memberType, MEMBER_TYPE_OFFSET);
+        int bookTypeIndex = indexOf(BOOK_TYPES, bookType, BOOK_TYPE_OFFSET);
+
+        long[][] buckets = {
+                bucket(this.days, epochDay),
+                bucket(this.months, monthKey(date)),
+                bucket(this.years, date.getYear()) };
+        for (long[] bucket : buckets) {
+            bucket[TOTAL_INDEX]++;
+            if (categoryIndex >= 0) {
+                bucket[categoryIndex]++;
+            }
+            if (memberTypeIndex >= 0) {
+                bucket[memberTypeIndex]++;
+            }
+            if (bookTypeIndex >= 0) {
+                bucket[bookTypeIndex]++;
+            }
+        }
+    }
+
+    /**
+     * Adds all counts of another rollup to this one.
+     *
+     * @param other the rollup to merge in
+     */
+    public void merge(BorrowingRollup other) {
+        mergeLevel(this.days, other.days);
+        mergeLevel(this.months, other.months);
+        mergeLevel(this.years, other.years);
+        this.firstDay = Math.min(this.firstDay, other.firstDay);
+        this.lastDay = Math.max(this.lastDay, other.lastDay);
+    }
+
+    /**
+     * Returns the borrowing counts between two dates.
+     * <p>
+     * The range is covered with whole years where possible, then whole months,
+     * then single days.
+     *
+     * @param from the first day of the range (inclusive)
+     * @param to   the last day of the range (inclusive)
+     * @return the counts for the range; all zero if the range is empty
+     */
+    public Counts query(LocalDate from, LocalDate to) {
+        Counts counts = new Counts();
+        LocalDate date = from;
+        while (!date.isAfter(to)) {
+            if (date.getDayOfYear() == 1 && !date.plusYears(1).minusDays(1).isAfter(to)) {
+                counts.add(this.years.get((long) date.getYear()));
+                date = date.plusYears(1);
+            } else if (date.getDayOfMonth() == 1 && !date.plusMonths(1).minusDays(1).isAfter(to)) {
+                counts.add(this.months.get(monthKey(date)));
+                date = date.plusMonths(1);
+            } else {
+                counts.add(this.days.get(date.toEpochDay()));
+                date = date.plusDays(1);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the day of the earliest recorded issue.
+     *
+     * @return the earliest day, or null if nothing was recorded
+     */
+    public LocalDate getFirstDate() {
+        return this.firstDay == Long.MAX_VALUE ? null : LocalDate.ofEpochDay(this.firstDay);
+    }
+
+    /**
+     * Returns the day of the latest recorded issue.
+     *
+     * @return the latest day, or null if nothing was recorded
+     */
+    public LocalDate getLastDate() {
+        return this.lastDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(this.lastDay);
+    }
+
+    /**
+     * Returns the bucket for a key, creating it if needed.
+     */
+    private static long[] bucket(Map<Long, long[]> level, long key) {
+        long[] bucket = level.get(key);
+        if (bucket == null) {
+            bucket = new long[WIDTH];
+            level.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Adds every bucket of one level into the same level of this rollup.
+     */
+    private static void mergeLevel(Map<Long, long[]> target, Map<Long, long[]> source) {
+        for (Map.Entry<Long, long[]> entry : source.entrySet()) {
+            long[] bucket = bucket(target, entry.getKey());
+            long[] values = entry.getValue();
+            for (int i = 0; i < WIDTH; i++) {
+                bucket[i] += values[i];
+            }
+        }
+    }
+
+    private static long monthKey(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    private static int indexOf(String[] values, String value, int offset) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return offset + i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,269 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel reader for large {@code key=value} import files.
+ *
+ * <p>
+ * The file is cut into chunks of a few megabytes, each ending just after a
+ * line break, and every chunk is parsed by its own {@link RecordParser} on a
+ * fork/join pool. A record that cannot be converted is skipped and reported
+ * with its line number and text instead of aborting the import. Chunk results are
+ * concatenated in chunk order, so records come back in file order, and line
+ * numbers are made global once every chunk knows how many lines it held.
+ * </p>
+ *
+ * <p>
+ * Chunks are cut at {@code '\n'} bytes, which is safe for the platform default
+ * charset the import files are written in (ASCII compatible), and decoded with
+ * that charset like {@link java.io.FileReader} does.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class ChunkedImporter {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 16 << 20;
+    private static final int SCAN_WINDOW = 4096;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Converts the current record of a parser into an object.
+     *
+     * @param <T> the type of the imported objects
+     */
+    @FunctionalInterface
+    public interface RecordMapper<T> {
+        /**
+         * Converts one record.
+         *
+         * @param parser the parser positioned on the record
+         * @return the imported object
+         * @throws Exception if the record is invalid
+         */
+        T map(RecordParser parser) throws Exception;
+    }
+
+    /**
+     * A skipped line and the reason it was rejected.
+     */
+    public static class LineError {
+        private final long line;
+        private final String message;
+        private final String text;
+
+        LineError(long line, String message, String text) {
+            this.line = line;
+            this.message = message;
+            this.text = text;
+        }
+
+        /** @return the 1-based line number in the file */
+        public long getLine() {
+            return this.line;
+        }
+
+        /** @return why the line was rejected */
+        public String getMessage() {
+            return this.message;
+        }
+
+        /** @return the rejected line as it appears in the file */
+        public String getText() {
+            return this.text;
+        }
+    }
+
+    /**
+     * Imported records and rejected lines of one file.
+     *
+     * @param <T> the type of the imported objects
+     */
+    public static class Result<T> {
+        private final List<T> records;
+        private final List<LineError> errors;
+        private final long lineCount;
+
+        Result(List<T> records, List<LineError> errors, long lineCount) {
+            this.records = records;
+            this.errors = errors;
+            this.lineCount = lineCount;
+        }
+
+        /** @return the imported records in file order */
+        public List<T> getRecords() {
+            return this.records;
+        }
+
+        /** @return the rejected lines in file order */
+        public List<LineError> getErrors() {
+            return this.errors;
+        }
+
+        /** @return the number of lines in the file, blank lines included */
+        public long getLineCount() {
+            return this.lineCount;
+        }
+    }
+
+    /**
+     * Records, local errors and line count of one chunk.
+     */
+    private static class ChunkResult<T> {
+        final List<T> records = new ArrayList<>();
+        final List<LineError> errors = new ArrayList<>();
+        long lineCount;
+    }
+
+    /**
+     * Creates an importer running on the common fork/join pool.
+     */
+    public ChunkedImporter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an importer running on the given pool.
+     *
+     * @param pool the pool chunks are parsed on
+     */
+    public ChunkedImporter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reads and converts every record of a file.
+     *
+     * @param <T>    the type of the imported objects
+     * @param file   the import file
+     * @param fields the field names, as for {@link RecordParser}
+     * @param mapper converts one record; exceptions reject the line
+     * @return the imported records and the rejected lines
+     * @throws IOException if the file cannot be read
+     */
+    public <T> Result<T> read(File file, String[] fields, RecordMapper<T> mapper) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = this.split(channel);
+            List<Callable<ChunkResult<T>>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                tasks.add(() -> parseChunk(channel, start, end, fields, mapper));
+            }
+
+            List<T> records = new ArrayList<>();
+            List<LineError> errors = new ArrayList<>();
+            long lineOffset = 0;
+            for (Future<ChunkResult<T>> future : this.pool.invokeAll(tasks)) {
+                ChunkResult<T> chunk = future.get();
+                records.addAll(chunk.records);
+                for (LineError error : chunk.errors) {
+                    errors.add(new LineError(lineOffset + error.line, error.message, error.text));
+                }
+                lineOffset += chunk.lineCount;
+            }
+            return new Result<>(records, errors, lineOffset);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to import " + file.getName() + ": " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import of " + file.getName() + " was interrupted", e);
+        }
+    }
+
+    /**
+     * Returns the chunk boundaries: the file start, each position just after
+     * the first line break past a multiple of the chunk size, and the file end.
+     */
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        // A few chunks per worker balances uneven lines without tiny chunks
+        long target = size / (this.pool.getParallelism() * 4L) + 1;
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, target));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        long position = chunkSize;
+        while (position < size) {
+            long boundary = -1;
+            while (boundary < 0 && position < size) {
+                window.clear();
+                int read = channel.read(window, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (window.get(i) == '\n') {
+                        boundary = position + i + 1;
+                        break;
+                    }
+                }
+                if (boundary < 0) {
+                    position += read;
+                }
+            }
+            if (boundary < 0 || boundary >= size) {
+                break;
+            }
+            bounds.add(boundary);
+            position = boundary + chunkSize;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Parses one chunk, collecting records and rejected lines with line
+     * numbers relative to the chunk.
+     */
+    private static <T> ChunkResult<T> parseChunk(FileChannel channel, long start, long end, String[] fields,
+            RecordMapper<T> mapper) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("File truncated during import");
+            }
+        }
+
+        ChunkResult<T> result = new ChunkResult<>();
+        try (RecordParser parser = new RecordParser(
+                new InputStreamReader(new ByteArrayInputStream(bytes), Charset.defaultCharset()), fields)) {
+            while (parser.next()) {
+                try {
+                    result.records.add(mapper.map(parser));
+                } catch (Exception e) {
+                    result.errors.add(new LineError(parser.getLineNumber(), e.getMessage(), parser.getRecordText()));
+                }
+            }
+            result.lineCount = parser.getLineNumber();
+        }
+        return result;
+    }
+}
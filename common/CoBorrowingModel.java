@@ -0,0 +1,308 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Item-to-item co-borrowing model for book recommendations.
+ *
+ * <p>
+ * Two books co-occur once for every member who borrowed both. Each book keeps
+ * its co-occurring books in a sparse adjacency table made of two
+ * {@code int[]} arrays (an open-addressing hash of neighbour ordinal to count),
+ * so the model holds no per-pair objects. A new loan updates the adjacency of
+ * the borrowed book and of every book the member borrowed before, so the model
+ * stays current without a rebuild.
+ * </p>
+ *
+ * <p>
+ * Recommendations score every neighbour of the member's books by cosine
+ * similarity, {@code co(a, b) / sqrt(borrowers(a) * borrowers(b))}, which stops
+ * universally popular books from dominating every list.
+ * </p>
+ *
+ * <p>
+ * A full model is built from the loan history with a {@link Builder}, which
+ * collects the member baskets as the loans stream by and then computes the
+ * adjacency of every book in parallel. Instances are not thread-safe
+ * otherwise.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class CoBorrowingModel {
+    private final Map<Long, Integer> itemOrdinals = new HashMap<>();
+    private long[] itemIsbns = new long[64];
+    private int[] borrowers = new int[64];
+    private int[][] neighborKeys = new int[64][];
+    private int[][] neighborCounts = new int[64][];
+    private int[] neighborSizes = new int[64];
+
+    private final Map<Long, Integer> memberOrdinals = new HashMap<>();
+    private final List<int[]> baskets = new ArrayList<>();
+    private int[] basketSizes = new int[64];
+
+    /**
+     * Records that a member borrowed a book.
+     * <p>
+     * Borrowing a book the member has borrowed before changes nothing.
+     *
+     * @param memberId the ID of the borrowing member
+     * @param isbn     the ISBN of the borrowed book
+     */
+    public void recordLoan(long memberId, long isbn) {
+        int item = this.itemOrdinalOf(isbn);
+        int member = this.memberOrdinalOf(memberId);
+        int[] basket = this.baskets.get(member);
+        int size = this.basketSizes[member];
+        for (int i = 0; i < size; i++) {
+            if (basket[i] == item) {
+                return;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            this.increment(basket[i], item);
+            this.increment(item, basket[i]);
+        }
+        this.addToBasket(member, item);
+        this.borrowers[item]++;
+    }
+
+    /**
+     * Builds a model from a loan history.
+     * <p>
+     * Each loan only adds the book to the member's basket, so the history is
+     * streamed without being held. {@link #build()} then computes the
+     * adjacency of each book independently from the baskets of the members
+     * who borrowed it, so all books are processed in parallel without
+     * locking.
+     */
+    public static class Builder {
+        private final CoBorrowingModel model = new CoBorrowingModel();
+
+        /**
+         * Adds one loan of the history.
+         *
+         * @param memberId the ID of the borrowing member
+         * @param isbn     the ISBN of the borrowed book
+         */
+        public void addLoan(long memberId, long isbn) {
+            int item = this.model.itemOrdinalOf(isbn);
+            int member = this.model.memberOrdinalOf(memberId);
+            if (!this.model.basketContains(member, item)) {
+                this.model.addToBasket(member, item);
+                this.model.borrowers[item]++;
+            }
+        }
+
+        /**
+         * Computes the adjacency of every book. The builder must not be used
+         * afterwards.
+         *
+         * @return the model
+         */
+        public CoBorrowingModel build() {
+            return this.model.buildAdjacency();
+        }
+    }
+
+    /**
+     * Computes the adjacency of every book from the member baskets.
+     */
+    private CoBorrowingModel buildAdjacency() {
+        // Invert the baskets into the members who borrowed each book
+        int items = this.itemOrdinals.size();
+        int[][] postings = new int[items][];
+        int[] postingSizes = new int[items];
+        for (int item = 0; item < items; item++) {
+            postings[item] = new int[this.borrowers[item]];
+        }
+        for (int member = 0; member < this.baskets.size(); member++) {
+            int[] basket = this.baskets.get(member);
+            for (int i = 0; i < this.basketSizes[member]; i++) {
+                int item = basket[i];
+                postings[item][postingSizes[item]++] = member;
+            }
+        }
+
+        IntStream.range(0, items).parallel().forEach(item -> {
+            for (int member : postings[item]) {
+                int[] basket = this.baskets.get(member);
+                for (int i = 0; i < this.basketSizes[member]; i++) {
+                    if (basket[i] != item) {
+                        this.increment(item, basket[i]);
+                    }
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Recommends books for a member.
+     *
+     * @param memberId the ID of the member
+     * @param limit    the maximum number of books to return
+     * @param eligible decides whether a book may be recommended, for example
+     *                 whether it is in the catalog and available
+     * @return ISBNs of books the member has not borrowed, best match first;
+     *         empty if the member has never borrowed a book
+     */
+    public List<Long> recommend(long memberId, int limit, LongPredicate eligible) {
+        List<Long> result = new ArrayList<>();
+        Integer member = this.memberOrdinals.get(memberId);
+        if (member == null) {
+            return result;
+        }
+
+        int items = this.itemOrdinals.size();
+        double[] scores = new double[items];
+        int[] candidates = new int[Math.min(items, 1024)];
+        int candidateCount = 0;
+        int[] basket = this.baskets.get(member);
+        int basketSize = this.basketSizes[member];
+        for (int i = 0; i < basketSize; i++) {
+            int source = basket[i];
+            int[] keys = this.neighborKeys[source];
+            int[] counts = this.neighborCounts[source];
+            if (keys == null) {
+                continue;
+            }
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == 0) {
+                    continue;
+                }
+                int target = keys[slot] - 1;
+                if (scores[target] == 0) {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = target;
+                }
+                scores[target] += counts[slot]
+                        / Math.sqrt((double) this.borrowers[source] * this.borrowers[target]);
+            }
+        }
+        for (int i = 0; i < basketSize; i++) {
+            scores[basket[i]] = -1;
+        }
+
+        Integer[] order = new Integer[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            order[i] = candidates[i];
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        for (int item : order) {
+            if (result.size() == limit || scores[item] <= 0) {
+                break;
+            }
+            if (eligible.test(this.itemIsbns[item])) {
+                result.add(this.itemIsbns[item]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds one to the co-occurrence count of a pair in the source's table,
+     * growing the table when it is more than half full.
+     */
+    private void increment(int source, int target) {
+        int[] keys = this.neighborKeys[source];
+        if (keys == null || (this.neighborSizes[source] + 1) * 2 > keys.length) {
+            this.resize(source, keys == null ? 8 : keys.length * 2);
+            keys = this.neighborKeys[source];
+        }
+        int mask = keys.length - 1;
+        int slot = (target * 0x9E3779B9) >>> 1 & mask;
+        while (keys[slot] != 0 && keys[slot] != target + 1) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = target + 1;
+            this.neighborSizes[source]++;
+        }
+        this.neighborCounts[source][slot]++;
+    }
+
+    private void resize(int source, int capacity) {
+        int[] oldKeys = this.neighborKeys[source];
+        int[] oldCounts = this.neighborCounts[source];
+        int[] keys = new int[capacity];
+        int[] counts = new int[capacity];
+        int mask = capacity - 1;
+        if (oldKeys != null) {
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = ((oldKeys[i] - 1) * 0x9E3779B9) >>> 1 & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+        this.neighborKeys[source] = keys;
+        this.neighborCounts[source] = counts;
+    }
+
+    private int itemOrdinalOf(long isbn) {
+        Integer item = this.itemOrdinals.get(isbn);
+        if (item == null) {
+            item = this.itemOrdinals.size();
+            if (item == this.itemIsbns.length) {
+                int capacity = item * 2;
+                this.itemIsbns = Arrays.copyOf(this.itemIsbns, capacity);
+                this.borrowers = Arrays.copyOf(this.borrowers, capacity);
+                this.neighborKeys = Arrays.copyOf(this.neighborKeys, capacity);
+                this.neighborCounts = Arrays.copyOf(this.neighborCounts, capacity);
+                this.neighborSizes = Arrays.copyOf(this.neighborSizes, capacity);
+            }
+            this.itemIsbns[item] = isbn;
+            this.itemOrdinals.put(isbn, item);
+        }
+        return item;
+    }
+
+    private int memberOrdinalOf(long memberId) {
+        Integer member = this.memberOrdinals.get(memberId);
+        if (member == null) {
+            member = this.baskets.size();
+            if (member == this.basketSizes.length) {
+                this.basketSizes = Arrays.copyOf(this.basketSizes, member * 2);
+            }
+            this.baskets.add(new int[4]);
+            this.memberOrdinals.put(memberId, member);
+        }
+        return member;
+    }
+
+    private boolean basketContains(int member, int item) {
+        int[] basket = this.baskets.get(member);
+        for (int i = 0; i < this.basketSizes[member]; i++) {
+            if (basket[i] == item) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addToBasket(int member, int item) {
+        int[] basket = this.baskets.get(member);
+        int size = this.basketSizes[member];
+        if (size == basket.length) {
+            basket = Arrays.copyOf(basket, size * 2);
+            this.baskets.set(member, basket);
+        }
+        basket[size] = item;
+        this.basketSizes[member] = size + 1;
+    }
+}
@@ -0,0 +1,229 @@
+package common;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodings of a column of {@code long} values in an archive block.
+ *
+ * <p>
+ * Every encoding ends in bit packing: values are stored as their distance
+ * from the smallest value (frame of reference), each in just the number of
+ * bits the largest distance needs, so a column of small or clustered values
+ * costs a few bits per value and a constant column none.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see ArchiveStore
+ */
+public enum ColumnEncoding {
+    /** Values bit-packed as they are, for small integers */
+    BIT_PACKED,
+
+    /**
+     * First value and first difference, then the differences between
+     * successive differences bit-packed, for times and IDs that grow at a
+     * steady rate
+     */
+    DELTA_OF_DELTA,
+
+    /**
+     * Positions in the segment's sorted dictionary of distinct values
+     * bit-packed, for IDs drawn from a small vocabulary
+     */
+    DICTIONARY,
+
+    /** Runs of equal values as bit-packed values and lengths, for mostly constant columns */
+    RUN_LENGTH;
+
+    /**
+     * Writes a column.
+     *
+     * @param out        the block being written
+     * @param values     the column values
+     * @param count      the number of values
+     * @param dictionary the sorted distinct values of the segment, for
+     *                   {@link #DICTIONARY}
+     * @throws IOException if the block cannot be written
+     */
+    void encode(DataOutputStream out, long[] values, int count, long[] dictionary) throws IOException {
+        switch (this) {
+            case BIT_PACKED:
+                writePacked(out, values, count);
+                break;
+            case DELTA_OF_DELTA:
+                if (count > 0) {
+                    out.writeLong(values[0]);
+                }
+                if (count > 1) {
+                    out.writeLong(values[1] - values[0]);
+                }
+                long[] deltas = new long[Math.max(0, count - 2)];
+                for (int i = 2; i < count; i++) {
+                    deltas[i - 2] = (values[i] - values[i - 1]) - (values[i - 1] - values[i - 2]);
+                }
+                writePacked(out, deltas, deltas.length);
+                break;
+            case DICTIONARY:
+                long[] positions = new long[count];
+                for (int i = 0; i < count; i++) {
+                    positions[i] = Arrays.binarySearch(dictionary, values[i]);
+                }
+                writePacked(out, positions, count);
+                break;
+            default:
+                long[] runValues = new long[count];
+                long[] runLengths = new long[count];
+                int runs = 0;
+                for (int i = 0; i < count; i++) {
+                    if (runs > 0 && runValues[runs - 1] == values[i]) {
+                        runLengths[runs - 1]++;
+                    } else {
+                        runValues[runs] = values[i];
+                        runLengths[runs] = 1;
+                        runs++;
+                    }
+                }
+                out.writeInt(runs);
+                writePacked(out, runValues, runs);
+                writePacked(out, runLengths, runs);
+                break;
+        }
+    }
+
+    /**
+     * Reads a column written by {@link #encode}.
+     *
+     * @param in         the block, positioned at the column
+     * @param values     receives the column values
+     * @param count      the number of values
+     * @param dictionary the sorted distinct values of the segment, for
+     *                   {@link #DICTIONARY}
+     * @throws IOException if the column is damaged
+     */
+    void decode(ByteBuffer in, long[] values, int count, long[] dictionary) throws IOException {
+        switch (this) {
+            case BIT_PACKED:
+                readPacked(in, values, count);
+                break;
+            case DELTA_OF_DELTA:
+                if (count > 0) {
+                    values[0] = in.getLong();
+                }
+                if (count > 1) {
+                    values[1] = values[0] + in.getLong();
+                }
+                long[] deltas = new long[Math.max(0, count - 2)];
+                readPacked(in, deltas, deltas.length);
+                for (int i = 2; i < count; i++) {
+                    values[i] = values[i - 1] + (values[i - 1] - values[i - 2]) + deltas[i - 2];
+                }
+                break;
+            case DICTIONARY:
+                readPacked(in, values, count);
+                for (int i = 0; i < count; i++) {
+                    if (values[i] < 0 || values[i] >= dictionary.length) {
+                        throw new IOException("Dictionary position " + values[i] + " out of range");
+                    }
+                    values[i] = dictionary[(int) values[i]];
+                }
+                break;
+            default:
+                int runs = in.getInt();
+                if (runs < 0 || runs > count) {
+                    throw new IOException("Bad run count " + runs);
+                }
+                long[] runValues = new long[runs];
+                long[] runLengths = new long[runs];
+                readPacked(in, runValues, runs);
+                readPacked(in, runLengths, runs);
+                int position = 0;
+                for (int run = 0; run < runs; run++) {
+                    if (runLengths[run] < 1 || runLengths[run] > count - position) {
+                        throw new IOException("Bad run length " + runLengths[run]);
+                    }
+                    Arrays.fill(values, position, position + (int) runLengths[run], runValues[run]);
+                    position += (int) runLengths[run];
+                }
+                if (position != count) {
+                    throw new IOException("Runs cover " + position + " of " + count + " values");
+                }
+                break;
+        }
+    }
+
+    /**
+     * Writes the smallest value and the bit width, then each value's distance
+     * from the smallest in that many bits, filling 64-bit words from the low
+     * bits up.
+     */
+    private static void writePacked(DataOutputStream out, long[] values, int count) throws IOException {
+        long base = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            base = Math.min(base, values[i]);
+        }
+        long maxDistance = 0;
+        for (int i = 0; i < count; i++) {
+            if (Long.compareUnsigned(values[i] - base, maxDistance) > 0) {
+                maxDistance = values[i] - base;
+            }
+        }
+        int width = 64 - Long.numberOfLeadingZeros(maxDistance);
+        out.writeLong(count > 0 ? base : 0);
+        out.writeByte(width);
+        if (width == 0) {
+            return;
+        }
+        long word = 0;
+        int used = 0;
+        for (int i = 0; i < count; i++) {
+            long distance = values[i] - base;
+            word |= distance << used;
+            if (used + width >= 64) {
+                out.writeLong(word);
+                word = used == 0 ? 0 : distance >>> (64 - used);
+                used = used + width - 64;
+            } else {
+                used += width;
+            }
+        }
+        if (used > 0) {
+            out.writeLong(word);
+        }
+    }
+
+    private static void readPacked(ByteBuffer in, long[] values, int count) throws IOException {
+        long base = in.getLong();
+        int width = in.get();
+        if (width < 0 || width > 64) {
+            throw new IOException("Bad bit width " + width);
+        }
+        if (width == 0) {
+            Arrays.fill(values, 0, count, base);
+            return;
+        }
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        long word = 0;
+        int used = 64;
+        for (int i = 0; i < count; i++) {
+            if (used == 64) {
+                word = in.getLong();
+                used = 0;
+            }
+            long distance = word >>> used;
+            int available = 64 - used;
+            if (width <= available) {
+                used += width;
+            } else {
+                word = in.getLong();
+                distance |= word << available;
+                used = width - available;
+            }
+            values[i] = base + (distance & mask);
+        }
+    }
+}
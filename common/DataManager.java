@@ -1,30 +1,56 @@
 package common;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Provides utility methods for saving and loading data to/from files using Java Serialization.
  * This class handles the serialization and deserialization of generic lists of objects,
  * making it easier to persist application data between program executions.
+ *
+ * <p>
+ * Files are written in the checksummed {@link RecordFile} format. Before a file
+ * is replaced, the version it replaces is kept as the previous generation
+ * ({@code <file>.prev}), which is loaded instead if the current file turns out
+ * to be torn or damaged.
+ * </p>
  */
 public class DataManager {
     
     /**
      * Saves a list of objects to a file using Java Serialization.
-     * The method creates or overwrites the specified file with the serialized data.
+     * The data is written to a temporary file, forced to disk, and then moved
+     * over the specified file, so the file is never seen half written. The
+     * replaced file is kept as the previous generation.
      * 
      * @param <T>      the type of objects in the list
      * @param fileName the name of the file to save the data to (path included)
      * @param data     the list of objects to be serialized and saved
+     * @return the random tag written into the file header
      * @throws IOException if an I/O error occurs while writing to the file
      *                    or if the file exists but is a directory rather than a regular file,
      *                    does not exist but cannot be created, or cannot be opened for any other reason
      */
-    protected static <T> void saveDataToFile(String fileName, List<T> data) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(fileName))) {
-            oos.writeObject(data);
+    protected static <T> long saveDataToFile(String fileName, List<T> data) throws IOException {
+        File temp = new File(fileName + utils.TEMP_SUFFIX);
+        long tag = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+        utils.DB_LOCK.readLock().lock();
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                RecordFile.write(new BufferedOutputStream(out), data, tag);
+                out.getFD().sync();
+            }
+            File file = new File(fileName);
+            keepPreviousGeneration(file);
+            utils.replaceFile(temp, file);
+            utils.journal(file);
+        } finally {
+            utils.DB_LOCK.readLock().unlock();
         }
+        return tag;
     }
 
     /**
@@ -34,14 +60,39 @@ public class DataManager {
      * @param <T>      the expected type of objects in the list
      * @param fileName the name of the file to load the data from (path included)
      * @return a List containing the deserialized objects
-     * @throws IOException            if an I/O error occurs while reading from the file
+     * @throws IOException            if an I/O error occurs while reading from the file,
+     *                                or the file is torn or damaged
      * @throws ClassNotFoundException if the class of a serialized object cannot be found
      * @throws ClassCastException     if the deserialized object is not of type List<T>
      */
-    @SuppressWarnings("unchecked")
     protected static <T> List<T> loadDataFromFile(String fileName) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fileName))) {
-            return (List<T>) ois.readObject();
+        return RecordFile.read(new File(fileName));
+    }
+
+    /**
+     * Returns the file holding the previous generation of a store file.
+     *
+     * @param file the store file
+     * @return the previous generation file, which may not exist
+     */
+    public static File previousGeneration(File file) {
+        return new File(file.getPath() + utils.PREVIOUS_SUFFIX);
+    }
+
+    /**
+     * Keeps the current version of a file as its previous generation. A hard
+     * link is used where the file system supports one, so nothing is copied.
+     */
+    private static void keepPreviousGeneration(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        File previous = previousGeneration(file);
+        Files.deleteIfExists(previous.toPath());
+        try {
+            Files.createLink(previous.toPath(), file.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(file.toPath(), previous.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 }
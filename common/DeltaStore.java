@@ -0,0 +1,427 @@
+package common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Serialized store file with a log of changed records, so a save costs in
+ * proportion to the records that changed instead of the whole list.
+ *
+ * <p>
+ * The owning service marks every record it adds, changes or removes. A save
+ * appends those records to the change log ({@code <store>.delta}) as
+ * checksummed frames, one put or remove per record keyed by its identity,
+ * and forces the log to disk once. Loading reads the store file and replays
+ * the log over it. Once the log grows past a quarter of the store file, or a
+ * save changes more than a quarter of the records, the whole list is written
+ * to the store file instead and the log is deleted.
+ * </p>
+ *
+ * <p>
+ * The log header carries the tag of the store file it applies to (see
+ * {@link RecordFile}), so a log left behind by an interrupted compaction, or
+ * one that outlived a store file written by another tool, is never replayed
+ * over the wrong version. A torn trailing frame is ignored on load and cut off
+ * before the next append.
+ * </p>
+ *
+ * <p>
+ * The cost of every save is added to per-thread counters, which the load test
+ * reports per operation.
+ * </p>
+ *
+ * @param <T> the type of the records
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class DeltaStore<T> {
+    /** Suffix of a change log */
+    public static final String LOG_SUFFIX = ".delta";
+
+    /** "LMSD" */
+    private static final int MAGIC = 0x4C4D5344;
+    private static final short VERSION = 1;
+    /** Size in bytes of the log header: magic, version and store file tag */
+    private static final int HEADER_SIZE = 4 + 2 + 8;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    /** Share of the store in percent above which a full rewrite is cheaper */
+    private static final int COMPACT_PERCENT = 25;
+    /** Log size below which the log is never compacted */
+    private static final long MIN_COMPACT_BYTES = 64 * 1024;
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    /** Records and bytes written by saves on the current thread */
+    private static final ThreadLocal<long[]> THREAD_COST = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final File file;
+    private final File logFile;
+    private final Function<T, ?> keyOf;
+    private final Map<Object, T> changed = new LinkedHashMap<>();
+    private final Map<Object, T> removed = new LinkedHashMap<>();
+    private boolean allChanged;
+    /** Tag of the store file the log applies to */
+    private long baseTag;
+    /** Length of the log up to the last intact frame, or -1 if there is no usable log */
+    private long logLength = -1;
+
+    /**
+     * Creates a store.
+     *
+     * @param fileName the store file ({@code .ser})
+     * @param keyOf    returns the identity of a record, which must not change
+     */
+    public DeltaStore(String fileName, Function<T, ?> keyOf) {
+        this.file = new File(fileName);
+        this.logFile = logFile(this.file);
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * Returns the change log of a store file.
+     *
+     * @param file the store file
+     * @return the log file, which may not exist
+     */
+    public static File logFile(File file) {
+        String path = file.getPath();
+        return new File(path.substring(0, path.length() - ".ser".length()) + LOG_SUFFIX);
+    }
+
+    /**
+     * Loads the records: the store file with the change log replayed over it.
+     * A damaged store file is replaced by its previous generation as in
+     * {@link utils#loadData(String)}; the log is then ignored and the next save
+     * rewrites the store file.
+     *
+     * @return the records
+     * @throws IllegalStateException if no generation of the store file is readable
+     */
+    public synchronized List<T> load() {
+        this.changed.clear();
+        this.removed.clear();
+        this.allChanged = false;
+        this.logLength = -1;
+        List<T> records;
+        try {
+            records = RecordFile.read(this.file);
+            this.baseTag = RecordFile.readTag(this.file);
+        } catch (IOException | ClassNotFoundException e) {
+            records = utils.loadData(this.file.getPath());
+            this.allChanged = true;
+            return records;
+        }
+        if (this.logFile.exists()) {
+            try {
+                this.replayLog(records);
+            } catch (IOException e) {
+                System.out.println("Ignoring " + this.logFile.getName() + ": " + e.getMessage());
+                this.logLength = -1;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Applies the intact frames of the log to the records.
+     */
+    @SuppressWarnings("unchecked")
+    private void replayLog(List<T> records) throws IOException {
+        long length = this.logFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.logFile)))) {
+            if (length < HEADER_SIZE || in.readInt() != MAGIC || in.readShort() != VERSION) {
+                throw new IOException("not a change log");
+            }
+            if (in.readLong() != this.baseTag) {
+                System.out.println("Ignoring " + this.logFile.getName() + ", written for an earlier "
+                        + this.file.getName());
+                return;
+            }
+            Map<Object, Integer> index = new HashMap<>(records.size() * 2);
+            for (int i = 0; i < records.size(); i++) {
+                index.put(this.keyOf.apply(records.get(i)), i);
+            }
+            long valid = HEADER_SIZE;
+            int applied = 0;
+            boolean hasRemovals = false;
+            CRC32C crc = new CRC32C();
+            while (valid < length) {
+                byte[] frame;
+                try {
+                    int frameLength = in.readInt();
+                    int checksum = in.readInt();
+                    if (frameLength < 1 || frameLength > MAX_FRAME_SIZE || valid + 8 + frameLength > length) {
+                        throw new EOFException();
+                    }
+                    frame = new byte[frameLength];
+                    in.readFully(frame);
+                    crc.reset();
+                    crc.update(frame, 0, frameLength);
+                    if ((int) crc.getValue() != checksum) {
+                        throw new EOFException();
+                    }
+                } catch (EOFException e) {
+                    System.out.println(this.logFile.getName() + ": ignoring " + (length - valid)
+                            + " bytes from the damaged change at offset " + valid);
+                    break;
+                }
+                try (ObjectInputStream objects = new ObjectInputStream(
+                        new ByteArrayInputStream(frame, 1, frame.length - 1))) {
+                    Object key = objects.readObject();
+                    Integer position = index.get(key);
+                    if (frame[0] == PUT) {
+                        T record = (T) objects.readObject();
+                        if (position == null) {
+                            index.put(key, records.size());
+                            records.add(record);
+                        } else {
+                            records.set(position, record);
+                        }
+                    } else if (position != null) {
+                        records.set(position, null);
+                        index.remove(key);
+                        hasRemovals = true;
+                    }
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unreadable change: " + e.getMessage(), e);
+                }
+                valid += 8 + frame.length;
+                applied++;
+            }
+            if (hasRemovals) {
+                records.removeIf(Objects::isNull);
+            }
+            this.logLength = valid;
+            System.out.println(this.file.getName() + " : " + applied + " changes replayed from "
+                    + this.logFile.getName());
+        }
+    }
+
+    /**
+     * Marks a record as added or changed. A record removed and added again is
+     * moved to the end of the list, as it was in memory.
+     *
+     * @param record the record
+     */
+    public synchronized void markChanged(T record) {
+        this.changed.put(this.keyOf.apply(record), record);
+    }
+
+    /**
+     * Marks a record as removed.
+     *
+     * @param record the record
+     */
+    public synchronized void markRemoved(T record) {
+        Object key = this.keyOf.apply(record);
+        this.changed.remove(key);
+        this.removed.put(key, record);
+    }
+
+    /**
+     * Marks the whole list as replaced, so the next save rewrites the store
+     * file.
+     */
+    public synchronized void markAllChanged() {
+        this.allChanged = true;
+    }
+
+    /**
+     * Checks whether anything was marked since the last save.
+     *
+     * @return true if the next save writes anything
+     */
+    public synchronized boolean hasChanges() {
+        return this.allChanged || !this.changed.isEmpty() || !this.removed.isEmpty();
+    }
+
+    /**
+     * Saves the marked changes, appending them to the log or rewriting the
+     * store file when that is cheaper.
+     *
+     * @param records the current records, written in full on a rewrite
+     * @throws IOException if the store cannot be written
+     */
+    public synchronized void persist(List<T> records) throws IOException {
+        if (!this.hasChanges()) {
+            return;
+        }
+        int count = this.changed.size() + this.removed.size();
+        byte[] frames = null;
+        if (!this.allChanged && count * 100L <= records.size() * (long) COMPACT_PERCENT && this.isCurrentBase()) {
+            frames = this.encodeChanges();
+            long logSize = (this.logLength < 0 ? HEADER_SIZE : this.logLength) + frames.length;
+            if (logSize > Math.max(MIN_COMPACT_BYTES, this.file.length() * COMPACT_PERCENT / 100)) {
+                frames = null;
+            }
+        }
+        long bytes;
+        if (frames != null) {
+            this.appendToLog(frames);
+            bytes = frames.length;
+        } else {
+            this.baseTag = DataManager.saveDataToFile(this.file.getPath(), records);
+            Files.deleteIfExists(this.logFile.toPath());
+            this.logLength = -1;
+            count = records.size();
+            bytes = this.file.length();
+        }
+        this.changed.clear();
+        this.removed.clear();
+        this.allChanged = false;
+        long[] cost = THREAD_COST.get();
+        cost[0] += count;
+        cost[1] += bytes;
+    }
+
+    /**
+     * Checks that the store file on disk is the one the log belongs to; another
+     * tool may have replaced it since it was loaded.
+     */
+    private boolean isCurrentBase() {
+        try {
+            return this.file.exists() && RecordFile.readTag(this.file) == this.baseTag;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Encodes the marked changes as log frames: length, CRC32C, then the
+     * operation, the key and for a put the record. Removals come first, so a
+     * record removed and added again is appended.
+     */
+    private byte[] encodeChanges() throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(frames);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(512);
+        CRC32C crc = new CRC32C();
+        for (Object key : this.removed.keySet()) {
+            encodeFrame(data, frame, crc, REMOVE, key, null);
+        }
+        for (Map.Entry<Object, T> entry : this.changed.entrySet()) {
+            encodeFrame(data, frame, crc, PUT, entry.getKey(), entry.getValue());
+        }
+        data.flush();
+        return frames.toByteArray();
+    }
+
+    private static void encodeFrame(DataOutputStream data, ByteArrayOutputStream frame, CRC32C crc, byte op,
+            Object key, Object record) throws IOException {
+        frame.reset();
+        frame.write(op);
+        try (ObjectOutputStream objects = new ObjectOutputStream(frame)) {
+            objects.writeObject(key);
+            if (op == PUT) {
+                objects.writeObject(record);
+            }
+        }
+        byte[] bytes = frame.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        data.writeInt(bytes.length);
+        data.writeInt((int) crc.getValue());
+        data.write(bytes);
+    }
+
+    /**
+     * Appends frames to the log, starting a new log for the current store file
+     * if there is no usable one.
+     */
+    private void appendToLog(byte[] frames) throws IOException {
+        utils.DB_LOCK.readLock().lock();
+        try {
+            if (this.logLength < 0) {
+                File temp = new File(this.logFile.getPath() + utils.TEMP_SUFFIX);
+                try {
+                    try (FileOutputStream out = new FileOutputStream(temp)) {
+                        DataOutputStream data = new DataOutputStream(out);
+                        data.writeInt(MAGIC);
+                        data.writeShort(VERSION);
+                        data.writeLong(this.baseTag);
+                        data.write(frames);
+                        data.flush();
+                        out.getFD().sync();
+                    }
+                    utils.replaceFile(temp, this.logFile);
+                } finally {
+                    Files.deleteIfExists(temp.toPath());
+                }
+                this.logLength = HEADER_SIZE + frames.length;
+                utils.journal(this.logFile);
+            } else {
+                try (RandomAccessFile raf = new RandomAccessFile(this.logFile, "rw")) {
+                    raf.setLength(this.logLength);
+                    raf.seek(this.logLength);
+                    raf.write(frames);
+                    raf.getFD().sync();
+                }
+                utils.journalAppend(this.logFile, this.logLength, frames);
+                this.logLength += frames.length;
+            }
+        } finally {
+            utils.DB_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the tag of the store file the records were last loaded from or
+     * saved to. Together with {@link #getLogLength()} it identifies the saved
+     * state of the records.
+     *
+     * @return the store file tag
+     */
+    public synchronized long getBaseTag() {
+        return this.baseTag;
+    }
+
+    /**
+     * Returns the length of the change log up to its last intact change.
+     *
+     * @return the log length, or -1 if the store file has no log
+     */
+    public synchronized long getLogLength() {
+        return this.logLength;
+    }
+
+    /**
+     * Returns the number of records written by saves on the current thread so
+     * far.
+     *
+     * @return the record count
+     */
+    public static long getThreadRecordsWritten() {
+        return THREAD_COST.get()[0];
+    }
+
+    /**
+     * Returns the number of bytes written by saves on the current thread so
+     * far.
+     *
+     * @return the byte count
+     */
+    public static long getThreadBytesWritten() {
+        return THREAD_COST.get()[1];
+    }
+}
@@ -0,0 +1,94 @@
+package common;
+
+/**
+ * Selects the records written by an export.
+ *
+ * <p>
+ * A filter combines a date range, a book category and a member type; each
+ * part is optional. The date range applies to the date that defines a record
+ * (membership, issue or reservation date), the category to the record's book
+ * and the member type to the record's member. A record without the attribute
+ * a filter part looks at, such as a loan whose book no longer exists, does not
+ * match that part.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class ExportFilter {
+    /** Filter that selects every record */
+    public static final ExportFilter ALL = new ExportFilter(Long.MIN_VALUE, Long.MAX_VALUE, null, null);
+
+    private final long fromMillis;
+    private final long toMillis;
+    private final BookCategory category;
+    private final String memberType;
+
+    /**
+     * Creates a filter.
+     *
+     * @param fromMillis first epoch time of the date range, inclusive
+     * @param toMillis   end of the date range in epoch milliseconds, exclusive
+     * @param category   the book category to keep, or null for all
+     * @param memberType the member type to keep, or null for all
+     */
+    public ExportFilter(long fromMillis, long toMillis, BookCategory category, String memberType) {
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("Date range ends before it starts");
+        }
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.category = category;
+        this.memberType = memberType;
+    }
+
+    /**
+     * @param epochMillis the date of a record
+     * @return true if the date lies in the range
+     */
+    public boolean matchesDate(long epochMillis) {
+        return epochMillis >= this.fromMillis && epochMillis < this.toMillis;
+    }
+
+    /**
+     * @param category the category of a record's book, or null if it has none
+     * @return true if no category is selected or the category is the selected one
+     */
+    public boolean matchesCategory(BookCategory category) {
+        return this.category == null || this.category == category;
+    }
+
+    /**
+     * @param memberType the type of a record's member, or null if it has none
+     * @return true if no member type is selected or the type is the selected one
+     */
+    public boolean matchesMemberType(String memberType) {
+        return this.memberType == null || this.memberType.equalsIgnoreCase(memberType);
+    }
+
+    /** @return the first epoch time of the date range, inclusive */
+    public long getFromMillis() {
+        return this.fromMillis;
+    }
+
+    /** @return the end of the date range in epoch milliseconds, exclusive */
+    public long getToMillis() {
+        return this.toMillis;
+    }
+
+    /** @return true if the filter restricts dates */
+    public boolean hasDateRange() {
+        return this.fromMillis != Long.MIN_VALUE || this.toMillis != Long.MAX_VALUE;
+    }
+
+    /** @return true if the filter restricts the book category */
+    public boolean hasCategory() {
+        return this.category != null;
+    }
+
+    /** @return true if the filter restricts the member type */
+    public boolean hasMemberType() {
+        return this.memberType != null;
+    }
+}
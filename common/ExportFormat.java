@@ -0,0 +1,45 @@
+package common;
+
+/**
+ * File formats written by {@link RecordExporter}.
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public enum ExportFormat {
+    /** {@code key=value} pairs separated by {@code ", "}, readable by the import */
+    KEY_VALUE("txt"),
+
+    /** Comma-separated values with a header row, quoted where needed */
+    CSV("csv"),
+
+    /** Compact typed binary records, see {@link RecordExporter} */
+    BINARY("bin");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /** @return the file name extension, without the dot */
+    public String getExtension() {
+        return this.extension;
+    }
+
+    /**
+     * Retrieves a format by its 1-based menu number.
+     *
+     * @param number the menu number
+     * @return the format
+     * @throws Exception if no format has that number
+     */
+    public static ExportFormat getFormatByNumber(int number) throws Exception {
+        ExportFormat[] formats = values();
+        if (number < 1 || number > formats.length) {
+            throw new Exception("Invalid export format number: " + number);
+        }
+        return formats[number - 1];
+    }
+}
@@ -0,0 +1,435 @@
+package common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only ledger of fine assessments, payments and waivers.
+ *
+ * <p>
+ * Amounts are stored as whole minor units (paise) so totals never drift the
+ * way repeated {@code double} additions do. Every entry is appended to a
+ * binary file as a fixed-size record and folded into running totals per
+ * member, per day and for the whole library, so every total can be read in
+ * constant time.
+ * </p>
+ *
+ * <p>
+ * The file starts with a magic number and a format version, and every record
+ * ends with the CRC32C of its fields. Appends are forced to disk before they
+ * count. A partially written or damaged trailing record, for example after a
+ * crash, is ignored on load and cut off before the next append.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class FineLedger {
+    /**
+     * Kind of ledger entry.
+     */
+    public enum EntryType {
+        /** A fine charged to a member */
+        ASSESSED,
+        /** A fine paid by a member */
+        PAID,
+        /** A fine cancelled by the library */
+        WAIVED
+    }
+
+    /** "LMFL" */
+    private static final int MAGIC = 0x4C4D464C;
+    private static final short VERSION = 1;
+    /** Size in bytes of the file header: magic and version */
+    private static final int HEADER_SIZE = 4 + 2;
+    /** Size in bytes of the fields of a record: type, member ID, issue ID, amount, time */
+    private static final int ENTRY_SIZE = 1 + 8 + 8 + 8 + 8;
+    /** Size in bytes of one record: the fields and their CRC32C */
+    private static final int RECORD_SIZE = ENTRY_SIZE + 4;
+
+    private static final EntryType[] TYPES = EntryType.values();
+
+    private final String fileName;
+    private final Consumer<String> notices;
+    private final long[] totals = new long[TYPES.length];
+    private final Map<Long, long[]> memberTotals = new HashMap<>();
+    private final Map<Long, long[]> dayTotals = new HashMap<>();
+    private long entryCount;
+    /** Length of the file up to the last intact record, or -1 if not read yet */
+    private long validLength = -1;
+
+    /**
+     * One ledger entry.
+     */
+    public static class Entry {
+        private final EntryType type;
+        private final long memberId;
+        private final long issueId;
+        private final long amount;
+        private final long timestamp;
+
+        /**
+         * Creates a ledger entry.
+         *
+         * @param type      the kind of entry
+         * @param memberId  the member the entry belongs to
+         * @param issueId   the book issue the fine relates to, or 0 if none
+         * @param amount    the amount in minor units (must be positive)
+         * @param timestamp the entry time in epoch milliseconds
+         * @throws IllegalArgumentException if the amount is not positive
+         */
+        public Entry(EntryType type, long memberId, long issueId, long amount, long timestamp) {
+            if (amount <= 0) {
+                throw new IllegalArgumentException("Ledger amount must be positive");
+            }
+            this.type = type;
+            this.memberId = memberId;
+            this.issueId = issueId;
+            this.amount = amount;
+            this.timestamp = timestamp;
+        }
+
+        /** @return the kind of entry */
+        public EntryType getType() {
+            return this.type;
+        }
+
+        /** @return the member the entry belongs to */
+        public long getMemberId() {
+            return this.memberId;
+        }
+
+        /** @return the book issue the fine relates to, or 0 if none */
+        public long getIssueId() {
+            return this.issueId;
+        }
+
+        /** @return the amount in minor units */
+        public long getAmount() {
+            return this.amount;
+        }
+
+        /** @return the entry time in epoch milliseconds */
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+    }
+
+    /**
+     * Creates a ledger backed by the given file.
+     *
+     * @param fileName the path of the ledger file
+     * @param notices  receives the messages about damaged records skipped
+     *                 while reading
+     */
+    public FineLedger(String fileName, Consumer<String> notices) {
+        this.fileName = fileName;
+        this.notices = notices;
+    }
+
+    /**
+     * Checks whether the ledger file exists.
+     *
+     * @return true if the ledger has been written before
+     */
+    public boolean exists() {
+        return new File(this.fileName).exists();
+    }
+
+    /**
+     * Reads the ledger file and rebuilds all running totals.
+     *
+     * @throws IOException if the ledger file cannot be read
+     */
+    public void load() throws IOException {
+        this.clearTotals();
+        this.forEachEntry(this::apply);
+    }
+
+    /**
+     * Streams every entry of the ledger file, oldest first, without keeping
+     * them in memory.
+     *
+     * @param consumer the action to run for each entry
+     * @throws IOException if the ledger file cannot be read
+     */
+    public void forEachEntry(Consumer<Entry> consumer) throws IOException {
+        File file = new File(this.fileName);
+        if (!file.exists()) {
+            return;
+        }
+        long length = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long valid = 0;
+            if (length >= HEADER_SIZE) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a fine ledger: " + this.fileName);
+                }
+                if (in.readShort() != VERSION) {
+                    throw new IOException("Unsupported fine ledger version");
+                }
+                valid = HEADER_SIZE;
+            }
+            byte[] record = new byte[RECORD_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            CRC32C crc = new CRC32C();
+            while (valid + RECORD_SIZE <= length) {
+                in.readFully(record);
+                crc.reset();
+                crc.update(record, 0, ENTRY_SIZE);
+                int type = record[0];
+                if ((int) crc.getValue() != buffer.getInt(ENTRY_SIZE) || type < 0 || type >= TYPES.length) {
+                    this.notices.accept("Fine ledger: ignoring " + (length - valid)
+                            + " bytes from the damaged record at offset " + valid);
+                    break;
+                }
+                consumer.accept(new Entry(TYPES[type], buffer.getLong(1), buffer.getLong(9), buffer.getLong(17),
+                        buffer.getLong(25)));
+                valid += RECORD_SIZE;
+            }
+            this.validLength = valid;
+        }
+    }
+
+    /**
+     * Appends one entry to the ledger file and updates the running totals.
+     *
+     * @param entry the entry to append
+     * @throws IOException if the ledger file cannot be written
+     */
+    public void append(Entry entry) throws IOException {
+        utils.DB_LOCK.readLock().lock();
+        try {
+            this.dropDamagedRecords();
+            File file = new File(this.fileName);
+            long offset = file.length();
+            byte[] record = encode(entry, new CRC32C());
+            try (FileOutputStream out = openForWrite(file, true)) {
+                if (offset == 0) {
+                    writeHeader(out);
+                }
+                out.write(record);
+                out.getFD().sync();
+            }
+            this.validLength = file.length();
+            if (offset == 0) {
+                utils.journal(file);
+            } else {
+                utils.journalAppend(file, offset, record);
+            }
+        } finally {
+            utils.DB_LOCK.readLock().unlock();
+        }
+        this.apply(entry);
+    }
+
+    /**
+     * Replaces the whole ledger with the given entries.
+     * <p>
+     * This is used to start a ledger from existing fine data; afterwards the
+     * ledger is only ever appended to.
+     *
+     * @param entries the entries the new ledger consists of
+     * @throws IOException if the ledger file cannot be written
+     */
+    public void reset(List<Entry> entries) throws IOException {
+        this.clearTotals();
+        File temp = new File(this.fileName + utils.TEMP_SUFFIX);
+        utils.DB_LOCK.readLock().lock();
+        try {
+            try (FileOutputStream out = openForWrite(temp, false)) {
+                OutputStream buffered = new BufferedOutputStream(out);
+                writeHeader(buffered);
+                CRC32C crc = new CRC32C();
+                for (Entry entry : entries) {
+                    buffered.write(encode(entry, crc));
+                    this.apply(entry);
+                }
+                buffered.flush();
+                out.getFD().sync();
+            }
+            File file = new File(this.fileName);
+            utils.replaceFile(temp, file);
+            this.validLength = file.length();
+            utils.journal(file);
+        } finally {
+            utils.DB_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the library-wide total of one kind of entry.
+     *
+     * @param type the kind of entry
+     * @return the total in minor units
+     */
+    public long getTotal(EntryType type) {
+        return this.totals[type.ordinal()];
+    }
+
+    /**
+     * Returns the total of one kind of entry recorded on a given day.
+     *
+     * @param day  the day to look up
+     * @param type the kind of entry
+     * @return the total in minor units
+     */
+    public long getDayTotal(LocalDate day, EntryType type) {
+        long[] dayTotal = this.dayTotals.get(day.toEpochDay());
+        return dayTotal == null ? 0 : dayTotal[type.ordinal()];
+    }
+
+    /**
+     * Returns the total of one kind of entry for a member.
+     *
+     * @param memberId the member to look up
+     * @param type     the kind of entry
+     * @return the total in minor units
+     */
+    public long getMemberTotal(long memberId, EntryType type) {
+        long[] memberTotal = this.memberTotals.get(memberId);
+        return memberTotal == null ? 0 : memberTotal[type.ordinal()];
+    }
+
+    /**
+     * Returns the amount a member still owes: assessed minus paid and waived.
+     *
+     * @param memberId the member to look up
+     * @return the outstanding amount in minor units
+     */
+    public long getOutstanding(long memberId) {
+        return getMemberTotal(memberId, EntryType.ASSESSED) - getMemberTotal(memberId, EntryType.PAID)
+                - getMemberTotal(memberId, EntryType.WAIVED);
+    }
+
+    /**
+     * Returns the amount owed to the library across all members.
+     *
+     * @return the outstanding amount in minor units
+     */
+    public long getOutstanding() {
+        return getTotal(EntryType.ASSESSED) - getTotal(EntryType.PAID) - getTotal(EntryType.WAIVED);
+    }
+
+    /**
+     * Returns the number of entries in the ledger.
+     *
+     * @return the number of entries
+     */
+    public long getEntryCount() {
+        return this.entryCount;
+    }
+
+    /**
+     * Converts a currency amount to minor units, rounding to the nearest paisa.
+     *
+     * @param amount the amount in the local currency
+     * @return the amount in minor units
+     */
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Formats an amount in minor units as a currency amount, e.g. "Rs. 12.50".
+     *
+     * @param minorUnits the amount in minor units
+     * @return the formatted amount
+     */
+    public static String format(long minorUnits) {
+        String sign = minorUnits < 0 ? "-" : "";
+        long absolute = Math.abs(minorUnits);
+        long fraction = absolute % 100;
+        return sign + "Rs. " + (absolute / 100) + "." + (fraction < 10 ? "0" : "") + fraction;
+    }
+
+    /**
+     * Folds one entry into the running totals.
+     */
+    private void apply(Entry entry) {
+        int index = entry.getType().ordinal();
+        this.totals[index] += entry.getAmount();
+        bucket(this.memberTotals, entry.getMemberId())[index] += entry.getAmount();
+        bucket(this.dayTotals, utils.convertEpochToDate(entry.getTimestamp()).toEpochDay())[index] += entry
+                .getAmount();
+        this.entryCount++;
+    }
+
+    /**
+     * Truncates damaged or partially written trailing records so new records
+     * stay aligned. Without a load, only a partial record can be detected.
+     */
+    private void dropDamagedRecords() throws IOException {
+        File file = new File(this.fileName);
+        long length = file.length();
+        long valid = this.validLength;
+        if (valid < 0) {
+            valid = length < HEADER_SIZE ? 0 : length - (length - HEADER_SIZE) % RECORD_SIZE;
+        }
+        if (valid < length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+    }
+
+    private void clearTotals() {
+        for (int i = 0; i < this.totals.length; i++) {
+            this.totals[i] = 0;
+        }
+        this.memberTotals.clear();
+        this.dayTotals.clear();
+        this.entryCount = 0;
+    }
+
+    private static FileOutputStream openForWrite(File file, boolean append) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        return new FileOutputStream(file, append);
+    }
+
+    private static void writeHeader(OutputStream out) throws IOException {
+        out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).array());
+    }
+
+    /**
+     * Encodes one record: the entry fields followed by their CRC32C.
+     */
+    private static byte[] encode(Entry entry, CRC32C crc) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        buffer.put((byte) entry.getType().ordinal());
+        buffer.putLong(entry.getMemberId());
+        buffer.putLong(entry.getIssueId());
+        buffer.putLong(entry.getAmount());
+        buffer.putLong(entry.getTimestamp());
+        crc.reset();
+        crc.update(buffer.array(), 0, ENTRY_SIZE);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static long[] bucket(Map<Long, long[]> totals, long key) {
+        long[] bucket = totals.get(key);
+        if (bucket == null) {
+            bucket = new long[TYPES.length];
+            totals.put(key, bucket);
+        }
+        return bucket;
+    }
+}
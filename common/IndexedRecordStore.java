@@ -0,0 +1,287 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Store of serialized records in an {@link LsmStore}, keyed by ID and time,
+ * with secondary indexes for reading all the records of one member, book or
+ * other owner in time order.
+ *
+ * <p>
+ * A record is stored under its primary key (ID, then time). Each secondary
+ * index adds an entry keyed by the indexed value, the time and the ID, with
+ * no value of its own, so all the records sharing a value lie next to each
+ * other in key order. Reading them is one short range scan of the index
+ * followed by a lookup per record. Storing a record writes its primary entry
+ * and its index entries blindly, without reading anything first, so writes
+ * stay cheap however large the store grows; the indexed values of a record
+ * must therefore never change.
+ * </p>
+ *
+ * <p>
+ * Changes take effect in batches ended by {@link #commit(long, long)}, whose
+ * stamp lets the owner check on startup whether the store still matches its
+ * source of truth and {@link #rebuild(List, long, long) rebuild} it if not.
+ * Instances are thread-safe.
+ * </p>
+ *
+ * @param <T> the type of the records
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class IndexedRecordStore<T> implements AutoCloseable {
+    private static final byte PRIMARY = 0;
+    private static final byte[] NO_VALUE = new byte[0];
+    /** Records written between commits while rebuilding */
+    private static final int REBUILD_BATCH = 1000;
+
+    private final File dir;
+    private final long memtableBytes;
+    private final ToLongFunction<T> idOf;
+    private final ToLongFunction<T> timeOf;
+    private final List<ToLongFunction<T>> indexes;
+    private final Consumer<String> notices;
+    private LsmStore store;
+
+    private IndexedRecordStore(File dir, long memtableBytes, ToLongFunction<T> idOf, ToLongFunction<T> timeOf,
+            List<ToLongFunction<T>> indexes, Consumer<String> notices) throws IOException {
+        this.dir = dir;
+        this.memtableBytes = memtableBytes;
+        this.idOf = idOf;
+        this.timeOf = timeOf;
+        this.indexes = indexes;
+        this.notices = notices;
+        this.store = LsmStore.open(dir, memtableBytes, notices);
+    }
+
+    /**
+     * Opens a store, creating it if the directory holds none.
+     *
+     * @param <T>           the type of the records
+     * @param dir           the store directory
+     * @param memtableBytes the memory the store may use for recent writes
+     * @param idOf          returns the ID of a record
+     * @param timeOf        returns the time of a record, which orders the
+     *                      records of an index value
+     * @param indexes       return the values indexed for a record, numbered
+     *                      from 0 in list order
+     * @param notices       receives the messages about changes replayed or
+     *                      ignored while opening
+     * @return the open store
+     * @throws IOException if the store cannot be opened or is open in another
+     *                     process
+     */
+    public static <T> IndexedRecordStore<T> open(File dir, long memtableBytes, ToLongFunction<T> idOf,
+            ToLongFunction<T> timeOf, List<ToLongFunction<T>> indexes, Consumer<String> notices) throws IOException {
+        return new IndexedRecordStore<>(dir, memtableBytes, idOf, timeOf, indexes, notices);
+    }
+
+    /**
+     * Stores a record, replacing the record with the same ID and time.
+     *
+     * @param record the record
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void put(T record) throws IOException {
+        long id = this.idOf.applyAsLong(record);
+        long time = this.timeOf.applyAsLong(record);
+        this.store.put(primaryKey(id, time), serialize(record));
+        for (int index = 0; index < this.indexes.size(); index++) {
+            this.store.put(indexKey(index, this.indexes.get(index).applyAsLong(record), time, id), NO_VALUE);
+        }
+    }
+
+    /**
+     * Removes a record and its index entries.
+     *
+     * @param record the record
+     * @throws IOException if the removal cannot be written
+     */
+    public synchronized void remove(T record) throws IOException {
+        long id = this.idOf.applyAsLong(record);
+        long time = this.timeOf.applyAsLong(record);
+        this.store.delete(primaryKey(id, time));
+        for (int index = 0; index < this.indexes.size(); index++) {
+            this.store.delete(indexKey(index, this.indexes.get(index).applyAsLong(record), time, id));
+        }
+    }
+
+    /**
+     * Ends the current batch of changes with a stamp.
+     *
+     * @param tag    the first part of the stamp
+     * @param length the second part of the stamp
+     * @throws IOException if the batch cannot be written
+     * @see LsmStore#commit(long, long)
+     */
+    public synchronized void commit(long tag, long length) throws IOException {
+        this.store.commit(tag, length);
+    }
+
+    /**
+     * Checks whether the last commit carried a stamp.
+     *
+     * @param tag    the first part of the stamp
+     * @param length the second part of the stamp
+     * @return true if the store was last committed with this stamp
+     */
+    public synchronized boolean isCommittedAt(long tag, long length) {
+        return this.store.getCommittedTag() == tag && this.store.getCommittedLength() == length;
+    }
+
+    /**
+     * Looks up a record.
+     *
+     * @param id   the ID of the record
+     * @param time the time of the record
+     * @return the record, or null if there is none
+     * @throws IOException if the record cannot be read
+     */
+    public synchronized T get(long id, long time) throws IOException {
+        byte[] bytes = this.store.get(primaryKey(id, time));
+        return bytes == null ? null : this.deserialize(bytes);
+    }
+
+    /**
+     * Returns the records with an index value, oldest first.
+     *
+     * @param index the index number
+     * @param value the indexed value
+     * @return the records
+     * @throws IOException if the records cannot be read
+     */
+    public List<T> find(int index, long value) throws IOException {
+        List<long[]> keys = new ArrayList<>();
+        LsmStore current;
+        synchronized (this) {
+            current = this.store;
+        }
+        current.scan(indexKey(index, value, Long.MIN_VALUE, Long.MIN_VALUE),
+                indexKey(index, value, Long.MAX_VALUE, Long.MAX_VALUE), (key, empty) -> {
+                    ByteBuffer buffer = ByteBuffer.wrap(key, 9, 16);
+                    long time = buffer.getLong() ^ Long.MIN_VALUE;
+                    long id = buffer.getLong() ^ Long.MIN_VALUE;
+                    keys.add(new long[] { id, time });
+                    return true;
+                });
+        List<T> records = new ArrayList<>(keys.size());
+        for (long[] key : keys) {
+            T record = this.get(key[0], key[1]);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Source of the records a store is rebuilt from, handing them over one at
+     * a time so they need not all be in memory.
+     *
+     * @param <T> the type of the records
+     */
+    public interface RecordSource<T> {
+        /**
+         * Passes every record to a visitor.
+         *
+         * @param visitor receives the records
+         * @throws IOException if the records cannot be read or the visitor
+         *                     fails
+         */
+        void forEach(ArchiveStore.RecordVisitor<T> visitor) throws IOException;
+    }
+
+    /**
+     * Replaces the contents of the store with the records of a source,
+     * committed with a stamp once all are written.
+     *
+     * @param records the source of the records
+     * @param tag     the first part of the stamp
+     * @param length  the second part of the stamp
+     * @return the number of records written
+     * @throws IOException if the records cannot be read or the store cannot
+     *                     be written
+     */
+    public synchronized long rebuild(RecordSource<T> records, long tag, long length) throws IOException {
+        this.store.close();
+        File[] files = this.dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        this.store = LsmStore.open(this.dir, this.memtableBytes, this.notices);
+        long[] written = { 0 };
+        records.forEach(record -> {
+            this.put(record);
+            if (++written[0] % REBUILD_BATCH == 0) {
+                this.store.commit(0, 0);
+            }
+        });
+        this.store.commit(tag, length);
+        this.store.flush();
+        return written[0];
+    }
+
+    /**
+     * Returns the engine underneath, for its statistics.
+     *
+     * @return the LSM store
+     */
+    public synchronized LsmStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Closes the store.
+     *
+     * @throws IOException if the store cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.store.close();
+    }
+
+    private static byte[] primaryKey(long id, long time) {
+        return ByteBuffer.allocate(17).put(PRIMARY).putLong(id ^ Long.MIN_VALUE).putLong(time ^ Long.MIN_VALUE)
+                .array();
+    }
+
+    /**
+     * Encodes an index entry key. Longs are stored big-endian with the sign
+     * bit flipped, so unsigned byte order matches numeric order.
+     */
+    private static byte[] indexKey(int index, long value, long time, long id) {
+        return ByteBuffer.allocate(25).put((byte) (index + 1)).putLong(value ^ Long.MIN_VALUE)
+                .putLong(time ^ Long.MIN_VALUE).putLong(id ^ Long.MIN_VALUE).array();
+    }
+
+    private static byte[] serialize(Object record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(record);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T deserialize(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (T) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable record: " + e.getMessage(), e);
+        }
+    }
+}
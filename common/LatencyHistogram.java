@@ -0,0 +1,142 @@
+package common;
+
+/**
+ * Fixed-memory latency histogram with HDR-style log-linear buckets.
+ *
+ * <p>
+ * Values below 256 are counted exactly. Larger values fall into one of 128
+ * linear sub-buckets per power of two, so every recorded value is reproduced
+ * with a relative error below 1% regardless of its magnitude. The whole
+ * histogram is a single {@code long[]} of about 7,400 counters, so recording is
+ * allocation-free and a histogram can cover nanoseconds to hours.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe. Give each thread its own histogram and
+ * combine them with {@link #add(LatencyHistogram)} once recording is done.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class LatencyHistogram {
+    /** Number of bits resolved linearly inside each power of two */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /** Number of linear sub-buckets per power of two */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Values below this limit are counted exactly */
+    private static final int EXACT_LIMIT = SUB_BUCKET_COUNT * 2;
+
+    private final long[] counts = new long[EXACT_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT];
+    private long totalCount;
+    private long maxValue;
+    private long minValue = Long.MAX_VALUE;
+
+    /**
+     * Records one value.
+     *
+     * @param value the value to record; negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts[indexOf(value)]++;
+        this.totalCount++;
+        this.maxValue = Math.max(this.maxValue, value);
+        this.minValue = Math.min(this.minValue, value);
+    }
+
+    /**
+     * Adds all values recorded by another histogram to this one.
+     *
+     * @param other the histogram to merge in
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.totalCount += other.totalCount;
+        this.maxValue = Math.max(this.maxValue, other.maxValue);
+        this.minValue = Math.min(this.minValue, other.minValue);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of recorded values
+     */
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the largest recorded value, or 0 if nothing was recorded
+     */
+    public long getMaxValue() {
+        return this.maxValue;
+    }
+
+    /**
+     * Returns the smallest recorded value.
+     *
+     * @return the smallest recorded value, or 0 if nothing was recorded
+     */
+    public long getMinValue() {
+        return this.totalCount == 0 ? 0 : this.minValue;
+    }
+
+    /**
+     * Returns the value at the given percentile.
+     * <p>
+     * The result is the highest value equivalent to the bucket holding the
+     * percentile, capped at the recorded maximum, so reported latencies never
+     * understate what was measured.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the value at the percentile, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (this.totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.totalCount));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), this.maxValue);
+            }
+        }
+        return this.maxValue;
+    }
+
+    /**
+     * Maps a value to its bucket index.
+     */
+    private static int indexOf(long value) {
+        if (value < EXACT_LIMIT) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS + 1);
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return EXACT_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Returns the highest value that maps to the given bucket index.
+     */
+    private static long highestEquivalentValue(int index) {
+        if (index < EXACT_LIMIT) {
+            return index;
+        }
+        int shift = (index - EXACT_LIMIT) / SUB_BUCKET_COUNT + 1;
+        long mantissa = (index - EXACT_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
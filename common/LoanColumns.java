@@ -0,0 +1,210 @@
+package common;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Column-oriented copy of the loan history for bulk scans.
+ *
+ * <p>
+ * Each loan is stored as two {@code int}s: the ordinal of the borrowing member
+ * and the epoch day it was issued. Member IDs are mapped to dense ordinals
+ * when first seen, so per-member results of a scan are plain arrays indexed by
+ * ordinal. Scanning these arrays touches 8 bytes per loan instead of chasing a
+ * {@code BookIssue}, its member and its book, and the scan is split across
+ * the common fork/join pool.
+ * </p>
+ *
+ * <p>
+ * Appends are not thread-safe; scans may run in parallel with each other but
+ * not with appends.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class LoanColumns {
+    /** Loans below this count are scanned by a single task */
+    private static final int MIN_SCAN_CHUNK = 1 << 16;
+
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private int[] loanMembers = new int[1024];
+    private int[] loanDays = new int[1024];
+    private int size;
+
+    /**
+     * Per-member result of an activity scan, indexed by member ordinal.
+     */
+    public static class MemberActivity {
+        private final int[] recentLoans;
+        private final int[] lastLoanDays;
+
+        private MemberActivity(int members) {
+            this.recentLoans = new int[members];
+            this.lastLoanDays = new int[members];
+            Arrays.fill(this.lastLoanDays, Integer.MIN_VALUE);
+        }
+
+        /**
+         * Returns the number of loans a member took since the scan's start day.
+         *
+         * @param ordinal the member ordinal
+         * @return the number of recent loans
+         */
+        public int getRecentLoans(int ordinal) {
+            return this.recentLoans[ordinal];
+        }
+
+        /**
+         * Returns the epoch day of a member's latest loan.
+         *
+         * @param ordinal the member ordinal
+         * @return the epoch day, or {@link Integer#MIN_VALUE} if the member has no
+         *         loans
+         */
+        public int getLastLoanDay(int ordinal) {
+            return this.lastLoanDays[ordinal];
+        }
+
+        private void merge(MemberActivity other) {
+            for (int i = 0; i < this.recentLoans.length; i++) {
+                this.recentLoans[i] += other.recentLoans[i];
+                this.lastLoanDays[i] = Math.max(this.lastLoanDays[i], other.lastLoanDays[i]);
+            }
+        }
+    }
+
+    /**
+     * Scans a range of loans, splitting it in half until it is small enough.
+     */
+    private class ActivityScan extends RecursiveTask<MemberActivity> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final int members;
+        private final int sinceDay;
+
+        ActivityScan(int from, int to, int chunk, int members, int sinceDay) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.members = members;
+            this.sinceDay = sinceDay;
+        }
+
+        @Override
+        protected MemberActivity compute() {
+            if (this.to - this.from <= this.chunk) {
+                MemberActivity activity = new MemberActivity(this.members);
+                int[] memberColumn = loanMembers;
+                int[] dayColumn = loanDays;
+                for (int i = this.from; i < this.to; i++) {
+                    int member = memberColumn[i];
+                    int day = dayColumn[i];
+                    if (day >= this.sinceDay) {
+                        activity.recentLoans[member]++;
+                    }
+                    if (day > activity.lastLoanDays[member]) {
+                        activity.lastLoanDays[member] = day;
+                    }
+                }
+                return activity;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            ActivityScan left = new ActivityScan(this.from, middle, this.chunk, this.members, this.sinceDay);
+            ActivityScan right = new ActivityScan(middle, this.to, this.chunk, this.members, this.sinceDay);
+            left.fork();
+            MemberActivity result = right.compute();
+            result.merge(left.join());
+            return result;
+        }
+    }
+
+    /**
+     * Appends one loan.
+     *
+     * @param memberId  the ID of the borrowing member
+     * @param issueDate the issue time in epoch milliseconds
+     */
+    public void append(long memberId, long issueDate) {
+        this.append(memberId, (int) utils.convertEpochToDate(issueDate).toEpochDay());
+    }
+
+    /**
+     * Appends one loan issued on a given epoch day.
+     *
+     * @param memberId the ID of the borrowing member
+     * @param issueDay the issue day as an epoch day
+     */
+    public void append(long memberId, int issueDay) {
+        if (this.size == this.loanMembers.length) {
+            this.loanMembers = Arrays.copyOf(this.loanMembers, this.size * 2);
+            this.loanDays = Arrays.copyOf(this.loanDays, this.size * 2);
+        }
+        this.loanMembers[this.size] = this.ordinalOf(memberId);
+        this.loanDays[this.size] = issueDay;
+        this.size++;
+    }
+
+    /**
+     * Returns the number of loans.
+     *
+     * @return the number of loans
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the ordinal of a member.
+     *
+     * @param memberId the ID of the member
+     * @return the ordinal, or -1 if the member has no loans
+     */
+    public int getOrdinal(long memberId) {
+        Integer ordinal = this.ordinals.get(memberId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the number of distinct members with loans.
+     *
+     * @return the number of member ordinals
+     */
+    public int getMemberCount() {
+        return this.ordinals.size();
+    }
+
+    /**
+     * Computes every member's recent loan count and latest loan day in one
+     * parallel pass over the loan columns.
+     *
+     * @param sinceDay the first epoch day counted as recent
+     * @return the per-member activity, indexed by member ordinal
+     */
+    public MemberActivity scanMemberActivity(int sinceDay) {
+        int members = this.ordinals.size();
+        if (this.size == 0) {
+            return new MemberActivity(members);
+        }
+        // A few chunks per worker keeps the pool busy without merging too many
+        // per-member arrays
+        int chunk = Math.max(MIN_SCAN_CHUNK, this.size / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+        return ForkJoinPool.commonPool().invoke(new ActivityScan(0, this.size, chunk, members, sinceDay));
+    }
+
+    private int ordinalOf(long memberId) {
+        Integer ordinal = this.ordinals.get(memberId);
+        if (ordinal == null) {
+            ordinal = this.ordinals.size();
+            this.ordinals.put(memberId, ordinal);
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,1102 @@
+package common;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded log-structured merge store of byte array keys and values.
+ *
+ * <p>
+ * Writes go to a write-ahead log ({@code wal.log}) and to the memtable, a
+ * sorted map in memory, so a write costs one buffered append and no seek.
+ * Writes become durable in batches: {@link #commit(long, long)} ends a batch
+ * with a commit frame carrying a caller stamp, and on reopening only the
+ * batches up to the last intact commit frame are replayed. The log is handed
+ * to the operating system at every commit but not forced, so after a power
+ * loss the store may come back at an earlier commit; the stamp tells the
+ * caller which one.
+ * </p>
+ *
+ * <p>
+ * Once the memtable passes its budget it is frozen and a new memtable and
+ * log are started; a background thread writes the frozen memtable out as a
+ * new {@link SortedRun} in level 0 while writes go on, and then deletes its
+ * log ({@code wal.old.log}). A second background thread compacts the runs
+ * level by level: when level 0 holds four runs they are
+ * merged with the overlapping runs of level 1, and when a deeper level
+ * outgrows its target size, ten times that of the level above, one of its
+ * runs is merged into the next level. Runs within a level other than 0 never
+ * overlap, so a lookup reads at most one run per level, and the bloom filter
+ * of each run skips most of those. Removals are tombstones until a compaction
+ * into the deepest level drops them. Writers wait if compaction falls far
+ * behind, so level 0 stays bounded.
+ * </p>
+ *
+ * <p>
+ * The runs of each level and the stamp of the last memtable written out are
+ * kept in {@code MANIFEST}, which is replaced atomically; run files it does
+ * not list are left over from an interrupted flush or compaction and are
+ * deleted on open. A lock file keeps a second process from opening the same
+ * store. Instances are thread-safe.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see SortedRun
+ */
+public class LsmStore implements AutoCloseable {
+    private static final String MANIFEST = "MANIFEST";
+    private static final String LOG = "wal.log";
+    private static final String OLD_LOG = "wal.old.log";
+    private static final String LOCK = "LOCK";
+    /** "LMSM" */
+    private static final int MANIFEST_MAGIC = 0x4C4D534D;
+    /** "LMSW" */
+    private static final int LOG_MAGIC = 0x4C4D5357;
+    private static final short VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 4 + 2;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte COMMIT = 3;
+    /** Memory of a memtable entry beyond its key and value */
+    private static final int ENTRY_OVERHEAD = 64;
+    /** Level 0 runs that start a compaction into level 1 */
+    private static final int L0_COMPACTION_TRIGGER = 4;
+    /** Level 0 runs at which writers wait for compaction */
+    private static final int L0_STALL = 12;
+    private static final int LEVEL_MULTIPLIER = 10;
+    private static final int MAX_LEVELS = 7;
+
+    /**
+     * Receives entries in key order.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        /**
+         * Visits one entry.
+         *
+         * @param key   the key
+         * @param value the value
+         * @return false to stop the scan
+         * @throws IOException if the entry cannot be processed
+         */
+        boolean visit(byte[] key, byte[] value) throws IOException;
+    }
+
+    private final File dir;
+    private final long memtableLimit;
+    private final long runTargetBytes;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final List<List<SortedRun>> levels = new ArrayList<>();
+    private final byte[][] compactionKeys = new byte[MAX_LEVELS][];
+    private final ByteArrayOutputStream frame = new ByteArrayOutputStream(1024);
+    private final DataOutputStream frameData = new DataOutputStream(this.frame);
+    private final CRC32C crc = new CRC32C();
+    private final Thread flusher;
+    private final Thread compactor;
+    private TreeMap<byte[], byte[]> memtable = new TreeMap<>(SortedRun.KEY_ORDER);
+    private long memtableBytes;
+    /** Memtable being written out as a run, or null */
+    private TreeMap<byte[], byte[]> frozen;
+    private long frozenTag;
+    private long frozenLength;
+    private long nextNumber = 1;
+    private long committedTag;
+    private long committedLength;
+    private long flushedTag;
+    private long flushedLength;
+    private FileOutputStream logOut;
+    private DataOutputStream log;
+    private boolean closed;
+    private IOException backgroundError;
+    private long flushes;
+    private long compactions;
+    private long compactedBytes;
+    private long stalls;
+
+    private LsmStore(File dir, long memtableLimit, FileChannel lockChannel, FileLock lock) {
+        this.dir = dir;
+        this.memtableLimit = memtableLimit;
+        this.runTargetBytes = Math.max(256 * 1024, memtableLimit / 2);
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            this.levels.add(new ArrayList<>());
+        }
+        this.flusher = new Thread(this::flushLoop, "lsm-flush-" + dir.getName());
+        this.flusher.setDaemon(true);
+        this.compactor = new Thread(this::compactLoop, "lsm-compaction-" + dir.getName());
+        this.compactor.setDaemon(true);
+    }
+
+    /**
+     * Opens a store, creating it if the directory holds none, and replays the
+     * committed batches of its log.
+     *
+     * @param dir           the store directory
+     * @param memtableBytes the memory the memtable may use before it is
+     *                      written out as a run
+     * @param notices       receives the messages about changes replayed or
+     *                      ignored while opening
+     * @return the open store
+     * @throws IOException if the store cannot be read, is damaged or is open in
+     *                     another process
+     */
+    public static LsmStore open(File dir, long memtableBytes, Consumer<String> notices) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir.getPath());
+        }
+        FileChannel lockChannel = FileChannel.open(new File(dir, LOCK).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException(dir.getPath() + " is in use by another process");
+        }
+        LsmStore store = new LsmStore(dir, memtableBytes, lockChannel, lock);
+        try {
+            store.readManifest();
+            store.removeStrayFiles();
+            store.replayLog(notices);
+        } catch (IOException | RuntimeException e) {
+            store.releaseAll();
+            throw e;
+        }
+        store.flusher.start();
+        store.compactor.start();
+        return store;
+    }
+
+    /**
+     * Sets a key to a value. The change is part of the current batch until
+     * the next commit.
+     *
+     * @param key   the key, at most 65535 bytes
+     * @param value the value
+     * @throws IOException if the log cannot be written or compaction failed
+     */
+    public synchronized void put(byte[] key, byte[] value) throws IOException {
+        if (value == SortedRun.TOMBSTONE) {
+            throw new IllegalArgumentException("The tombstone is not a value");
+        }
+        this.write(PUT, key, value);
+    }
+
+    /**
+     * Removes a key. The change is part of the current batch until the next
+     * commit.
+     *
+     * @param key the key
+     * @throws IOException if the log cannot be written or compaction failed
+     */
+    public synchronized void delete(byte[] key) throws IOException {
+        this.write(DELETE, key, SortedRun.TOMBSTONE);
+    }
+
+    private void write(byte op, byte[] key, byte[] value) throws IOException {
+        this.checkOpen();
+        if (key.length > 0xFFFF) {
+            throw new IllegalArgumentException("Key of " + key.length + " bytes is too long");
+        }
+        this.frame.reset();
+        this.frameData.writeByte(op);
+        this.frameData.writeShort(key.length);
+        this.frameData.write(key);
+        this.frameData.write(value);
+        this.writeFrame();
+        byte[] previous = this.memtable.put(key, value);
+        this.memtableBytes += key.length + value.length + ENTRY_OVERHEAD
+                - (previous == null ? 0 : key.length + previous.length + ENTRY_OVERHEAD);
+    }
+
+    /**
+     * Ends the current batch, recording a stamp with it, and hands the log to
+     * the operating system. Freezes the memtable when it is over budget,
+     * waiting first if the previous one is still being written out.
+     *
+     * @param tag    the first part of the stamp
+     * @param length the second part of the stamp
+     * @throws IOException if the log or a run cannot be written, or
+     *                     compaction failed
+     */
+    public synchronized void commit(long tag, long length) throws IOException {
+        this.checkOpen();
+        this.frame.reset();
+        this.frameData.writeByte(COMMIT);
+        this.frameData.writeLong(tag);
+        this.frameData.writeLong(length);
+        this.writeFrame();
+        this.log.flush();
+        this.committedTag = tag;
+        this.committedLength = length;
+        if (this.memtableBytes >= this.memtableLimit) {
+            this.freezeMemtable();
+        }
+    }
+
+    /**
+     * Returns the first part of the stamp of the last commit.
+     *
+     * @return the tag, 0 for a new store
+     */
+    public synchronized long getCommittedTag() {
+        return this.committedTag;
+    }
+
+    /**
+     * Returns the second part of the stamp of the last commit.
+     *
+     * @return the length, 0 for a new store
+     */
+    public synchronized long getCommittedLength() {
+        return this.committedLength;
+    }
+
+    /**
+     * Looks up a key, including changes not committed yet.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not set
+     * @throws IOException if a run cannot be read
+     */
+    public synchronized byte[] get(byte[] key) throws IOException {
+        this.checkOpen();
+        byte[] value = this.memtable.get(key);
+        if (value == null && this.frozen != null) {
+            value = this.frozen.get(key);
+        }
+        if (value != null) {
+            return value == SortedRun.TOMBSTONE ? null : value;
+        }
+        for (SortedRun run : this.levels.get(0)) {
+            value = run.get(key);
+            if (value != null) {
+                return value == SortedRun.TOMBSTONE ? null : value;
+            }
+        }
+        for (int level = 1; level < MAX_LEVELS; level++) {
+            SortedRun run = findRun(this.levels.get(level), key);
+            if (run != null) {
+                value = run.get(key);
+                if (value != null) {
+                    return value == SortedRun.TOMBSTONE ? null : value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visits the entries with keys in a range, in key order. The scan reads a
+     * snapshot taken when it starts, so writes and compactions may go on
+     * while it runs.
+     *
+     * @param from    the lowest key, inclusive
+     * @param to      the highest key, inclusive
+     * @param visitor receives the entries and can stop the scan
+     * @throws IOException if a run cannot be read or the visitor fails
+     */
+    public void scan(byte[] from, byte[] to, EntryVisitor visitor) throws IOException {
+        List<Map.Entry<byte[], byte[]>> recent = new ArrayList<>();
+        List<SortedRun> runs = new ArrayList<>();
+        synchronized (this) {
+            this.checkOpen();
+            for (Map.Entry<byte[], byte[]> entry : this.memtable.subMap(from, true, to, true).entrySet()) {
+                recent.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+            }
+            if (this.frozen != null) {
+                TreeMap<byte[], byte[]> newest = new TreeMap<>(SortedRun.KEY_ORDER);
+                newest.putAll(this.frozen.subMap(from, true, to, true));
+                for (Map.Entry<byte[], byte[]> entry : recent) {
+                    newest.put(entry.getKey(), entry.getValue());
+                }
+                recent = new ArrayList<>(newest.entrySet());
+            }
+            for (List<SortedRun> level : this.levels) {
+                for (SortedRun run : level) {
+                    if (run.overlaps(from, to)) {
+                        run.retain();
+                        runs.add(run);
+                    }
+                }
+            }
+        }
+        try {
+            Merger merger = new Merger(recent.iterator(), runs, from, to);
+            while (merger.next()) {
+                if (merger.value != SortedRun.TOMBSTONE && !visitor.visit(merger.key, merger.value)) {
+                    break;
+                }
+            }
+        } finally {
+            for (SortedRun run : runs) {
+                run.release();
+            }
+        }
+    }
+
+    /**
+     * Merges sorted sources, newest first, yielding each key once with its
+     * newest value, tombstones included.
+     */
+    private static class Merger {
+        private final PriorityQueue<Source> queue = new PriorityQueue<>((a, b) -> {
+            int order = SortedRun.KEY_ORDER.compare(a.key, b.key);
+            return order != 0 ? order : Integer.compare(a.rank, b.rank);
+        });
+        private byte[] key;
+        private byte[] value;
+
+        Merger(Iterator<Map.Entry<byte[], byte[]>> recent, List<SortedRun> runs, byte[] from, byte[] to)
+                throws IOException {
+            int rank = 0;
+            if (recent != null) {
+                this.add(new Source(rank++, recent, null));
+            }
+            for (SortedRun run : runs) {
+                this.add(new Source(rank++, null, run.cursor(from, to)));
+            }
+        }
+
+        private void add(Source source) throws IOException {
+            if (source.advance()) {
+                this.queue.add(source);
+            }
+        }
+
+        boolean next() throws IOException {
+            Source newest = this.queue.poll();
+            if (newest == null) {
+                return false;
+            }
+            this.key = newest.key;
+            this.value = newest.value;
+            this.add(newest);
+            while (!this.queue.isEmpty() && SortedRun.KEY_ORDER.compare(this.queue.peek().key, this.key) == 0) {
+                this.add(this.queue.poll());
+            }
+            return true;
+        }
+    }
+
+    private static class Source {
+        private final int rank;
+        private final Iterator<Map.Entry<byte[], byte[]>> entries;
+        private final SortedRun.Cursor cursor;
+        private byte[] key;
+        private byte[] value;
+
+        Source(int rank, Iterator<Map.Entry<byte[], byte[]>> entries, SortedRun.Cursor cursor) {
+            this.rank = rank;
+            this.entries = entries;
+            this.cursor = cursor;
+        }
+
+        boolean advance() throws IOException {
+            if (this.entries != null) {
+                if (!this.entries.hasNext()) {
+                    return false;
+                }
+                Map.Entry<byte[], byte[]> entry = this.entries.next();
+                this.key = entry.getKey();
+                this.value = entry.getValue();
+                return true;
+            }
+            if (!this.cursor.next()) {
+                return false;
+            }
+            this.key = this.cursor.key();
+            this.value = this.cursor.value();
+            return true;
+        }
+    }
+
+    /**
+     * Writes out the memtable as a level 0 run even if it is under budget,
+     * and forces everything committed to disk.
+     *
+     * @throws IOException if the run or manifest cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        this.checkOpen();
+        if (!this.memtable.isEmpty()) {
+            this.freezeMemtable();
+        }
+        while (this.frozen != null && this.backgroundError == null && !this.closed) {
+            this.await();
+        }
+        this.checkOpen();
+        this.log.flush();
+        this.logOut.getFD().sync();
+    }
+
+    /**
+     * Hands the memtable to the flush thread and starts a new memtable and
+     * log. Waits first while the previous memtable is still being written
+     * out or level 0 is full.
+     */
+    private void freezeMemtable() throws IOException {
+        boolean stalled = false;
+        while ((this.frozen != null || this.levels.get(0).size() >= L0_STALL) && this.backgroundError == null
+                && !this.closed) {
+            stalled = true;
+            this.await();
+        }
+        if (stalled) {
+            this.stalls++;
+        }
+        this.checkOpen();
+        this.log.flush();
+        this.logOut.close();
+        this.logOut = null;
+        utils.replaceFile(new File(this.dir, LOG), new File(this.dir, OLD_LOG));
+        this.startLog();
+        this.frozen = this.memtable;
+        this.frozenTag = this.committedTag;
+        this.frozenLength = this.committedLength;
+        this.memtable = new TreeMap<>(SortedRun.KEY_ORDER);
+        this.memtableBytes = 0;
+        this.notifyAll();
+    }
+
+    /**
+     * Writes out frozen memtables until the store is closed.
+     */
+    private void flushLoop() {
+        while (true) {
+            TreeMap<byte[], byte[]> table;
+            long number;
+            synchronized (this) {
+                while (!this.closed && this.frozen == null) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (this.closed) {
+                    return;
+                }
+                table = this.frozen;
+                number = this.nextNumber++;
+            }
+            try {
+                File file = this.runFile(number);
+                try (SortedRun.Writer writer = new SortedRun.Writer(file)) {
+                    for (Map.Entry<byte[], byte[]> entry : table.entrySet()) {
+                        writer.add(entry.getKey(), entry.getValue());
+                    }
+                    writer.finish();
+                }
+                SortedRun run = SortedRun.open(file, number);
+                synchronized (this) {
+                    this.levels.get(0).add(0, run);
+                    this.flushedTag = this.frozenTag;
+                    this.flushedLength = this.frozenLength;
+                    this.saveManifest();
+                    Files.deleteIfExists(new File(this.dir, OLD_LOG).toPath());
+                    this.frozen = null;
+                    this.flushes++;
+                    this.notifyAll();
+                }
+            } catch (IOException | RuntimeException e) {
+                this.fail("Flush", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records the failure of background work; the next call on the store
+     * reports it.
+     */
+    private void fail(String task, Exception e) {
+        synchronized (this) {
+            this.backgroundError = new IOException(task + " failed: " + e.getMessage(), e);
+            this.notifyAll();
+        }
+    }
+
+    private void await() throws IOException {
+        try {
+            this.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a background flush", e);
+        }
+    }
+
+    /**
+     * Runs compactions until the store is closed.
+     */
+    private void compactLoop() {
+        while (true) {
+            Compaction compaction = null;
+            synchronized (this) {
+                while (!this.closed && (compaction = this.pickCompaction()) == null) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (this.closed) {
+                    return;
+                }
+            }
+            try {
+                this.compact(compaction);
+            } catch (IOException | RuntimeException e) {
+                this.fail("Compaction", e);
+                return;
+            }
+        }
+    }
+
+    /** Runs of one level merged into the overlapping runs of the next */
+    private static class Compaction {
+        private final int level;
+        private final List<SortedRun> inputs;
+        private final List<SortedRun> overlapping;
+
+        Compaction(int level, List<SortedRun> inputs, List<SortedRun> overlapping) {
+            this.level = level;
+            this.inputs = inputs;
+            this.overlapping = overlapping;
+        }
+    }
+
+    /**
+     * Chooses the next compaction: all of level 0 once it holds enough runs,
+     * otherwise one run of the first level over its target size, taken in
+     * turn across the key space.
+     */
+    private Compaction pickCompaction() {
+        if (this.backgroundError != null) {
+            return null;
+        }
+        List<SortedRun> level0 = this.levels.get(0);
+        if (level0.size() >= L0_COMPACTION_TRIGGER) {
+            List<SortedRun> inputs = new ArrayList<>(level0);
+            byte[] from = inputs.get(0).getFirstKey();
+            byte[] to = inputs.get(0).getLastKey();
+            for (SortedRun run : inputs) {
+                from = SortedRun.KEY_ORDER.compare(run.getFirstKey(), from) < 0 ? run.getFirstKey() : from;
+                to = SortedRun.KEY_ORDER.compare(run.getLastKey(), to) > 0 ? run.getLastKey() : to;
+            }
+            return new Compaction(0, inputs, overlapping(this.levels.get(1), from, to));
+        }
+        long target = this.memtableLimit * LEVEL_MULTIPLIER;
+        for (int level = 1; level < MAX_LEVELS - 1; level++, target *= LEVEL_MULTIPLIER) {
+            List<SortedRun> runs = this.levels.get(level);
+            if (levelBytes(runs) <= target) {
+                continue;
+            }
+            SortedRun chosen = runs.get(0);
+            byte[] after = this.compactionKeys[level];
+            for (SortedRun run : runs) {
+                if (after == null || SortedRun.KEY_ORDER.compare(run.getFirstKey(), after) > 0) {
+                    chosen = run;
+                    break;
+                }
+            }
+            this.compactionKeys[level] = chosen.getLastKey();
+            return new Compaction(level, List.of(chosen),
+                    overlapping(this.levels.get(level + 1), chosen.getFirstKey(), chosen.getLastKey()));
+        }
+        return null;
+    }
+
+    /**
+     * Merges the runs of a compaction into new runs of the next level, or
+     * moves a single run down when nothing overlaps it, and installs the
+     * result.
+     */
+    private void compact(Compaction compaction) throws IOException {
+        int target = compaction.level + 1;
+        List<SortedRun> outputs = new ArrayList<>();
+        boolean moved = compaction.level > 0 && compaction.overlapping.isEmpty();
+        if (moved) {
+            outputs.addAll(compaction.inputs);
+        } else {
+            boolean dropTombstones;
+            synchronized (this) {
+                dropTombstones = true;
+                for (int level = target + 1; level < MAX_LEVELS; level++) {
+                    dropTombstones &= this.levels.get(level).isEmpty();
+                }
+            }
+            List<SortedRun> sources = new ArrayList<>(compaction.inputs);
+            sources.addAll(compaction.overlapping);
+            try {
+                this.merge(sources, dropTombstones, outputs);
+            } catch (IOException | RuntimeException e) {
+                for (SortedRun run : outputs) {
+                    run.markObsolete();
+                    run.release();
+                }
+                throw e;
+            }
+        }
+        long bytes = moved ? 0 : levelBytes(compaction.inputs) + levelBytes(compaction.overlapping);
+        synchronized (this) {
+            this.levels.get(compaction.level).removeAll(compaction.inputs);
+            List<SortedRun> runs = this.levels.get(target);
+            runs.removeAll(compaction.overlapping);
+            runs.addAll(outputs);
+            runs.sort((a, b) -> SortedRun.KEY_ORDER.compare(a.getFirstKey(), b.getFirstKey()));
+            this.saveManifest();
+            if (!moved) {
+                for (SortedRun run : compaction.inputs) {
+                    run.markObsolete();
+                    run.release();
+                }
+                for (SortedRun run : compaction.overlapping) {
+                    run.markObsolete();
+                    run.release();
+                }
+            }
+            this.compactions++;
+            this.compactedBytes += bytes;
+            this.notifyAll();
+        }
+    }
+
+    private void merge(List<SortedRun> sources, boolean dropTombstones, List<SortedRun> outputs)
+            throws IOException {
+        Merger merger = new Merger(null, sources, null, null);
+        SortedRun.Writer writer = null;
+        long number = 0;
+        try {
+            while (merger.next()) {
+                if (dropTombstones && merger.value == SortedRun.TOMBSTONE) {
+                    continue;
+                }
+                if (writer == null) {
+                    number = this.allocateNumber();
+                    writer = new SortedRun.Writer(this.runFile(number));
+                }
+                writer.add(merger.key, merger.value);
+                if (writer.getSize() >= this.runTargetBytes) {
+                    writer.finish();
+                    writer = null;
+                    outputs.add(SortedRun.open(this.runFile(number), number));
+                }
+            }
+            if (writer != null) {
+                writer.finish();
+                writer = null;
+                outputs.add(SortedRun.open(this.runFile(number), number));
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private synchronized long allocateNumber() {
+        return this.nextNumber++;
+    }
+
+    private static List<SortedRun> overlapping(List<SortedRun> runs, byte[] from, byte[] to) {
+        List<SortedRun> result = new ArrayList<>();
+        for (SortedRun run : runs) {
+            if (run.overlaps(from, to)) {
+                result.add(run);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the run of a sorted, non-overlapping level whose range holds a key.
+     */
+    private static SortedRun findRun(List<SortedRun> runs, byte[] key) {
+        int low = 0;
+        int high = runs.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            SortedRun run = runs.get(middle);
+            if (SortedRun.KEY_ORDER.compare(run.getLastKey(), key) < 0) {
+                low = middle + 1;
+            } else if (SortedRun.KEY_ORDER.compare(run.getFirstKey(), key) > 0) {
+                high = middle - 1;
+            } else {
+                return run;
+            }
+        }
+        return null;
+    }
+
+    private static long levelBytes(List<SortedRun> runs) {
+        long bytes = 0;
+        for (SortedRun run : runs) {
+            bytes += run.getSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of runs in each level, deepest non-empty level last.
+     *
+     * @return the run counts
+     */
+    public synchronized int[] getRunCounts() {
+        int depth = MAX_LEVELS;
+        while (depth > 1 && this.levels.get(depth - 1).isEmpty()) {
+            depth--;
+        }
+        int[] counts = new int[depth];
+        for (int level = 0; level < depth; level++) {
+            counts[level] = this.levels.get(level).size();
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the size of the run files.
+     *
+     * @return the bytes on disk, log excluded
+     */
+    public synchronized long getRunBytes() {
+        long bytes = 0;
+        for (List<SortedRun> level : this.levels) {
+            bytes += levelBytes(level);
+        }
+        return bytes;
+    }
+
+    /** @return the number of memtables written out as runs */
+    public synchronized long getFlushCount() {
+        return this.flushes;
+    }
+
+    /** @return the number of compactions */
+    public synchronized long getCompactionCount() {
+        return this.compactions;
+    }
+
+    /** @return the bytes of the runs rewritten by compactions */
+    public synchronized long getCompactedBytes() {
+        return this.compactedBytes;
+    }
+
+    /** @return the number of times a writer waited for compaction */
+    public synchronized long getStallCount() {
+        return this.stalls;
+    }
+
+    /**
+     * Stops the background threads and closes the files. Committed changes
+     * not yet written out as runs are replayed from the logs on the next
+     * open.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.notifyAll();
+        }
+        try {
+            this.flusher.join();
+            this.compactor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            this.releaseAll();
+        }
+    }
+
+    private void releaseAll() throws IOException {
+        try {
+            if (this.logOut != null) {
+                this.log.flush();
+                this.logOut.close();
+            }
+            for (List<SortedRun> level : this.levels) {
+                for (SortedRun run : level) {
+                    run.release();
+                }
+                level.clear();
+            }
+        } finally {
+            this.lock.release();
+            this.lockChannel.close();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.closed) {
+            throw new IllegalStateException(this.dir.getName() + " is closed");
+        }
+        if (this.backgroundError != null) {
+            throw new IOException("Background work on " + this.dir.getName() + ": "
+                    + this.backgroundError.getMessage(), this.backgroundError);
+        }
+    }
+
+    private File runFile(long number) {
+        return new File(this.dir, String.format("%08d", number) + SortedRun.SUFFIX);
+    }
+
+    private void writeFrame() throws IOException {
+        byte[] bytes = this.frame.toByteArray();
+        this.crc.reset();
+        this.crc.update(bytes, 0, bytes.length);
+        this.log.writeInt(bytes.length);
+        this.log.writeInt((int) this.crc.getValue());
+        this.log.write(bytes);
+    }
+
+    /**
+     * Reads the run lists and stamp from the manifest, if there is one, and
+     * opens the runs.
+     */
+    private void readManifest() throws IOException {
+        File file = new File(this.dir, MANIFEST);
+        if (!file.exists()) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        this.crc.reset();
+        this.crc.update(bytes, 0, Math.max(0, bytes.length - 4));
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length < 38 || in.getInt() != MANIFEST_MAGIC || in.getShort() != VERSION
+                || in.getInt(bytes.length - 4) != (int) this.crc.getValue()) {
+            throw new IOException(file.getPath() + " is damaged");
+        }
+        this.nextNumber = in.getLong();
+        this.flushedTag = in.getLong();
+        this.flushedLength = in.getLong();
+        this.committedTag = this.flushedTag;
+        this.committedLength = this.flushedLength;
+        int levelCount = in.getInt();
+        if (levelCount > MAX_LEVELS) {
+            throw new IOException(file.getPath() + " has " + levelCount + " levels");
+        }
+        for (int level = 0; level < levelCount; level++) {
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                long number = in.getLong();
+                this.levels.get(level).add(SortedRun.open(this.runFile(number), number));
+            }
+        }
+    }
+
+    private void saveManifest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MANIFEST_MAGIC);
+        data.writeShort(VERSION);
+        data.writeLong(this.nextNumber);
+        data.writeLong(this.flushedTag);
+        data.writeLong(this.flushedLength);
+        data.writeInt(MAX_LEVELS);
+        for (List<SortedRun> level : this.levels) {
+            data.writeInt(level.size());
+            for (SortedRun run : level) {
+                data.writeLong(run.getNumber());
+            }
+        }
+        CRC32C manifestCrc = new CRC32C();
+        manifestCrc.update(bytes.toByteArray());
+        data.writeInt((int) manifestCrc.getValue());
+        File manifest = new File(this.dir, MANIFEST);
+        File temp = new File(this.dir, MANIFEST + utils.TEMP_SUFFIX);
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                bytes.writeTo(out);
+                out.getFD().sync();
+            }
+            utils.replaceFile(temp, manifest);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Deletes run files the manifest does not list and temporary files.
+     */
+    private void removeStrayFiles() throws IOException {
+        Set<String> live = new HashSet<>();
+        for (List<SortedRun> level : this.levels) {
+            for (SortedRun run : level) {
+                live.add(run.getFile().getName());
+            }
+        }
+        File[] files = this.dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if ((name.endsWith(SortedRun.SUFFIX) && !live.contains(name)) || name.endsWith(utils.TEMP_SUFFIX)) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * Applies the committed batches of the logs to the memtable, the log of a
+     * frozen memtable that was not written out first, cuts off anything after
+     * the last intact commit and opens the log for appending.
+     */
+    private void replayLog(Consumer<String> notices) throws IOException {
+        File oldLog = new File(this.dir, OLD_LOG);
+        File file = new File(this.dir, LOG);
+        int replayed = 0;
+        if (oldLog.exists()) {
+            replayed += this.replayFile(oldLog, notices);
+        }
+        if (file.exists()) {
+            replayed += this.replayFile(file, notices);
+        }
+        if (replayed > 0) {
+            notices.accept(this.dir.getName() + " : " + replayed + " changes replayed from " + LOG);
+        }
+        if (oldLog.exists()) {
+            // Keep the replayed changes in one log before the old one goes
+            this.logOut = new FileOutputStream(new File(this.dir, LOG + utils.TEMP_SUFFIX));
+            this.log = new DataOutputStream(new BufferedOutputStream(this.logOut, 64 * 1024));
+            this.log.writeInt(LOG_MAGIC);
+            this.log.writeShort(VERSION);
+            for (Map.Entry<byte[], byte[]> entry : this.memtable.entrySet()) {
+                this.frame.reset();
+                this.frameData.writeByte(entry.getValue() == SortedRun.TOMBSTONE ? DELETE : PUT);
+                this.frameData.writeShort(entry.getKey().length);
+                this.frameData.write(entry.getKey());
+                this.frameData.write(entry.getValue());
+                this.writeFrame();
+            }
+            this.frame.reset();
+            this.frameData.writeByte(COMMIT);
+            this.frameData.writeLong(this.committedTag);
+            this.frameData.writeLong(this.committedLength);
+            this.writeFrame();
+            this.log.flush();
+            this.logOut.getFD().sync();
+            this.logOut.close();
+            utils.replaceFile(new File(this.dir, LOG + utils.TEMP_SUFFIX), file);
+            Files.delete(oldLog.toPath());
+        }
+        if (!file.exists()) {
+            this.startLog();
+            return;
+        }
+        this.logOut = new FileOutputStream(file, true);
+        this.log = new DataOutputStream(new BufferedOutputStream(this.logOut, 64 * 1024));
+    }
+
+    /**
+     * Applies the committed batches of one log and cuts off the rest.
+     *
+     * @return the number of changes applied
+     */
+    private int replayFile(File file, Consumer<String> notices) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length < LOG_HEADER_SIZE || in.getInt() != LOG_MAGIC || in.getShort() != VERSION) {
+            notices.accept("Ignoring " + this.dir.getName() + "/" + file.getName() + ": not a store log");
+            Files.delete(file.toPath());
+            return 0;
+        }
+        List<byte[][]> batch = new ArrayList<>();
+        int committed = LOG_HEADER_SIZE;
+        int replayed = 0;
+        while (in.remaining() >= 8) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length < 1 || length > in.remaining()) {
+                break;
+            }
+            this.crc.reset();
+            this.crc.update(bytes, in.position(), length);
+            if ((int) this.crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer frameBytes = ByteBuffer.wrap(bytes, in.position(), length).slice();
+            in.position(in.position() + length);
+            byte op = frameBytes.get();
+            if (op == COMMIT) {
+                this.committedTag = frameBytes.getLong();
+                this.committedLength = frameBytes.getLong();
+                for (byte[][] entry : batch) {
+                    byte[] previous = this.memtable.put(entry[0], entry[1]);
+                    this.memtableBytes += entry[0].length + entry[1].length + ENTRY_OVERHEAD
+                            - (previous == null ? 0 : entry[0].length + previous.length + ENTRY_OVERHEAD);
+                }
+                replayed += batch.size();
+                batch.clear();
+                committed = in.position();
+            } else {
+                byte[] key = new byte[frameBytes.getShort() & 0xFFFF];
+                frameBytes.get(key);
+                byte[] value = SortedRun.TOMBSTONE;
+                if (op == PUT) {
+                    value = new byte[frameBytes.remaining()];
+                    frameBytes.get(value);
+                }
+                batch.add(new byte[][] { key, value });
+            }
+        }
+        if (committed < bytes.length) {
+            notices.accept(this.dir.getName() + "/" + file.getName() + ": ignoring "
+                    + (bytes.length - committed) + " bytes of uncommitted or damaged changes");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(committed);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Replaces the log with an empty one.
+     */
+    private void startLog() throws IOException {
+        if (this.logOut != null) {
+            this.log.flush();
+            this.logOut.close();
+        }
+        this.logOut = new FileOutputStream(new File(this.dir, LOG));
+        this.log = new DataOutputStream(new BufferedOutputStream(this.logOut, 64 * 1024));
+        this.log.writeInt(LOG_MAGIC);
+        this.log.writeShort(VERSION);
+        this.log.flush();
+    }
+}
@@ -0,0 +1,372 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Borrowing profiles per member and per member type, kept in primitive arrays.
+ *
+ * <p>
+ * Each member gets a row ordinal the first time it is seen. Every profile
+ * field is a primitive array indexed by that ordinal, so a profile costs a few
+ * dozen bytes and no objects. Issue and return events update the member's row
+ * and the row of the member's type (its cohort) in place, so analytics for a
+ * member or a whole cohort are read directly and never recomputed from the
+ * loan history.
+ * </p>
+ *
+ * <p>
+ * A member's favorite authors are tracked in a small fixed number of slots
+ * using the Space-Saving replacement rule, so they are exact for members with
+ * few authors and approximate otherwise. Cohorts count every author exactly.
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class MemberProfileStore {
+    /** Member types with a cohort row, as used by {@link MemberPolicy} */
+    public static final String[] MEMBER_TYPES = { "Student", "Faculty", "Regular" };
+
+    /** Number of favorite author slots kept per row */
+    public static final int AUTHOR_SLOTS = 4;
+
+    private static final BookCategory[] CATEGORIES = BookCategory.values();
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /** Row ordinal per member ID; cohort rows use ordinals 0 to MEMBER_TYPES.length - 1 */
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+
+    /** Author names by author ID */
+    private final List<String> authors = new ArrayList<>();
+    private final Map<String, Integer> authorIds = new HashMap<>();
+
+    private int rows = MEMBER_TYPES.length;
+    private int[] borrowCount;
+    private int[] returnCount;
+    private int[] overdueCount;
+    private int[] finedCount;
+    private long[] loanMillis;
+    private long[] fineAssessed;
+    private long[] lastBorrowAt;
+    private long[] lastFineAt;
+    private int[] categoryCounts;
+    private int[] authorSlotIds;
+    private int[] authorSlotCounts;
+
+    /** Exact borrow count per author ID for each cohort row */
+    private final int[][] cohortAuthorCounts = new int[MEMBER_TYPES.length][16];
+
+    /**
+     * Read-only view of one profile row.
+     */
+    public class Profile {
+        private final int row;
+
+        private Profile(int row) {
+            this.row = row;
+        }
+
+        /** @return the number of books borrowed */
+        public int getBorrowCount() {
+            return borrowCount[this.row];
+        }
+
+        /** @return the number of books returned */
+        public int getReturnCount() {
+            return returnCount[this.row];
+        }
+
+        /** @return the average loan length of returned books in days, or 0 if none */
+        public double getAverageLoanDays() {
+            int returned = returnCount[this.row];
+            return returned == 0 ? 0 : (double) loanMillis[this.row] / returned / MILLIS_PER_DAY;
+        }
+
+        /** @return the share of returned books that came back after their due date */
+        public double getOverdueRate() {
+            int returned = returnCount[this.row];
+            return returned == 0 ? 0 : (double) overdueCount[this.row] / returned;
+        }
+
+        /** @return the number of returns that incurred a fine */
+        public int getFinedCount() {
+            return finedCount[this.row];
+        }
+
+        /** @return the total fines assessed in minor units */
+        public long getFineAssessed() {
+            return fineAssessed[this.row];
+        }
+
+        /** @return the time of the latest borrow in epoch milliseconds, or 0 if none */
+        public long getLastBorrowAt() {
+            return lastBorrowAt[this.row];
+        }
+
+        /** @return the time of the latest fine in epoch milliseconds, or 0 if none */
+        public long getLastFineAt() {
+            return lastFineAt[this.row];
+        }
+
+        /**
+         * Returns the most borrowed categories, most borrowed first.
+         *
+         * @param limit the maximum number of categories
+         * @return the categories with at least one borrow
+         */
+        public List<BookCategory> getFavoriteCategories(int limit) {
+            Integer[] order = new Integer[CATEGORIES.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            int base = this.row * CATEGORIES.length;
+            Arrays.sort(order, (a, b) -> Integer.compare(categoryCounts[base + b], categoryCounts[base + a]));
+            List<BookCategory> result = new ArrayList<>();
+            for (int i = 0; i < order.length && result.size() < limit; i++) {
+                if (categoryCounts[base + order[i]] > 0) {
+                    result.add(CATEGORIES[order[i]]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the category borrow count.
+         *
+         * @param category the book category
+         * @return the number of books borrowed in the category
+         */
+        public int getCategoryCount(BookCategory category) {
+            return categoryCounts[this.row * CATEGORIES.length + category.ordinal()];
+        }
+
+        /**
+         * Returns the most borrowed authors, most borrowed first.
+         *
+         * @return at most {@link MemberProfileStore#AUTHOR_SLOTS} author names
+         */
+        public List<String> getFavoriteAuthors() {
+            if (this.row < MEMBER_TYPES.length) {
+                return getCohortFavoriteAuthors(this.row);
+            }
+            Integer[] order = new Integer[AUTHOR_SLOTS];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            int base = this.row * AUTHOR_SLOTS;
+            Arrays.sort(order, (a, b) -> Integer.compare(authorSlotCounts[base + b], authorSlotCounts[base + a]));
+            List<String> result = new ArrayList<>();
+            for (int slot : order) {
+                if (authorSlotCounts[base + slot] > 0) {
+                    result.add(authors.get(authorSlotIds[base + slot]));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Creates an empty store.
+     */
+    public MemberProfileStore() {
+        this.allocate(64);
+    }
+
+    /**
+     * Records that a member borrowed a book.
+     *
+     * @param memberId   the ID of the member
+     * @param memberType the type of the member
+     * @param category   the category of the book, or null if unknown
+     * @param author     the author of the book, or null if unknown
+     * @param issueDate  the issue time in epoch milliseconds
+     */
+    public void recordIssue(long memberId, String memberType, BookCategory category, String author, long issueDate) {
+        int authorId = author == null ? -1 : this.authorIdOf(author);
+        for (int row : this.rowsOf(memberId, memberType)) {
+            if (row < 0) {
+                continue;
+            }
+            this.borrowCount[row]++;
+            this.lastBorrowAt[row] = Math.max(this.lastBorrowAt[row], issueDate);
+            if (category != null) {
+                this.categoryCounts[row * CATEGORIES.length + category.ordinal()]++;
+            }
+            if (authorId >= 0 && row < MEMBER_TYPES.length) {
+                int[] counts = this.cohortAuthorCounts[row];
+                if (authorId >= counts.length) {
+                    counts = Arrays.copyOf(counts, Math.max(counts.length * 2, authorId + 1));
+                    this.cohortAuthorCounts[row] = counts;
+                }
+                counts[authorId]++;
+            } else if (authorId >= 0) {
+                this.countAuthor(row, authorId);
+            }
+        }
+    }
+
+    /**
+     * Records that a member returned a book.
+     *
+     * @param memberId   the ID of the member
+     * @param memberType the type of the member
+     * @param issueDate  the issue time in epoch milliseconds
+     * @param dueDate    the due time in epoch milliseconds
+     * @param returnDate the return time in epoch milliseconds
+     * @param fine       the fine assessed on return in minor units
+     */
+    public void recordReturn(long memberId, String memberType, long issueDate, long dueDate, long returnDate,
+            long fine) {
+        for (int row : this.rowsOf(memberId, memberType)) {
+            if (row < 0) {
+                continue;
+            }
+            this.returnCount[row]++;
+            this.loanMillis[row] += Math.max(0, returnDate - issueDate);
+            if (returnDate > dueDate) {
+                this.overdueCount[row]++;
+            }
+            if (fine > 0) {
+                this.finedCount[row]++;
+                this.fineAssessed[row] += fine;
+                this.lastFineAt[row] = Math.max(this.lastFineAt[row], returnDate);
+            }
+        }
+    }
+
+    /**
+     * Returns the profile of a member.
+     *
+     * @param memberId the ID of the member
+     * @return the profile, or null if the member has no recorded activity
+     */
+    public Profile getMemberProfile(long memberId) {
+        Integer row = this.ordinals.get(memberId);
+        return row == null ? null : new Profile(row);
+    }
+
+    /**
+     * Returns the combined profile of all members of a type.
+     *
+     * @param memberType the member type
+     * @return the cohort profile, or null if the type has no cohort
+     */
+    public Profile getCohortProfile(String memberType) {
+        int row = cohortRowOf(memberType);
+        return row < 0 ? null : new Profile(row);
+    }
+
+    /**
+     * Returns the rows an event updates: the member's row and its cohort row.
+     */
+    private int[] rowsOf(long memberId, String memberType) {
+        Integer row = this.ordinals.get(memberId);
+        if (row == null) {
+            if (this.rows == this.borrowCount.length) {
+                this.allocate(this.rows * 2);
+            }
+            row = this.rows++;
+            this.ordinals.put(memberId, row);
+        }
+        return new int[] { row, cohortRowOf(memberType) };
+    }
+
+    private static int cohortRowOf(String memberType) {
+        for (int i = 0; i < MEMBER_TYPES.length; i++) {
+            if (MEMBER_TYPES[i].equals(memberType)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int authorIdOf(String author) {
+        Integer id = this.authorIds.get(author);
+        if (id == null) {
+            id = this.authors.size();
+            this.authors.add(author);
+            this.authorIds.put(author, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the authors with the highest exact counts in a cohort row.
+     */
+    private List<String> getCohortFavoriteAuthors(int row) {
+        int[] counts = this.cohortAuthorCounts[row];
+        int[] top = new int[AUTHOR_SLOTS];
+        Arrays.fill(top, -1);
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] == 0) {
+                continue;
+            }
+            // Insertion into the small sorted top array
+            for (int i = 0; i < AUTHOR_SLOTS; i++) {
+                if (top[i] < 0 || counts[id] > counts[top[i]]) {
+                    System.arraycopy(top, i, top, i + 1, AUTHOR_SLOTS - i - 1);
+                    top[i] = id;
+                    break;
+                }
+            }
+        }
+        List<String> result = new ArrayList<>();
+        for (int id : top) {
+            if (id >= 0) {
+                result.add(this.authors.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts an author in a member row's slots, replacing the least counted author
+     * when all slots are taken.
+     */
+    private void countAuthor(int row, int authorId) {
+        int base = row * AUTHOR_SLOTS;
+        int minSlot = base;
+        for (int slot = base; slot < base + AUTHOR_SLOTS; slot++) {
+            if (this.authorSlotCounts[slot] > 0 && this.authorSlotIds[slot] == authorId) {
+                this.authorSlotCounts[slot]++;
+                return;
+            }
+            if (this.authorSlotCounts[slot] < this.authorSlotCounts[minSlot]) {
+                minSlot = slot;
+            }
+        }
+        this.authorSlotIds[minSlot] = authorId;
+        this.authorSlotCounts[minSlot]++;
+    }
+
+    /**
+     * Grows every profile array to the given number of rows.
+     */
+    private void allocate(int capacity) {
+        this.borrowCount = grow(this.borrowCount, capacity);
+        this.returnCount = grow(this.returnCount, capacity);
+        this.overdueCount = grow(this.overdueCount, capacity);
+        this.finedCount = grow(this.finedCount, capacity);
+        this.loanMillis = grow(this.loanMillis, capacity);
+        this.fineAssessed = grow(this.fineAssessed, capacity);
+        this.lastBorrowAt = grow(this.lastBorrowAt, capacity);
+        this.lastFineAt = grow(this.lastFineAt, capacity);
+        this.categoryCounts = grow(this.categoryCounts, capacity * CATEGORIES.length);
+        this.authorSlotIds = grow(this.authorSlotIds, capacity * AUTHOR_SLOTS);
+        this.authorSlotCounts = grow(this.authorSlotCounts, capacity * AUTHOR_SLOTS);
+    }
+
+    private static int[] grow(int[] array, int length) {
+        return array == null ? new int[length] : Arrays.copyOf(array, length);
+    }
+
+    private static long[] grow(long[] array, int length) {
+        return array == null ? new long[length] : Arrays.copyOf(array, length);
+    }
+}
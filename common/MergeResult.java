@@ -0,0 +1,95 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of merging imported records into an existing collection.
+ *
+ * <p>
+ * Records are matched on a stable ID. Each incoming record is counted as
+ * inserted, updated or unchanged, or as skipped with a reason when it cannot
+ * be applied; existing records missing from the import can be withdrawn.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class MergeResult {
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    private int withdrawn;
+    private final List<String> skipped = new ArrayList<>();
+
+    /** Counts a record that was not present before. */
+    public void inserted() {
+        this.inserted++;
+    }
+
+    /** Counts an existing record with at least one changed field. */
+    public void updated() {
+        this.updated++;
+    }
+
+    /** Counts an existing record identical to the imported one. */
+    public void unchanged() {
+        this.unchanged++;
+    }
+
+    /** Counts an existing record withdrawn because the import no longer lists it. */
+    public void withdrawn() {
+        this.withdrawn++;
+    }
+
+    /**
+     * Records a record that could not be applied.
+     *
+     * @param reason why the record was skipped, naming its ID
+     */
+    public void skipped(String reason) {
+        this.skipped.add(reason);
+    }
+
+    /** @return the number of inserted records */
+    public int getInserted() {
+        return this.inserted;
+    }
+
+    /** @return the number of updated records */
+    public int getUpdated() {
+        return this.updated;
+    }
+
+    /** @return the number of unchanged records */
+    public int getUnchanged() {
+        return this.unchanged;
+    }
+
+    /** @return the number of withdrawn records */
+    public int getWithdrawn() {
+        return this.withdrawn;
+    }
+
+    /** @return the reasons records were skipped */
+    public List<String> getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * Checks whether the merge changed anything, i.e. whether the collection
+     * has to be saved.
+     *
+     * @return true if any record was inserted, updated or withdrawn
+     */
+    public boolean hasChanges() {
+        return this.inserted + this.updated + this.withdrawn > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "inserted=" + this.inserted + ", updated=" + this.updated + ", unchanged=" + this.unchanged
+                + ", withdrawn=" + this.withdrawn + ", skipped=" + this.skipped.size();
+    }
+}
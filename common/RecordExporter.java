@@ -0,0 +1,381 @@
+package common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming writer of export files.
+ *
+ * <p>
+ * Records are written one at a time through a single file channel and a
+ * fixed-size buffer, so the memory used does not depend on the number of
+ * records exported. A record is written with {@link #begin()}, one
+ * {@code put} call per present field in ascending field order, and
+ * {@link #end()}; fields that are not put are absent from the record (for
+ * example the pages of an e-book).
+ * </p>
+ *
+ * <p>
+ * The formats are:
+ * <ul>
+ * <li>{@link ExportFormat#KEY_VALUE}: one line per record of
+ * {@code name=value} pairs separated by {@code ", "}, in the platform default
+ * charset, as read by the import. Line breaks inside values are replaced by
+ * spaces, and a comma or backslash inside a string value is preceded by a
+ * backslash so {@link RecordParser} reads the value whole.</li>
+ * <li>{@link ExportFormat#CSV}: a header row with every field name, then one
+ * row per record with an empty value for absent fields. Values containing a
+ * comma, quote or line break are quoted.</li>
+ * <li>{@link ExportFormat#BINARY}: big-endian. A header of the magic number
+ * {@code 0x4C4D5358} ("LMSX"), a {@code short} version, an unsigned byte
+ * field count and each field name as a {@code short} length and UTF-8
+ * bytes. Each record is a
+ * sequence of present fields, each an unsigned byte field index, a type byte
+ * and the value, ended by the byte {@code 0xFF}. Values are an {@code int}
+ * length and UTF-8 bytes for {@link #TYPE_STRING}, a {@code long} for
+ * {@link #TYPE_LONG}, a {@code double} for {@link #TYPE_DOUBLE} and one byte,
+ * 0 or 1, for {@link #TYPE_BOOLEAN}.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class RecordExporter implements Closeable {
+    /** First four bytes of a binary export, "LMSX" */
+    public static final int MAGIC = 0x4C4D5358;
+    /** Version of the binary export format */
+    public static final short VERSION = 1;
+    /** Type byte of a string value */
+    public static final byte TYPE_STRING = 1;
+    /** Type byte of a long value */
+    public static final byte TYPE_LONG = 2;
+    /** Type byte of a double value */
+    public static final byte TYPE_DOUBLE = 3;
+    /** Type byte of a boolean value */
+    public static final byte TYPE_BOOLEAN = 4;
+
+    private static final byte END_OF_RECORD = (byte) 0xFF;
+    private static final int MAX_FIELDS = 255;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ExportFormat format;
+    private final String[] fields;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder;
+    private final StringBuilder line = new StringBuilder(256);
+    private boolean inRecord;
+    private int lastField;
+    private int separators;
+    private long recordCount;
+    private long byteCount;
+
+    /**
+     * Creates or truncates an export file and writes its header.
+     *
+     * @param file   the export file
+     * @param format the file format
+     * @param fields the field names; {@code put} calls refer to them by index
+     * @throws IOException if the file cannot be written
+     */
+    public RecordExporter(File file, ExportFormat format, String[] fields) throws IOException {
+        if (fields.length == 0 || fields.length > MAX_FIELDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_FIELDS + " fields are supported");
+        }
+        this.format = format;
+        this.fields = fields;
+        this.encoder = Charset.defaultCharset().newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            this.writeHeader();
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        switch (this.format) {
+            case CSV:
+                this.line.setLength(0);
+                for (int i = 0; i < this.fields.length; i++) {
+                    if (i > 0) {
+                        this.line.append(',');
+                    }
+                    this.appendCsv(this.fields[i]);
+                }
+                this.line.append('\n');
+                this.writeLine();
+                break;
+            case BINARY:
+                this.ensure(7);
+                this.buffer.putInt(MAGIC).putShort(VERSION).put((byte) this.fields.length);
+                for (String field : this.fields) {
+                    byte[] name = field.getBytes(StandardCharsets.UTF_8);
+                    this.ensure(2);
+                    this.buffer.putShort((short) name.length);
+                    this.writeBytes(name);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Starts a record.
+     */
+    public void begin() {
+        if (this.inRecord) {
+            throw new IllegalStateException("Previous record was not ended");
+        }
+        this.inRecord = true;
+        this.lastField = -1;
+        this.separators = 0;
+        this.line.setLength(0);
+    }
+
+    /**
+     * Writes a string field of the current record; null leaves it absent.
+     *
+     * @param field the field index
+     * @param value the value
+     * @throws IOException if the file cannot be written
+     */
+    public void put(int field, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        this.startField(field);
+        switch (this.format) {
+            case KEY_VALUE:
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c == ',' || c == '\\') {
+                        this.line.append('\\');
+                    }
+                    this.line.append(c == '\n' || c == '\r' ? ' ' : c);
+                }
+                break;
+            case CSV:
+                this.appendCsv(value);
+                break;
+            default:
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                this.ensure(6);
+                this.buffer.put((byte) field).put(TYPE_STRING).putInt(bytes.length);
+                this.writeBytes(bytes);
+                break;
+        }
+    }
+
+    /**
+     * Writes a whole-number field of the current record.
+     *
+     * @param field the field index
+     * @param value the value
+     * @throws IOException if the file cannot be written
+     */
+    public void put(int field, long value) throws IOException {
+        this.startField(field);
+        if (this.format == ExportFormat.BINARY) {
+            this.ensure(10);
+            this.buffer.put((byte) field).put(TYPE_LONG).putLong(value);
+        } else {
+            this.line.append(value);
+        }
+    }
+
+    /**
+     * Writes a decimal field of the current record.
+     *
+     * @param field the field index
+     * @param value the value
+     * @throws IOException if the file cannot be written
+     */
+    public void put(int field, double value) throws IOException {
+        this.startField(field);
+        if (this.format == ExportFormat.BINARY) {
+            this.ensure(10);
+            this.buffer.put((byte) field).put(TYPE_DOUBLE).putDouble(value);
+        } else {
+            this.line.append(value);
+        }
+    }
+
+    /**
+     * Writes a yes/no field of the current record.
+     *
+     * @param field the field index
+     * @param value the value
+     * @throws IOException if the file cannot be written
+     */
+    public void put(int field, boolean value) throws IOException {
+        this.startField(field);
+        if (this.format == ExportFormat.BINARY) {
+            this.ensure(3);
+            this.buffer.put((byte) field).put(TYPE_BOOLEAN).put((byte) (value ? 1 : 0));
+        } else {
+            this.line.append(value);
+        }
+    }
+
+    /**
+     * Ends the current record.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void end() throws IOException {
+        if (!this.inRecord) {
+            throw new IllegalStateException("No record was begun");
+        }
+        this.inRecord = false;
+        switch (this.format) {
+            case CSV:
+                while (this.separators < this.fields.length - 1) {
+                    this.line.append(',');
+                    this.separators++;
+                }
+                this.line.append('\n');
+                this.writeLine();
+                break;
+            case KEY_VALUE:
+                this.line.append('\n');
+                this.writeLine();
+                break;
+            default:
+                this.ensure(1);
+                this.buffer.put(END_OF_RECORD);
+                break;
+        }
+        this.recordCount++;
+    }
+
+    /** @return the number of records written */
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /** @return the number of bytes written to the file so far */
+    public long getByteCount() {
+        return this.byteCount + this.buffer.position();
+    }
+
+    /**
+     * Writes the buffered bytes and closes the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Checks the field order and writes what precedes a text value.
+     */
+    private void startField(int field) {
+        if (!this.inRecord) {
+            throw new IllegalStateException("No record was begun");
+        }
+        if (field <= this.lastField || field >= this.fields.length) {
+            throw new IllegalArgumentException("Field " + field + " is out of order or unknown");
+        }
+        this.lastField = field;
+        if (this.format == ExportFormat.KEY_VALUE) {
+            if (this.line.length() > 0) {
+                this.line.append(", ");
+            }
+            this.line.append(this.fields[field]).append('=');
+        } else if (this.format == ExportFormat.CSV) {
+            while (this.separators < field) {
+                this.line.append(',');
+                this.separators++;
+            }
+        }
+    }
+
+    private void appendCsv(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            this.line.append(value);
+            return;
+        }
+        this.line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                this.line.append('"');
+            }
+            this.line.append(c);
+        }
+        this.line.append('"');
+    }
+
+    /**
+     * Encodes the line into the buffer, flushing whenever the buffer fills.
+     */
+    private void writeLine() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(this.line);
+        this.encoder.reset();
+        CoderResult result;
+        while ((result = this.encoder.encode(chars, this.buffer, true)).isOverflow()) {
+            this.flush();
+        }
+        if (result.isError()) {
+            throw new CharacterCodingException();
+        }
+        while (this.encoder.flush(this.buffer).isOverflow()) {
+            this.flush();
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!this.buffer.hasRemaining()) {
+                this.flush();
+            }
+            int length = Math.min(this.buffer.remaining(), bytes.length - offset);
+            this.buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (this.buffer.remaining() < bytes) {
+            this.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.byteCount += this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+}
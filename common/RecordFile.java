@@ -0,0 +1,315 @@
+package common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksummed file format of the serialized stores.
+ *
+ * <p>
+ * A store file starts with a magic number, a format version, a tag that
+ * identifies this version of the file and the record count. The list elements
+ * are written with one object stream, so class descriptors are written once,
+ * but every element is flushed into its own
+ * frame: the frame length, the CRC32C of the frame bytes and the bytes. The
+ * first frame holds the object stream header. A reader checks each frame
+ * before handing its bytes to the object stream, and checks that the file ends
+ * right after the last frame, so a torn or damaged write is reported instead
+ * of being read as a shorter list.
+ * </p>
+ *
+ * <p>
+ * The tag is chosen by the writer, normally at random. Files that depend on one
+ * version of a store file, such as a {@link DeltaStore} log, record its tag so
+ * they are not applied to a different version.
+ * </p>
+ *
+ * <p>
+ * Files written before the format existed hold one serialized list; they are
+ * recognised by the object stream magic number and still read.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class RecordFile {
+    /** "LMSR" */
+    private static final int MAGIC = 0x4C4D5352;
+    private static final short VERSION = 2;
+    /** Version without a tag, still read */
+    private static final short UNTAGGED_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Largest frame accepted, so a damaged length cannot exhaust memory */
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private RecordFile() {
+    }
+
+    /**
+     * Writes a list as a checksummed store file.
+     *
+     * @param <T>     the type of the records
+     * @param out     the stream to write to; it is flushed but not closed
+     * @param records the records
+     * @param tag     the tag identifying this version of the file
+     * @throws IOException if the stream cannot be written
+     */
+    public static <T> void write(OutputStream out, List<T> records, long tag) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeLong(tag);
+        data.writeInt(records.size());
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(BUFFER_SIZE);
+        CRC32C crc = new CRC32C();
+        ObjectOutputStream objects = new ObjectOutputStream(frame);
+        objects.flush();
+        writeFrame(data, frame, crc);
+        for (T record : records) {
+            objects.writeObject(record);
+            objects.flush();
+            writeFrame(data, frame, crc);
+        }
+        data.flush();
+    }
+
+    private static void writeFrame(DataOutputStream data, ByteArrayOutputStream frame, CRC32C crc)
+            throws IOException {
+        byte[] bytes = frame.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        data.writeInt(bytes.length);
+        data.writeInt((int) crc.getValue());
+        data.write(bytes);
+        frame.reset();
+    }
+
+    /**
+     * Reads a store file, checking every frame.
+     *
+     * @param <T>  the type of the records
+     * @param file the store file
+     * @return the records
+     * @throws IOException            if the file cannot be read, is torn or is
+     *                                damaged
+     * @throws ClassNotFoundException if a record class cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> read(File file) throws IOException, ClassNotFoundException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+                BUFFER_SIZE))) {
+            if (!isChecksummed(in)) {
+                try (ObjectInputStream objects = new ObjectInputStream(in)) {
+                    return (List<T>) objects.readObject();
+                }
+            }
+            int count = readHeader(in);
+            FrameInputStream frames = new FrameInputStream(in, count + 1L);
+            ObjectInputStream objects = new ObjectInputStream(frames);
+            List<T> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                records.add((T) objects.readObject());
+            }
+            frames.checkEnd();
+            return records;
+        }
+    }
+
+    /**
+     * Checks the frames of a store file without reading the records. A file in
+     * the old format is read completely instead.
+     *
+     * @param file the store file
+     * @return the number of records
+     * @throws IOException if the file cannot be read, is torn or is damaged
+     */
+    public static int verify(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+                BUFFER_SIZE))) {
+            if (!isChecksummed(in)) {
+                try (ObjectInputStream objects = new ObjectInputStream(in)) {
+                    return ((List<?>) objects.readObject()).size();
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    throw new IOException("Unreadable store file: " + e.getMessage(), e);
+                }
+            }
+            int count = readHeader(in);
+            FrameInputStream frames = new FrameInputStream(in, count + 1L);
+            while (frames.skipFrame()) {
+                // Every frame is checked as it is skipped
+            }
+            frames.checkEnd();
+            return count;
+        }
+    }
+
+    /**
+     * Reads the tag of a store file from its header.
+     *
+     * @param file the store file
+     * @return the tag, or 0 for a file written without one
+     * @throws IOException if the header cannot be read
+     */
+    public static long readTag(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64))) {
+            if (!isChecksummed(in)) {
+                return 0;
+            }
+            try {
+                return in.readShort() == VERSION ? in.readLong() : 0;
+            } catch (EOFException e) {
+                throw new IOException("Store file is truncated", e);
+            }
+        }
+    }
+
+    private static boolean isChecksummed(DataInputStream in) throws IOException {
+        in.mark(4);
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Store file is truncated", e);
+        }
+        if (magic == MAGIC) {
+            return true;
+        }
+        in.reset();
+        return false;
+    }
+
+    private static int readHeader(DataInputStream in) throws IOException {
+        try {
+            short version = in.readShort();
+            if (version == VERSION) {
+                in.readLong();
+            } else if (version != UNTAGGED_VERSION) {
+                throw new IOException("Unsupported store file version " + version);
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Store file header is damaged");
+            }
+            return count;
+        } catch (EOFException e) {
+            throw new IOException("Store file is truncated", e);
+        }
+    }
+
+    /**
+     * Serves the bytes of consecutive frames, checking each frame's CRC32C
+     * before any of its bytes are returned.
+     */
+    private static class FrameInputStream extends InputStream {
+        private final DataInputStream in;
+        private final long frameCount;
+        private final CRC32C crc = new CRC32C();
+        private byte[] frame = new byte[0];
+        private int position;
+        private int length;
+        private long framesRead;
+
+        FrameInputStream(DataInputStream in, long frameCount) {
+            this.in = in;
+            this.frameCount = frameCount;
+        }
+
+        /**
+         * Loads the next frame.
+         *
+         * @return false if every frame has been read
+         */
+        private boolean nextFrame() throws IOException {
+            if (this.framesRead == this.frameCount) {
+                return false;
+            }
+            try {
+                int frameLength = this.in.readInt();
+                int checksum = this.in.readInt();
+                if (frameLength < 0 || frameLength > MAX_FRAME_SIZE) {
+                    throw new IOException("Damaged frame header at record " + this.framesRead);
+                }
+                if (this.frame.length < frameLength) {
+                    this.frame = new byte[Math.max(frameLength, this.frame.length * 2)];
+                }
+                this.in.readFully(this.frame, 0, frameLength);
+                this.crc.reset();
+                this.crc.update(this.frame, 0, frameLength);
+                if ((int) this.crc.getValue() != checksum) {
+                    throw new IOException("Checksum mismatch at record " + this.framesRead);
+                }
+                this.position = 0;
+                this.length = frameLength;
+                this.framesRead++;
+                return true;
+            } catch (EOFException e) {
+                throw new IOException("Store file is truncated at record " + this.framesRead, e);
+            }
+        }
+
+        /**
+         * Loads and checks the next frame without serving its bytes.
+         *
+         * @return false if every frame has been read
+         */
+        boolean skipFrame() throws IOException {
+            if (!this.nextFrame()) {
+                return false;
+            }
+            this.position = this.length;
+            return true;
+        }
+
+        /**
+         * Checks that every frame was read and nothing follows the last one.
+         */
+        void checkEnd() throws IOException {
+            if (this.framesRead != this.frameCount || this.position != this.length) {
+                throw new IOException("Store file has unread records");
+            }
+            if (this.in.read() >= 0) {
+                throw new IOException("Store file has trailing bytes");
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (this.position == this.length) {
+                if (!this.nextFrame()) {
+                    return -1;
+                }
+            }
+            return this.frame[this.position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            while (this.position == this.length) {
+                if (!this.nextFrame()) {
+                    return -1;
+                }
+            }
+            int read = Math.min(count, this.length - this.position);
+            System.arraycopy(this.frame, this.position, bytes, offset, read);
+            this.position += read;
+            return read;
+        }
+    }
+}
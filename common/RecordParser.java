@@ -0,0 +1,494 @@
+package common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for import files made of {@code key=value} records.
+ *
+ * <p>
+ * Each line is one record of comma-separated {@code key=value} pairs, the
+ * format written by the {@code toString()} methods of the model classes. The
+ * parser reads the input into one reused {@code char} buffer and records where
+ * each value starts and ends, so it allocates nothing per line. Keys are
+ * resolved to field indexes through a collision-free hash table built once for
+ * the expected field names; unknown keys are ignored. Numbers are parsed
+ * straight from the buffer, and a {@code String} is only created when a caller
+ * asks for one.
+ * </p>
+ *
+ * <p>
+ * Values end at the next comma and are trimmed, exactly as the earlier
+ * regular-expression split did. A comma inside a value is written as
+ * {@code \,} and a backslash in front of a comma or another backslash as
+ * {@code \\}, as {@link RecordExporter} does; any other backslash is
+ * read as it is. Blank lines are skipped. Instances are not thread-safe.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class RecordParser implements Closeable {
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+    private static final String[] TRUE = { "true" };
+
+    /** Powers of ten that are exact doubles, for the fast decimal path */
+    private static final double[] POWERS_OF_TEN = new double[19];
+
+    /** Largest mantissa that is an exact double */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final Reader reader;
+    private final String[] fields;
+
+    /** Field index + 1 per hash slot, 0 for an empty slot */
+    private final int[] slots;
+    private final int multiplier;
+    private final int shift;
+
+    private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+    private int limit;
+    private int position;
+    private boolean endOfInput;
+
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+    private final boolean[] valueEscaped;
+    private int recordStart;
+    private int recordEnd;
+    private long lineNumber;
+
+    /**
+     * Creates a parser for records with the given field names.
+     *
+     * @param reader the input; it is read in large blocks, so it need not be
+     *               buffered
+     * @param fields the field names; the position of a name is its field index
+     * @throws IllegalArgumentException if the field names contain duplicates
+     */
+    public RecordParser(Reader reader, String... fields) {
+        this.reader = reader;
+        this.fields = fields.clone();
+        this.valueStarts = new int[fields.length];
+        this.valueEnds = new int[fields.length];
+        this.valueEscaped = new boolean[fields.length];
+
+        int bits = 1;
+        while ((1 << bits) < fields.length * 2) {
+            bits++;
+        }
+        this.shift = 32 - bits;
+        this.slots = new int[1 << bits];
+
+        // Search for a multiplier that maps every field name to its own slot
+        int candidate = 0x9E3779B9;
+        for (int attempt = 0;; attempt++) {
+            if (attempt == 10000) {
+                // Few names per slot are guaranteed once the table is large
+                // enough, so this only triggers for duplicates
+                throw new IllegalArgumentException("Duplicate field names: " + Arrays.toString(fields));
+            }
+            Arrays.fill(this.slots, 0);
+            boolean perfect = true;
+            for (int i = 0; i < fields.length && perfect; i++) {
+                int slot = (fields[i].hashCode() * candidate) >>> this.shift;
+                if (this.slots[slot] != 0) {
+                    perfect = false;
+                } else {
+                    this.slots[slot] = i + 1;
+                }
+            }
+            if (perfect) {
+                break;
+            }
+            candidate += 0x61C88646;
+        }
+        this.multiplier = candidate;
+    }
+
+    /**
+     * Advances to the next non-blank record.
+     *
+     * @return true if a record was read, false at the end of the input
+     * @throws IOException if the input cannot be read
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int end = this.findLineEnd();
+            if (end < 0) {
+                return false;
+            }
+            int start = this.position;
+            this.position = end + 1;
+            this.lineNumber++;
+            if (end > start && this.buffer[end - 1] == '\r') {
+                end--;
+            }
+            if (this.parseRecord(start, end)) {
+                this.recordStart = start;
+                this.recordEnd = end;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the 1-based line number of the current record within this
+     * parser's input. After {@link #next()} returns false it is the number of
+     * lines read, blank lines included.
+     *
+     * @return the line number
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+
+    /**
+     * Returns the text of the current record, for example to quarantine a
+     * rejected line.
+     *
+     * @return the record line without its line break
+     */
+    public String getRecordText() {
+        return new String(this.buffer, this.recordStart, this.recordEnd - this.recordStart);
+    }
+
+    /**
+     * Checks whether the current record has a value for a field.
+     *
+     * @param field the field index
+     * @return true if the field is present
+     */
+    public boolean isPresent(int field) {
+        return this.valueStarts[field] >= 0;
+    }
+
+    /**
+     * Returns a field value as a string.
+     *
+     * @param field the field index
+     * @return the trimmed value with its escapes removed
+     * @throws IllegalArgumentException if the field is missing
+     */
+    public String getString(int field) {
+        int start = this.start(field);
+        int end = this.valueEnds[field];
+        if (!this.valueEscaped[field]) {
+            return new String(this.buffer, start, end - start);
+        }
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            if (isEscape(this.buffer, i, end)) {
+                i++;
+            }
+            value.append(this.buffer[i]);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Returns a field value as an {@code int}.
+     *
+     * @param field the field index
+     * @return the value
+     * @throws IllegalArgumentException if the field is missing or not an integer
+     */
+    public int getInt(int field) {
+        long value = this.getLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw this.invalid(field);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns a field value as a {@code long}.
+     *
+     * @param field the field index
+     * @return the value
+     * @throws IllegalArgumentException if the field is missing or not an integer
+     */
+    public long getLong(int field) {
+        int i = this.start(field);
+        int end = this.valueEnds[field];
+        boolean negative = i < end && this.buffer[i] == '-';
+        if (negative || (i < end && this.buffer[i] == '+')) {
+            i++;
+        }
+        if (i == end) {
+            throw this.invalid(field);
+        }
+        // Accumulate negatively so Long.MIN_VALUE parses without overflow
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = this.buffer[i] - '0';
+            if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10) {
+                throw this.invalid(field);
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw this.invalid(field);
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Returns a field value as a {@code double}.
+     * <p>
+     * Plain decimals such as {@code 12.5} are converted directly from the
+     * buffer; other forms fall back to {@link Double#parseDouble(String)}.
+     *
+     * @param field the field index
+     * @return the value
+     * @throws IllegalArgumentException if the field is missing or not a number
+     */
+    public double getDouble(int field) {
+        int start = this.start(field);
+        int end = this.valueEnds[field];
+        int i = start;
+        boolean negative = i < end && this.buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = this.buffer[i];
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9' && digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                break;
+            }
+        }
+        // Dividing two exact doubles is correctly rounded, like parseDouble
+        if (i == end && digits > 0 && mantissa < MAX_EXACT_MANTISSA) {
+            double value = mantissa / POWERS_OF_TEN[Math.max(scale, 0)];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(this.buffer, start, end - start));
+        } catch (NumberFormatException e) {
+            throw this.invalid(field);
+        }
+    }
+
+    /**
+     * Returns a field value as a {@code boolean}, like
+     * {@link Boolean#parseBoolean(String)}.
+     *
+     * @param field the field index
+     * @return true if the value is {@code true} ignoring case
+     * @throws IllegalArgumentException if the field is missing
+     */
+    public boolean getBoolean(int field) {
+        return this.indexOf(field, TRUE, true) == 0;
+    }
+
+    /**
+     * Finds a field value in a list of options without creating a string.
+     *
+     * @param field      the field index
+     * @param options    the values to compare against
+     * @param ignoreCase whether the comparison ignores case
+     * @return the index of the matching option, or -1 if none matches
+     * @throws IllegalArgumentException if the field is missing
+     */
+    public int indexOf(int field, String[] options, boolean ignoreCase) {
+        if (this.valueEscaped[field]) {
+            String value = this.getString(field);
+            for (int i = 0; i < options.length; i++) {
+                if (ignoreCase ? options[i].equalsIgnoreCase(value) : options[i].equals(value)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int start = this.start(field);
+        int length = this.valueEnds[field] - start;
+        for (int i = 0; i < options.length; i++) {
+            String option = options[i];
+            if (option.length() == length && this.regionMatches(start, option, ignoreCase)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the exception for a field whose value cannot be converted.
+     *
+     * @param field the field index
+     * @return an exception naming the field and the value
+     */
+    public IllegalArgumentException invalid(int field) {
+        return new IllegalArgumentException("Invalid " + this.fields[field] + " '" + this.getString(field) + "'");
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    /**
+     * Returns the start of a field value, rejecting missing fields.
+     */
+    private int start(int field) {
+        int start = this.valueStarts[field];
+        if (start < 0) {
+            throw new IllegalArgumentException("Missing " + this.fields[field]);
+        }
+        return start;
+    }
+
+    /**
+     * Returns the index of the next line break, reading more input as needed;
+     * at the end of the input the last unterminated line ends at the limit.
+     */
+    private int findLineEnd() throws IOException {
+        int scanFrom = this.position;
+        while (true) {
+            for (int i = scanFrom; i < this.limit; i++) {
+                if (this.buffer[i] == '\n') {
+                    return i;
+                }
+            }
+            if (this.endOfInput) {
+                return this.position < this.limit ? this.limit : -1;
+            }
+            scanFrom = this.limit - this.position;
+            this.fill();
+        }
+    }
+
+    /**
+     * Moves the unread part of the buffer to the front, growing the buffer if a
+     * single line fills it, and reads more input behind it.
+     */
+    private void fill() throws IOException {
+        int remaining = this.limit - this.position;
+        if (remaining == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+        } else if (this.position > 0) {
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+        }
+        this.position = 0;
+        this.limit = remaining;
+        int read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (read < 0) {
+            this.endOfInput = true;
+        } else {
+            this.limit += read;
+        }
+    }
+
+    /**
+     * Splits one line into values; returns false if the line is blank.
+     */
+    private boolean parseRecord(int start, int end) {
+        Arrays.fill(this.valueStarts, -1);
+        char[] chars = this.buffer;
+        boolean blank = true;
+        int i = start;
+        while (i < end) {
+            int pairEnd = i;
+            int equals = -1;
+            boolean escaped = false;
+            while (pairEnd < end && chars[pairEnd] != ',') {
+                if (equals < 0 && chars[pairEnd] == '=') {
+                    equals = pairEnd;
+                } else if (equals >= 0 && isEscape(chars, pairEnd, end)) {
+                    escaped = true;
+                    pairEnd++;
+                }
+                pairEnd++;
+            }
+            if (equals >= 0) {
+                blank = false;
+                int field = this.lookup(trimStart(chars, i, equals), trimEnd(chars, i, equals));
+                if (field >= 0) {
+                    int valueStart = trimStart(chars, equals + 1, pairEnd);
+                    this.valueStarts[field] = valueStart;
+                    this.valueEnds[field] = trimEnd(chars, valueStart, pairEnd);
+                    this.valueEscaped[field] = escaped;
+                }
+            } else if (trimStart(chars, i, pairEnd) < pairEnd) {
+                blank = false;
+            }
+            i = pairEnd + 1;
+        }
+        return !blank;
+    }
+
+    /**
+     * Resolves a key to its field index through the hash table.
+     */
+    private int lookup(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + this.buffer[i];
+        }
+        int field = this.slots[(hash * this.multiplier) >>> this.shift] - 1;
+        if (field < 0 || this.fields[field].length() != end - start
+                || !this.regionMatches(start, this.fields[field], false)) {
+            return -1;
+        }
+        return field;
+    }
+
+    private boolean regionMatches(int start, String text, boolean ignoreCase) {
+        for (int i = 0; i < text.length(); i++) {
+            char a = this.buffer[start + i];
+            char b = text.charAt(i);
+            if (a != b && (!ignoreCase || Character.toLowerCase(a) != Character.toLowerCase(b))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the character at an index is a backslash escaping the
+     * comma or backslash after it.
+     */
+    private static boolean isEscape(char[] chars, int index, int end) {
+        return chars[index] == '\\' && index + 1 < end && (chars[index + 1] == ',' || chars[index + 1] == '\\');
+    }
+
+    private static int trimStart(char[] chars, int start, int end) {
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(char[] chars, int start, int end) {
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,151 @@
+package common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of search results tagged with a data
+ * version.
+ *
+ * <p>
+ * Every entry remembers the version of the data it was computed from. The
+ * owner bumps its version whenever the underlying data changes, and a lookup
+ * treats any entry from an older version as a miss and drops it, so
+ * invalidating the whole cache is a single counter increment. When the cache
+ * is full the least recently used entry is evicted.
+ * </p>
+ *
+ * <p>
+ * Hit, miss, stale and eviction counts are kept for monitoring. Instances are
+ * not thread-safe.
+ * </p>
+ *
+ * @param <V> the type of the cached results
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class SearchResultCache<V> {
+    private final int capacity;
+    private final LinkedHashMap<String, Entry<V>> entries;
+    private long hits;
+    private long misses;
+    private long staleMisses;
+    private long evictions;
+
+    /**
+     * Cached result and the data version it was computed from.
+     */
+    private static class Entry<V> {
+        final V value;
+        final long version;
+
+        Entry(V value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Creates a cache holding at most the given number of results.
+     *
+     * @param capacity the maximum number of cached results
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public SearchResultCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry<V>>(capacity * 2, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > SearchResultCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for a key if it was computed from the given
+     * version.
+     *
+     * @param key     the normalized query
+     * @param version the current data version
+     * @return the cached result, or null on a miss
+     */
+    public V get(String key, long version) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        if (entry.version != version) {
+            this.entries.remove(key);
+            this.staleMisses++;
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        return entry.value;
+    }
+
+    /**
+     * Caches a result computed from the given version.
+     *
+     * @param key     the normalized query
+     * @param value   the result
+     * @param version the data version the result was computed from
+     */
+    public void put(String key, V value, long version) {
+        this.entries.put(key, new Entry<>(value, version));
+    }
+
+    /**
+     * Removes every entry. Statistics are kept.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /** @return the maximum number of cached results */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /** @return the number of cached results, including stale ones not yet dropped */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /** @return the number of lookups answered from the cache */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /** @return the number of lookups that had to be computed, including stale ones */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /** @return the number of misses caused by an entry from an older version */
+    public long getStaleMisses() {
+        return this.staleMisses;
+    }
+
+    /** @return the number of entries evicted to stay within capacity */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /** @return the share of lookups answered from the cache, or 0 if none */
+    public double getHitRate() {
+        long lookups = this.hits + this.misses;
+        return lookups == 0 ? 0 : (double) this.hits / lookups;
+    }
+}
@@ -0,0 +1,412 @@
+package common;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed, deduplicating store of file segments for backups.
+ *
+ * <p>
+ * A file is cut into segments at content-defined boundaries: a gear rolling
+ * hash over the bytes marks a boundary wherever its top bits are zero, with
+ * a minimum and maximum segment size. Because boundaries depend on the
+ * content and not on offsets, an insertion or removal only changes the
+ * segments around it. Each segment is named by the SHA-256 of its bytes and
+ * stored gzip-compressed as {@code <first two hex digits>/<hash>.gz}; a
+ * segment that is already stored is not written again, so unchanged data is
+ * never copied twice.
+ * </p>
+ *
+ * <p>
+ * Boundaries and the whole-file hash are found in one sequential pass; the
+ * segments are then hashed and compressed in parallel on a fork/join pool,
+ * each task reading its own range of the file. Segment files are written to a
+ * temporary name and renamed, so a stored segment is always complete.
+ * Reading a file back checks the length and hash of every segment and of the
+ * whole file.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class SegmentStore {
+    private static final int MIN_SEGMENT_SIZE = 256 * 1024;
+    private static final int MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+    /** Top hash bits that are zero at a boundary, giving segments of about 1 MB */
+    private static final long BOUNDARY_MASK = ((1L << 20) - 1) << 44;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+    /** Random value per byte for the gear hash, fixed so boundaries are stable */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5E6D3E47L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final File directory;
+    private final ForkJoinPool pool;
+
+    /**
+     * One segment of a stored file.
+     */
+    public static class Segment {
+        private final String hash;
+        private final int length;
+
+        /**
+         * @param hash   the SHA-256 of the segment bytes in hex
+         * @param length the number of bytes in the segment
+         */
+        public Segment(String hash, int length) {
+            this.hash = hash;
+            this.length = length;
+        }
+
+        /** @return the SHA-256 of the segment bytes in hex */
+        public String getHash() {
+            return this.hash;
+        }
+
+        /** @return the number of bytes in the segment */
+        public int getLength() {
+            return this.length;
+        }
+    }
+
+    /**
+     * The segments of one stored file and what storing it cost.
+     */
+    public static class StoredFile {
+        private final long size;
+        private final String hash;
+        private final List<Segment> segments;
+        private final int newSegments;
+        private final long newBytes;
+
+        /**
+         * @param size        the file size in bytes
+         * @param hash        the SHA-256 of the whole file in hex
+         * @param segments    the segments in file order
+         * @param newSegments the number of segments that were not stored yet
+         * @param newBytes    the compressed bytes written for them
+         */
+        public StoredFile(long size, String hash, List<Segment> segments, int newSegments, long newBytes) {
+            this.size = size;
+            this.hash = hash;
+            this.segments = segments;
+            this.newSegments = newSegments;
+            this.newBytes = newBytes;
+        }
+
+        /** @return the file size in bytes */
+        public long getSize() {
+            return this.size;
+        }
+
+        /** @return the SHA-256 of the whole file in hex */
+        public String getHash() {
+            return this.hash;
+        }
+
+        /** @return the segments in file order */
+        public List<Segment> getSegments() {
+            return this.segments;
+        }
+
+        /** @return the number of segments written by this store call */
+        public int getNewSegments() {
+            return this.newSegments;
+        }
+
+        /** @return the compressed bytes written by this store call */
+        public long getNewBytes() {
+            return this.newBytes;
+        }
+    }
+
+    /**
+     * Creates a store in the given directory.
+     *
+     * @param directory the directory holding the segment files
+     * @param pool      the pool segments are hashed and compressed on
+     */
+    public SegmentStore(File directory, ForkJoinPool pool) {
+        this.directory = directory;
+        this.pool = pool;
+    }
+
+    /**
+     * Stores the first {@code size} bytes of a file.
+     *
+     * @param channel the open file; only positional reads are used
+     * @param size    the number of bytes to store
+     * @return the segments of the file
+     * @throws IOException if the file cannot be read or a segment written
+     */
+    public StoredFile store(FileChannel channel, long size) throws IOException {
+        MessageDigest fileDigest = sha256();
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long position = 0;
+        long start = 0;
+        long hash = 0;
+        while (position < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, size - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                throw new IOException("File shrank while it was backed up");
+            }
+            fileDigest.update(bytes, 0, read);
+            for (int i = 0; i < read; i++) {
+                hash = (hash << 1) + GEAR[bytes[i] & 0xFF];
+                long length = position + i + 1 - start;
+                if ((length >= MIN_SEGMENT_SIZE && (hash & BOUNDARY_MASK) == 0) || length >= MAX_SEGMENT_SIZE) {
+                    ranges.add(new long[] { start, position + i + 1 });
+                    start = position + i + 1;
+                    hash = 0;
+                }
+            }
+            position += read;
+        }
+        if (start < size) {
+            ranges.add(new long[] { start, size });
+        }
+
+        AtomicInteger newSegments = new AtomicInteger();
+        AtomicLong newBytes = new AtomicLong();
+        List<Callable<Segment>> tasks = new ArrayList<>();
+        for (long[] range : ranges) {
+            tasks.add(() -> this.storeSegment(channel, range[0], (int) (range[1] - range[0]), newSegments,
+                    newBytes));
+        }
+        List<Segment> segments = new ArrayList<>();
+        try {
+            for (Future<Segment> future : this.pool.invokeAll(tasks)) {
+                segments.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to store segment: " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Backup was interrupted", e);
+        }
+        return new StoredFile(size, hex(fileDigest.digest()), segments, newSegments.get(), newBytes.get());
+    }
+
+    /**
+     * Hashes one segment and writes it unless it is already stored.
+     */
+    private Segment storeSegment(FileChannel channel, long start, int length, AtomicInteger newSegments,
+            AtomicLong newBytes) throws IOException {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("File shrank while it was backed up");
+            }
+        }
+        String hash = hex(sha256().digest(bytes));
+        File file = this.segmentFile(hash);
+        if (!file.exists()) {
+            File parent = file.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Cannot create directory " + parent.getPath());
+            }
+            File temp = File.createTempFile(hash, utils.TEMP_SUFFIX, parent);
+            try {
+                try (FileOutputStream out = new FileOutputStream(temp)) {
+                    GZIPOutputStream gzip = new GZIPOutputStream(out, COMPRESSION_BUFFER_SIZE);
+                    gzip.write(bytes);
+                    gzip.finish();
+                    out.getFD().sync();
+                }
+                newBytes.addAndGet(temp.length());
+                utils.replaceFile(temp, file);
+                newSegments.incrementAndGet();
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+        return new Segment(hash, length);
+    }
+
+    /**
+     * Checks whether a segment is stored.
+     *
+     * @param hash the segment hash
+     * @return true if the segment file exists
+     */
+    public boolean contains(String hash) {
+        return this.segmentFile(hash).exists();
+    }
+
+    /**
+     * Reads a stored file back, checking every segment and the whole file.
+     *
+     * @param segments the segments in file order
+     * @param hash     the expected SHA-256 of the whole file
+     * @param out      receives the file contents, or null to only verify
+     * @throws IOException if a segment is missing or damaged, or the file hash
+     *                     does not match
+     */
+    public void read(List<Segment> segments, String hash, OutputStream out) throws IOException {
+        MessageDigest fileDigest = sha256();
+        for (Segment segment : segments) {
+            byte[] bytes = this.readSegment(segment);
+            fileDigest.update(bytes);
+            if (out != null) {
+                out.write(bytes);
+            }
+        }
+        if (!hex(fileDigest.digest()).equals(hash)) {
+            throw new IOException("File content does not match its recorded hash");
+        }
+    }
+
+    private byte[] readSegment(Segment segment) throws IOException {
+        File file = this.segmentFile(segment.getHash());
+        if (!file.exists()) {
+            throw new IOException("Missing segment " + segment.getHash());
+        }
+        byte[] bytes = new byte[segment.getLength()];
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file),
+                COMPRESSION_BUFFER_SIZE), COMPRESSION_BUFFER_SIZE)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = in.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    throw new IOException("Truncated segment " + segment.getHash());
+                }
+                offset += read;
+            }
+            if (in.read() >= 0) {
+                throw new IOException("Oversized segment " + segment.getHash());
+            }
+        }
+        if (!hex(sha256().digest(bytes)).equals(segment.getHash())) {
+            throw new IOException("Damaged segment " + segment.getHash());
+        }
+        return bytes;
+    }
+
+    /**
+     * Formats a segment list as {@code hash:length} entries separated by
+     * {@code ;}, as written in manifests and the store journal.
+     *
+     * @param segments the segments in file order
+     * @return the formatted list
+     */
+    public static String formatSegments(List<Segment> segments) {
+        StringBuilder text = new StringBuilder(segments.size() * 72);
+        for (Segment segment : segments) {
+            if (text.length() > 0) {
+                text.append(';');
+            }
+            text.append(segment.getHash()).append(':').append(segment.getLength());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Parses a segment list written by {@link #formatSegments(List)}.
+     *
+     * @param text the formatted list, possibly empty
+     * @return the segments in file order
+     */
+    public static List<Segment> parseSegments(String text) {
+        List<Segment> segments = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return segments;
+        }
+        for (String entry : text.split(";")) {
+            int colon = entry.indexOf(':');
+            segments.add(new Segment(entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1))));
+        }
+        return segments;
+    }
+
+    /**
+     * Deletes every stored segment that is not in use. Callers make sure no
+     * file is stored meanwhile, since a store call may count on a segment
+     * that is about to be deleted.
+     *
+     * @param used the hashes of the segments to keep
+     * @return the number of segments deleted
+     * @throws IOException if a segment cannot be deleted
+     */
+    public int removeUnused(Set<String> used) throws IOException {
+        int removed = 0;
+        File[] prefixes = this.directory.listFiles(File::isDirectory);
+        if (prefixes == null) {
+            return 0;
+        }
+        for (File prefix : prefixes) {
+            File[] files = prefix.listFiles((dir, name) -> name.endsWith(".gz"));
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                String name = file.getName();
+                if (!used.contains(name.substring(0, name.length() - 3))) {
+                    Files.delete(file.toPath());
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private File segmentFile(String hash) {
+        return new File(new File(this.directory, hash.substring(0, 2)), hash + ".gz");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = digits[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
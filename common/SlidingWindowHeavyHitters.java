@@ -0,0 +1,127 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate top-N keys over a sliding time window.
+ *
+ * <p>
+ * The window is divided into a fixed ring of slots, each holding its own
+ * {@link SpaceSavingSketch}. Events land in the slot for their timestamp; when
+ * the ring wraps around, the expired slot is cleared and reused, so old events
+ * age out one slot at a time. Queries merge the live slots, which costs
+ * {@code slots * capacity} regardless of how many events or distinct keys were
+ * seen.
+ * </p>
+ *
+ * @param <K> the type of the counted keys
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see SpaceSavingSketch
+ */
+public class SlidingWindowHeavyHitters<K> {
+    private final long slotMillis;
+    private final List<SpaceSavingSketch<K>> slots;
+    private final long[] slotNumbers;
+
+    /**
+     * Creates a sliding window.
+     *
+     * @param windowMillis the window length in milliseconds
+     * @param slotCount    the number of slots the window is divided into
+     * @param capacity     the number of counters per slot
+     * @throws IllegalArgumentException if any argument is not positive
+     */
+    public SlidingWindowHeavyHitters(long windowMillis, int slotCount, int capacity) {
+        if (windowMillis <= 0 || slotCount <= 0) {
+            throw new IllegalArgumentException("Window and slot count must be positive");
+        }
+        this.slotMillis = Math.max(1, windowMillis / slotCount);
+        this.slots = new ArrayList<>(slotCount);
+        this.slotNumbers = new long[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            this.slots.add(new SpaceSavingSketch<>(capacity));
+            this.slotNumbers[i] = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Counts one event for a key.
+     * <p>
+     * Events older than the slot currently occupying their ring position are
+     * ignored, so replaying history in rough time order is safe.
+     *
+     * @param key       the key to count
+     * @param timestamp the event time in epoch milliseconds
+     */
+    public void add(K key, long timestamp) {
+        long slotNumber = timestamp / this.slotMillis;
+        int index = (int) (slotNumber % this.slotNumbers.length);
+        if (this.slotNumbers[index] > slotNumber) {
+            return;
+        }
+        if (this.slotNumbers[index] != slotNumber) {
+            this.slots.get(index).clear();
+            this.slotNumbers[index] = slotNumber;
+        }
+        this.slots.get(index).add(key);
+    }
+
+    /**
+     * Removes all counted events.
+     */
+    public void clear() {
+        for (int i = 0; i < this.slotNumbers.length; i++) {
+            this.slots.get(i).clear();
+            this.slotNumbers[i] = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Adds the estimated count of every key seen in the window ending at the
+     * given time to the given totals.
+     *
+     * @param totals the map receiving the per-key counts
+     * @param now    the end of the window in epoch milliseconds
+     */
+    public void addCountsTo(Map<K, Long> totals, long now) {
+        long currentSlot = now / this.slotMillis;
+        for (int i = 0; i < this.slotNumbers.length; i++) {
+            long slotNumber = this.slotNumbers[i];
+            if (slotNumber > currentSlot - this.slotNumbers.length && slotNumber <= currentSlot) {
+                this.slots.get(i).addCountsTo(totals);
+            }
+        }
+    }
+
+    /**
+     * Returns the most frequent keys in the window ending at the given time.
+     *
+     * @param limit the maximum number of keys to return
+     * @param now   the end of the window in epoch milliseconds
+     * @return the top keys with their estimated counts, most frequent first
+     */
+    public List<Map.Entry<K, Long>> top(int limit, long now) {
+        Map<K, Long> totals = new HashMap<>();
+        this.addCountsTo(totals, now);
+        return topEntries(totals, limit);
+    }
+
+    /**
+     * Returns the entries with the highest counts, most frequent first.
+     *
+     * @param totals the per-key counts
+     * @param limit  the maximum number of entries to return
+     * @param <K>    the type of the counted keys
+     * @return at most {@code limit} entries ordered by descending count
+     */
+    public static <K> List<Map.Entry<K, Long>> topEntries(Map<K, Long> totals, int limit) {
+        List<Map.Entry<K, Long>> result = new ArrayList<>(totals.entrySet());
+        result.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+}
@@ -0,0 +1,552 @@
+package common;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable file of key-value entries sorted by key, the on-disk unit of an
+ * {@link LsmStore}.
+ *
+ * <p>
+ * Entries are packed into blocks of about 16 KB, each deflated and
+ * checksummed with CRC32C. After the blocks come an index holding the first
+ * key of every block, the last key of the run and a {@link BloomFilter} of
+ * all keys, followed by a fixed footer locating them. Opening a run reads
+ * only the index and the filter; a lookup that the filter rules out reads
+ * nothing else, and any other lookup reads and inflates a single block.
+ * </p>
+ *
+ * <p>
+ * Keys are compared as unsigned bytes. A removed key is kept as a tombstone
+ * entry, returned as {@link #TOMBSTONE}, so that it hides older values of the
+ * key in older runs until compaction drops it.
+ * </p>
+ *
+ * <p>
+ * Runs are shared by the store and the scans reading them, so each keeps a
+ * reference count: the file is closed once the last reference is released,
+ * and deleted then if the run was replaced by compaction.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class SortedRun {
+    /** Extension of a run file */
+    public static final String SUFFIX = ".run";
+
+    /** The value of a removed key; compare by identity */
+    public static final byte[] TOMBSTONE = new byte[0];
+
+    /** Order of keys: unsigned lexicographic */
+    public static final Comparator<byte[]> KEY_ORDER = Arrays::compareUnsigned;
+
+    /** "LMSR" */
+    private static final int MAGIC = 0x4C4D5352;
+    private static final short VERSION = 1;
+    /** Index offset, index and filter lengths, entry count, checksum, version, padding, magic */
+    private static final int FOOTER_SIZE = 8 + 4 + 4 + 8 + 4 + 2 + 2 + 4;
+    /** Raw length, compressed length and checksum of a block */
+    private static final int BLOCK_HEADER_SIZE = 12;
+    private static final int BLOCK_SIZE = 16 * 1024;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+
+    private final File file;
+    private final long number;
+    private final FileChannel channel;
+    private final long size;
+    private final long entryCount;
+    private final byte[][] blockKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final byte[] lastKey;
+    private final BloomFilter bloom;
+    private int references = 1;
+    private boolean obsolete;
+
+    private SortedRun(File file, long number, FileChannel channel) throws IOException {
+        this.file = file;
+        this.number = number;
+        this.channel = channel;
+        this.size = channel.size();
+        if (this.size < FOOTER_SIZE) {
+            throw new IOException(file.getName() + " is not a sorted run");
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        readFully(channel, footer, this.size - FOOTER_SIZE);
+        footer.flip();
+        long indexOffset = footer.getLong();
+        int indexLength = footer.getInt();
+        int bloomLength = footer.getInt();
+        this.entryCount = footer.getLong();
+        int checksum = footer.getInt();
+        short version = footer.getShort();
+        footer.getShort();
+        if (footer.getInt() != MAGIC || version != VERSION
+                || indexOffset + indexLength + bloomLength != this.size - FOOTER_SIZE) {
+            throw new IOException(file.getName() + " is not a sorted run");
+        }
+        ByteBuffer meta = ByteBuffer.allocate(indexLength + bloomLength);
+        readFully(channel, meta, indexOffset);
+        CRC32C crc = new CRC32C();
+        crc.update(meta.array(), 0, meta.capacity());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException(file.getName() + " has a damaged index");
+        }
+        meta.flip();
+        int blockCount = meta.getInt();
+        this.blockKeys = new byte[blockCount][];
+        this.blockOffsets = new long[blockCount];
+        this.blockLengths = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            this.blockKeys[i] = readKey(meta);
+            this.blockOffsets[i] = meta.getLong();
+            this.blockLengths[i] = meta.getInt();
+        }
+        this.lastKey = readKey(meta);
+        byte[] bloomBytes = new byte[bloomLength];
+        meta.get(bloomBytes);
+        this.bloom = BloomFilter.fromBytes(bloomBytes);
+    }
+
+    /**
+     * Opens a run file.
+     *
+     * @param file   the run file
+     * @param number the number of the run in its store
+     * @return the run, holding one reference
+     * @throws IOException if the file cannot be read or is not a run
+     */
+    public static SortedRun open(File file, long number) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new SortedRun(file, number, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up a key.
+     *
+     * @param key the key
+     * @return the value, {@link #TOMBSTONE} if the key was removed, or null if
+     *         the run has no entry for the key
+     * @throws IOException if the block cannot be read or is damaged
+     */
+    public byte[] get(byte[] key) throws IOException {
+        if (KEY_ORDER.compare(key, this.blockKeys[0]) < 0 || KEY_ORDER.compare(key, this.lastKey) > 0
+                || !this.bloom.mightContain(key)) {
+            return null;
+        }
+        ByteBuffer block = ByteBuffer.wrap(this.readBlock(this.findBlock(key)));
+        while (block.hasRemaining()) {
+            byte[] entryKey = readKey(block);
+            int valueLength = block.getInt();
+            int order = KEY_ORDER.compare(entryKey, key);
+            if (order == 0) {
+                if (valueLength < 0) {
+                    return TOMBSTONE;
+                }
+                byte[] value = new byte[valueLength];
+                block.get(value);
+                return value;
+            }
+            if (order > 0) {
+                return null;
+            }
+            block.position(block.position() + Math.max(0, valueLength));
+        }
+        return null;
+    }
+
+    /**
+     * Reads entries in key order.
+     */
+    public class Cursor {
+        private final byte[] from;
+        private final byte[] to;
+        private int nextBlock;
+        private ByteBuffer block;
+        private byte[] key;
+        private byte[] value;
+
+        private Cursor(byte[] from, byte[] to) {
+            this.from = from;
+            this.to = to;
+            this.nextBlock = from == null ? 0 : Math.max(0, findBlock(from));
+        }
+
+        /**
+         * Moves to the next entry in range.
+         *
+         * @return false when there are no more entries
+         * @throws IOException if a block cannot be read or is damaged
+         */
+        public boolean next() throws IOException {
+            while (true) {
+                if (this.block == null || !this.block.hasRemaining()) {
+                    if (this.nextBlock >= blockKeys.length) {
+                        return false;
+                    }
+                    this.block = ByteBuffer.wrap(readBlock(this.nextBlock++));
+                }
+                byte[] entryKey = readKey(this.block);
+                int valueLength = this.block.getInt();
+                if (this.from != null && KEY_ORDER.compare(entryKey, this.from) < 0) {
+                    this.block.position(this.block.position() + Math.max(0, valueLength));
+                    continue;
+                }
+                if (this.to != null && KEY_ORDER.compare(entryKey, this.to) > 0) {
+                    this.nextBlock = blockKeys.length;
+                    this.block = null;
+                    return false;
+                }
+                this.key = entryKey;
+                if (valueLength < 0) {
+                    this.value = TOMBSTONE;
+                } else {
+                    this.value = new byte[valueLength];
+                    this.block.get(this.value);
+                }
+                return true;
+            }
+        }
+
+        /** @return the key of the current entry */
+        public byte[] key() {
+            return this.key;
+        }
+
+        /** @return the value of the current entry, possibly {@link #TOMBSTONE} */
+        public byte[] value() {
+            return this.value;
+        }
+    }
+
+    /**
+     * Starts reading the entries with keys in a range.
+     *
+     * @param from the lowest key, inclusive, or null to start at the first
+     * @param to   the highest key, inclusive, or null to read to the end
+     * @return a cursor before the first entry in range
+     */
+    public Cursor cursor(byte[] from, byte[] to) {
+        return new Cursor(from, to);
+    }
+
+    /**
+     * Checks whether the key range of this run overlaps a range.
+     *
+     * @param from the lowest key of the range
+     * @param to   the highest key of the range
+     * @return true if some key of this run may lie in the range
+     */
+    public boolean overlaps(byte[] from, byte[] to) {
+        return KEY_ORDER.compare(this.blockKeys[0], to) <= 0 && KEY_ORDER.compare(this.lastKey, from) >= 0;
+    }
+
+    /** @return the lowest key */
+    public byte[] getFirstKey() {
+        return this.blockKeys[0];
+    }
+
+    /** @return the highest key */
+    public byte[] getLastKey() {
+        return this.lastKey;
+    }
+
+    /** @return the number of entries, tombstones included */
+    public long getEntryCount() {
+        return this.entryCount;
+    }
+
+    /** @return the file size in bytes */
+    public long getSize() {
+        return this.size;
+    }
+
+    /** @return the number of the run in its store */
+    public long getNumber() {
+        return this.number;
+    }
+
+    /** @return the run file */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Adds a reference for a reader.
+     */
+    public synchronized void retain() {
+        if (this.references <= 0) {
+            throw new IllegalStateException(this.file.getName() + " is closed");
+        }
+        this.references++;
+    }
+
+    /**
+     * Drops a reference, closing the file when none is left and deleting it
+     * if the run is obsolete.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public synchronized void release() throws IOException {
+        if (--this.references == 0) {
+            this.channel.close();
+            // A run that cannot be deleted now is removed as a stray file on the next open
+            if (this.obsolete) {
+                this.file.delete();
+            }
+        }
+    }
+
+    /**
+     * Marks the run as replaced, so its file is deleted once it is released.
+     */
+    public synchronized void markObsolete() {
+        this.obsolete = true;
+    }
+
+    /**
+     * Finds the last block whose first key is not above a key.
+     */
+    private int findBlock(byte[] key) {
+        int low = 0;
+        int high = this.blockKeys.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (KEY_ORDER.compare(this.blockKeys[middle], key) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private byte[] readBlock(int index) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(this.blockLengths[index]);
+        readFully(this.channel, bytes, this.blockOffsets[index]);
+        bytes.flip();
+        int rawLength = bytes.getInt();
+        int compressedLength = bytes.getInt();
+        int checksum = bytes.getInt();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.array(), BLOCK_HEADER_SIZE, compressedLength);
+        if (compressedLength != bytes.remaining() || (int) crc.getValue() != checksum) {
+            throw new IOException(this.file.getName() + " has a damaged block at offset " + this.blockOffsets[index]);
+        }
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes.array(), BLOCK_HEADER_SIZE, compressedLength);
+            if (inflater.inflate(raw) != rawLength) {
+                throw new IOException(this.file.getName() + " has a truncated block");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(this.file.getName() + " has a damaged block: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    private static byte[] readKey(ByteBuffer buffer) {
+        byte[] key = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(key);
+        return key;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Writes a run file from entries added in ascending key order.
+     */
+    public static class Writer implements AutoCloseable {
+        private final File file;
+        private final FileOutputStream out;
+        private final DataOutputStream data;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+        private final DataOutputStream blockData = new DataOutputStream(this.block);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final CRC32C crc = new CRC32C();
+        private final List<byte[]> keys = new ArrayList<>();
+        private final List<byte[]> blockKeys = new ArrayList<>();
+        private final List<long[]> blocks = new ArrayList<>();
+        private byte[] compressed = new byte[BLOCK_SIZE];
+        private byte[] blockFirstKey;
+        private byte[] lastKey;
+        private long position;
+        private boolean finished;
+
+        /**
+         * Creates a run file, replacing any file of the same name.
+         *
+         * @param file the run file
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(File file) throws IOException {
+            this.file = file;
+            this.out = new FileOutputStream(file);
+            this.data = new DataOutputStream(new BufferedOutputStream(this.out, 64 * 1024));
+        }
+
+        /**
+         * Adds an entry. Keys must be added in strictly ascending order.
+         *
+         * @param key   the key, at most 65535 bytes
+         * @param value the value, or {@link SortedRun#TOMBSTONE} for a removed key
+         * @throws IOException if the file cannot be written
+         */
+        public void add(byte[] key, byte[] value) throws IOException {
+            if (this.lastKey != null && KEY_ORDER.compare(key, this.lastKey) <= 0) {
+                throw new IllegalArgumentException("Keys must be added in ascending order");
+            }
+            if (this.blockFirstKey == null) {
+                this.blockFirstKey = key;
+            }
+            this.blockData.writeShort(key.length);
+            this.blockData.write(key);
+            if (value == TOMBSTONE) {
+                this.blockData.writeInt(-1);
+            } else {
+                this.blockData.writeInt(value.length);
+                this.blockData.write(value);
+            }
+            this.keys.add(key);
+            this.lastKey = key;
+            if (this.block.size() >= BLOCK_SIZE) {
+                this.writeBlock();
+            }
+        }
+
+        /**
+         * Returns the bytes written so far, the pending block estimated at its
+         * raw size.
+         *
+         * @return the approximate file size
+         */
+        public long getSize() {
+            return this.position + this.block.size();
+        }
+
+        /** @return the number of entries added */
+        public long getEntryCount() {
+            return this.keys.size();
+        }
+
+        /**
+         * Writes the index, filter and footer and forces the file to disk.
+         *
+         * @throws IOException if the file cannot be written or has no entries
+         */
+        public void finish() throws IOException {
+            if (this.keys.isEmpty()) {
+                throw new IOException("A sorted run needs at least one entry");
+            }
+            this.writeBlock();
+            ByteArrayOutputStream meta = new ByteArrayOutputStream();
+            DataOutputStream metaData = new DataOutputStream(meta);
+            metaData.writeInt(this.blocks.size());
+            for (int i = 0; i < this.blocks.size(); i++) {
+                metaData.writeShort(this.blockKeys.get(i).length);
+                metaData.write(this.blockKeys.get(i));
+                metaData.writeLong(this.blocks.get(i)[0]);
+                metaData.writeInt((int) this.blocks.get(i)[1]);
+            }
+            metaData.writeShort(this.lastKey.length);
+            metaData.write(this.lastKey);
+            int indexLength = meta.size();
+            BloomFilter bloom = new BloomFilter(this.keys.size(), BLOOM_BITS_PER_KEY);
+            for (byte[] key : this.keys) {
+                bloom.add(key);
+            }
+            byte[] bloomBytes = bloom.toBytes();
+            metaData.write(bloomBytes);
+            byte[] metaBytes = meta.toByteArray();
+            this.crc.reset();
+            this.crc.update(metaBytes, 0, metaBytes.length);
+            this.data.write(metaBytes);
+            this.data.writeLong(this.position);
+            this.data.writeInt(indexLength);
+            this.data.writeInt(bloomBytes.length);
+            this.data.writeLong(this.keys.size());
+            this.data.writeInt((int) this.crc.getValue());
+            this.data.writeShort(VERSION);
+            this.data.writeShort(0);
+            this.data.writeInt(MAGIC);
+            this.data.flush();
+            this.out.getFD().sync();
+            this.finished = true;
+            this.close();
+        }
+
+        private void writeBlock() throws IOException {
+            if (this.block.size() == 0) {
+                return;
+            }
+            byte[] raw = this.block.toByteArray();
+            this.deflater.reset();
+            this.deflater.setInput(raw);
+            this.deflater.finish();
+            int length = 0;
+            while (!this.deflater.finished()) {
+                if (length == this.compressed.length) {
+                    this.compressed = Arrays.copyOf(this.compressed, this.compressed.length * 2);
+                }
+                length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+            }
+            this.crc.reset();
+            this.crc.update(this.compressed, 0, length);
+            this.data.writeInt(raw.length);
+            this.data.writeInt(length);
+            this.data.writeInt((int) this.crc.getValue());
+            this.data.write(this.compressed, 0, length);
+            this.blockKeys.add(this.blockFirstKey);
+            this.blocks.add(new long[] { this.position, BLOCK_HEADER_SIZE + length });
+            this.position += BLOCK_HEADER_SIZE + length;
+            this.block.reset();
+            this.blockFirstKey = null;
+        }
+
+        /**
+         * Closes the file. A run closed before {@link #finish()} is incomplete
+         * and is deleted.
+         *
+         * @throws IOException if the file cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            this.deflater.end();
+            this.out.close();
+            if (!this.finished) {
+                this.file.delete();
+            }
+        }
+    }
+}
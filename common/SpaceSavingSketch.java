@@ -0,0 +1,101 @@
+package common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving heavy-hitter sketch over a stream of keys.
+ *
+ * <p>
+ * The sketch keeps at most {@code capacity} counters. When an untracked key
+ * arrives and the sketch is full, the key takes over the smallest counter and
+ * inherits its count as an error bound. Any key whose true frequency exceeds
+ * {@code total / capacity} is guaranteed to be tracked, and tracked counts
+ * overestimate by at most the inherited error. Memory stays constant however
+ * many distinct keys the stream contains.
+ * </p>
+ *
+ * @param <K> the type of the counted keys
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class SpaceSavingSketch<K> {
+    private final int capacity;
+    private final Map<K, Counter<K>> counters;
+    private final TreeSet<Counter<K>> byCount = new TreeSet<>((a, b) -> a.count != b.count
+            ? Long.compare(a.count, b.count)
+            : Long.compare(a.sequence, b.sequence));
+    private long sequence;
+
+    /**
+     * Mutable counter for one tracked key.
+     */
+    private static class Counter<K> {
+        K key;
+        long count;
+        long sequence;
+    }
+
+    /**
+     * Creates a sketch with the given number of counters.
+     *
+     * @param capacity the maximum number of tracked keys
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     *
+     * @param key the key to count
+     */
+    public void add(K key) {
+        Counter<K> counter = this.counters.get(key);
+        if (counter != null) {
+            this.byCount.remove(counter);
+            counter.count++;
+            this.byCount.add(counter);
+            return;
+        }
+
+        if (this.counters.size() < this.capacity) {
+            counter = new Counter<>();
+        } else {
+            // Evict the smallest counter; the newcomer inherits its count
+            counter = this.byCount.pollFirst();
+            this.counters.remove(counter.key);
+        }
+        counter.key = key;
+        counter.count++;
+        counter.sequence = this.sequence++;
+        this.counters.put(key, counter);
+        this.byCount.add(counter);
+    }
+
+    /**
+     * Adds the estimated count of every tracked key to the given totals.
+     *
+     * @param totals the map receiving the per-key counts
+     */
+    public void addCountsTo(Map<K, Long> totals) {
+        for (Counter<K> counter : this.counters.values()) {
+            totals.merge(counter.key, counter.count, Long::sum);
+        }
+    }
+
+    /**
+     * Removes all counters.
+     */
+    public void clear() {
+        this.counters.clear();
+        this.byCount.clear();
+    }
+}
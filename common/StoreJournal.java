@@ -0,0 +1,402 @@
+package common;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only journal of every version written of the database files, for
+ * point-in-time restores.
+ *
+ * <p>
+ * Each write appends one {@code key=value} line to the journal, starting with
+ * a sequential operation ID, the time and the file name. When a database file
+ * is replaced, its new contents are stored in a {@link SegmentStore} and the
+ * line holds the file size, SHA-256 and segment list; the segment store only
+ * writes segments it does not hold yet. When bytes are appended to a file,
+ * only those bytes are journaled: the line holds the offset they were written
+ * at, the file size after the write, their SHA-256 and the bytes themselves in
+ * Base64, so an append costs about as much as the bytes it adds. Rebuilding a
+ * file as of any instant or operation ID means taking its last full version
+ * up to that point and replaying the appends after it in order.
+ * </p>
+ *
+ * <p>
+ * {@link #prune(long)} drops the entries a backup already covers. The
+ * journal is read as a stream, one line at a time, so its length does not
+ * affect memory use. A line cut short by a crash is skipped. Instances are
+ * thread-safe.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class StoreJournal {
+    /** Field names of a journal line, indexed by the FIELD_* constants */
+    private static final String[] FIELDS = { "op", "time", "file", "size", "sha256", "segments", "offset",
+            "data", "pruned" };
+    private static final int FIELD_OP = 0;
+    private static final int FIELD_TIME = 1;
+    private static final int FIELD_FILE = 2;
+    private static final int FIELD_SIZE = 3;
+    private static final int FIELD_SHA256 = 4;
+    private static final int FIELD_SEGMENTS = 5;
+    private static final int FIELD_OFFSET = 6;
+    private static final int FIELD_DATA = 7;
+    private static final int FIELD_PRUNED = 8;
+
+    private final File file;
+    private final SegmentStore store;
+    private long lastOp = -1;
+
+    /**
+     * One journaled write of a database file: either a full version or bytes
+     * appended to the previous version.
+     */
+    public static class Entry {
+        private final long op;
+        private final long time;
+        private final String fileName;
+        private final long size;
+        private final String hash;
+        private final List<SegmentStore.Segment> segments;
+        private final long offset;
+        private final byte[] data;
+
+        Entry(long op, long time, String fileName, long size, String hash, List<SegmentStore.Segment> segments,
+                long offset, byte[] data) {
+            this.op = op;
+            this.time = time;
+            this.fileName = fileName;
+            this.size = size;
+            this.hash = hash;
+            this.segments = segments;
+            this.offset = offset;
+            this.data = data;
+        }
+
+        /** @return the operation ID, increasing by one per entry */
+        public long getOp() {
+            return this.op;
+        }
+
+        /** @return the epoch time the version was written */
+        public long getTime() {
+            return this.time;
+        }
+
+        /** @return the name of the file in the database directory */
+        public String getFileName() {
+            return this.fileName;
+        }
+
+        /** @return the file size in bytes after the write */
+        public long getSize() {
+            return this.size;
+        }
+
+        /**
+         * @return the SHA-256 in hex of the file, or of the appended bytes for
+         *         an append
+         */
+        public String getHash() {
+            return this.hash;
+        }
+
+        /** @return the segments of a full version, empty for an append */
+        public List<SegmentStore.Segment> getSegments() {
+            return this.segments;
+        }
+
+        /** @return true if the entry holds appended bytes, not a full version */
+        public boolean isAppend() {
+            return this.data != null;
+        }
+
+        /**
+         * @return the offset the appended bytes were written at; the file was
+         *         cut to this length first
+         */
+        public long getOffset() {
+            return this.offset;
+        }
+
+        /** @return the appended bytes, or null for a full version */
+        public byte[] getData() {
+            return this.data;
+        }
+    }
+
+    /**
+     * Receives journal entries in order.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        /**
+         * Visits one entry.
+         *
+         * @param entry the entry
+         * @return false to stop reading
+         * @throws Exception if the entry cannot be processed
+         */
+        boolean visit(Entry entry) throws Exception;
+    }
+
+    /**
+     * Creates a journal.
+     *
+     * @param file  the journal file, created on the first entry
+     * @param store the store holding the file segments
+     */
+    public StoreJournal(File file, SegmentStore store) {
+        this.file = file;
+        this.store = store;
+    }
+
+    /**
+     * Journals the current contents of a database file.
+     *
+     * @param dbFile the file that was just written
+     * @return the operation ID of the entry
+     * @throws IOException if the file cannot be read or the journal written
+     */
+    public synchronized long record(File dbFile) throws IOException {
+        SegmentStore.StoredFile stored;
+        try (FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)) {
+            stored = this.store.store(channel, channel.size());
+        }
+        long op = this.getLastOp() + 1;
+        this.writeLine("op=" + op + ", time=" + System.currentTimeMillis() + ", file=" + dbFile.getName()
+                + ", size=" + stored.getSize() + ", sha256=" + stored.getHash() + ", segments="
+                + SegmentStore.formatSegments(stored.getSegments()) + "\n");
+        this.lastOp = op;
+        return op;
+    }
+
+    /**
+     * Journals bytes that were just appended to a database file, without
+     * reading the rest of the file.
+     *
+     * @param dbFile the file that was appended to
+     * @param offset the offset the bytes were written at, after cutting the
+     *               file to that length
+     * @param bytes  the bytes written
+     * @return the operation ID of the entry
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized long recordAppend(File dbFile, long offset, byte[] bytes) throws IOException {
+        long op = this.getLastOp() + 1;
+        this.writeLine("op=" + op + ", time=" + System.currentTimeMillis() + ", file=" + dbFile.getName()
+                + ", offset=" + offset + ", size=" + (offset + bytes.length) + ", sha256=" + sha256(bytes)
+                + ", data=" + Base64.getEncoder().encodeToString(bytes) + "\n");
+        this.lastOp = op;
+        return op;
+    }
+
+    /**
+     * Drops the entries up to an operation, for example those covered by a
+     * backup. The remaining entries keep their IDs, and later entries go on
+     * numbering after the highest ID ever written.
+     *
+     * @param throughOp the last operation ID to drop
+     * @return the number of entries dropped
+     * @throws IOException if the journal cannot be rewritten
+     */
+    public synchronized long prune(long throughOp) throws IOException {
+        if (!this.file.exists()) {
+            return 0;
+        }
+        long lastOp = this.getLastOp();
+        long dropped = 0;
+        File temp = new File(this.file.getPath() + utils.TEMP_SUFFIX);
+        try {
+            try (RecordParser parser = new RecordParser(new FileReader(this.file), FIELDS);
+                    FileOutputStream out = new FileOutputStream(temp)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+                // Keeps the operation IDs increasing when every entry is dropped
+                writer.write("op=" + lastOp + ", time=" + System.currentTimeMillis() + ", pruned=" + throughOp
+                        + "\n");
+                while (parser.next()) {
+                    long op;
+                    try {
+                        op = parser.getLong(FIELD_OP);
+                    } catch (RuntimeException e) {
+                        continue;
+                    }
+                    if (op > throughOp && parser.isPresent(FIELD_FILE)) {
+                        writer.write(parser.getRecordText());
+                        writer.write('\n');
+                    } else if (parser.isPresent(FIELD_FILE)) {
+                        dropped++;
+                    }
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+            utils.replaceFile(temp, this.file);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the last operation dropped by {@link #prune(long)}.
+     *
+     * @return the last pruned operation ID, or 0 if the journal was never
+     *         pruned
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized long getPrunedThrough() throws IOException {
+        if (!this.file.exists()) {
+            return 0;
+        }
+        try (RecordParser parser = new RecordParser(new FileReader(this.file), FIELDS)) {
+            return parser.next() && parser.isPresent(FIELD_PRUNED) ? parser.getLong(FIELD_PRUNED) : 0;
+        }
+    }
+
+    /**
+     * Appends one line to the journal and syncs it, first ending a line cut
+     * short by a crash.
+     */
+    private void writeLine(String line) throws IOException {
+        File parent = this.file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent.getPath());
+        }
+        boolean tornLine = false;
+        if (this.file.length() > 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(this.file, "r")) {
+                raf.seek(raf.length() - 1);
+                tornLine = raf.read() != '\n';
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(this.file, true)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+            if (tornLine) {
+                writer.write('\n');
+            }
+            writer.write(line);
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Returns the ID of the latest entry, reading the journal once if needed.
+     *
+     * @return the latest operation ID, or 0 if the journal is empty
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized long getLastOp() throws IOException {
+        if (this.lastOp < 0) {
+            long last = 0;
+            if (this.file.exists()) {
+                try (RecordParser parser = new RecordParser(new FileReader(this.file), FIELDS)) {
+                    while (parser.next()) {
+                        try {
+                            last = Math.max(last, parser.getLong(FIELD_OP));
+                        } catch (RuntimeException e) {
+                            // A line cut short by a crash
+                        }
+                    }
+                }
+            }
+            this.lastOp = last;
+        }
+        return this.lastOp;
+    }
+
+    /**
+     * Streams the entries, oldest first.
+     *
+     * @param visitor receives each entry and can stop the stream
+     * @throws IOException if the journal cannot be read or the visitor fails
+     */
+    public void forEach(EntryVisitor visitor) throws IOException {
+        if (!this.file.exists()) {
+            return;
+        }
+        try (RecordParser parser = new RecordParser(new FileReader(this.file), FIELDS)) {
+            while (parser.next()) {
+                if (!parser.isPresent(FIELD_FILE)) {
+                    // The marker left by prune
+                    continue;
+                }
+                Entry entry;
+                try {
+                    entry = parseEntry(parser);
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                if (entry == null) {
+                    // A line cut short by a crash
+                    continue;
+                }
+                if (!visitor.visit(entry)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to read the store journal: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builds the entry of the current line, or returns null if the line is
+     * incomplete.
+     */
+    private static Entry parseEntry(RecordParser parser) {
+        long op = parser.getLong(FIELD_OP);
+        long time = parser.getLong(FIELD_TIME);
+        String fileName = parser.getString(FIELD_FILE);
+        long size = parser.getLong(FIELD_SIZE);
+        String hash = parser.getString(FIELD_SHA256);
+        if (parser.isPresent(FIELD_OFFSET)) {
+            long offset = parser.getLong(FIELD_OFFSET);
+            byte[] data = Base64.getDecoder().decode(parser.getString(FIELD_DATA));
+            if (offset + data.length != size || !sha256(data).equals(hash)) {
+                return null;
+            }
+            return new Entry(op, time, fileName, size, hash, Collections.emptyList(), offset, data);
+        }
+        List<SegmentStore.Segment> segments = SegmentStore.parseSegments(parser.getString(FIELD_SEGMENTS));
+        long length = 0;
+        for (SegmentStore.Segment segment : segments) {
+            length += segment.getLength();
+        }
+        if (length != size) {
+            return null;
+        }
+        return new Entry(op, time, fileName, size, hash, segments, -1, null);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package common;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Startup check of the serialized store files.
+ *
+ * <p>
+ * Every {@code .ser} file in the database directory is checked frame by frame
+ * (see {@link RecordFile}) before the services load it. A torn or damaged file
+ * is replaced by its previous generation if that one is intact, so the system
+ * starts from the last good save instead of from an empty list. Temporary
+ * files left behind by an interrupted save are removed.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class StoreVerifier {
+
+    private StoreVerifier() {
+    }
+
+    /**
+     * Checks the store files of a database directory and repairs damaged ones
+     * from their previous generation.
+     *
+     * @param dbDir the database directory
+     * @return the number of files that were repaired
+     * @throws Exception if a file is damaged and has no intact previous
+     *                   generation
+     */
+    public static int verify(File dbDir) throws Exception {
+        File[] files = dbDir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        Arrays.sort(files);
+        int intact = 0;
+        int repaired = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(utils.TEMP_SUFFIX)) {
+                Files.deleteIfExists(file.toPath());
+                System.out.println("Removed " + name + " left by an interrupted save");
+            }
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".ser")) {
+                try {
+                    RecordFile.verify(file);
+                    intact++;
+                    continue;
+                } catch (IOException e) {
+                    System.out.println(name + " is damaged: " + e.getMessage());
+                }
+            } else if (name.endsWith(".ser" + utils.PREVIOUS_SUFFIX)) {
+                file = new File(dbDir, name.substring(0, name.length() - utils.PREVIOUS_SUFFIX.length()));
+                if (file.exists()) {
+                    continue;
+                }
+                System.out.println(file.getName() + " is missing");
+            } else {
+                continue;
+            }
+            restorePreviousGeneration(file);
+            repaired++;
+        }
+        System.out.println("Database check: " + intact + " store files intact"
+                + (repaired > 0 ? ", " + repaired + " restored from their previous generation" : ""));
+        return repaired;
+    }
+
+    /**
+     * Replaces a store file by its previous generation after checking it.
+     */
+    private static void restorePreviousGeneration(File file) throws Exception {
+        File previous = DataManager.previousGeneration(file);
+        int records;
+        try {
+            records = RecordFile.verify(previous);
+        } catch (IOException e) {
+            throw new Exception("Cannot start: " + file.getName() + " is damaged and has no intact previous"
+                    + " generation; restore the database with java main.BackupTool --action=restore");
+        }
+        File temp = new File(file.getPath() + utils.TEMP_SUFFIX);
+        utils.DB_LOCK.readLock().lock();
+        try {
+            Files.copy(previous.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try (FileOutputStream out = new FileOutputStream(temp, true)) {
+                out.getFD().sync();
+            }
+            utils.replaceFile(temp, file);
+            utils.journal(file);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+            utils.DB_LOCK.readLock().unlock();
+        }
+        System.out.println(file.getName() + " : restored from its previous generation (" + records + " records)");
+    }
+}
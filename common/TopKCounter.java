@@ -0,0 +1,127 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Counts occurrences per {@code long} key and keeps the K most frequent keys
+ * ordered at all times.
+ *
+ * <p>
+ * Counters only ever grow by one, so when a key outside the top K is
+ * incremented it can only displace the current K-th entry. Each increment is
+ * therefore O(log K) and reading the top K is O(K), independent of how many
+ * keys or events have been counted.
+ * </p>
+ *
+ * <p>
+ * Ties are broken by the smaller key so the ranking is deterministic.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class TopKCounter {
+    /** Orders counters by count (highest first), then by key (lowest first) */
+    private static final Comparator<Counter> RANKING = (a, b) -> a.count != b.count
+            ? Long.compare(b.count, a.count)
+            : Long.compare(a.key, b.key);
+
+    private final int k;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> top = new TreeSet<>(RANKING);
+
+    /**
+     * Mutable counter for one key.
+     */
+    private static class Counter {
+        final long key;
+        long count;
+        boolean inTop;
+
+        Counter(long key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Creates a counter that maintains the given number of top keys.
+     *
+     * @param k the number of top keys to maintain
+     * @throws IllegalArgumentException if k is not positive
+     */
+    public TopKCounter(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("K must be positive");
+        }
+        this.k = k;
+    }
+
+    /**
+     * Increments the counter of a key by one and updates the top K.
+     *
+     * @param key the key to count
+     */
+    public void increment(long key) {
+        Counter counter = this.counters.get(key);
+        if (counter == null) {
+            counter = new Counter(key);
+            this.counters.put(key, counter);
+        }
+
+        if (counter.inTop) {
+            // Re-insert so the tree sees the new count
+            this.top.remove(counter);
+            counter.count++;
+            this.top.add(counter);
+            return;
+        }
+
+        counter.count++;
+        if (this.top.size() < this.k) {
+            this.top.add(counter);
+            counter.inTop = true;
+        } else if (RANKING.compare(counter, this.top.last()) < 0) {
+            this.top.pollLast().inTop = false;
+            this.top.add(counter);
+            counter.inTop = true;
+        }
+    }
+
+    /**
+     * Returns the current count of a key.
+     *
+     * @param key the key to look up
+     * @return the number of times the key was counted, or 0 if never
+     */
+    public long getCount(long key) {
+        Counter counter = this.counters.get(key);
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * Returns the top keys, most frequent first.
+     *
+     * @return at most K keys ordered by descending count
+     */
+    public List<Long> getTopKeys() {
+        List<Long> result = new ArrayList<>(this.top.size());
+        for (Counter counter : this.top) {
+            result.add(counter.key);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all counters.
+     */
+    public void clear() {
+        this.counters.clear();
+        this.top.clear();
+    }
+}
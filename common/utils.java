@@ -1,18 +1,27 @@
 package common;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
@@ -24,6 +33,71 @@ import java.util.zip.ZipOutputStream;
  * date/time manipulation, file I/O, and data serialization.
  */
 public class utils {
+    /**
+     * Directory holding the database files. Defaults to {@code ./db} and can be
+     * pointed elsewhere with {@code -Dlibrary.db.dir=<path>}, e.g. to run the
+     * load test against a generated dataset.
+     */
+    public static final String DB_DIR = System.getProperty("library.db.dir", "./db");
+
+    /** Suffix of a database file that is still being written */
+    public static final String TEMP_SUFFIX = ".tmp";
+
+    /** Suffix of the previous generation of a serialized store file */
+    public static final String PREVIOUS_SUFFIX = ".prev";
+
+    /**
+     * Guards the database files against backups. Code writing a database file
+     * holds the read lock, which writers share, while it replaces or appends to
+     * the file; a backup holds the write lock only while it opens the files of
+     * a snapshot, so every file it reads is complete.
+     */
+    public static final ReentrantReadWriteLock DB_LOCK = new ReentrantReadWriteLock();
+
+    /** Journal receiving every database file version written, or null */
+    private static volatile StoreJournal journal;
+
+    /**
+     * Starts or stops journaling every database file version that is written,
+     * for point-in-time restores. Tools working on scratch copies of the
+     * database leave the journal off.
+     *
+     * @param storeJournal the journal, or null to stop journaling
+     */
+    public static void setJournal(StoreJournal storeJournal) {
+        journal = storeJournal;
+    }
+
+    /**
+     * Journals a database file that was just written, if journaling is on.
+     * Callers hold the read lock of {@link #DB_LOCK}.
+     *
+     * @param file the written file
+     * @throws IOException if the version cannot be journaled
+     */
+    static void journal(File file) throws IOException {
+        StoreJournal current = journal;
+        if (current != null) {
+            current.record(file);
+        }
+    }
+
+    /**
+     * Journals bytes that were just appended to a database file, if
+     * journaling is on. Callers hold the read lock of {@link #DB_LOCK}.
+     *
+     * @param file   the file that was appended to
+     * @param offset the offset the bytes were written at
+     * @param bytes  the bytes written
+     * @throws IOException if the append cannot be journaled
+     */
+    static void journalAppend(File file, long offset, byte[] bytes) throws IOException {
+        StoreJournal current = journal;
+        if (current != null) {
+            current.recordAppend(file, offset, bytes);
+        }
+    }
+
     /**
      * Generates a random number of a specified size
      * 
@@ -35,7 +109,7 @@ public class utils {
 
         // generate a random number of 'size' digits
         for (int i = 0; i < size; i++) {
-            randomNum = (randomNum * 10) + (int) (Math.random() * 10);
+            randomNum = (randomNum * 10) + ThreadLocalRandom.current().nextInt(10);
         }
 
         return Math.abs(randomNum);
@@ -89,9 +163,12 @@ public class utils {
     }
 
     /**
-     * Saves a list of objects to a file
+     * Saves a list of objects to its serialized store file, the one
+     * authoritative copy of the data. The human-readable text form is not
+     * written on save; it is a view produced on demand with
+     * {@link #writeText(String, List)}.
      * 
-     * @param fileName the name of the file to save to
+     * @param fileName the name of the store file; any extension is replaced by {@code .ser}
      * @param al       the list of objects to save
      */
     public static <T> void saveData(String fileName, List<T> al) throws Exception {
@@ -99,49 +176,110 @@ public class utils {
         if (extensionIndex == -1) {
             throw new Exception("Invalid file name");
         }
-        File file = new File(fileName);
-        if (!file.exists()) {
-            try {
-                file.createNewFile();
-            } catch (IOException e) {
-                System.out.println("Error creating file: " + e.getMessage());
-            }
+        String serializedFileName = fileName.substring(0, extensionIndex) + ".ser";
+        System.out.println("SERIALIZED FILE NAME: " + serializedFileName);
+        try {
+            DataManager.saveDataToFile(serializedFileName, al);
+        } catch (IOException e) {
+            throw new Exception("Error writing file: " + e.getMessage());
         }
-        try (FileWriter writer = new FileWriter(fileName)) {
+    }
+
+    /**
+     * Writes the text view of a list: one {@code toString()} line per object.
+     * The file is written under a temporary name and renamed into place.
+     *
+     * @param <T>      the type of objects in the list
+     * @param fileName the text file to write
+     * @param al       the list of objects to write
+     * @throws IOException if the file cannot be written
+     */
+    public static <T> void writeText(String fileName, List<T> al) throws IOException {
+        File temp = new File(fileName + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out));
             for (int i = 0; i < al.size(); i++) {
-                String content = al.get(i).toString();
-                writer.write(content);
+                writer.write(al.get(i).toString());
                 writer.write("\n");
             }
-            System.out.println("WRITING IN FILE DONE");
+            writer.flush();
+            out.getFD().sync();
+        }
+        replaceFile(temp, new File(fileName));
+    }
 
-            String serializedFileName = fileName.substring(0, extensionIndex) + ".ser";
-            System.out.println("SERIALIZED FILE NAME: " + serializedFileName);
-            DataManager.saveDataToFile(serializedFileName, al);
+    /**
+     * Moves a completely written file over its target in one step, so readers
+     * see either the old or the new file and never a partial one. The
+     * directory is then forced to disk so the rename survives a crash; the
+     * caller forces the file contents before the move.
+     *
+     * @param source the written file
+     * @param target the file to replace
+     * @throws IOException if the file cannot be moved
+     */
+    public static void replaceFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Forces a directory's entries to disk. Platforms that cannot open a
+     * directory, such as Windows, persist renames without it.
+     *
+     * @param directory the directory
+     */
+    public static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
         } catch (IOException e) {
-            throw new Exception("Error reading file: " + e.getMessage());
+            // Not supported on this platform
         }
     }
 
     /**
      * Loads a list of objects from a serialized file.
-     * If the file doesn't exist or an error occurs, returns an empty list.
+     * If the file doesn't exist, returns an empty list. If the file is torn or
+     * damaged, its previous generation is loaded instead.
      *
      * @param <T> the type of objects in the list
      * @param fileName the name of the file to load data from
-     * @return a List containing the deserialized objects, or an empty list if file doesn't exist or error occurs
+     * @return a List containing the deserialized objects, or an empty list if file doesn't exist
+     * @throws IllegalStateException if neither the file nor its previous
+     *                               generation can be read; starting with an
+     *                               empty list would erase the data on the next save
      */
     public static <T> List<T> loadData(String fileName) {
-        try {
-            File file = new File(fileName);
-            if (!file.exists()) {
-                return new ArrayList<T>();
-            }
-            return DataManager.loadDataFromFile(fileName);
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading data from file: " + e.getMessage());
+        File file = new File(fileName);
+        File previous = DataManager.previousGeneration(file);
+        if (!file.exists() && !previous.exists()) {
             return new ArrayList<T>();
         }
+        String error = "file not found";
+        if (file.exists()) {
+            try {
+                return DataManager.loadDataFromFile(fileName);
+            } catch (IOException | ClassNotFoundException e) {
+                error = e.getMessage();
+                System.out.println("Error loading data from file: " + error);
+            }
+        }
+        if (previous.exists()) {
+            try {
+                List<T> data = DataManager.loadDataFromFile(previous.getPath());
+                System.out.println("Loaded the previous generation of " + fileName);
+                return data;
+            } catch (IOException | ClassNotFoundException e) {
+                System.out.println("Error loading data from file: " + e.getMessage());
+            }
+        }
+        throw new IllegalStateException("Cannot load " + fileName + " (" + error
+                + ") and no earlier generation is readable; restore it with java main.BackupTool");
     }
 
     /**
@@ -173,6 +311,38 @@ public class utils {
         }
     }
 
+    /**
+     * Displays rows in a table whose column widths fit the content, followed
+     * by an empty line.
+     *
+     * @param headers the column headers
+     * @param rows    the rows, each with one value per header
+     */
+    public static void showTable(String[] headers, List<String[]> rows) {
+        int[] colWidths = new int[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            colWidths[i] = headers[i].length();
+        }
+        for (String[] row : rows) {
+            for (int i = 0; i < headers.length; i++) {
+                colWidths[i] = Math.max(colWidths[i], row[i].length());
+            }
+        }
+
+        // Build format string
+        StringBuilder format = new StringBuilder();
+        for (int i = 0; i < headers.length; i++) {
+            format.append("%-").append(colWidths[i]).append(i < headers.length - 1 ? "s  " : "s%n");
+        }
+
+        System.out.printf(format.toString(), (Object[]) headers);
+        System.out.println();
+        for (String[] row : rows) {
+            System.out.printf(format.toString(), (Object[]) row);
+        }
+        System.out.println();
+    }
+
     /**
      * Creates a zip file from a directory
      * 
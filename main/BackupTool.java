@@ -0,0 +1,129 @@
+package main;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import common.utils;
+import service.BackupService;
+
+/**
+ * Command line backup and restore of the database directory.
+ *
+ * <p>
+ * Backups can be taken while the system runs. A restore into the database
+ * directory must run while the system is stopped; every file is verified
+ * before it replaces the current one:
+ *
+ * <pre>
+ * java main.BackupTool --action=create
+ * java main.BackupTool --action=verify [--id=20261018-020000-000]
+ * java main.BackupTool --action=restore [--id=20261018-020000-000] [--target=./db]
+ * java main.BackupTool --action=restore --time=2026-10-18T14:30 [--target=./db]
+ * java main.BackupTool --action=journal
+ * java main.BackupTool --action=prune [--id=20261018-020000-000]
+ * </pre>
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see BackupService
+ */
+public class BackupTool {
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Options: {@code --action} (create, list, verify, restore, journal or
+     * prune; required), {@code --id} (backup to verify, restore or keep the
+     * journal from, by default the latest), {@code --time} and {@code --op}
+     * (restore to a point in time, given as {@code yyyy-MM-ddTHH:mm[:ss]} or
+     * as the last journaled operation ID to include) and {@code --target}
+     * (restore directory, by default the database directory).
+     *
+     * @param args the command line options in {@code --name=value} form
+     * @throws Exception if an option is invalid or the operation fails
+     */
+    public static void main(String[] args) throws Exception {
+        String action = null;
+        String id = null;
+        String target = utils.DB_DIR;
+        long untilTime = Long.MAX_VALUE;
+        long untilOp = Long.MAX_VALUE;
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            switch (option[0]) {
+                case "--action":
+                    action = option[1];
+                    break;
+                case "--id":
+                    id = option[1];
+                    break;
+                case "--target":
+                    target = option[1];
+                    break;
+                case "--time":
+                    untilTime = LocalDateTime.parse(option[1]).atZone(ZoneId.systemDefault()).toInstant()
+                            .toEpochMilli();
+                    break;
+                case "--op":
+                    untilOp = Long.parseLong(option[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+        if (action == null) {
+            throw new IllegalArgumentException("--action is required");
+        }
+
+        boolean toPoint = untilTime != Long.MAX_VALUE || untilOp != Long.MAX_VALUE;
+        if (toPoint && id != null) {
+            throw new IllegalArgumentException("--id cannot be combined with --time or --op");
+        }
+
+        BackupService backupService = new BackupService();
+        if (id == null && (action.equals("verify") || action.equals("prune")
+                || (action.equals("restore") && !toPoint))) {
+            List<String> ids = backupService.getBackupIds();
+            if (ids.isEmpty()) {
+                throw new IllegalArgumentException("No backups found");
+            }
+            id = ids.get(ids.size() - 1);
+        }
+        switch (action) {
+            case "create":
+                backupService.createBackup();
+                break;
+            case "list":
+                backupService.listBackups();
+                break;
+            case "verify":
+                if (!backupService.verifyBackup(id)) {
+                    System.exit(1);
+                }
+                break;
+            case "restore":
+                if (toPoint) {
+                    backupService.restoreToPoint(untilTime, untilOp, new File(target));
+                } else {
+                    backupService.restoreBackup(id, new File(target));
+                }
+                break;
+            case "journal":
+                backupService.showRecentChanges();
+                break;
+            case "prune":
+                backupService.pruneJournal(id);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
+        }
+    }
+}
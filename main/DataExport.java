@@ -0,0 +1,128 @@
+package main;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import common.BookCategory;
+import common.ExportFilter;
+import common.ExportFormat;
+import service.BookIssueService;
+import service.BookService;
+import service.ImportExportService;
+import service.MemberService;
+import service.ReservationService;
+import service.TrendingService;
+
+/**
+ * Command line export of the library data, for scheduled feeds.
+ *
+ * <p>
+ * The export loads the saved database in its own process and streams the
+ * selected data with {@link ImportExportService#exportData(String, File,
+ * ExportFormat, ExportFilter)}, so a nightly job does not interrupt the
+ * console running at the desks:
+ *
+ * <pre>
+ * java main.DataExport --kind=issues --format=csv --from=2026-10-01 --to=2026-10-17
+ * java main.DataExport --kind=all --format=binary --out=/var/feeds/library
+ * java main.DataExport --kind=text-view --out=db
+ * </pre>
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class DataExport {
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Options (all optional): {@code --kind} (books, members, issues,
+     * reservations or all, default all; or text-view to write the
+     * {@code toString()} text view of every store), {@code --format}
+     * (key_value, csv or binary; default csv), {@code --from} and {@code --to}
+     * (inclusive {@code yyyy-MM-dd} dates), {@code --category},
+     * {@code --member-type} and {@code --out} (output directory, default
+     * {@code export}).
+     *
+     * @param args the command line options in {@code --name=value} form
+     * @throws Exception if an option is invalid or the export fails
+     */
+    public static void main(String[] args) throws Exception {
+        String kind = "all";
+        ExportFormat format = ExportFormat.CSV;
+        long fromMillis = Long.MIN_VALUE;
+        long toMillis = Long.MAX_VALUE;
+        BookCategory category = null;
+        String memberType = null;
+        String outDir = "export";
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            switch (option[0]) {
+                case "--kind":
+                    kind = option[1];
+                    break;
+                case "--format":
+                    format = ExportFormat.valueOf(option[1].toUpperCase());
+                    break;
+                case "--from":
+                    fromMillis = LocalDate.parse(option[1]).atStartOfDay(ZoneId.systemDefault()).toInstant()
+                            .toEpochMilli();
+                    break;
+                case "--to":
+                    toMillis = LocalDate.parse(option[1]).plusDays(1).atStartOfDay(ZoneId.systemDefault())
+                            .toInstant().toEpochMilli();
+                    break;
+                case "--category":
+                    category = BookCategory.getCategoryByName(option[1]);
+                    break;
+                case "--member-type":
+                    memberType = option[1];
+                    break;
+                case "--out":
+                    outDir = option[1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+        String[] kinds = kind.equals("all") ? ImportExportService.EXPORT_KINDS : new String[] { kind };
+        ExportFilter filter = new ExportFilter(fromMillis, toMillis, category, memberType);
+
+        BookService bookService = new BookService();
+        MemberService memberService = new MemberService();
+        TrendingService trendingService = new TrendingService(bookService);
+        ReservationService reservationService = new ReservationService(memberService, bookService,
+                trendingService);
+        BookIssueService bookIssueService = new BookIssueService(memberService, bookService, reservationService,
+                trendingService);
+        ImportExportService importExportService = new ImportExportService(memberService, bookService,
+                bookIssueService, reservationService);
+        bookService.loadBooks();
+        memberService.loadMembers();
+        reservationService.loadReservationData();
+        bookIssueService.loadBookIssuedReadOnly();
+
+        File directory = new File(outDir);
+        if (kind.equals("text-view")) {
+            importExportService.writeTextView(directory);
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create directory " + directory.getPath());
+        }
+        for (String name : kinds) {
+            File file = new File(directory, name + "." + format.getExtension());
+            long start = System.nanoTime();
+            long records = importExportService.exportData(name, file, format, filter);
+            System.out.printf("%-12s : %d records, %d bytes, %d ms -> %s%n", name, records, file.length(),
+                    (System.nanoTime() - start) / 1000000, file.getPath());
+        }
+    }
+}
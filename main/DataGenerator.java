@@ -0,0 +1,585 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import common.BookCategory;
+import common.DeltaStore;
+import common.MemberPolicy;
+import common.MemberStatus;
+import common.utils;
+import model.AudioBook;
+import model.Book;
+import model.BookIssue;
+import model.EBook;
+import model.FacultyMember;
+import model.Member;
+import model.PhysicalBook;
+import model.RegularMember;
+import model.Reservation;
+import model.StudentMember;
+
+/**
+ * Deterministic generator for large synthetic datasets of the Library
+ * Management System.
+ *
+ * <p>
+ * The generator produces a catalog of physical, electronic and audio books, a
+ * population of student, faculty and regular members, a loan history and a
+ * reservation queue. The same seed and reference time always produce the same
+ * output, so datasets can be regenerated instead of being checked in.
+ * </p>
+ *
+ * <p>
+ * Realism rules:
+ * <ul>
+ * <li>Books and members are picked with Zipf distributions, so a few titles and
+ * a few members account for most of the loans</li>
+ * <li>Loans are spread evenly over the last two years with monotone issue
+ * dates</li>
+ * <li>Return dates follow early / within grace / late buckets and fines use
+ * {@link MemberPolicy} rates, grace periods and caps</li>
+ * <li>Open loans never exceed a member's borrowing limit or a physical book's
+ * copies, and reservations never exceed the copies left on the shelf</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Loans are streamed straight to {@code bookIssues.txt}, so the import files
+ * scale to tens of millions of loans in constant memory. Writing the
+ * {@code .ser} database files materializes every loan and therefore needs a
+ * heap large enough for the whole history.
+ * </p>
+ *
+ * <p>
+ * Usage example:
+ *
+ * <pre>
+ * java main.DataGenerator --seed=42 --books=50000 --members=20000 --loans=10000000 --db-dir=./db
+ * </pre>
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class DataGenerator {
+    private static final String[] FIRST_NAMES = { "Ananya", "Rohan", "Priya", "Arjun", "Kavya", "Vikram", "Isha",
+            "Aditya", "Meera", "Rahul", "Sneha", "Karan", "Diya", "Nikhil", "Pooja", "Sanjay", "Neha", "Amit",
+            "Riya", "Varun", "Emma", "Liam", "Olivia", "Noah", "Sofia", "Lucas", "Mia", "Ethan" };
+
+    private static final String[] LAST_NAMES = { "Sharma", "Mehta", "Singh", "Patel", "Iyer", "Reddy", "Gupta",
+            "Nair", "Khan", "Das", "Joshi", "Kapoor", "Bose", "Rao", "Smith", "Brown", "Wilson", "Taylor",
+            "Clark", "Lewis", "Walker", "Young" };
+
+    private static final String[] TITLE_WORDS = { "Silent", "River", "Shadow", "Garden", "Empire", "Code",
+            "Light", "Storm", "Memory", "Atlas", "Journey", "Secret", "Machine", "Ocean", "Mountain", "Winter",
+            "Echo", "Origin", "Future", "Kingdom", "Signal", "Harbor", "Forest", "Mirror" };
+
+    private static final String[] PUBLISHERS = { "Penguin Books", "HarperCollins", "Simon & Schuster",
+            "Macmillan", "Hachette", "Pocket Books", "Oxford Press", "Bloomsbury", "Scholastic", "Vintage" };
+
+    private static final String[] DEPARTMENTS = { "Physics", "Mathematics", "Computer Science", "History",
+            "Chemistry", "Biology", "Economics", "Literature", "Philosophy", "Engineering" };
+
+    private static final String[] DESIGNATIONS = { "Professor", "Associate Professor", "Assistant Professor",
+            "Lecturer" };
+
+    private static final String[] FILE_FORMATS = { "PDF", "EPUB", "MOBI" };
+
+    private static final String[] AUDIO_FORMATS = { "MP3", "AAC", "M4B" };
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private static final long FIRST_ISBN = 9780000000000L;
+
+    private static final int FIRST_MEMBER_ID = 1000000000;
+
+    private static final long FIRST_ISSUE_ID = 1000000000L;
+
+    private static final int HISTORY_DAYS = 730;
+
+    private final SplittableRandom random;
+    private final int bookCount;
+    private final int memberCount;
+    private final long loanCount;
+    private final int reservationCount;
+    private final long until;
+
+    private List<Book> books;
+    private List<Member> members;
+    private int[] openLoansByBook;
+    private int[] reservedByBook;
+    private int[] openLoansByMember;
+    private double[] unpaidFinesByMember;
+
+    /**
+     * Creates a generator for a dataset of the given size.
+     *
+     * @param seed             the random seed; equal seeds give equal datasets
+     * @param bookCount        the number of catalog titles
+     * @param memberCount      the number of members
+     * @param loanCount        the number of loans in the history
+     * @param reservationCount the number of queued reservations
+     * @param until            the epoch time in milliseconds the history ends at
+     * @throws IllegalArgumentException if the book or member count is not
+     *                                  positive, or the loan or reservation
+     *                                  count is negative
+     */
+    public DataGenerator(long seed, int bookCount, int memberCount, long loanCount, int reservationCount,
+            long until) {
+        if (bookCount <= 0 || memberCount <= 0 || loanCount < 0 || reservationCount < 0) {
+            throw new IllegalArgumentException(
+                    "Book and member counts must be positive, loan and reservation counts not negative");
+        }
+        this.random = new SplittableRandom(seed);
+        this.bookCount = bookCount;
+        this.memberCount = memberCount;
+        this.loanCount = loanCount;
+        this.reservationCount = reservationCount;
+        this.until = until;
+    }
+
+    /**
+     * Generates the dataset and writes it out.
+     * <p>
+     * The import directory receives {@code books.txt}, {@code members.txt},
+     * {@code bookIssues.txt} and {@code reservations.txt} in the key=value format
+     * read by the import menu. When a database directory is given, the same data
+     * is also written there through {@link utils#saveData(String, List)}, after
+     * the stores of an earlier dataset there are deleted, so none of them is
+     * loaded or restored with the new one.
+     *
+     * @param importDir the directory for the import files
+     * @param dbDir     the directory for the database files, or null to skip them
+     * @throws Exception if any file cannot be written
+     */
+    public void generate(String importDir, String dbDir) throws Exception {
+        new File(importDir).mkdirs();
+        this.books = generateBooks();
+        this.members = generateMembers();
+
+        List<BookIssue> bookIssues = dbDir != null ? new ArrayList<>() : null;
+        try (Writer writer = new BufferedWriter(new FileWriter(new File(importDir, "bookIssues.txt")), 1 << 20)) {
+            generateLoans(writer, bookIssues);
+        }
+        List<Reservation> reservations = generateReservations();
+        applyCounters();
+
+        writeLines(new File(importDir, "books.txt"), this.books);
+        writeLines(new File(importDir, "members.txt"), this.members);
+        writeLines(new File(importDir, "reservations.txt"), reservations);
+
+        if (dbDir != null) {
+            new File(dbDir).mkdirs();
+            clearStores(new File(dbDir));
+            utils.saveData(dbDir + "/books.ser", this.books);
+            utils.saveData(dbDir + "/members.ser", this.members);
+            utils.saveData(dbDir + "/bookIssues.ser", bookIssues);
+            utils.saveData(dbDir + "/reservations.ser", reservations);
+        }
+    }
+
+    /**
+     * Generates the catalog. Roughly 70% of the titles are physical books, 20%
+     * e-books and 10% audio books. Popular physical titles get more copies.
+     *
+     * @return the generated books in ISBN order
+     */
+    private List<Book> generateBooks() {
+        int authorCount = Math.max(1, this.bookCount / 5);
+        String[] authors = new String[authorCount];
+        for (int i = 0; i < authorCount; i++) {
+            authors[i] = pick(FIRST_NAMES) + " " + pick(LAST_NAMES);
+        }
+
+        BookCategory[] categories = BookCategory.values();
+        List<Book> result = new ArrayList<>(this.bookCount);
+        for (int i = 0; i < this.bookCount; i++) {
+            String title = "The " + pick(TITLE_WORDS) + " " + pick(TITLE_WORDS) + " " + (i + 1);
+            String author = authors[this.random.nextInt(authorCount)];
+            String publisher = pick(PUBLISHERS);
+            int publicationYear = 1950 + this.random.nextInt(76);
+            BookCategory category = categories[this.random.nextInt(categories.length)];
+
+            int type = this.random.nextInt(10);
+            Book book;
+            if (type < 7) {
+                int copies = 1 + (int) Math.round(20 / Math.sqrt(i + 1)) + this.random.nextInt(3);
+                book = new PhysicalBook(title, author, publisher, publicationYear, category,
+                        80 + this.random.nextInt(900), copies);
+            } else if (type < 9) {
+                book = new EBook(title, author, publisher, publicationYear, category, pick(FILE_FORMATS),
+                        this.random.nextBoolean());
+            } else {
+                book = new AudioBook(title, author, publisher, publicationYear, category,
+                        pick(FIRST_NAMES) + " " + pick(LAST_NAMES), pick(AUDIO_FORMATS), 1 + this.random.nextInt(30));
+            }
+            book.setISBN(FIRST_ISBN + i);
+            result.add(book);
+        }
+        return result;
+    }
+
+    /**
+     * Generates the member population: 60% students, 15% faculty and 25% regular
+     * members, all of whom joined before the loan history starts.
+     *
+     * @return the generated members in member ID order
+     */
+    private List<Member> generateMembers() {
+        long historyStart = this.until - HISTORY_DAYS * MILLIS_PER_DAY;
+        List<Member> result = new ArrayList<>(this.memberCount);
+        for (int i = 0; i < this.memberCount; i++) {
+            int memberId = FIRST_MEMBER_ID + i;
+            String firstName = pick(FIRST_NAMES);
+            String lastName = pick(LAST_NAMES);
+            String name = firstName + " " + lastName;
+            String email = (firstName + "." + lastName + "." + memberId + "@yopmail.com").toLowerCase();
+            long phone = 9000000000L + this.random.nextInt(1000000000);
+            long membershipDate = historyStart - this.random.nextLong(3 * 365 * MILLIS_PER_DAY);
+            String department = pick(DEPARTMENTS);
+
+            int type = this.random.nextInt(100);
+            Member member;
+            if (type < 60) {
+                member = new StudentMember(name, email, phone, "S" + memberId,
+                        String.valueOf(2020 + this.random.nextInt(6)), department, MemberStatus.ACTIVE,
+                        membershipDate, 0, 0.0, 0);
+            } else if (type < 75) {
+                member = new FacultyMember(name, email, phone, "F" + memberId, department, pick(DESIGNATIONS),
+                        MemberStatus.ACTIVE, membershipDate, 0, 0.0, 0);
+            } else {
+                member = new RegularMember(name, email, phone, MemberStatus.ACTIVE, membershipDate, 0, 0.0, 0);
+            }
+            member.setMemberId(memberId);
+            member.setRenewalCount(this.random.nextInt(MemberPolicy.getRenewalLimit(member.getMemberType()) + 1));
+            result.add(member);
+        }
+        return result;
+    }
+
+    /**
+     * Generates the loan history in issue date order and streams it to the given
+     * writer.
+     *
+     * @param writer     the writer receiving one key=value line per loan
+     * @param bookIssues the list collecting loan objects, or null to only stream
+     * @throws IOException if the writer fails
+     */
+    private void generateLoans(Writer writer, List<BookIssue> bookIssues) throws IOException {
+        this.openLoansByBook = new int[this.bookCount];
+        this.reservedByBook = new int[this.bookCount];
+        this.openLoansByMember = new int[this.memberCount];
+        this.unpaidFinesByMember = new double[this.memberCount];
+
+        int[] bookByRank = shuffledIndexes(this.bookCount);
+        int[] memberByRank = shuffledIndexes(this.memberCount);
+        ZipfSampler bookSampler = new ZipfSampler(this.bookCount, 1.07);
+        ZipfSampler memberSampler = new ZipfSampler(this.memberCount, 0.8);
+
+        long historyStart = this.until - HISTORY_DAYS * MILLIS_PER_DAY;
+        double slot = (double) (HISTORY_DAYS * MILLIS_PER_DAY) / Math.max(1, this.loanCount);
+        int dueDays = MemberPolicy.defaultDueDate();
+        StringBuilder line = new StringBuilder(160);
+
+        for (long i = 0; i < this.loanCount; i++) {
+            int bookIndex = bookByRank[bookSampler.sample(this.random)];
+            int memberIndex = memberByRank[memberSampler.sample(this.random)];
+            Book book = this.books.get(bookIndex);
+            Member member = this.members.get(memberIndex);
+            String memberType = member.getMemberType();
+
+            long issueDate = historyStart + (long) ((i + this.random.nextDouble()) * slot);
+            int renewals = this.random.nextInt(100) < 15
+                    ? 1 + this.random.nextInt(Math.max(1, MemberPolicy.getRenewalLimit(memberType)))
+                    : 0;
+            long dueDate = issueDate + (long) dueDays * (1 + renewals) * MILLIS_PER_DAY;
+            int loanDays = (int) ((dueDate - issueDate) / MILLIS_PER_DAY);
+            int graceDays = MemberPolicy.getGracePeriod(memberType);
+
+            int bucket = this.random.nextInt(100);
+            long delayDays;
+            if (bucket < 65) {
+                delayDays = 1 + this.random.nextInt(loanDays);
+            } else if (bucket < 90) {
+                delayDays = loanDays + this.random.nextInt(graceDays + 1);
+            } else {
+                delayDays = loanDays + graceDays + 1 + (long) (-7 * Math.log(1 - this.random.nextDouble()));
+            }
+            long returnDate = issueDate + delayDays * MILLIS_PER_DAY + this.random.nextLong(MILLIS_PER_DAY);
+
+            if (returnDate >= this.until) {
+                boolean memberHasRoom = this.openLoansByMember[memberIndex] < MemberPolicy
+                        .getBorrowingLimit(memberType);
+                boolean bookHasCopy = !(book instanceof PhysicalBook)
+                        || this.openLoansByBook[bookIndex] < ((PhysicalBook) book).getTotalCopies();
+                if (memberHasRoom && bookHasCopy) {
+                    returnDate = 0;
+                    this.openLoansByBook[bookIndex]++;
+                    this.openLoansByMember[memberIndex]++;
+                } else {
+                    returnDate = Math.max(issueDate, this.until - 1 - this.random.nextLong(MILLIS_PER_DAY));
+                }
+            }
+
+            double fineAmount = 0.0;
+            if (returnDate != 0) {
+                long daysLate = (returnDate - dueDate) / MILLIS_PER_DAY - graceDays;
+                if (daysLate > 0) {
+                    fineAmount = Math.min(daysLate * MemberPolicy.getDailyFine(memberType),
+                            MemberPolicy.getMaxFine(memberType));
+                    double unpaid = this.unpaidFinesByMember[memberIndex] + fineAmount;
+                    if (this.random.nextInt(100) < 30 && unpaid < member.getMaxAllowedFine()) {
+                        this.unpaidFinesByMember[memberIndex] = unpaid;
+                    }
+                }
+            }
+
+            long issueId = FIRST_ISSUE_ID + i;
+            line.setLength(0);
+            line.append("issueId=").append(issueId)
+                    .append(", memberId=").append(member.getMemberId())
+                    .append(", bookId=").append(book.getISBN())
+                    .append(", issueDate=").append(issueDate)
+                    .append(", dueDate=").append(dueDate)
+                    .append(", returnDate=").append(returnDate)
+                    .append(", fineAmount=").append(fineAmount)
+                    .append('\n');
+            writer.append(line);
+
+            if (bookIssues != null) {
+                BookIssue bookIssue = new BookIssue(member, book, fineAmount, issueDate, dueDate, returnDate);
+                bookIssue.setIssueId(issueId);
+                bookIssues.add(bookIssue);
+            }
+            if ((i + 1) % 1000000 == 0) {
+                System.out.println("Generated " + (i + 1) + " loans");
+            }
+        }
+    }
+
+    /**
+     * Generates the reservation queue for physical books that still have copies on
+     * the shelf, skewed towards popular titles and ordered oldest first.
+     *
+     * @return the generated reservations in FIFO order
+     */
+    private List<Reservation> generateReservations() {
+        int[] bookByRank = shuffledIndexes(this.bookCount);
+        ZipfSampler bookSampler = new ZipfSampler(this.bookCount, 1.07);
+        Set<Long> reserved = new HashSet<>();
+        List<Reservation> result = new ArrayList<>(this.reservationCount);
+
+        long attempts = 20L * this.reservationCount;
+        for (long attempt = 0; attempt < attempts && result.size() < this.reservationCount; attempt++) {
+            int bookIndex = bookByRank[bookSampler.sample(this.random)];
+            int memberIndex = this.random.nextInt(this.memberCount);
+            Book book = this.books.get(bookIndex);
+            if (!(book instanceof PhysicalBook)) {
+                continue;
+            }
+            int onShelf = ((PhysicalBook) book).getTotalCopies() - this.openLoansByBook[bookIndex]
+                    - this.reservedByBook[bookIndex];
+            if (onShelf <= 0 || !reserved.add((long) bookIndex * this.memberCount + memberIndex)) {
+                continue;
+            }
+            this.reservedByBook[bookIndex]++;
+            long reservationDate = this.until - this.random.nextLong(7 * MILLIS_PER_DAY);
+            result.add(new Reservation(this.members.get(memberIndex).getMemberId(), book.getISBN(),
+                    reservationDate));
+        }
+        result.sort((a, b) -> Long.compare(a.getReservationDate(), b.getReservationDate()));
+        return result;
+    }
+
+    /**
+     * Copies the open loan, reservation and unpaid fine counters onto the book
+     * and member objects so they agree with the generated history.
+     */
+    private void applyCounters() {
+        for (int i = 0; i < this.bookCount; i++) {
+            Book book = this.books.get(i);
+            if (book instanceof PhysicalBook) {
+                PhysicalBook physicalBook = (PhysicalBook) book;
+                physicalBook.setReservedCopies(this.reservedByBook[i]);
+                physicalBook.setAvailableCopies(
+                        physicalBook.getTotalCopies() - this.openLoansByBook[i] - this.reservedByBook[i]);
+            }
+        }
+        for (int i = 0; i < this.memberCount; i++) {
+            Member member = this.members.get(i);
+            member.setCurrentBorrowedBooks(this.openLoansByMember[i]);
+            member.setTotalFineAmount(this.unpaidFinesByMember[i]);
+        }
+    }
+
+    /**
+     * Deletes the stores an earlier dataset left in a database directory: the
+     * {@code .ser} files with their change logs and previous generations, the
+     * loan archive, the fine ledger and the loan history.
+     *
+     * @param dir the database directory
+     * @throws IOException if a file cannot be deleted
+     */
+    private static void clearStores(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.equals("loanHistory") && file.isDirectory()) {
+                File[] runs = file.listFiles();
+                if (runs != null) {
+                    for (File run : runs) {
+                        Files.delete(run.toPath());
+                    }
+                }
+                Files.delete(file.toPath());
+            } else if (name.endsWith(".ser") || name.endsWith(DeltaStore.LOG_SUFFIX) || name.endsWith(utils.PREVIOUS_SUFFIX)
+                    || name.startsWith("loanArchive.") || name.equals("fineLedger.dat")) {
+                Files.delete(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * Writes one {@code toString()} line per element to the given file.
+     *
+     * @param file     the file to write
+     * @param elements the elements to write
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeLines(File file, List<?> elements) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file), 1 << 20)) {
+            for (Object element : elements) {
+                writer.write(element.toString());
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Returns a random permutation of {@code 0..size-1}, used to decouple
+     * popularity rank from ID order.
+     */
+    private int[] shuffledIndexes(int size) {
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = this.random.nextInt(i + 1);
+            int tmp = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = tmp;
+        }
+        return indexes;
+    }
+
+    private String pick(String[] values) {
+        return values[this.random.nextInt(values.length)];
+    }
+
+    /**
+     * Samples ranks {@code 0..n-1} with probability proportional to
+     * {@code 1 / (rank + 1)^skew} by binary search over the cumulative
+     * distribution.
+     */
+    private static class ZipfSampler {
+        private final double[] cumulative;
+
+        ZipfSampler(int n, double skew) {
+            this.cumulative = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, skew);
+                this.cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                this.cumulative[i] /= sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int index = Arrays.binarySearch(this.cumulative, random.nextDouble());
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return Math.min(index, this.cumulative.length - 1);
+        }
+    }
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Options (all optional): {@code --seed}, {@code --books}, {@code --members},
+     * {@code --loans}, {@code --reservations}, {@code --until} (epoch millis,
+     * defaults to today's midnight UTC), {@code --import-dir} (defaults to
+     * {@code ./import}) and {@code --db-dir} (no database files when omitted).
+     *
+     * @param args the command line options in {@code --name=value} form
+     * @throws Exception if an option is invalid or a file cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        long seed = 42;
+        int bookCount = 10000;
+        int memberCount = 5000;
+        long loanCount = 1000000;
+        int reservationCount = 2000;
+        long until = utils.getEpochTime() / MILLIS_PER_DAY * MILLIS_PER_DAY;
+        String importDir = "./import";
+        String dbDir = null;
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            switch (option[0]) {
+                case "--seed":
+                    seed = Long.parseLong(option[1]);
+                    break;
+                case "--books":
+                    bookCount = Integer.parseInt(option[1]);
+                    break;
+                case "--members":
+                    memberCount = Integer.parseInt(option[1]);
+                    break;
+                case "--loans":
+                    loanCount = Long.parseLong(option[1]);
+                    break;
+                case "--reservations":
+                    reservationCount = Integer.parseInt(option[1]);
+                    break;
+                case "--until":
+                    until = Long.parseLong(option[1]);
+                    break;
+                case "--import-dir":
+                    importDir = option[1];
+                    break;
+                case "--db-dir":
+                    dbDir = option[1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+
+        long start = System.nanoTime();
+        new DataGenerator(seed, bookCount, memberCount, loanCount, reservationCount, until).generate(importDir,
+                dbDir);
+        System.out.println("Dataset generated in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,253 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import common.ChunkedImporter;
+import common.MemberStatus;
+import model.FacultyMember;
+import model.Member;
+import model.RegularMember;
+import model.StudentMember;
+import service.ImportExportService;
+
+/**
+ * Throughput benchmark for the member import parser.
+ *
+ * <p>
+ * The benchmark parses the same members file with the earlier import path (two
+ * regular-expression splits and a {@code HashMap} per line) and with the
+ * chunked {@link common.RecordParser} pipeline used by
+ * {@link ImportExportService}, once on a single worker and once on all
+ * workers, building the same {@link Member} objects every way. Each path is
+ * warmed up and then timed over several rounds; rows per second and the
+ * garbage collections during the timed rounds are reported.
+ * </p>
+ *
+ * <p>
+ * Without {@code --file} a synthetic file in the import format is generated in
+ * the temporary directory:
+ *
+ * <pre>
+ * java main.ImportBenchmark --rows=1000000 --rounds=5 --threads=8
+ * java main.ImportBenchmark --file=import/members.txt
+ * </pre>
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see ImportExportService#readMembers(ChunkedImporter, File, boolean)
+ */
+public class ImportBenchmark {
+    private static final String[] DEPARTMENTS = { "Physics", "Mathematics", "Computer Science", "History",
+            "Economics" };
+
+    /**
+     * One parser implementation under test.
+     */
+    private interface ImportPath {
+        List<Member> read(File file) throws Exception;
+    }
+
+    /**
+     * Reads a members file the way the import did before the streaming parser.
+     *
+     * @param file the members file
+     * @return the members in file order
+     * @throws Exception if the file cannot be read or a record is invalid
+     */
+    private static List<Member> readLegacy(File file) throws Exception {
+        List<Member> members = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map<String, String> member = new HashMap<>();
+                for (String pair : line.split(",\\s*")) {
+                    String[] entry = pair.split("=", 2);
+                    if (entry.length == 2) {
+                        member.put(entry[0].trim(), entry[1].trim());
+                    }
+                }
+                Member m = null;
+                if (member.get("memberType").equals("Student")) {
+                    m = new StudentMember(member.get("name"), member.get("email"),
+                            Long.parseLong(member.get("phone")), member.get("studentId"),
+                            member.get("academicYear"), member.get("department"),
+                            MemberStatus.getStatusByName(member.get("membershipStatus")),
+                            Long.parseLong(member.get("membershipDate")),
+                            Integer.parseInt(member.get("currentBorrowedBooks")),
+                            Double.parseDouble(member.get("totalFineAmount")),
+                            Integer.parseInt(member.get("renewalCount")));
+                } else if (member.get("memberType").equals("Faculty")) {
+                    m = new FacultyMember(member.get("name"), member.get("email"),
+                            Long.parseLong(member.get("phone")), member.get("facultyId"), member.get("department"),
+                            member.get("designation"), MemberStatus.getStatusByName(member.get("membershipStatus")),
+                            Long.parseLong(member.get("membershipDate")),
+                            Integer.parseInt(member.get("currentBorrowedBooks")),
+                            Double.parseDouble(member.get("totalFineAmount")),
+                            Integer.parseInt(member.get("renewalCount")));
+                } else if (member.get("memberType").equals("Regular")) {
+                    m = new RegularMember(member.get("name"), member.get("email"),
+                            Long.parseLong(member.get("phone")),
+                            MemberStatus.getStatusByName(member.get("membershipStatus")),
+                            Long.parseLong(member.get("membershipDate")),
+                            Integer.parseInt(member.get("currentBorrowedBooks")),
+                            Double.parseDouble(member.get("totalFineAmount")),
+                            Integer.parseInt(member.get("renewalCount")));
+                }
+                members.add(m);
+            }
+        }
+        return members;
+    }
+
+    private static ImportPath streaming(ChunkedImporter importer) {
+        return file -> ImportExportService.readMembers(importer, file, false).getRecords();
+    }
+
+    /**
+     * Writes a synthetic members file with an even mix of member types.
+     */
+    private static void writeMembers(File file, int rows) throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < rows; i++) {
+                long memberId = 1000000000L + i;
+                writer.write("memberId=" + memberId + ", name=Member " + i + ", email=member" + i
+                        + "@yopmail.com, phone=" + (9000000000L + random.nextInt(1000000000))
+                        + ", membershipDate=" + (1704067200000L + random.nextInt(1000000) * 1000L)
+                        + ", currentBorrowedBooks=" + random.nextInt(5) + ", renewalCount=" + random.nextInt(3)
+                        + ", totalFineAmount=" + (random.nextInt(400) / 4.0) + ", membershipStatus=ACTIVE");
+                String department = DEPARTMENTS[random.nextInt(DEPARTMENTS.length)];
+                switch (i % 3) {
+                    case 0:
+                        writer.write(", memberType=Student, studentId=" + (2023000 + i) + ", academicYear=2023"
+                                + ", department=" + department);
+                        break;
+                    case 1:
+                        writer.write(", memberType=Faculty, facultyId=FAC" + i + ", department=" + department
+                                + ", designation=Professor");
+                        break;
+                    default:
+                        writer.write(", memberType=Regular");
+                        break;
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Warms up and times one import path, printing one result row.
+     */
+    private static void measure(String name, ImportPath path, File file, int rounds) throws Exception {
+        int rows = 0;
+        for (int i = 0; i < 2; i++) {
+            rows = path.read(file).size();
+        }
+        System.gc();
+        long collections = gcCount();
+        long collectionMillis = gcMillis();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            path.read(file);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-10s %12d %12.0f %12d %12d%n", name, rows, rows * (double) rounds / seconds,
+                gcCount() - collections, gcMillis() - collectionMillis);
+    }
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Options (all optional): {@code --file} (members file to parse),
+     * {@code --rows} (size of the generated file when no file is given) and
+     * {@code --rounds} (timed rounds per path) and {@code --threads} (workers
+     * of the parallel run, by default one per processor).
+     *
+     * @param args the command line options in {@code --name=value} form
+     * @throws Exception if an option is invalid or the run fails
+     */
+    public static void main(String[] args) throws Exception {
+        String fileName = null;
+        int rows = 500000;
+        int rounds = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            switch (option[0]) {
+                case "--file":
+                    fileName = option[1];
+                    break;
+                case "--rows":
+                    rows = Integer.parseInt(option[1]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(option[1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(option[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+        if (rows <= 0 || rounds <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Rows, rounds and threads must be positive");
+        }
+
+        File file;
+        if (fileName != null) {
+            file = new File(fileName);
+        } else {
+            file = File.createTempFile("members", ".txt");
+            file.deleteOnExit();
+            writeMembers(file, rows);
+        }
+
+        System.out.printf("%-10s %12s %12s %12s %12s%n", "PATH", "ROWS", "ROWS/SEC", "GC COUNT", "GC MILLIS");
+        measure("legacy", ImportBenchmark::readLegacy, file, rounds);
+        ForkJoinPool single = new ForkJoinPool(1);
+        measure("chunked-1", streaming(new ChunkedImporter(single)), file, rounds);
+        single.shutdown();
+        if (threads > 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            measure("chunked-" + threads, streaming(new ChunkedImporter(pool)), file, rounds);
+            pool.shutdown();
+        }
+    }
+}
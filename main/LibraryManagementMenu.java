@@ -1,12 +1,18 @@
 package main;
 
+import java.io.File;
 import java.util.Scanner;
+import java.util.Set;
 
+import common.StoreVerifier;
+import common.utils;
+import service.BackupService;
 import service.BookIssueService;
 import service.BookService;
 import service.ImportExportService;
 import service.MemberService;
 import service.ReservationService;
+import service.TrendingService;
 
 /**
  * The main menu and user interface for the Library Management System.
@@ -32,6 +38,16 @@ import service.ReservationService;
  * @see LibraryManagementSystem
  */
 public class LibraryManagementMenu {
+    /**
+     * Options that use the loan history, or change books and members the
+     * history loader reads, and so wait until the history has loaded. Book
+     * and member lookups, issues, returns, renewals, reservations, overdue
+     * books, system configuration, exit and invalid choices are served at
+     * once.
+     */
+    private static final Set<String> WAIT_FOR_HISTORY = Set.of("1", "2", "6", "7", "9", "10", "16", "17", "18",
+            "19", "20", "21", "22", "23", "24", "25");
+
     /** Scanner object for reading user input from the console */
     Scanner scn = new Scanner(System.in);
 
@@ -41,15 +57,22 @@ public class LibraryManagementMenu {
     /** Service for handling member-related operations */
     MemberService memberService = new MemberService();
 
+    /** Service for tracking trending books, authors and categories */
+    TrendingService trendingService = new TrendingService(bookService);
+
     /** Service for managing book reservations */
-    ReservationService reservationService = new ReservationService(memberService, bookService);
+    ReservationService reservationService = new ReservationService(memberService, bookService, trendingService);
 
     /** Service for handling book issuing and returns */
-    BookIssueService bookIssueService = new BookIssueService(memberService, bookService, reservationService);
+    BookIssueService bookIssueService = new BookIssueService(memberService, bookService, reservationService,
+            trendingService);
+
+    /** Service for backing up and restoring the database files */
+    BackupService backupService = new BackupService();
 
     /** Service for importing and exporting system data */
     ImportExportService importExportService = new ImportExportService(this.memberService, this.bookService,
-            this.bookIssueService);
+            this.bookIssueService, this.reservationService);
 
     /**
      * Initializes the Library Management System and displays the main menu.
@@ -59,26 +82,40 @@ public class LibraryManagementMenu {
      * <p>
      * The setup process includes:
      * <ol>
+     * <li>Journaling database writes for point-in-time restores</li>
+     * <li>Checking the store files and repairing torn ones from their previous
+     * generation</li>
      * <li>Loading book data from storage</li>
      * <li>Loading member data from storage</li>
-     * <li>Loading book issue records</li>
      * <li>Loading reservation data</li>
+     * <li>Loading the live book issue records, with the loan history read in
+     * the background</li>
      * <li>Displaying the main menu interface</li>
      * </ol>
      * </p>
+     *
+     * <p>
+     * Book and member lookups, the borrowing operations, exit and invalid
+     * choices are served while the loan history loads; any other option waits
+     * until it is ready. What the
+     * loader reports is printed when the menu is next shown.
+     * </p>
      * 
      * @throws Exception if there is an error loading initial data or processing
      *                   user input
      */
     protected void setup() throws Exception {
+        utils.setJournal(this.backupService.getJournal());
+        StoreVerifier.verify(new File(utils.DB_DIR));
         this.bookService.loadBooks();
         this.memberService.loadMembers();
-        this.bookIssueService.loadBookIssued();
         this.reservationService.loadReservationData();
+        this.bookIssueService.loadBookIssuedInBackground();
 
         System.out.println("========= WELCOME TO LIBRARY MANAGEMENT SYSTEM =====================");
         System.out.println("========== KINDLY SELECT THE OPTION ======================\n");
         while (true) {
+            this.bookIssueService.reportHistoryReady();
             // Book related options
             System.out.println("=== Book Operations ===\n");
             System.out.println("1.Add New Book");
@@ -128,6 +165,9 @@ public class LibraryManagementMenu {
 
             String choice = scn.nextLine();
             System.out.println("You have selected: " + choice);
+            if (WAIT_FOR_HISTORY.contains(choice)) {
+                this.bookIssueService.awaitHistory();
+            }
 
             switch (choice) {
                 case "1":
@@ -173,12 +213,15 @@ public class LibraryManagementMenu {
                     break;
                 case "9":
                     System.out.println("====================== START - VIEW MEMBER HISTORY ======================\n");
-                    memberService.viewMemberHistory();
+                    long historyMemberId = memberService.viewMemberHistory();
+                    if (historyMemberId > 0) {
+                        bookIssueService.showLoanHistory(historyMemberId);
+                    }
                     System.out.println("====================== END - VIEW MEMBER HISTORY ======================\n");
                     break;
                 case "10":
                     System.out.println("====================== START - FINE MANAGEMENT ======================\n");
-                    // memberService.fineManagement();
+                    bookIssueService.fineManagement();
                     System.out.println("====================== END - FINE MANAGEMENT ======================\n");
                     break;
                 case "11":
@@ -223,7 +266,7 @@ public class LibraryManagementMenu {
                     break;
                 case "19":
                     System.out.println("====================== START - MEMBER ANALYTICS ======================\n");
-                    // bookIssueService.getMemberAnalytics();
+                    bookIssueService.getMemberAnalytics();
                     System.out.println("====================== END - MEMBER ANALYTICS ======================\n");
                     break;
                 case "20":
@@ -241,20 +284,31 @@ public class LibraryManagementMenu {
                     System.out.println(
                             "====================== START - BOOK POPULARITY ANALYSIS ======================\n");
                     bookIssueService.getPopularBooks();
+                    trendingService.showTrending();
                     System.out
                             .println("====================== END - BOOK POPULARITY ANALYSIS ======================\n");
                     break;
                 case "23":
                     System.out.println(
                             "====================== START - MEMBER ENGAGEMENT REPORTS ======================\n");
-                    // bookIssueService.memberEngagementReports();
+                    bookIssueService.memberEngagementReports();
                     System.out
                             .println("====================== END - MEMBER ENGAGEMENT REPORTS ======================\n");
                     break;
+                case "24":
+                    System.out.println("====================== START - DATA BACKUP ======================\n");
+                    backupService.dataBackup();
+                    System.out.println("====================== END - DATA BACKUP ======================\n");
+                    break;
                 case "25":
-                    System.out.println("====================== START - IMPORT ======================\n");
-                    importExportService.importData();
-                    System.out.println("====================== END - IMPORT ======================\n");
+                    System.out.println("====================== START - IMPORT/EXPORT ======================\n");
+                    importExportService.importExportData();
+                    System.out.println("====================== END - IMPORT/EXPORT ======================\n");
+                    break;
+                case "26":
+                    System.out.println("====================== START - SYSTEM CONFIGURATION ======================\n");
+                    bookService.showSearchCacheStats();
+                    System.out.println("====================== END - SYSTEM CONFIGURATION ======================\n");
                     break;
                 case "27":
                     System.out.println("Thank you for using the Library Management System. Goodbye!");
@@ -0,0 +1,494 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import common.DeltaStore;
+import common.LatencyHistogram;
+import common.utils;
+import model.Book;
+import model.BookIssue;
+import model.Member;
+import service.BackupService;
+import service.BookIssueService;
+import service.BookService;
+import service.MemberService;
+import service.ReservationService;
+import service.TrendingService;
+
+/**
+ * Closed-loop load generator for the library services.
+ *
+ * <p>
+ * The harness simulates circulation desks and self-service kiosks calling the
+ * headless service API at a fixed target rate. Each simulated station runs one
+ * operation at a time on a fixed schedule. When an operation runs late, the
+ * following operations are not skipped; their latency is measured from the
+ * time they were scheduled to start, which corrects for coordinated omission.
+ * Plain service times are recorded alongside for comparison, as is the
+ * average number of records and bytes each operation saved to the database.
+ * </p>
+ *
+ * <p>
+ * Operation mix:
+ * <ul>
+ * <li>Desks: 35% checkout, 30% return, 10% renew, 5% reserve, 20% search</li>
+ * <li>Kiosks: 15% renew, 15% reserve, 70% search</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * The services are single-writer, so calls are serialized through one lock the
+ * same way the console serializes them; queueing behind that lock shows up in
+ * the corrected percentiles. The harness mutates the dataset it runs against,
+ * so point it at a generated copy:
+ *
+ * <pre>
+ * java main.DataGenerator --db-dir=/tmp/lms-db
+ * java -Dlibrary.db.dir=/tmp/lms-db -Dlibrary.backup.dir=/tmp/lms-backup main.LoadTest --desks=8 --kiosks=16 --rate=200 --duration=60
+ * </pre>
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see DataGenerator
+ * @see LatencyHistogram
+ */
+public class LoadTest {
+    private static final String[] OPERATIONS = { "checkout", "return", "renew", "reserve", "search" };
+
+    private static final int CHECKOUT = 0;
+    private static final int RETURN = 1;
+    private static final int RENEW = 2;
+    private static final int RESERVE = 3;
+    private static final int SEARCH = 4;
+
+    private static final int[] DESK_MIX = { 35, 30, 10, 5, 20 };
+
+    private static final int[] KIOSK_MIX = { 0, 0, 15, 15, 70 };
+
+    private final BookService bookService = new BookService();
+    private final MemberService memberService = new MemberService();
+    private final TrendingService trendingService = new TrendingService(bookService);
+    private final ReservationService reservationService = new ReservationService(memberService, bookService,
+            trendingService);
+    private final BookIssueService bookIssueService = new BookIssueService(memberService, bookService,
+            reservationService, trendingService);
+
+    /** Lock serializing every service call, mirroring the single console */
+    private final Object serviceLock = new Object();
+
+    /** Loans known to be open, shared by all stations for returns and renewals */
+    private final ConcurrentLinkedQueue<long[]> openLoans = new ConcurrentLinkedQueue<>();
+
+    private long[] bookIds;
+    private long[] memberIds;
+    private String[] titleTerms;
+    private String[] authorTerms;
+
+    /**
+     * Loads the dataset from {@link utils#DB_DIR} and prepares the ID pools the
+     * stations draw from. Saves are journaled as in the console, so the
+     * results include the journal's cost.
+     *
+     * @throws Exception if the dataset cannot be loaded
+     */
+    private void loadDataset() throws Exception {
+        utils.setJournal(new BackupService().getJournal());
+        this.bookService.loadBooks();
+        this.memberService.loadMembers();
+        this.bookIssueService.loadBookIssued();
+        this.reservationService.loadReservationData();
+
+        List<Book> books = this.bookService.getBookList();
+        List<Member> members = this.memberService.getMemberList();
+        if (books.isEmpty() || members.isEmpty()) {
+            throw new Exception("No dataset found in " + utils.DB_DIR + ", run main.DataGenerator first");
+        }
+
+        this.bookIds = new long[books.size()];
+        this.titleTerms = new String[books.size()];
+        this.authorTerms = new String[books.size()];
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            this.bookIds[i] = book.getISBN();
+            String[] titleWords = book.getTitle().split("\\s+");
+            this.titleTerms[i] = titleWords[titleWords.length > 1 ? 1 : 0];
+            String[] authorWords = book.getAuthor().split("\\s+");
+            this.authorTerms[i] = authorWords[authorWords.length - 1];
+        }
+        this.memberIds = new long[members.size()];
+        for (int i = 0; i < members.size(); i++) {
+            this.memberIds[i] = members.get(i).getMemberId();
+        }
+        for (BookIssue issue : this.bookIssueService.getOpenLoans()) {
+            if (issue.getMember() != null && issue.getBook() != null) {
+                this.openLoans.add(new long[] { issue.getMember().getMemberId(), issue.getBook().getISBN() });
+            }
+        }
+    }
+
+    /**
+     * Runs one operation against the services.
+     *
+     * @param operation the operation index
+     * @param random    the station's random source
+     * @return true if the service accepted the request, false if it was rejected
+     */
+    private boolean execute(int operation, SplittableRandom random) {
+        long memberId = this.memberIds[random.nextInt(this.memberIds.length)];
+        long bookId = this.bookIds[random.nextInt(this.bookIds.length)];
+        long[] loan = null;
+        try {
+            switch (operation) {
+                case CHECKOUT:
+                    synchronized (this.serviceLock) {
+                        this.bookIssueService.issueBook(memberId, bookId);
+                    }
+                    this.openLoans.add(new long[] { memberId, bookId });
+                    return true;
+                case RETURN:
+                    loan = this.openLoans.poll();
+                    if (loan == null) {
+                        return false;
+                    }
+                    synchronized (this.serviceLock) {
+                        this.bookIssueService.returnBook(loan[0], loan[1]);
+                    }
+                    loan = null;
+                    return true;
+                case RENEW:
+                    loan = this.openLoans.poll();
+                    if (loan == null) {
+                        return false;
+                    }
+                    synchronized (this.serviceLock) {
+                        this.bookIssueService.renewBook(loan[0], loan[1]);
+                    }
+                    return true;
+                case RESERVE:
+                    synchronized (this.serviceLock) {
+                        this.reservationService.reserveBook(memberId, bookId);
+                    }
+                    return true;
+                default:
+                    int term = random.nextInt(this.titleTerms.length);
+                    synchronized (this.serviceLock) {
+                        if (random.nextBoolean()) {
+                            this.bookService.findBooksByTitle(this.titleTerms[term]);
+                        } else {
+                            this.bookService.findBooksByAuthor(this.authorTerms[term]);
+                        }
+                    }
+                    return true;
+            }
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (loan != null) {
+                this.openLoans.add(loan);
+            }
+        }
+    }
+
+    /**
+     * One simulated desk or kiosk issuing operations on a fixed schedule.
+     */
+    private class Station implements Runnable {
+        private final int[] mix;
+        private final SplittableRandom random;
+        private final long firstStart;
+        private final long interval;
+        private final long measureFrom;
+        private final long end;
+        final LatencyHistogram[] corrected = new LatencyHistogram[OPERATIONS.length];
+        final LatencyHistogram[] service = new LatencyHistogram[OPERATIONS.length];
+        final long[] errors = new long[OPERATIONS.length];
+        final long[] persistRecords = new long[OPERATIONS.length];
+        final long[] persistBytes = new long[OPERATIONS.length];
+
+        Station(int[] mix, long seed, long firstStart, long interval, long measureFrom, long end) {
+            this.mix = mix;
+            this.random = new SplittableRandom(seed);
+            this.firstStart = firstStart;
+            this.interval = interval;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                this.corrected[i] = new LatencyHistogram();
+                this.service[i] = new LatencyHistogram();
+            }
+        }
+
+        private int nextOperation() {
+            int roll = this.random.nextInt(100);
+            for (int i = 0; i < this.mix.length; i++) {
+                roll -= this.mix[i];
+                if (roll < 0) {
+                    return i;
+                }
+            }
+            return SEARCH;
+        }
+
+        @Override
+        public void run() {
+            for (long intended = this.firstStart; intended < this.end; intended += this.interval) {
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                int operation = nextOperation();
+                long records = DeltaStore.getThreadRecordsWritten();
+                long bytes = DeltaStore.getThreadBytesWritten();
+                long begin = System.nanoTime();
+                boolean accepted = execute(operation, this.random);
+                long finish = System.nanoTime();
+                if (intended >= this.measureFrom) {
+                    this.corrected[operation].record(finish - intended);
+                    this.service[operation].record(finish - begin);
+                    this.persistRecords[operation] += DeltaStore.getThreadRecordsWritten() - records;
+                    this.persistBytes[operation] += DeltaStore.getThreadBytesWritten() - bytes;
+                    if (!accepted) {
+                        this.errors[operation]++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the load test and returns the report lines.
+     *
+     * @param desks    the number of simulated circulation desks
+     * @param kiosks   the number of simulated kiosks
+     * @param rate     the total target rate in operations per second
+     * @param warmup   the warmup period in seconds, excluded from the results
+     * @param duration the measured period in seconds
+     * @param seed     the random seed
+     * @return one key=value report line per operation type
+     * @throws Exception if the dataset cannot be loaded or a station fails
+     */
+    private List<String> run(int desks, int kiosks, double rate, int warmup, int duration, long seed)
+            throws Exception {
+        loadDataset();
+        int stations = desks + kiosks;
+        long interval = (long) (stations * 1e9 / rate);
+        long start = System.nanoTime() + 100000000L;
+        long measureFrom = start + warmup * 1000000000L;
+        long end = measureFrom + duration * 1000000000L;
+
+        List<Station> all = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < stations; i++) {
+            Station station = new Station(i < desks ? DESK_MIX : KIOSK_MIX, seed + i,
+                    start + i * interval / stations, interval, measureFrom, end);
+            Thread thread = new Thread(station, (i < desks ? "desk-" : "kiosk-") + i);
+            all.add(station);
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<String> report = new ArrayList<>();
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            LatencyHistogram corrected = new LatencyHistogram();
+            LatencyHistogram service = new LatencyHistogram();
+            long errors = 0;
+            long persistRecords = 0;
+            long persistBytes = 0;
+            for (Station station : all) {
+                corrected.add(station.corrected[op]);
+                service.add(station.service[op]);
+                errors += station.errors[op];
+                persistRecords += station.persistRecords[op];
+                persistBytes += station.persistBytes[op];
+            }
+            if (corrected.getTotalCount() == 0) {
+                continue;
+            }
+            report.add("op=" + OPERATIONS[op]
+                    + ", count=" + corrected.getTotalCount()
+                    + ", errors=" + errors
+                    + ", rate=" + corrected.getTotalCount() / duration
+                    + ", p50=" + micros(corrected.getValueAtPercentile(50))
+                    + ", p90=" + micros(corrected.getValueAtPercentile(90))
+                    + ", p99=" + micros(corrected.getValueAtPercentile(99))
+                    + ", p999=" + micros(corrected.getValueAtPercentile(99.9))
+                    + ", max=" + micros(corrected.getMaxValue())
+                    + ", serviceP50=" + micros(service.getValueAtPercentile(50))
+                    + ", serviceP99=" + micros(service.getValueAtPercentile(99))
+                    + ", persistRecords=" + persistRecords / corrected.getTotalCount()
+                    + ", persistBytes=" + persistBytes / corrected.getTotalCount());
+        }
+        return report;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    /**
+     * Parses report lines of the form {@code key=value, key=value} keyed by
+     * operation name.
+     */
+    private static Map<String, Map<String, String>> parseReport(List<String> lines) {
+        Map<String, Map<String, String>> result = new HashMap<>();
+        for (String line : lines) {
+            Map<String, String> fields = new HashMap<>();
+            for (String pair : line.split(",\\s*")) {
+                String[] entry = pair.split("=", 2);
+                if (entry.length == 2) {
+                    fields.put(entry[0].trim(), entry[1].trim());
+                }
+            }
+            if (fields.containsKey("op")) {
+                result.put(fields.get("op"), fields);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Prints the results as a table, optionally next to a baseline run.
+     */
+    private static void printReport(List<String> report, List<String> baseline) {
+        Map<String, Map<String, String>> current = parseReport(report);
+        Map<String, Map<String, String>> previous = parseReport(baseline);
+        String[] columns = { "count", "errors", "rate", "p50", "p90", "p99", "p999", "max", "serviceP50",
+                "serviceP99", "persistRecords", "persistBytes" };
+
+        System.out.println("Latencies in microseconds, measured from the scheduled start time;"
+                + " records and bytes saved per operation");
+        System.out.printf("%-10s", "OPERATION");
+        for (String column : columns) {
+            System.out.printf("  %14s", column.toUpperCase());
+        }
+        System.out.println();
+        for (String op : OPERATIONS) {
+            Map<String, String> fields = current.get(op);
+            if (fields == null) {
+                continue;
+            }
+            System.out.printf("%-10s", op);
+            for (String column : columns) {
+                System.out.printf("  %14s", fields.get(column));
+            }
+            System.out.println();
+            Map<String, String> before = previous.get(op);
+            if (before != null) {
+                System.out.printf("%-10s", "  vs base");
+                for (String column : columns) {
+                    double now = Double.parseDouble(fields.get(column));
+                    double then = Double.parseDouble(before.getOrDefault(column, "0"));
+                    String change = then == 0 ? "-" : String.format("%+.1f%%", (now - then) * 100 / then);
+                    System.out.printf("  %14s", change);
+                }
+                System.out.println();
+            }
+        }
+    }
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Options (all optional): {@code --desks}, {@code --kiosks}, {@code --rate}
+     * (total operations per second), {@code --warmup} and {@code --duration} (in
+     * seconds), {@code --seed}, {@code --report} (file to write the results to)
+     * and {@code --baseline} (an earlier report to compare against).
+     *
+     * @param args the command line options in {@code --name=value} form
+     * @throws Exception if an option is invalid or the run fails
+     */
+    public static void main(String[] args) throws Exception {
+        int desks = 4;
+        int kiosks = 8;
+        double rate = 100;
+        int warmup = 5;
+        int duration = 30;
+        long seed = 42;
+        String reportFile = null;
+        String baselineFile = null;
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            switch (option[0]) {
+                case "--desks":
+                    desks = Integer.parseInt(option[1]);
+                    break;
+                case "--kiosks":
+                    kiosks = Integer.parseInt(option[1]);
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(option[1]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(option[1]);
+                    break;
+                case "--duration":
+                    duration = Integer.parseInt(option[1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(option[1]);
+                    break;
+                case "--report":
+                    reportFile = option[1];
+                    break;
+                case "--baseline":
+                    baselineFile = option[1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+        if (desks + kiosks <= 0 || rate <= 0 || duration <= 0) {
+            throw new IllegalArgumentException("Stations, rate and duration must be positive");
+        }
+
+        List<String> baseline = new ArrayList<>();
+        if (baselineFile != null) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(baselineFile))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    baseline.add(line);
+                }
+            }
+        }
+
+        List<String> report = new LoadTest().run(desks, kiosks, rate, warmup, duration, seed);
+        printReport(report, baseline);
+
+        if (reportFile != null) {
+            writeReport(new File(reportFile), report);
+            System.out.println("Report written to " + reportFile);
+        }
+    }
+
+    private static void writeReport(File file, List<String> report) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            for (String line : report) {
+                writer.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package main;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import common.ArchiveStore;
+import common.DeltaStore;
+import common.IndexedRecordStore;
+import common.LsmStore;
+import common.utils;
+import model.Book;
+import model.BookIssue;
+import model.Member;
+import service.BookIssueService;
+
+/**
+ * Command line reader and benchmark of the loan history.
+ *
+ * <p>
+ * The loan history ({@code loanHistory/} in the database directory) holds
+ * every book issue in a log-structured store indexed by member ID and ISBN.
+ * The library keeps it in step with the issue store; this tool reads it while
+ * the library is not running, and measures its write and read rates on a
+ * scratch copy:
+ *
+ * <pre>
+ * java main.LoanHistoryTool --action=member --id=1000000042
+ * java main.LoanHistoryTool --action=book --isbn=9780000000000
+ * java main.LoanHistoryTool --action=stats
+ * java main.LoanHistoryTool --action=bench [--lookups=1000] [--memtable=4]
+ * </pre>
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see IndexedRecordStore
+ */
+public class LoanHistoryTool {
+    private static final int HISTORY_BY_MEMBER = 0;
+    private static final int HISTORY_BY_BOOK = 1;
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Options: {@code --action} (member, book, stats or bench; required),
+     * {@code --id} (member ID, for member), {@code --isbn} (for book),
+     * {@code --lookups} (member histories read by bench, default 1000) and
+     * {@code --memtable} (memtable budget in MB, default 4).
+     *
+     * @param args the command line options in {@code --name=value} form
+     * @throws Exception if an option is invalid or the operation fails
+     */
+    public static void main(String[] args) throws Exception {
+        String action = null;
+        long id = 0;
+        long isbn = 0;
+        int lookups = 1000;
+        long memtable = 4L * 1024 * 1024;
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            switch (option[0]) {
+                case "--action":
+                    action = option[1];
+                    break;
+                case "--id":
+                    id = Long.parseLong(option[1]);
+                    break;
+                case "--isbn":
+                    isbn = Long.parseLong(option[1]);
+                    break;
+                case "--lookups":
+                    lookups = Integer.parseInt(option[1]);
+                    break;
+                case "--memtable":
+                    memtable = Long.parseLong(option[1]) * 1024 * 1024;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+        if (action == null) {
+            throw new IllegalArgumentException("--action is required");
+        }
+
+        switch (action) {
+            case "member":
+            case "book":
+            case "stats":
+                File dir = new File(utils.DB_DIR, "loanHistory");
+                if (!dir.isDirectory()) {
+                    throw new IllegalStateException(dir.getPath() + " not found, start the library once first");
+                }
+                try (IndexedRecordStore<BookIssue> history = open(dir, memtable)) {
+                    if (action.equals("stats")) {
+                        ArchiveStore<BookIssue> archive = openArchive();
+                        System.out.println("Result -\n");
+                        printStats(history.getStore());
+                        System.out.println("Archived loans          : " + archive.getRecordCount() + " in "
+                                + archive.getSegmentCount() + " segments (" + archive.getSize() + " bytes)");
+                        if (archive.getRecordCount() > 0) {
+                            System.out.println("Archive bytes per loan  : "
+                                    + String.format("%.1f", (double) archive.getSize() / archive.getRecordCount()));
+                        }
+                        System.out.println("=====================================");
+                    } else if (action.equals("member")) {
+                        printLoans(history.find(HISTORY_BY_MEMBER, id));
+                    } else {
+                        printLoans(history.find(HISTORY_BY_BOOK, isbn));
+                    }
+                }
+                break;
+            case "bench":
+                bench(lookups, memtable);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
+        }
+    }
+
+    /**
+     * Writes every saved issue, archived or not, to a scratch loan history, one commit per
+     * issue as the library does, then reads the histories of random members.
+     */
+    private static void bench(int lookups, long memtable) throws Exception {
+        ArchiveStore<BookIssue> archive = openArchive();
+        DeltaStore<BookIssue> store = new DeltaStore<>(utils.DB_DIR + "/bookIssues.ser",
+                BookIssueService::issueKey);
+        List<BookIssue> live = store.load();
+        archive.view(store.getBaseTag(), store.getLogLength());
+        List<BookIssue> issues = archive.readAll();
+        issues.addAll(live);
+        if (issues.isEmpty()) {
+            throw new IllegalStateException("No issues found in " + utils.DB_DIR);
+        }
+        File dir = Files.createTempDirectory(new File(utils.DB_DIR).toPath(), "loanHistory.bench").toFile();
+        try {
+            try (IndexedRecordStore<BookIssue> history = open(dir, memtable)) {
+                long start = System.nanoTime();
+                for (int i = 0; i < issues.size(); i++) {
+                    history.put(issues.get(i));
+                    history.commit(1, i);
+                }
+                long writeNanos = System.nanoTime() - start;
+
+                SplittableRandom random = new SplittableRandom(42);
+                long[] latencies = new long[lookups];
+                long loans = 0;
+                for (int i = 0; i < lookups; i++) {
+                    BookIssue issue = issues.get(random.nextInt(issues.size()));
+                    long lookupStart = System.nanoTime();
+                    loans += history.find(HISTORY_BY_MEMBER, issue.getMember().getMemberId()).size();
+                    latencies[i] = System.nanoTime() - lookupStart;
+                }
+                Arrays.sort(latencies);
+
+                System.out.println("Result -\n");
+                System.out.println("Issues written          : " + issues.size() + " in " + writeNanos / 1000000
+                        + " ms");
+                System.out.println("Writes per second       : " + (long) (issues.size() * 1e9 / writeNanos));
+                System.out.println("Member histories read   : " + lookups + " (" + loans + " loans)");
+                System.out.println("Read latency p50/p99    : " + latencies[lookups / 2] / 1000 + " / "
+                        + latencies[Math.min(lookups - 1, lookups * 99 / 100)] / 1000 + " us");
+                printStats(history.getStore());
+                System.out.println("=====================================");
+            }
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            Files.deleteIfExists(dir.toPath());
+        }
+    }
+
+    private static IndexedRecordStore<BookIssue> open(File dir, long memtable) throws Exception {
+        return IndexedRecordStore.open(dir, memtable, BookIssue::getIssueId, BookIssue::getIssueDate,
+                List.of(BookIssue::getMemberId, BookIssue::getISBN),
+                System.out::println);
+    }
+
+    /**
+     * Opens the loan archive for reading only, resolving the members and
+     * books of archived loans from the saved member and book lists.
+     */
+    private static ArchiveStore<BookIssue> openArchive() throws Exception {
+        Map<Long, Member> members = new HashMap<>();
+        for (Member member : new DeltaStore<>(utils.DB_DIR + "/members.ser", Member::getMemberId).load()) {
+            members.put((long) member.getMemberId(), member);
+        }
+        Map<Long, Book> books = new HashMap<>();
+        for (Book book : new DeltaStore<>(utils.DB_DIR + "/books.ser", Book::getISBN).load()) {
+            books.put(book.getISBN(), book);
+        }
+        ArchiveStore<BookIssue> archive = new ArchiveStore<>(utils.DB_DIR + "/loanArchive",
+                new BookIssueService.LoanArchiveCodec(members::get, books::get));
+        archive.open();
+        return archive;
+    }
+
+    private static void printLoans(List<BookIssue> loans) {
+        System.out.println("Result -\n");
+        for (BookIssue loan : loans) {
+            System.out.println(loan);
+        }
+        System.out.println("Loans                   : " + loans.size());
+        System.out.println("=====================================");
+    }
+
+    private static void printStats(LsmStore store) {
+        System.out.println("Runs per level          : " + Arrays.toString(store.getRunCounts()));
+        System.out.println("Run files               : " + store.getRunBytes() + " bytes");
+        System.out.println("Memtable flushes        : " + store.getFlushCount());
+        System.out.println("Compactions             : " + store.getCompactionCount() + " ("
+                + store.getCompactedBytes() + " bytes rewritten)");
+        System.out.println("Write stalls            : " + store.getStallCount());
+    }
+}
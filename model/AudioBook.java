@@ -131,6 +131,15 @@ public class AudioBook extends Book {
         return this.narratorName;
     }
 
+    /**
+     * Sets the name of the narrator of this audio book.
+     *
+     * @param narratorName The narrator's name
+     */
+    public void setNarratorName(String narratorName) {
+        this.narratorName = narratorName;
+    }
+
     /**
      * Retrieves the audio format of this audio book.
      * <p>
@@ -152,6 +161,15 @@ public class AudioBook extends Book {
         return this.audioFormat;
     }
 
+    /**
+     * Sets the audio format of this audio book.
+     *
+     * @param audioFormat The audio format (e.g., "MP3", "AAC", "WAV")
+     */
+    public void setAudioFormat(String audioFormat) {
+        this.audioFormat = audioFormat;
+    }
+
     /**
      * Retrieves the total duration of this audio book in hours.
      * <p>
@@ -170,6 +188,15 @@ public class AudioBook extends Book {
         return this.audioLength;
     }
 
+    /**
+     * Sets the total duration of this audio book in hours.
+     *
+     * @param audioLength The duration in hours
+     */
+    public void setAudioLength(int audioLength) {
+        this.audioLength = audioLength;
+    }
+
     /**
      * Determines if this audio book is available for borrowing.
      * <p>
@@ -111,6 +111,19 @@ public abstract class Book implements Serializable {
         return this.ISBN;
     }
 
+    /**
+     * Sets the ISBN of the book.
+     * <p>
+     * Note: This method should typically only be called when loading book data
+     * from persistent storage or an external catalog. For new books, the ISBN is
+     * automatically generated.
+     *
+     * @param ISBN the ISBN to set
+     */
+    public void setISBN(long ISBN) {
+        this.ISBN = ISBN;
+    }
+
     /**
      * Gets the title of the book
      *
@@ -201,6 +214,15 @@ public abstract class Book implements Serializable {
         this.publicationYear = publicationYear;
     }
 
+    /**
+     * Sets the category of the book
+     *
+     * @param category the category of the book
+     */
+    public void setCategory(BookCategory category) {
+        this.category = category;
+    }
+
     @Override
     public String toString() {
         return "ISBN=" + this.ISBN + ", title=" + this.title + ", author=" + this.author + ", publisher="
@@ -17,6 +17,12 @@ public class BookIssue implements Serializable {
     /** The book that was issued */
     private Book book;
 
+    /** ID of the member, kept for when the member is no longer on record */
+    private long memberId;
+
+    /** ISBN of the book, kept for when the book is no longer on record */
+    private long isbn;
+
     /** The date when the book was issued */
     private long issueDate;
 
@@ -43,6 +49,8 @@ public class BookIssue implements Serializable {
         this.returnDate = 0;
         this.member = member;
         this.book = book;
+        this.memberId = member != null ? member.getMemberId() : 0;
+        this.isbn = book != null ? book.getISBN() : 0;
         this.fineAmount = fineAmount;
     }
 
@@ -63,6 +71,8 @@ public class BookIssue implements Serializable {
         this.returnDate = returnDate;
         this.member = member;
         this.book = book;
+        this.memberId = member != null ? member.getMemberId() : 0;
+        this.isbn = book != null ? book.getISBN() : 0;
         this.fineAmount = fineAmount;
     }
 
@@ -93,6 +103,46 @@ public class BookIssue implements Serializable {
         return this.book;
     }
 
+    /**
+     * Gets the ID of the member who issued the book, also when the member is
+     * no longer on record
+     * 
+     * @return the member ID, or 0 if not known
+     */
+    public long getMemberId() {
+        return this.member != null ? this.member.getMemberId() : this.memberId;
+    }
+
+    /**
+     * Sets the ID of the member, for an issue whose member is no longer on
+     * record
+     * 
+     * @param memberId the member ID to set
+     */
+    public void setMemberId(long memberId) {
+        this.memberId = memberId;
+    }
+
+    /**
+     * Gets the ISBN of the book that was issued, also when the book is no
+     * longer on record
+     * 
+     * @return the ISBN, or 0 if not known
+     */
+    public long getISBN() {
+        return this.book != null ? this.book.getISBN() : this.isbn;
+    }
+
+    /**
+     * Sets the ISBN of the book, for an issue whose book is no longer on
+     * record
+     * 
+     * @param isbn the ISBN to set
+     */
+    public void setISBN(long isbn) {
+        this.isbn = isbn;
+    }
+
     /**
      * Gets the issue date
      * 
@@ -208,7 +258,7 @@ public class BookIssue implements Serializable {
 
     @Override
     public String toString() {
-        return "issueId=" + issueId + ", memberId=" + member.getMemberId() + ", bookId=" + book.getISBN()
+        return "issueId=" + issueId + ", memberId=" + getMemberId() + ", bookId=" + getISBN()
                 + ", issueDate=" + issueDate + ", dueDate=" + dueDate + ", returnDate=" + returnDate
                 + ", fineAmount=" + fineAmount;
     }
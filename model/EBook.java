@@ -136,6 +136,15 @@ public class EBook extends Book {
         return this.fileFormat;
     }
 
+    /**
+     * Sets the file format of this electronic book.
+     *
+     * @param fileFormat The file format (e.g., "EPUB", "PDF", "MOBI")
+     */
+    public void setFileFormat(String fileFormat) {
+        this.fileFormat = fileFormat;
+    }
+
     /**
      * Determines whether this electronic book is protected by Digital Rights
      * Management (DRM).
@@ -160,6 +169,16 @@ public class EBook extends Book {
         return this.isDrmProtected;
     }
 
+    /**
+     * Sets whether this electronic book is protected by Digital Rights
+     * Management (DRM).
+     *
+     * @param isDrmProtected true if the book is DRM-protected
+     */
+    public void setDrmProtected(boolean isDrmProtected) {
+        this.isDrmProtected = isDrmProtected;
+    }
+
     /**
      * Determines if this electronic book is available for borrowing.
      * <p>
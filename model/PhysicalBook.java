@@ -118,6 +118,10 @@ public class PhysicalBook extends Book {
         return this.pages;
     }
 
+    public void setPages(int pages) {
+        this.pages = pages;
+    }
+
     public int getTotalCopies() {
         return this.totalCopies;
     }
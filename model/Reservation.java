@@ -17,6 +17,12 @@ public class Reservation implements Serializable {
         this.reservationDate = utils.getEpochTime();
     }
 
+    public Reservation(long memberId, long bookId, long reservationDate) {
+        this.bookId = bookId;
+        this.memberId = memberId;
+        this.reservationDate = reservationDate;
+    }
+
     public long getBookId() {
         return this.bookId;
     }
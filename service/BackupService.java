@@ -0,0 +1,753 @@
+package service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import common.RecordParser;
+import common.SegmentStore;
+import common.StoreJournal;
+import common.utils;
+
+/**
+ * Service for online, incremental backups of the database directory and for
+ * verified restores.
+ *
+ * <p>
+ * A backup takes a consistent snapshot without stopping the system: while it
+ * holds the write side of {@link utils#DB_LOCK}, which only waits for saves
+ * already in progress, it opens every database file and notes its size.
+ * Database files are replaced by renaming a new file over them, so the open
+ * files keep showing the snapshot while the system goes on saving; the
+ * append-only fine ledger is read up to the noted size. The files are then
+ * stored in a {@link SegmentStore}, which writes only segments that no earlier
+ * backup stored. A file whose size and modification time equal those in the
+ * previous backup is not read again at all.
+ * </p>
+ *
+ * <p>
+ * Each backup is described by a manifest in {@code manifests/<id>.txt}, one
+ * {@code key=value} line for the backup and one per file with its size,
+ * SHA-256 and segment list. The manifest is written last, so an interrupted
+ * backup leaves no manifest behind. A restore rebuilds each file from its
+ * segments, checks every segment and file hash, and only then moves the file
+ * into the target directory.
+ * </p>
+ *
+ * <p>
+ * Between backups, every database file that is written is recorded in a
+ * {@link StoreJournal} in {@code journal.log}, sharing the segment store:
+ * replaced files as full versions and appends as the appended bytes. A
+ * point-in-time restore starts from the last backup taken before the chosen
+ * instant or operation, replaces each file by its last journaled full version
+ * up to that point and replays the appends after it.
+ * </p>
+ *
+ * <p>
+ * After each backup, the journal entries older than the previous backup are
+ * pruned, together with the segments that no backup or remaining entry uses,
+ * so the journal holds about two backup intervals of changes.
+ * </p>
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see SegmentStore
+ */
+public class BackupService {
+    /**
+     * Directory holding the backups. Defaults to {@code ./backup} and can be
+     * changed with {@code -Dlibrary.backup.dir=<path>}.
+     */
+    public static final String BACKUP_DIR = System.getProperty("library.backup.dir", "./backup");
+
+    /** Field names of a manifest line, indexed by the MANIFEST_* constants */
+    private static final String[] MANIFEST_FIELDS = { "backup", "created", "file", "size", "modified", "sha256",
+            "segments", "op" };
+    private static final int MANIFEST_BACKUP = 0;
+    private static final int MANIFEST_CREATED = 1;
+    private static final int MANIFEST_FILE = 2;
+    private static final int MANIFEST_SIZE = 3;
+    private static final int MANIFEST_MODIFIED = 4;
+    private static final int MANIFEST_SHA256 = 5;
+    private static final int MANIFEST_SEGMENTS = 6;
+    private static final int MANIFEST_OP = 7;
+
+    private static final int RESTORE_BUFFER_SIZE = 1024 * 1024;
+    /** Number of journal entries shown as recent changes */
+    private static final int RECENT_CHANGES = 20;
+    /** Number of latest backups that point-in-time restores can start from */
+    private static final int JOURNAL_RETENTION_BACKUPS = 2;
+
+    private final Scanner scn = new Scanner(System.in);
+    private final File dbDir;
+    private final File manifestDir;
+    private final SegmentStore store;
+    private final StoreJournal journal;
+
+    /**
+     * The header and files of a backup manifest.
+     */
+    private static class Manifest {
+        final long created;
+        final long op;
+        final List<FileRecord> records = new ArrayList<>();
+
+        Manifest(long created, long op) {
+            this.created = created;
+            this.op = op;
+        }
+    }
+
+    /**
+     * A database file as recorded in a backup.
+     */
+    private static class FileRecord {
+        final String name;
+        final long size;
+        final long modified;
+        final String hash;
+        final List<SegmentStore.Segment> segments;
+
+        FileRecord(String name, long size, long modified, String hash, List<SegmentStore.Segment> segments) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * Changes the rebuilt files of a restore, by name, before they are moved
+     * into place.
+     */
+    @FunctionalInterface
+    private interface RestorePatch {
+        void apply(Map<String, File> files) throws IOException;
+    }
+
+    /**
+     * An open database file of a snapshot.
+     */
+    private static class SnapshotFile {
+        final File file;
+        final FileChannel channel;
+        final long size;
+        final long modified;
+
+        SnapshotFile(File file, FileChannel channel, long size, long modified) {
+            this.file = file;
+            this.channel = channel;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * Creates a backup service for the configured database and backup
+     * directories.
+     */
+    public BackupService() {
+        this(new File(utils.DB_DIR), new File(BACKUP_DIR));
+    }
+
+    /**
+     * Creates a backup service for the given directories.
+     *
+     * @param dbDir     the database directory to back up
+     * @param backupDir the directory holding segments and manifests
+     */
+    public BackupService(File dbDir, File backupDir) {
+        this.dbDir = dbDir;
+        this.manifestDir = new File(backupDir, "manifests");
+        this.store = new SegmentStore(new File(backupDir, "segments"), ForkJoinPool.commonPool());
+        this.journal = new StoreJournal(new File(backupDir, "journal.log"), this.store);
+    }
+
+    /**
+     * Returns the journal that records database file versions between
+     * backups, to be passed to {@link utils#setJournal(StoreJournal)}.
+     *
+     * @return the store journal
+     */
+    public StoreJournal getJournal() {
+        return this.journal;
+    }
+
+    /**
+     * Shows the backup menu and runs the chosen operation.
+     *
+     * @throws Exception if the operation fails
+     */
+    public void dataBackup() throws Exception {
+        System.out.println("1. Create backup");
+        System.out.println("2. List backups");
+        System.out.println("3. Verify backup");
+        System.out.println("4. Restore backup to a directory");
+        System.out.println("5. Restore to a point in time");
+        System.out.println("6. Show recent changes");
+        System.out.println("7. Prune journal");
+        switch (scn.nextLine().trim()) {
+            case "1":
+                createBackup();
+                break;
+            case "2":
+                listBackups();
+                break;
+            case "3":
+                System.out.print("Backup ID (blank for the latest): ");
+                verifyBackup(resolveId(scn.nextLine().trim()));
+                break;
+            case "4":
+                System.out.print("Backup ID (blank for the latest): ");
+                String id = resolveId(scn.nextLine().trim());
+                System.out.print("Target directory (blank for restore/" + id + "): ");
+                String target = scn.nextLine().trim();
+                File targetDir = new File(target.isEmpty() ? "restore/" + id : target);
+                if (targetDir.getCanonicalFile().equals(this.dbDir.getCanonicalFile())) {
+                    System.out.println("Error: The running system uses this directory; stop it and restore with"
+                            + " java main.BackupTool --action=restore --id=" + id);
+                    return;
+                }
+                restoreBackup(id, targetDir);
+                break;
+            case "5":
+                System.out.print("Restore up to (yyyy-MM-ddTHH:mm[:ss] or operation ID): ");
+                String point = scn.nextLine().trim();
+                long untilTime = Long.MAX_VALUE;
+                long untilOp = Long.MAX_VALUE;
+                if (point.matches("\\d+")) {
+                    untilOp = Long.parseLong(point);
+                } else {
+                    untilTime = LocalDateTime.parse(point).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                }
+                System.out.print("Target directory (blank for restore/point): ");
+                String pointTarget = scn.nextLine().trim();
+                File pointDir = new File(pointTarget.isEmpty() ? "restore/point" : pointTarget);
+                if (pointDir.getCanonicalFile().equals(this.dbDir.getCanonicalFile())) {
+                    System.out.println("Error: The running system uses this directory; stop it and restore with"
+                            + " java main.BackupTool --action=restore --time=<yyyy-MM-ddTHH:mm:ss> or --op=<id>");
+                    return;
+                }
+                restoreToPoint(untilTime, untilOp, pointDir);
+                break;
+            case "6":
+                showRecentChanges();
+                break;
+            case "7":
+                System.out.print("Keep changes since backup ID (blank for the latest): ");
+                pruneJournal(resolveId(scn.nextLine().trim()));
+                break;
+            default:
+                System.out.println("Invalid choice");
+                break;
+        }
+    }
+
+    /**
+     * Backs up the database directory.
+     *
+     * @return the ID of the new backup
+     * @throws Exception if a file cannot be read or the backup written
+     */
+    public String createBackup() throws Exception {
+        long start = System.nanoTime();
+        String id = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        List<String> ids = this.getBackupIds();
+        Map<String, FileRecord> previous = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (FileRecord record : this.readManifest(ids.get(ids.size() - 1)).records) {
+                previous.put(record.name, record);
+            }
+        }
+
+        // Time of the snapshot and last journaled operation it includes
+        long[] snapshotPoint = new long[2];
+        List<SnapshotFile> snapshot = this.openSnapshot(snapshotPoint);
+        List<FileRecord> records = new ArrayList<>();
+        long totalBytes = 0;
+        long newBytes = 0;
+        int newSegments = 0;
+        int reusedFiles = 0;
+        try {
+            for (SnapshotFile file : snapshot) {
+                FileRecord last = previous.get(file.file.getName());
+                if (last != null && last.size == file.size && last.modified == file.modified
+                        && this.allStored(last.segments)) {
+                    records.add(last);
+                    reusedFiles++;
+                } else {
+                    SegmentStore.StoredFile stored = this.store.store(file.channel, file.size);
+                    records.add(new FileRecord(file.file.getName(), file.size, file.modified, stored.getHash(),
+                            stored.getSegments()));
+                    newSegments += stored.getNewSegments();
+                    newBytes += stored.getNewBytes();
+                }
+                totalBytes += file.size;
+            }
+        } finally {
+            for (SnapshotFile file : snapshot) {
+                file.channel.close();
+            }
+        }
+        this.writeManifest(id, snapshotPoint[0], snapshotPoint[1], records);
+
+        System.out.println("Result -\n");
+        System.out.println("Backup ID              : " + id);
+        System.out.println("Files                  : " + records.size() + " (" + reusedFiles
+                + " unchanged since the last backup)");
+        System.out.println("Data backed up         : " + totalBytes + " bytes");
+        System.out.println("New segments written   : " + newSegments + " (" + newBytes + " compressed bytes)");
+        System.out.println("Time taken             : " + (System.nanoTime() - start) / 1000000 + " ms");
+        System.out.println("=====================================");
+
+        ids = this.getBackupIds();
+        if (ids.size() >= JOURNAL_RETENTION_BACKUPS) {
+            this.pruneJournal(ids.get(ids.size() - JOURNAL_RETENTION_BACKUPS));
+        }
+        return id;
+    }
+
+    /**
+     * Drops the journal entries that a backup already covers and deletes the
+     * segments that neither a backup nor the remaining journal uses.
+     * Point-in-time restores can then start from that backup or a later one.
+     * Saves wait while the segments in use are collected and the rest
+     * deleted.
+     *
+     * @param id the oldest backup to keep point-in-time restores from
+     * @throws Exception if a manifest or the journal cannot be read, or a
+     *                   segment cannot be deleted
+     */
+    public void pruneJournal(String id) throws Exception {
+        long start = System.nanoTime();
+        Manifest manifest = this.readManifest(id);
+        long dropped;
+        int removed;
+        utils.DB_LOCK.writeLock().lock();
+        try {
+            dropped = this.journal.prune(manifest.op);
+            Set<String> used = new HashSet<>();
+            for (String backupId : this.getBackupIds()) {
+                for (FileRecord record : this.readManifest(backupId).records) {
+                    for (SegmentStore.Segment segment : record.segments) {
+                        used.add(segment.getHash());
+                    }
+                }
+            }
+            this.journal.forEach(entry -> {
+                for (SegmentStore.Segment segment : entry.getSegments()) {
+                    used.add(segment.getHash());
+                }
+                return true;
+            });
+            removed = this.store.removeUnused(used);
+        } finally {
+            utils.DB_LOCK.writeLock().unlock();
+        }
+
+        System.out.println("Result -\n");
+        System.out.println("Journal kept from      : backup " + id + " (operation " + manifest.op + ")");
+        System.out.println("Entries pruned         : " + dropped);
+        System.out.println("Segments deleted       : " + removed);
+        System.out.println("Time taken             : " + (System.nanoTime() - start) / 1000000 + " ms");
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Opens every database file while saves are held back, so the set of
+     * files is consistent, and notes the time and the last journaled
+     * operation of the snapshot.
+     */
+    private List<SnapshotFile> openSnapshot(long[] snapshotPoint) throws IOException {
+        File[] files = this.dbDir.listFiles();
+        if (files == null) {
+            throw new IOException("Database directory not found: " + this.dbDir.getPath());
+        }
+        Arrays.sort(files);
+        List<SnapshotFile> snapshot = new ArrayList<>();
+        utils.DB_LOCK.writeLock().lock();
+        try {
+            for (File file : files) {
+                if (file.isFile() && !file.getName().endsWith(utils.TEMP_SUFFIX)
+                        && !file.getName().endsWith(utils.PREVIOUS_SUFFIX)) {
+                    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                    snapshot.add(new SnapshotFile(file, channel, channel.size(), file.lastModified()));
+                }
+            }
+            snapshotPoint[0] = System.currentTimeMillis();
+            snapshotPoint[1] = this.journal.getLastOp();
+        } catch (IOException e) {
+            for (SnapshotFile file : snapshot) {
+                file.channel.close();
+            }
+            throw e;
+        } finally {
+            utils.DB_LOCK.writeLock().unlock();
+        }
+        return snapshot;
+    }
+
+    private boolean allStored(List<SegmentStore.Segment> segments) {
+        for (SegmentStore.Segment segment : segments) {
+            if (!this.store.contains(segment.getHash())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lists the backups, oldest first.
+     *
+     * @throws Exception if a manifest cannot be read
+     */
+    public void listBackups() throws Exception {
+        System.out.println("Result -\n");
+        List<String> ids = this.getBackupIds();
+        if (ids.isEmpty()) {
+            System.out.println("No backups found");
+        }
+        for (String id : ids) {
+            long bytes = 0;
+            List<FileRecord> records = this.readManifest(id).records;
+            for (FileRecord record : records) {
+                bytes += record.size;
+            }
+            System.out.println(id + " : " + records.size() + " files, " + bytes + " bytes");
+        }
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Checks that a backup can be restored: every segment is present and
+     * undamaged and every file matches its hash.
+     *
+     * @param id the backup ID
+     * @return true if the backup is intact
+     * @throws Exception if the manifest cannot be read
+     */
+    public boolean verifyBackup(String id) throws Exception {
+        System.out.println("Result -\n");
+        int damaged = 0;
+        List<FileRecord> records = this.readManifest(id).records;
+        for (FileRecord record : records) {
+            try {
+                this.store.read(record.segments, record.hash, null);
+                System.out.println(record.name + " : OK");
+            } catch (IOException e) {
+                damaged++;
+                System.out.println(record.name + " : " + e.getMessage());
+            }
+        }
+        System.out.println("Backup " + id + " : " + (damaged == 0 ? "intact" : damaged + " damaged files"));
+        System.out.println("=====================================");
+        return damaged == 0;
+    }
+
+    /**
+     * Restores every file of a backup into a directory. All files are rebuilt
+     * and verified under temporary names and only then moved into place, so a
+     * damaged backup never overwrites a good file.
+     *
+     * @param id        the backup ID
+     * @param targetDir the directory to restore into, created if needed
+     * @throws Exception if the backup is damaged or a file cannot be written
+     */
+    public void restoreBackup(String id, File targetDir) throws Exception {
+        long start = System.nanoTime();
+        List<FileRecord> records = this.readManifest(id).records;
+        long bytes = this.restoreFiles(records, targetDir, null);
+        System.out.println("Result -\n");
+        System.out.println("Backup ID              : " + id);
+        System.out.println("Restored to            : " + targetDir.getPath());
+        System.out.println("Files restored         : " + records.size() + " (" + bytes + " bytes, verified)");
+        System.out.println("Time taken             : " + (System.nanoTime() - start) / 1000000 + " ms");
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Restores the database as it was at a point in time: the last backup
+     * taken before that point, with every file replaced by its last journaled
+     * full version up to the point and the appends journaled after that
+     * version replayed. The point is an instant, an operation ID or both,
+     * whichever comes first.
+     *
+     * @param untilTime last epoch time to include, or Long.MAX_VALUE
+     * @param untilOp   last operation ID to include, or Long.MAX_VALUE
+     * @param targetDir the directory to restore into, created if needed
+     * @throws Exception if no backup precedes the point, the journal after
+     *                   that backup was pruned, or the backup or a journaled
+     *                   version is damaged
+     */
+    public void restoreToPoint(long untilTime, long untilOp, File targetDir) throws Exception {
+        long start = System.nanoTime();
+        String baseId = null;
+        Manifest base = null;
+        List<String> ids = this.getBackupIds();
+        for (int i = ids.size() - 1; i >= 0 && base == null; i--) {
+            Manifest manifest = this.readManifest(ids.get(i));
+            if (manifest.created <= untilTime && manifest.op <= untilOp) {
+                baseId = ids.get(i);
+                base = manifest;
+            }
+        }
+        if (base == null) {
+            throw new Exception("No backup was taken before the requested point");
+        }
+        if (base.op < this.journal.getPrunedThrough()) {
+            throw new Exception("The journal after backup " + baseId + " was pruned; restore that backup with"
+                    + " --id=" + baseId + " or choose a later point");
+        }
+
+        // Only the latest full version of each file is kept while the journal
+        // streams by; the appends after it are replayed in a second pass
+        Map<String, FileRecord> files = new LinkedHashMap<>();
+        for (FileRecord record : base.records) {
+            files.put(record.name, record);
+        }
+        Map<String, Long> versionOps = new HashMap<>();
+        long baseOp = base.op;
+        long[] replayed = { 0, baseOp };
+        this.journal.forEach(entry -> {
+            if (entry.getOp() > untilOp || entry.getTime() > untilTime) {
+                return false;
+            }
+            if (entry.getOp() > baseOp) {
+                if (!entry.isAppend()) {
+                    files.put(entry.getFileName(), new FileRecord(entry.getFileName(), entry.getSize(),
+                            entry.getTime(), entry.getHash(), entry.getSegments()));
+                    versionOps.put(entry.getFileName(), entry.getOp());
+                } else if (!files.containsKey(entry.getFileName())) {
+                    throw new IOException("No version of " + entry.getFileName()
+                            + " precedes the append of operation " + entry.getOp());
+                }
+                replayed[0]++;
+                replayed[1] = entry.getOp();
+            }
+            return true;
+        });
+        long lastOp = replayed[1];
+        long bytes = this.restoreFiles(files.values(), targetDir, rebuilt -> this.journal.forEach(entry -> {
+            if (entry.getOp() > lastOp) {
+                return false;
+            }
+            if (entry.isAppend() && entry.getOp() > versionOps.getOrDefault(entry.getFileName(), baseOp)) {
+                applyAppend(rebuilt.get(entry.getFileName()), entry);
+            }
+            return true;
+        }));
+
+        System.out.println("Result -\n");
+        System.out.println("Base backup            : " + baseId + " (operation " + baseOp + ")");
+        System.out.println("Journal entries applied: " + replayed[0]);
+        System.out.println("Restored up to         : operation " + replayed[1]);
+        System.out.println("Restored to            : " + targetDir.getPath());
+        System.out.println("Files restored         : " + files.size() + " (" + bytes + " bytes, verified)");
+        System.out.println("Time taken             : " + (System.nanoTime() - start) / 1000000 + " ms");
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Rebuilds files from the segment store into a directory. All files are
+     * rebuilt and verified under temporary names, changed by the patch if
+     * there is one, and only then moved into place, so a damaged backup
+     * leaves the directory untouched.
+     *
+     * @return the number of bytes restored
+     */
+    private long restoreFiles(Collection<FileRecord> records, File targetDir, RestorePatch patch)
+            throws IOException {
+        if (!targetDir.isDirectory() && !targetDir.mkdirs()) {
+            throw new IOException("Cannot create directory " + targetDir.getPath());
+        }
+        long bytes = 0;
+        List<File> temps = new ArrayList<>();
+        List<File> targets = new ArrayList<>();
+        Map<String, File> byName = new HashMap<>();
+        try {
+            for (FileRecord record : records) {
+                File temp = new File(targetDir, record.name + utils.TEMP_SUFFIX);
+                temps.add(temp);
+                targets.add(new File(targetDir, record.name));
+                byName.put(record.name, temp);
+                try (FileOutputStream out = new FileOutputStream(temp)) {
+                    OutputStream buffered = new BufferedOutputStream(out, RESTORE_BUFFER_SIZE);
+                    this.store.read(record.segments, record.hash, buffered);
+                    buffered.flush();
+                    out.getFD().sync();
+                } catch (IOException e) {
+                    throw new IOException("Cannot restore " + record.name + ": " + e.getMessage(), e);
+                }
+            }
+            if (patch != null) {
+                patch.apply(byName);
+                for (File temp : temps) {
+                    try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                }
+            }
+            for (File temp : temps) {
+                bytes += temp.length();
+            }
+            for (int i = 0; i < temps.size(); i++) {
+                utils.replaceFile(temps.get(i), targets.get(i));
+            }
+        } finally {
+            for (File temp : temps) {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Applies a journaled append to a rebuilt file: the file is cut to the
+     * offset of the append and the bytes written after it.
+     */
+    private static void applyAppend(File file, StoreJournal.Entry entry) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < entry.getOffset()) {
+                throw new IOException("Cannot restore " + entry.getFileName() + ": the append of operation "
+                        + entry.getOp() + " starts past the end of the file");
+            }
+            raf.setLength(entry.getOffset());
+            raf.seek(entry.getOffset());
+            raf.write(entry.getData());
+        }
+    }
+
+    /**
+     * Shows the latest journal entries, newest last.
+     *
+     * @throws Exception if the journal cannot be read
+     */
+    public void showRecentChanges() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        Deque<StoreJournal.Entry> recent = new ArrayDeque<>(RECENT_CHANGES);
+        this.journal.forEach(entry -> {
+            if (recent.size() == RECENT_CHANGES) {
+                recent.removeFirst();
+            }
+            recent.addLast(entry);
+            return true;
+        });
+        System.out.println("Result -\n");
+        if (recent.isEmpty()) {
+            System.out.println("No changes journaled");
+        }
+        for (StoreJournal.Entry entry : recent) {
+            System.out.println(entry.getOp() + " : " + format.format(new Date(entry.getTime())) + " "
+                    + entry.getFileName() + (entry.isAppend() ? " (" + entry.getData().length + " bytes appended)"
+                            : " (" + entry.getSize() + " bytes)"));
+        }
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Returns the IDs of all backups, oldest first.
+     *
+     * @return the backup IDs
+     */
+    public List<String> getBackupIds() {
+        List<String> ids = new ArrayList<>();
+        String[] names = this.manifestDir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(".txt")) {
+                    ids.add(name.substring(0, name.length() - 4));
+                }
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private String resolveId(String id) throws Exception {
+        if (!id.isEmpty()) {
+            return id;
+        }
+        List<String> ids = this.getBackupIds();
+        if (ids.isEmpty()) {
+            throw new Exception("No backups found");
+        }
+        return ids.get(ids.size() - 1);
+    }
+
+    private void writeManifest(String id, long created, long op, List<FileRecord> records) throws IOException {
+        if (!this.manifestDir.isDirectory() && !this.manifestDir.mkdirs()) {
+            throw new IOException("Cannot create directory " + this.manifestDir.getPath());
+        }
+        File temp = new File(this.manifestDir, id + ".txt" + utils.TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+            writer.write("backup=" + id + ", created=" + created + ", op=" + op + "\n");
+            for (FileRecord record : records) {
+                writer.write("file=" + record.name + ", size=" + record.size + ", modified=" + record.modified
+                        + ", sha256=" + record.hash + ", segments=" + SegmentStore.formatSegments(record.segments)
+                        + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        utils.replaceFile(temp, new File(this.manifestDir, id + ".txt"));
+    }
+
+    private Manifest readManifest(String id) throws Exception {
+        File file = new File(this.manifestDir, id + ".txt");
+        if (!file.exists()) {
+            throw new Exception("Backup not found: " + id);
+        }
+        Manifest manifest = null;
+        try (RecordParser parser = new RecordParser(new FileReader(file), MANIFEST_FIELDS)) {
+            while (parser.next()) {
+                if (parser.isPresent(MANIFEST_BACKUP)) {
+                    // Backups taken before the journal existed precede all of it
+                    manifest = new Manifest(parser.getLong(MANIFEST_CREATED),
+                            parser.isPresent(MANIFEST_OP) ? parser.getLong(MANIFEST_OP) : 0);
+                    continue;
+                }
+                if (manifest == null) {
+                    throw new Exception("Backup manifest has no header: " + id);
+                }
+                manifest.records.add(new FileRecord(parser.getString(MANIFEST_FILE), parser.getLong(MANIFEST_SIZE),
+                        parser.getLong(MANIFEST_MODIFIED), parser.getString(MANIFEST_SHA256),
+                        SegmentStore.parseSegments(parser.isPresent(MANIFEST_SEGMENTS)
+                                ? parser.getString(MANIFEST_SEGMENTS) : null)));
+            }
+        }
+        if (manifest == null) {
+            throw new Exception("Backup manifest is empty: " + id);
+        }
+        return manifest;
+    }
+}
@@ -1,22 +1,46 @@
 package service;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongFunction;
 import java.util.stream.IntStream;
 
+import common.ArchiveStore;
+import common.BookCategory;
+import common.BorrowingRollup;
+import common.CoBorrowingModel;
+import common.ColumnEncoding;
+import common.DeltaStore;
+import common.FineLedger;
+import common.IndexedRecordStore;
+import common.LoanColumns;
 import common.MemberPolicy;
+import common.MemberProfileStore;
+import common.TopKCounter;
 import common.utils;
 import model.Book;
 import model.BookIssue;
+import model.FacultyMember;
 import model.Member;
 import model.PhysicalBook;
 import model.Reservation;
+import model.StudentMember;
 
 /**
  * Service class for managing book issuance, returns, and related operations in
@@ -42,8 +66,118 @@ public class BookIssueService {
     private MemberService memberService;
     private BookService bookService;
     private ReservationService reservationService;
+    private TrendingService trendingService;
     private List<BookIssue> bookIssued = new ArrayList<>();
 
+    /**
+     * Store of the book issue list, which saves only the issues marked as
+     * changed.
+     */
+    private final DeltaStore<BookIssue> store = new DeltaStore<>(utils.DB_DIR + "/bookIssues.ser",
+            BookIssueService::issueKey);
+
+    /** Number of books shown by the popular books report */
+    private static final int POPULAR_BOOKS_LIMIT = 5;
+
+    /** Issue counts per ISBN with the most issued books kept ranked */
+    private final TopKCounter popularity = new TopKCounter(POPULAR_BOOKS_LIMIT);
+
+    /** Borrowing counts by day, month and year for the borrowing reports */
+    private BorrowingRollup borrowingRollup = new BorrowingRollup();
+
+    /** Borrowing profile of every member and member type for member analytics */
+    private MemberProfileStore memberProfiles = new MemberProfileStore();
+
+    /** Number of books shown by the recommendations */
+    private static final int RECOMMENDATION_LIMIT = 10;
+
+    /** Co-borrowing counts between books, for recommendations */
+    private CoBorrowingModel coBorrowing = new CoBorrowingModel();
+
+    /** Member ordinal and issue day of every loan, for parallel engagement scans */
+    private LoanColumns loanColumns = new LoanColumns();
+
+    /** Members who borrowed within this many days are active */
+    private static final int ACTIVE_DAYS = 30;
+
+    /** Members who borrowed within this many days, but not recently, are lapsing */
+    private static final int LAPSING_DAYS = 90;
+
+    /** Borrow frequency is the number of loans in this many days */
+    private static final int FREQUENCY_DAYS = 365;
+
+    /** Memory for recent loan history writes before they go to a sorted run */
+    private static final long LOAN_HISTORY_MEMTABLE_BYTES = 4L * 1024 * 1024;
+
+    /** Loan history index numbers */
+    private static final int HISTORY_BY_MEMBER = 0;
+    private static final int HISTORY_BY_BOOK = 1;
+
+    /**
+     * Every issue indexed by member ID and ISBN in a log-structured store,
+     * kept in step with the issue store; null if it is open in another
+     * process.
+     */
+    private IndexedRecordStore<BookIssue> loanHistory;
+
+    /** Whether the issue list was replaced, so the loan history is rebuilt at the next save */
+    private boolean loanHistoryStale;
+
+    /**
+     * Loans returned more than this many days ago are moved out of the issue
+     * list into the loan archive; set with {@code -Dlibrary.archive.days=<days>}
+     */
+    private static final int ARCHIVE_AFTER_DAYS = Integer
+            .parseInt(System.getProperty("library.archive.days", "180"));
+
+    /** Fewest loans worth writing an archive segment for */
+    private static final int ARCHIVE_MIN_LOANS = 1000;
+
+    /** Times a read-only load is tried while the console keeps moving loans */
+    private static final int READ_ONLY_LOAD_ATTEMPTS = 5;
+
+    /**
+     * Returned loans moved out of the issue list, so saves and scans of the
+     * list cost in proportion to open and recent loans. History queries and
+     * reports read it together with the list.
+     */
+    private final ArchiveStore<BookIssue> archive = new ArchiveStore<>(utils.DB_DIR + "/loanArchive",
+            new LoanArchiveCodec(id -> this.memberService.getMemberById(id),
+                    id -> this.bookService.getBookById(id)));
+
+    /** Whether the issue list was replaced by a full history, so the archive is cleared at the next save */
+    private boolean archiveStale;
+
+    /** Epoch day the archive policy last ran */
+    private long lastArchiveDay;
+
+    /** Whether the issues were loaded by a tool for reading only */
+    private boolean readOnly;
+
+    /** Completes once the loan history is read and the reports rebuilt from it */
+    private final CompletableFuture<Void> historyReady = new CompletableFuture<>();
+
+    /** Thread loading the loan history in the background, if any */
+    private Thread historyLoader;
+
+    /** Messages of the background history load, printed when it is reported */
+    private final List<String> loaderNotices = new ArrayList<>();
+
+    /**
+     * Updates of the reports and loan history made while the history loads in
+     * the background, applied in order once it is loaded
+     */
+    private final List<HistoryUpdate> pendingUpdates = new ArrayList<>();
+
+    /** Whether the history is loaded, so updates apply at once; guarded by pendingUpdates */
+    private boolean historyLoaded;
+
+    /** Whether loading the history failed, so updates are dropped; guarded by pendingUpdates */
+    private boolean historyFailed;
+
+    /** Append-only record of every fine assessed, paid or waived */
+    private final FineLedger fineLedger = new FineLedger(utils.DB_DIR + "/fineLedger.dat", this::notice);
+
     /**
      * Constructor to initialize the memberService and bookService
      * 
@@ -56,30 +190,505 @@ public class BookIssueService {
      * @param memberService      the service for member-related operations
      * @param bookService        the service for book-related operations
      * @param reservationService the service for handling book reservations
+     * @param trendingService    the service tracking trending titles
      * @throws IllegalArgumentException if any of the services are null
      */
     public BookIssueService(MemberService memberService, BookService bookService,
-            ReservationService reservationService) {
-        if (memberService == null || bookService == null || reservationService == null) {
+            ReservationService reservationService, TrendingService trendingService) {
+        if (memberService == null || bookService == null || reservationService == null
+                || trendingService == null) {
             throw new IllegalArgumentException("Dependencies cannot be null");
         }
         this.memberService = memberService;
         this.bookService = bookService;
         this.reservationService = reservationService;
+        this.trendingService = trendingService;
+    }
+
+    /**
+     * Returns the key an issue is saved under in the issue store. Issue IDs
+     * are random, so the issue date is part of the key. Tools that load the
+     * issue store key it with this function, since a change log replayed
+     * under a different key appends its issues a second time.
+     *
+     * @param issue the issue
+     * @return the store key of the issue
+     */
+    public static String issueKey(BookIssue issue) {
+        return issue.getIssueId() + ":" + issue.getIssueDate();
     }
 
     /**
      * Loads book issue records from persistent storage.
      * <p>
      * This method attempts to deserialize the book issue data from the file
-     * "./db/bookIssues.ser". If the file doesn't exist or is empty, it initializes
+     * "./db/bookIssues.ser", with the changes logged since it was last written
+     * replayed over it. If the file doesn't exist or is empty, it initializes
      * an empty list of book issues.
      *
-     * @see utils#loadData(String)
+     * <p>
+     * The loan archive is opened, finishing or undoing a move interrupted by
+     * a crash, and the reports are rebuilt from the archived and live issues.
+     * The fine ledger is loaded as well. If no ledger exists yet, one is
+     * started from the fines already recorded on issues and members. The loan
+     * history is opened and rebuilt if it does not match the issues loaded.
+     * Finally, loans returned long ago are moved to the archive.
+     *
+     * @throws Exception if the archive, fine ledger or loan history cannot be
+     *                   read or written
+     * @see DeltaStore#load()
+     * @see #loadBookIssuedInBackground()
+     */
+    public void loadBookIssued() throws Exception {
+        this.openBookIssued();
+        this.loadHistory(new LiveSnapshot());
+        this.archiveReturnedLoans();
+        this.historyReady.complete(null);
+    }
+
+    /**
+     * Loads the live book issues and opens the loan archive, then reads the
+     * loan history and rebuilds the reports from it on a background thread.
+     * <p>
+     * Only the issue list and the archive manifest are read before this
+     * returns, so startup does not grow with the archived history. The loader
+     * works from a copy of the live issues taken here, so books can be
+     * issued, returned and renewed while it runs: their updates of the
+     * reports, loan history and fine ledger are held and applied in order
+     * once it finishes. Until {@link #isHistoryReady()} turns true, nothing
+     * else may be used; callers wait with {@link #awaitHistory()}. Loans are
+     * archived at the first save after the history has loaded. The loader
+     * prints nothing itself; its messages are held for
+     * {@link #reportHistoryReady()}.
+     *
+     * @throws Exception if the issue list or archive manifest cannot be read
+     * @see #loadBookIssued()
+     */
+    public void loadBookIssuedInBackground() throws Exception {
+        this.openBookIssued();
+        LiveSnapshot live = new LiveSnapshot();
+        this.historyLoader = new Thread(() -> {
+            try {
+                long start = System.nanoTime();
+                this.loadHistory(live);
+                this.notice("Loan history ready in " + (System.nanoTime() - start) / 1000000 + " ms");
+                this.historyReady.complete(null);
+            } catch (Throwable e) {
+                synchronized (this.pendingUpdates) {
+                    this.pendingUpdates.clear();
+                    this.historyFailed = true;
+                }
+                this.notice("Loan history could not be loaded: " + e.getMessage());
+                this.historyReady.completeExceptionally(e);
+            }
+        }, "loan-history-loader");
+        this.historyLoader.start();
+    }
+
+    /**
+     * Prints the messages of the background history load once it has
+     * finished, the last saying whether the history is ready. The console
+     * calls this before showing its menu, so the loader never writes into a
+     * prompt; nothing is printed while the load is still running or after
+     * the messages were printed once.
+     */
+    public void reportHistoryReady() {
+        if (!this.historyReady.isDone()) {
+            return;
+        }
+        synchronized (this.loaderNotices) {
+            for (String notice : this.loaderNotices) {
+                System.out.println(notice);
+            }
+            this.loaderNotices.clear();
+        }
+    }
+
+    /**
+     * Prints a message, or holds it for {@link #reportHistoryReady()} when
+     * called from the background history loader.
+     */
+    private void notice(String message) {
+        if (Thread.currentThread() == this.historyLoader) {
+            synchronized (this.loaderNotices) {
+                this.loaderNotices.add(message);
+            }
+        } else {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Returns whether the loan history has been loaded, successfully or not.
+     *
+     * @return true once {@link #awaitHistory()} returns without waiting
+     */
+    public boolean isHistoryReady() {
+        return this.historyReady.isDone();
+    }
+
+    /**
+     * Waits until the loan history loaded in the background is ready.
+     *
+     * @throws Exception if loading the history failed
+     */
+    public void awaitHistory() throws Exception {
+        if (!this.historyReady.isDone()) {
+            System.out.println("Loading loan history ...");
+        }
+        try {
+            this.historyReady.get();
+            this.reportHistoryReady();
+        } catch (ExecutionException e) {
+            this.reportHistoryReady();
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the live issues and the loan archive for reading only, for tools
+     * that run beside the console, such as the exporter.
+     * <p>
+     * No file is written: a move the console left pending is settled in
+     * memory only, no loans are archived, and neither the reports, the loan
+     * history nor the fine ledger are built, so only the issue lists and
+     * archive reads may be used. The archive manifest is read before and
+     * checked after the issue list, and both are read again if the console
+     * moved loans in between. Saving issues fails.
+     *
+     * @throws Exception if the issue list or archive manifest cannot be read,
+     *                   or keeps changing while being read
+     */
+    public void loadBookIssuedReadOnly() throws Exception {
+        for (int attempt = 0; attempt < READ_ONLY_LOAD_ATTEMPTS; attempt++) {
+            this.archive.open();
+            List<BookIssue> loadedIssues = this.store.load();
+            if (this.archive.isUnchanged()) {
+                this.bookIssued = (loadedIssues != null) ? loadedIssues : new ArrayList<>();
+                this.archive.view(this.store.getBaseTag(), this.store.getLogLength());
+                this.archiveStale = false;
+                this.readOnly = true;
+                return;
+            }
+        }
+        throw new Exception("The loan archive kept changing while the issues were read");
+    }
+
+    /**
+     * Loads the live issues and opens the archive, finishing or undoing a
+     * move interrupted by a crash. Archived loans are not read.
      */
-    public void loadBookIssued() {
-        List<BookIssue> loadedIssues = utils.loadData("./db/bookIssues.ser");
+    private void openBookIssued() throws Exception {
+        List<BookIssue> loadedIssues = this.store.load();
         this.bookIssued = (loadedIssues != null) ? loadedIssues : new ArrayList<>();
+        this.archive.load();
+        this.archive.recover(this.store.getBaseTag(), this.store.getLogLength());
+        this.archiveStale = false;
+    }
+
+    /**
+     * Reads the whole loan history and rebuilds the reports, loan history
+     * and fine ledger from it, then applies the updates held meanwhile.
+     */
+    private void loadHistory(LiveSnapshot live) throws Exception {
+        this.rebuildReports(live.issues);
+        this.openLoanHistory(live);
+        if (live.outstandingFines == null) {
+            this.fineLedger.load();
+        } else {
+            this.startFineLedger(live.issues, live.outstandingFines);
+        }
+        synchronized (this.pendingUpdates) {
+            for (HistoryUpdate update : this.pendingUpdates) {
+                update.apply();
+            }
+            this.pendingUpdates.clear();
+            this.historyLoaded = true;
+        }
+    }
+
+    /**
+     * Applies an update of the reports, loan history or fine ledger, or holds
+     * it until the history loading in the background has been read.
+     */
+    private void afterHistory(HistoryUpdate update) throws Exception {
+        synchronized (this.pendingUpdates) {
+            if (this.historyFailed) {
+                return;
+            }
+            if (!this.historyLoaded) {
+                this.pendingUpdates.add(update);
+                return;
+            }
+        }
+        update.apply();
+    }
+
+    /**
+     * Returns whether the history has been read and the held updates applied.
+     */
+    private boolean isHistoryLoaded() {
+        synchronized (this.pendingUpdates) {
+            return this.historyLoaded;
+        }
+    }
+
+    /**
+     * An update of the reports, loan history or fine ledger.
+     */
+    @FunctionalInterface
+    private interface HistoryUpdate {
+        void apply() throws Exception;
+    }
+
+    /**
+     * The live issues and issue store state the history is loaded against,
+     * taken before the load starts. Issues are copied, since a return or
+     * renewal changes them in place while the load runs; the member and book
+     * of each stay shared. When no fine ledger exists yet, the fines members
+     * owe are taken as well to start it from.
+     */
+    private final class LiveSnapshot {
+        final List<BookIssue> issues = new ArrayList<>();
+        final long baseTag = BookIssueService.this.store.getBaseTag();
+        final long logLength = BookIssueService.this.store.getLogLength();
+        final Map<Long, Long> outstandingFines;
+
+        LiveSnapshot() {
+            for (BookIssue issue : BookIssueService.this.bookIssued) {
+                BookIssue copy = new BookIssue(issue.getMember(), issue.getBook(), issue.getFineAmount(),
+                        issue.getIssueDate(), issue.getDueDate(), issue.getReturnDate());
+                copy.setIssueId(issue.getIssueId());
+                this.issues.add(copy);
+            }
+            this.outstandingFines = BookIssueService.this.fineLedger.exists() ? null
+                    : BookIssueService.this.getOutstandingFines();
+        }
+    }
+
+    /**
+     * Returns the fine amount each member owes, in minor units.
+     */
+    private Map<Long, Long> getOutstandingFines() {
+        Map<Long, Long> outstanding = new HashMap<>();
+        for (Member member : this.memberService.getMemberList()) {
+            outstanding.put((long) member.getMemberId(), FineLedger.toMinorUnits(member.getTotalFineAmount()));
+        }
+        return outstanding;
+    }
+
+    /**
+     * Starts a new fine ledger from the fines recorded on issues and members.
+     * <p>
+     * Every fined issue becomes an assessment. For each member, the difference
+     * between the assessed fines and the fine amount still on the member record
+     * is booked as a payment, or as an assessment without an issue if the member
+     * owes more than their issues account for, dated at the member's latest
+     * fine.
+     *
+     * @throws Exception if the archive cannot be read or the fine ledger
+     *                   cannot be written
+     */
+    private void startFineLedger(List<BookIssue> live, Map<Long, Long> outstandingFines) throws Exception {
+        List<FineLedger.Entry> entries = new ArrayList<>();
+        Map<Long, Long> assessedByMember = new HashMap<>();
+        Map<Long, Long> lastFineByMember = new HashMap<>();
+        this.forEachBookIssue(live, Long.MIN_VALUE, Long.MAX_VALUE, issue -> {
+            long amount = FineLedger.toMinorUnits(issue.getFineAmount());
+            if (amount <= 0 || issue.getMember() == null) {
+                return;
+            }
+            long memberId = issue.getMember().getMemberId();
+            long timestamp = issue.getReturnDate() != 0 ? issue.getReturnDate() : issue.getDueDate();
+            entries.add(new FineLedger.Entry(FineLedger.EntryType.ASSESSED, memberId, issue.getIssueId(), amount,
+                    timestamp));
+            assessedByMember.merge(memberId, amount, Long::sum);
+            lastFineByMember.merge(memberId, timestamp, Long::max);
+        });
+
+        for (Map.Entry<Long, Long> assessed : assessedByMember.entrySet()) {
+            long outstanding = outstandingFines.getOrDefault(assessed.getKey(), 0L);
+            long settled = assessed.getValue() - outstanding;
+            long timestamp = lastFineByMember.get(assessed.getKey());
+            if (settled > 0) {
+                entries.add(new FineLedger.Entry(FineLedger.EntryType.PAID, assessed.getKey(), 0, settled,
+                        timestamp));
+            } else if (settled < 0) {
+                entries.add(new FineLedger.Entry(FineLedger.EntryType.ASSESSED, assessed.getKey(), 0, -settled,
+                        timestamp));
+            }
+        }
+        this.fineLedger.reset(entries);
+    }
+
+    /**
+     * Rebuilds the popularity counters, borrowing rollup, member profiles,
+     * loan columns, co-borrowing model and trending issue signals in one pass
+     * over the loan history.
+     * <p>
+     * This runs once when the history is loaded or replaced; afterwards they
+     * are updated on every issue and return. The archive is streamed segment
+     * by segment, so only the reports, not every loan, are held in memory.
+     */
+    private void rebuildReports(List<BookIssue> live) throws IOException {
+        CompletableFuture<BorrowingRollup> rollup = CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.rebuildBorrowingRollup(live);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        ReportRebuild rebuild = new ReportRebuild();
+        this.popularity.clear();
+        this.forEachBookIssue(live, Long.MIN_VALUE, Long.MAX_VALUE, rebuild);
+        try {
+            this.borrowingRollup = rollup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        this.memberProfiles = rebuild.profiles;
+        this.loanColumns = rebuild.columns;
+        this.coBorrowing = rebuild.coBorrowing.build();
+        this.trendingService.replayIssues(rebuild.recent);
+    }
+
+    /**
+     * Builds the borrowing rollup from one partial rollup per archive
+     * segment, filled in parallel, and one for the live issues, merged in
+     * order. Counts do not depend on the order of the loans, unlike the other
+     * reports, so this runs beside their sequential pass.
+     */
+    private BorrowingRollup rebuildBorrowingRollup(List<BookIssue> live) throws IOException {
+        BorrowingRollup rollup = new BorrowingRollup();
+        if (!this.archiveStale) {
+            for (RollupRebuild part : this.archive.forEachSegment(RollupRebuild::new)) {
+                rollup.merge(part.rollup);
+            }
+        }
+        RollupRebuild liveRollup = new RollupRebuild();
+        for (BookIssue issue : live) {
+            liveRollup.visit(issue);
+        }
+        rollup.merge(liveRollup.rollup);
+        return rollup;
+    }
+
+    /**
+     * Part of the borrowing rollup being rebuilt, fed one loan at a time.
+     */
+    private static final class RollupRebuild implements ArchiveStore.RecordVisitor<BookIssue> {
+        private final BorrowingRollup rollup = new BorrowingRollup();
+
+        @Override
+        public void visit(BookIssue issue) {
+            recordBorrowing(this.rollup, issue);
+        }
+    }
+
+    /**
+     * Reports being rebuilt, fed one loan at a time.
+     */
+    private final class ReportRebuild implements ArchiveStore.RecordVisitor<BookIssue> {
+        private final long trendingCutoff = utils.getEpochTime() - TrendingService.WEEK_MILLIS;
+        private final MemberProfileStore profiles = new MemberProfileStore();
+        private final LoanColumns columns = new LoanColumns();
+        /** Loans inside the trending window */
+        private final List<BookIssue> recent = new ArrayList<>();
+        private final CoBorrowingModel.Builder coBorrowing = new CoBorrowingModel.Builder();
+
+        @Override
+        public void visit(BookIssue issue) {
+            Member member = issue.getMember();
+            Book book = issue.getBook();
+            if (book != null) {
+                BookIssueService.this.popularity.increment(book.getISBN());
+                if (issue.getIssueDate() >= this.trendingCutoff) {
+                    this.recent.add(issue);
+                }
+            }
+            if (member == null) {
+                return;
+            }
+            this.columns.append(member.getMemberId(), issue.getIssueDate());
+            if (book == null) {
+                return;
+            }
+            this.profiles.recordIssue(member.getMemberId(), member.getMemberType(), book.getCategory(),
+                    book.getAuthor(), issue.getIssueDate());
+            if (issue.getReturnDate() != 0) {
+                this.profiles.recordReturn(member.getMemberId(), member.getMemberType(), issue.getIssueDate(),
+                        issue.getDueDate(), issue.getReturnDate(), FineLedger.toMinorUnits(issue.getFineAmount()));
+            }
+            this.coBorrowing.addLoan(member.getMemberId(), book.getISBN());
+        }
+    }
+
+    /**
+     * Adds one issue to a borrowing rollup.
+     */
+    private static void recordBorrowing(BorrowingRollup rollup, BookIssue issue) {
+        Book book = issue.getBook();
+        Member member = issue.getMember();
+        rollup.record(issue.getIssueDate(),
+                book != null ? book.getCategory() : null,
+                member != null ? member.getMemberType() : null,
+                book != null ? book.getBookType() : null);
+    }
+
+    /**
+     * Opens the loan history and rebuilds it unless its last commit carries
+     * the saved state of the issue store, which it does not after a crash
+     * between the two or when another tool replaced the issue store. If the
+     * history is open in another process, history lookups scan the issue
+     * list instead.
+     *
+     * @throws Exception if the loan history cannot be rebuilt
+     */
+    private void openLoanHistory(LiveSnapshot live) throws Exception {
+        if (this.loanHistory == null) {
+            try {
+                this.loanHistory = IndexedRecordStore.open(new File(utils.DB_DIR, "loanHistory"),
+                        LOAN_HISTORY_MEMTABLE_BYTES, BookIssue::getIssueId, BookIssue::getIssueDate,
+                        List.of(BookIssue::getMemberId, BookIssue::getISBN),
+                        this::notice);
+            } catch (IOException e) {
+                this.notice("Loan history not available: " + e.getMessage());
+                return;
+            }
+        }
+        if (!this.loanHistory.isCommittedAt(live.baseTag, live.logLength)) {
+            this.rebuildLoanHistory(live.issues, live.baseTag, live.logLength);
+        }
+    }
+
+    /**
+     * Rewrites the loan history from the archived and given live issues and
+     * commits it at the given issue store state.
+     */
+    private void rebuildLoanHistory(List<BookIssue> live, long baseTag, long logLength) throws Exception {
+        long start = System.nanoTime();
+        long issues = this.loanHistory.rebuild(
+                visitor -> this.forEachBookIssue(live, Long.MIN_VALUE, Long.MAX_VALUE, visitor),
+                baseTag, logLength);
+        this.loanHistoryStale = false;
+        this.notice("Loan history rebuilt from " + issues + " issues in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Writes a new or changed issue to the loan history; it takes effect at
+     * the next save.
+     */
+    private void recordLoanHistory(BookIssue issue) throws Exception {
+        if (this.loanHistory != null) {
+            this.loanHistory.put(issue);
+        }
     }
 
     /**
@@ -111,15 +720,22 @@ public class BookIssueService {
             colWidths[i] = headers[i].length();
         }
 
+        // A book or member no longer on record is shown by its ID
+        List<String[]> rows = new ArrayList<>(issuedList.size());
         for (BookIssue issuedBook : issuedList) {
-
-            colWidths[0] = Math.max(colWidths[0], issuedBook.getBook().getTitle().length());
-            colWidths[1] = Math.max(colWidths[1], issuedBook.getBook().getAuthor().length());
-            colWidths[2] = Math.max(colWidths[2], issuedBook.getMember().getName().length());
-            colWidths[3] = Math.max(colWidths[3], issuedBook.getMember().getMemberType().length());
-            colWidths[4] = Math.max(colWidths[4], String.valueOf(issuedBook.getIssueDate()).length());
-            colWidths[5] = Math.max(colWidths[5], String.valueOf(issuedBook.getDueDate()).length());
-
+            Book book = issuedBook.getBook();
+            Member member = issuedBook.getMember();
+            String[] row = {
+                    book != null ? book.getTitle() : "ISBN " + issuedBook.getISBN(),
+                    book != null ? book.getAuthor() : "-",
+                    member != null ? member.getName() : "Member " + issuedBook.getMemberId(),
+                    member != null ? member.getMemberType() : "-",
+                    String.valueOf(utils.convertEpochToDate(issuedBook.getIssueDate())),
+                    String.valueOf(utils.convertEpochToDate(issuedBook.getDueDate())) };
+            for (int i = 0; i < row.length; i++) {
+                colWidths[i] = Math.max(colWidths[i], row[i].length());
+            }
+            rows.add(row);
         }
 
         // Build format string
@@ -132,14 +748,8 @@ public class BookIssueService {
         System.out.println();
 
         // Print rows
-        for (BookIssue issue : issuedList) {
-            System.out.printf(format,
-                    issue.getBook().getTitle(),
-                    issue.getBook().getAuthor(),
-                    issue.getMember().getName(),
-                    issue.getMember().getMemberType(),
-                    utils.convertEpochToDate(issue.getIssueDate()),
-                    utils.convertEpochToDate(issue.getDueDate()));
+        for (String[] row : rows) {
+            System.out.printf(format, (Object[]) row);
         }
         System.out.println("\n===================================== END ISSUE LIST =============================\n");
     }
@@ -158,8 +768,8 @@ public class BookIssueService {
             throw new IllegalArgumentException("Member ID and Book ID must be positive numbers");
         }
         int bookIssueIndex = IntStream.range(0, this.bookIssued.size())
-                .filter(i -> this.bookIssued.get(i).getMember().getMemberId() == memberId
-                        && this.bookIssued.get(i).getBook().getISBN() == bookId)
+                .filter(i -> this.bookIssued.get(i).getMemberId() == memberId
+                        && this.bookIssued.get(i).getISBN() == bookId)
                 .findFirst().orElse(-1);
         if (bookIssueIndex == -1) {
             return null;
@@ -179,9 +789,26 @@ public class BookIssueService {
      *                   failures
      */
     public void issueBook() throws Exception {
-        // Step 1: Get and validate member information
         System.out.print("Enter member ID: ");
         long memberId = Long.parseLong(scn.nextLine());
+        System.out.print("Enter book ID: ");
+        long bookId = Long.parseLong(scn.nextLine());
+        issueBook(memberId, bookId);
+    }
+
+    /**
+     * Issues a book to a member without any console interaction.
+     * <p>
+     * This is the headless entry point used by the console menu and by
+     * programmatic callers such as the load test harness.
+     *
+     * @param memberId the ID of the member borrowing the book
+     * @param bookId   the ISBN of the book to issue
+     * @throws Exception if the book cannot be issued due to various validation
+     *                   failures
+     */
+    public void issueBook(long memberId, long bookId) throws Exception {
+        // Step 1: Validate member information
         Member member = memberService.getMemberById(memberId);
         if (member == null) {
             throw new Exception("Member not found");
@@ -190,9 +817,7 @@ public class BookIssueService {
             throw new Exception("This member can't able to borrow books");
         }
 
-        // Step 2: Get and validate book information
-        System.out.print("Enter book ID: ");
-        long bookId = Long.parseLong(scn.nextLine());
+        // Step 2: Validate book information
         Book book = bookService.getBookById(bookId);
         if (book == null) {
             throw new Exception("Book not found");
@@ -227,6 +852,17 @@ public class BookIssueService {
         // Step 5: Create and record the new book issue
         BookIssue bookIssue = new BookIssue(member, book, 0);
         this.bookIssued.add(bookIssue);
+        this.store.markChanged(bookIssue);
+        this.afterHistory(() -> {
+            this.recordLoanHistory(bookIssue);
+            this.popularity.increment(book.getISBN());
+            this.trendingService.recordIssue(book, bookIssue.getIssueDate());
+            recordBorrowing(this.borrowingRollup, bookIssue);
+            this.memberProfiles.recordIssue(memberId, member.getMemberType(), book.getCategory(),
+                    book.getAuthor(), bookIssue.getIssueDate());
+            this.loanColumns.append(memberId, bookIssue.getIssueDate());
+            this.coBorrowing.recordLoan(memberId, book.getISBN());
+        });
         this.updateBookIssueInDatabase();
 
         // Step 6: Update book availability
@@ -258,35 +894,44 @@ public class BookIssueService {
      *                   failures
      */
     public void returnBook() throws Exception {
-        // Step 1: Get and validate member information
         System.out.print("Enter member ID: ");
         long memberId = Long.parseLong(scn.nextLine());
+        System.out.print("Enter book ID: ");
+        long bookId = Long.parseLong(scn.nextLine());
+        returnBook(memberId, bookId);
+    }
+
+    /**
+     * Processes the return of a borrowed book without any console interaction.
+     *
+     * @param memberId the ID of the member returning the book
+     * @param bookId   the ISBN of the book being returned
+     * @throws Exception if the book cannot be returned due to various validation
+     *                   failures
+     */
+    public void returnBook(long memberId, long bookId) throws Exception {
+        // Step 1: Validate member information
         Member member = memberService.getMemberById(memberId);
         if (member == null) {
             throw new Exception("Member not found");
         }
-        if (!member.canBorrowBooks()) {
-            throw new Exception("This member can't able to return the books");
-        }
 
-        // Step 2: Get and validate book information
-        System.out.print("Enter book ID: ");
-        long bookId = Long.parseLong(scn.nextLine());
+        // Step 2: Validate book information
         Book book = bookService.getBookById(bookId);
         if (book == null) {
             throw new Exception("Book not found");
         }
-        if (book instanceof PhysicalBook) {
-            PhysicalBook physicalBook = (PhysicalBook) book;
-            if (!physicalBook.isAvailable()) {
-                throw new Exception("Book is not available");
-            }
-        }
 
-        // Step 3: Verify the book is actually issued to this member
-        BookIssue bookIssue = getBookIssueDetail(memberId, bookId);
-        if (bookIssue == null || bookIssue.getReturnDate() != 0) {
-            throw new Exception("This book is already returned");
+        // Step 3: Verify the book is actually issued to this member. A
+        // suspended member, or one at their borrowing limit, can still
+        // return what they hold.
+        BookIssue bookIssue = this.bookIssued.stream()
+                .filter(issue -> issue.getReturnDate() == 0 && issue.getMember() != null
+                        && issue.getMember().getMemberId() == memberId && issue.getBook() != null
+                        && issue.getBook().getISBN() == bookId)
+                .findFirst().orElse(null);
+        if (bookIssue == null) {
+            throw new Exception("This book is not on loan to this member");
         }
 
         // Step 4: Update the book issue record with return details
@@ -294,7 +939,18 @@ public class BookIssueService {
         int daysOverdue = bookIssue.getDaysOverdue();
         double fineAmount = member.calculateFine(daysOverdue);
         bookIssue.setFineAmount(bookIssue.getFineAmount() + fineAmount);
+        this.store.markChanged(bookIssue);
+        this.afterHistory(() -> this.recordLoanHistory(bookIssue));
         this.updateBookIssueInDatabase();
+        if (FineLedger.toMinorUnits(fineAmount) > 0) {
+            member.addFine(fineAmount);
+            FineLedger.Entry fine = new FineLedger.Entry(FineLedger.EntryType.ASSESSED, memberId,
+                    bookIssue.getIssueId(), FineLedger.toMinorUnits(fineAmount), bookIssue.getReturnDate());
+            this.afterHistory(() -> this.fineLedger.append(fine));
+        }
+        this.afterHistory(() -> this.memberProfiles.recordReturn(memberId, member.getMemberType(),
+                bookIssue.getIssueDate(), bookIssue.getDueDate(), bookIssue.getReturnDate(),
+                FineLedger.toMinorUnits(bookIssue.getFineAmount())));
 
         // Step 5: Update book availability
         if (book instanceof PhysicalBook) {
@@ -322,9 +978,23 @@ public class BookIssueService {
      *                   failures
      */
     public void renewBook() throws Exception {
-        // Step 1: Get and validate member information
         System.out.print("Enter member ID: ");
         long memberId = Long.parseLong(scn.nextLine());
+        System.out.print("Enter book ID: ");
+        long bookId = Long.parseLong(scn.nextLine());
+        renewBook(memberId, bookId);
+    }
+
+    /**
+     * Renews the due date for a borrowed book without any console interaction.
+     *
+     * @param memberId the ID of the member renewing the book
+     * @param bookId   the ISBN of the book to renew
+     * @throws Exception if the book cannot be renewed due to various validation
+     *                   failures
+     */
+    public void renewBook(long memberId, long bookId) throws Exception {
+        // Step 1: Validate member information
         Member member = memberService.getMemberById(memberId);
         if (member == null) {
             throw new Exception("Member not found");
@@ -333,9 +1003,7 @@ public class BookIssueService {
             throw new Exception("This member can't renew the books at this time");
         }
 
-        // Step 2: Get and validate book information
-        System.out.print("Enter book ID: ");
-        long bookId = Long.parseLong(scn.nextLine());
+        // Step 2: Validate book information
         Book book = bookService.getBookById(bookId);
         if (book == null) {
             throw new Exception("Book not found");
@@ -347,7 +1015,18 @@ public class BookIssueService {
             }
         }
 
-        // Step 3: Check for existing reservations
+        // Step 3: Find the open book issue record, before a reservation is
+        // taken for a renewal that cannot happen
+        BookIssue bookIssue = this.bookIssued.stream()
+                .filter(issue -> issue.getReturnDate() == 0 && issue.getMember() != null
+                        && issue.getMember().getMemberId() == memberId && issue.getBook() != null
+                        && issue.getBook().getISBN() == bookId)
+                .findFirst().orElse(null);
+        if (bookIssue == null) {
+            throw new Exception("No active book issue found for this member and book");
+        }
+
+        // Step 4: Check for existing reservations
         Reservation reservation = this.reservationService.getFirstReservationByBookId(bookId);
         boolean isReserved = false;
         if (reservation != null) {
@@ -361,19 +1040,10 @@ public class BookIssueService {
             isReserved = true;
         }
 
-        // Step 4: Find the existing book issue record
-        int bookIssueIndex = IntStream.range(0, this.bookIssued.size())
-                .filter(i -> this.bookIssued.get(i).getMember().getMemberId() == memberId
-                        && this.bookIssued.get(i).getBook().getISBN() == bookId)
-                .findFirst().orElse(-1);
-        if (bookIssueIndex == -1) {
-            throw new Exception("No active book issue found for this member and book");
-        }
-
         // Step 5: Update the due date for the book issue
-        BookIssue bookIssue = this.bookIssued.get(bookIssueIndex);
         bookIssue.setDueDate(utils.getDateAfterDays(bookIssue.getDueDate(), MemberPolicy.defaultDueDate()));
-        this.bookIssued.set(bookIssueIndex, bookIssue);
+        this.store.markChanged(bookIssue);
+        this.afterHistory(() -> this.recordLoanHistory(bookIssue));
         this.updateBookIssueInDatabase();
 
         // Step 6: Update member's renewal status
@@ -393,26 +1063,119 @@ public class BookIssueService {
     /**
      * Saves the current list of book issues to persistent storage.
      * <p>
-     * This method serializes the current state of book issues and saves it to
-     * "./db/bookIssues.txt". It should be called after any modifications to
-     * ensure data persistence.
+     * This method writes the book issues marked as changed since the last save
+     * as changes logged next to "./db/bookIssues.ser", or rewrites the whole
+     * list when that is cheaper, and then commits the same changes to the
+     * loan history. Saving a replaced list clears the loan archive, as the
+     * list then holds every loan, and the first save of each day moves loans
+     * returned long ago to the archive. It should be called after any
+     * modifications to ensure data persistence.
      *
      * @throws Exception if an I/O error occurs during the save operation
-     * @see utils#saveData(String, Object)
+     * @see DeltaStore#persist(List)
      */
     public void updateBookIssueInDatabase() throws Exception {
+        if (this.readOnly) {
+            throw new IllegalStateException("Book issues were loaded for reading only");
+        }
         try {
-            utils.saveData("./db/bookIssues.ser", this.bookIssued);
+            if (this.archiveStale) {
+                this.archive.beginClear(this.store.getBaseTag(), this.store.getLogLength());
+            }
+            try {
+                this.store.persist(this.bookIssued);
+            } catch (IOException e) {
+                this.archive.abortPending();
+                throw e;
+            }
+            if (this.archiveStale) {
+                this.archive.commitPending();
+                this.archiveStale = false;
+            }
+            long baseTag = this.store.getBaseTag();
+            long logLength = this.store.getLogLength();
+            this.afterHistory(() -> {
+                if (this.loanHistory == null) {
+                    return;
+                }
+                if (this.loanHistoryStale) {
+                    this.rebuildLoanHistory(this.bookIssued, baseTag, logLength);
+                } else {
+                    this.loanHistory.commit(baseTag, logLength);
+                }
+            });
+            if (this.isHistoryLoaded() && LocalDate.now().toEpochDay() != this.lastArchiveDay) {
+                this.archiveReturnedLoans();
+            }
         } catch (Exception e) {
             throw new Exception("Failed to save book issues: " + e.getMessage(), e);
         }
     }
 
     /**
-     * /**
-     * Displays a list of books that are overdue (not returned and past their due
-     * date)
-     * 
+     * Moves the loans returned more than {@link #ARCHIVE_AFTER_DAYS} days ago
+     * from the issue list to a new archive segment. This runs on loading, or
+     * at the first save once a history loaded in the background is ready, and
+     * on the first save of each day, and waits until at least
+     * {@link #ARCHIVE_MIN_LOANS} loans qualify so segments are not tiny.
+     * <p>
+     * The segment is written first and marked pending, then the issue store
+     * is saved without the moved loans, and only then is the segment
+     * committed; see {@link ArchiveStore} for how a crash in between is
+     * resolved. The aggregates behind the reports and the loan history cover
+     * archived loans as well, so they are not changed.
+     *
+     * @throws Exception if the archive or the issue store cannot be written;
+     *                   the loans then stay in the issue list
+     */
+    private void archiveReturnedLoans() throws Exception {
+        this.lastArchiveDay = LocalDate.now().toEpochDay();
+        if (this.archiveStale || this.store.hasChanges()) {
+            return;
+        }
+        long cutoff = utils.getDateAfterDays(utils.getEpochTime(), -ARCHIVE_AFTER_DAYS);
+        List<BookIssue> archived = new ArrayList<>();
+        List<BookIssue> remaining = new ArrayList<>(this.bookIssued.size());
+        for (BookIssue issue : this.bookIssued) {
+            if (issue.getReturnDate() != 0 && issue.getReturnDate() < cutoff) {
+                archived.add(issue);
+            } else {
+                remaining.add(issue);
+            }
+        }
+        if (archived.size() < ARCHIVE_MIN_LOANS) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        this.archive.append(archived, this.store.getBaseTag(), this.store.getLogLength());
+        for (BookIssue issue : archived) {
+            this.store.markRemoved(issue);
+        }
+        try {
+            this.store.persist(remaining);
+        } catch (IOException e) {
+            for (BookIssue issue : archived) {
+                this.store.markChanged(issue);
+            }
+            this.archive.abortPending();
+            throw e;
+        }
+        this.bookIssued = remaining;
+        this.archive.commitPending();
+        if (this.loanHistory != null) {
+            this.loanHistory.commit(this.store.getBaseTag(), this.store.getLogLength());
+        }
+        this.notice("Archived " + archived.size() + " loans returned before "
+                + utils.convertEpochToDate(cutoff) + " in " + (System.nanoTime() - start) / 1000000 + " ms ("
+                + this.archive.getRecordCount() + " archived, " + remaining.size() + " in the issue list)");
+    }
+
+    /**
+     * /**
+     * Displays a list of books that are overdue (not returned and past their due
+     * date)
+     * 
      * @throws Exception if there's an error accessing the book issue data
      */
 
@@ -437,38 +1200,65 @@ public class BookIssueService {
     }
 
     /**
-     * Generates and displays book recommendations based on popular authors.
+     * Generates and displays book recommendations for a member.
      * <p>
-     * This method analyzes the most frequently borrowed authors and recommends
-     * other books by those authors. It shows the top 10 most popular authors
-     * and their available books.
+     * Recommendations are books often borrowed by members who borrowed the same
+     * books as this member. Books the member already borrowed and books with no
+     * copy available are left out.
      *
-     * @throws Exception if there's an error accessing book or issue data
-     * @see BookService#getBooksByAuthor(String)
+     * @throws Exception if the member is not found
+     * @see #recommendBooks(long)
      * @see BookService#showBookList(List)
      */
     public void bookRecommendations() throws Exception {
         System.out.print("Enter member ID: ");
         long memberId = Long.parseLong(scn.nextLine());
+        this.bookService.showBookList(recommendBooks(memberId));
+    }
+
+    /**
+     * Returns book recommendations for a member without any console
+     * interaction.
+     * <p>
+     * The recommendations come from the co-borrowing model, which is kept up to
+     * date on every issue, so the cost depends on the member's own history
+     * rather than the whole library's. Members who have not borrowed anything
+     * yet get the most popular available books instead.
+     *
+     * @param memberId the ID of the member
+     * @return up to {@value #RECOMMENDATION_LIMIT} books, best match first
+     * @throws Exception if the member is not found
+     * @see CoBorrowingModel#recommend(long, int, java.util.function.LongPredicate)
+     */
+    public List<Book> recommendBooks(long memberId) throws Exception {
         Member member = memberService.getMemberById(memberId);
         if (member == null) {
             throw new Exception("Member not found");
         }
 
-        // book issued count by book author
-        List<Book> recommendedBooks = new ArrayList<>();
-
-        // get top 5 authors
-        List<String> topAuthors = this.bookIssued.stream().filter(issue -> issue.getMember().getMemberId() == memberId)
-                .collect(Collectors.groupingBy(issue -> issue.getBook().getAuthor(), Collectors.counting()))
-                .entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
-                .limit(10).map(Map.Entry::getKey).collect(Collectors.toList());
+        List<Long> isbns = this.coBorrowing.recommend(memberId, RECOMMENDATION_LIMIT, this::isRecommendable);
+        if (isbns.isEmpty()) {
+            isbns = new ArrayList<>();
+            for (long isbn : this.popularity.getTopKeys()) {
+                if (isRecommendable(isbn)) {
+                    isbns.add(isbn);
+                }
+            }
+        }
 
-        for (String author : topAuthors) {
-            recommendedBooks.addAll(this.bookService.getBooksByAuthor(author));
+        List<Book> recommendedBooks = new ArrayList<>(isbns.size());
+        for (long isbn : isbns) {
+            recommendedBooks.add(this.bookService.getBookById(isbn));
         }
-        // show recommended books
-        this.bookService.showBookList(recommendedBooks);
+        return recommendedBooks;
+    }
+
+    /**
+     * Checks whether a book is still in the catalog and has a copy available.
+     */
+    private boolean isRecommendable(long isbn) {
+        Book book = this.bookService.getBookById(isbn);
+        return book != null && (!(book instanceof PhysicalBook) || ((PhysicalBook) book).isAvailable());
     }
 
     /**
@@ -479,10 +1269,12 @@ public class BookIssueService {
      * number of times reserved. The column widths are automatically adjusted
      * based on the content.
      *
-     * @param topBooks a list of maps containing book popularity data
+     * @param topBooks     the popular books, most issued first
+     * @param issuedCounts the number of times each book was issued, in the same
+     *                     order
      * @see #getPopularBooks()
      */
-    protected void showPopularBooks(List<Map<String, Object>> topBooks) {
+    protected void showPopularBooks(List<Book> topBooks, long[] issuedCounts) {
         System.out.println("Result -\n");
         if (topBooks.size() == 0) {
             System.out.println("Error: No books found");
@@ -497,10 +1289,10 @@ public class BookIssueService {
             colWidths[i] = headers[i].length();
         }
 
-        for (Map<String, Object> book : topBooks) {
-            colWidths[0] = Math.max(colWidths[0], book.get("Title").toString().length());
-            colWidths[1] = Math.max(colWidths[1], String.valueOf(book.get("issuedCount")).length());
-            colWidths[2] = Math.max(colWidths[2], String.valueOf(book.get("reservedCount")).length());
+        for (int i = 0; i < topBooks.size(); i++) {
+            colWidths[0] = Math.max(colWidths[0], topBooks.get(i).getTitle().length());
+            colWidths[1] = Math.max(colWidths[1], String.valueOf(issuedCounts[i]).length());
+            colWidths[2] = Math.max(colWidths[2], String.valueOf(getReservedCount(topBooks.get(i))).length());
         }
 
         // Build format string
@@ -513,44 +1305,44 @@ public class BookIssueService {
         System.out.println();
 
         // Print rows
-        for (Map<String, Object> book : topBooks) {
-            System.out.printf(format, book.get("Title"), book.get("issuedCount"), book.get("reservedCount"));
+        for (int i = 0; i < topBooks.size(); i++) {
+            Book book = topBooks.get(i);
+            System.out.printf(format, book.getTitle(), issuedCounts[i], getReservedCount(book));
         }
         System.out.println("=====================================");
     }
 
+    /**
+     * Returns the number of reserved copies of a book; digital books have none.
+     */
+    private static int getReservedCount(Book book) {
+        return book instanceof PhysicalBook ? ((PhysicalBook) book).getReservedCopies() : 0;
+    }
+
     /**
      * Retrieves and displays the most popular books in the library.
      * <p>
-     * This method identifies the top 5 most borrowed books based on issue history
-     * and displays them along with their issue counts and reservation counts.
+     * This method reads the top 5 most borrowed books from the popularity
+     * counters maintained on every issue and displays them along with their
+     * issue counts and reservation counts. The report costs O(K) regardless of
+     * the size of the issue history.
      *
      * @throws Exception if there's an error accessing book or issue data
-     * @see #showPopularBooks(List)
-     * @see BookService#getBookById(long)
+     * @see #showPopularBooks(List, long[])
+     * @see TopKCounter
      */
     public void getPopularBooks() throws Exception {
-        // book issued count by book author
-        List<Book> popularBooks = new ArrayList<>();
-
-        // get top 5 books with title and issuedCount
-        List<Map<String, Object>> topBooks = this.bookIssued.stream()
-                .collect(Collectors.groupingBy(issue -> issue.getBook().getISBN(), Collectors.counting()))
-                .entrySet().stream()
-                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
-                .limit(5)
-                .map(entry -> {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("Title", this.bookService.getBookById(entry.getKey()).getTitle());
-                    map.put("issuedCount", entry.getValue());
-                    map.put("reservedCount",
-                            ((PhysicalBook) this.bookService.getBookById(entry.getKey())).getReservedCopies());
-                    return map;
-                })
-                .collect(Collectors.toList());
-
-        // show recommended books
-        showPopularBooks(topBooks);
+        List<Long> topIsbns = this.popularity.getTopKeys();
+        List<Book> topBooks = new ArrayList<>(topIsbns.size());
+        long[] issuedCounts = new long[topIsbns.size()];
+        for (long isbn : topIsbns) {
+            Book book = this.bookService.getBookById(isbn);
+            if (book != null) {
+                issuedCounts[topBooks.size()] = this.popularity.getCount(isbn);
+                topBooks.add(book);
+            }
+        }
+        showPopularBooks(topBooks, issuedCounts);
     }
 
     /**
@@ -608,38 +1400,565 @@ public class BookIssueService {
     }
 
     /**
-     * Generates a monthly borrowing report.
+     * Generates a monthly borrowing report for an optional date range.
      * <p>
-     * This method analyzes book issues by month and displays the count of
-     * books borrowed each month. The report helps in understanding borrowing
-     * patterns and trends over time.
+     * The user may enter a start and end date or press enter to use the dates of
+     * the first and last recorded issue.
      *
-     * @throws Exception if there's an error processing the issue data
-     * @see YearMonth
-     * @see utils#convertEpochToDate(long)
+     * @throws Exception if a date is not in the yyyy-MM-dd format or the range is
+     *                   empty
+     * @see #borrowingReports(LocalDate, LocalDate)
      */
     public void borrowingReports() throws Exception {
-        Map<YearMonth, Long> monthlyBorrows = this.bookIssued.stream()
-                .collect(Collectors.groupingBy(
-                        issue -> YearMonth.from(utils.convertEpochToDate(issue.getIssueDate())),
-                        Collectors.counting()));
-        System.out.println(monthlyBorrows);
+        System.out.print("Enter the start date as yyyy-MM-dd. (optional - press enter for all): ");
+        LocalDate from = parseOptionalDate(scn.nextLine());
+        System.out.print("Enter the end date as yyyy-MM-dd. (optional - press enter for all): ");
+        LocalDate to = parseOptionalDate(scn.nextLine());
+        borrowingReports(from, to);
     }
 
     /**
-     * Calculates and displays the total fines collected from all book issues.
+     * Generates a monthly borrowing report without any console input.
      * <p>
-     * This method sums up all fine amounts from book issues where fines were
-     * applied. It provides insight into the library's fine revenue.
+     * This method reads the pre-aggregated borrowing rollup maintained on every
+     * issue and displays the number of books borrowed in each month of the range,
+     * followed by a breakdown of the whole range by book category, member type
+     * and book type. Its cost depends on the length of the range, not on the size
+     * of the issue history.
      *
-     * @throws Exception if there's an error accessing the book issue data
-     * @see BookIssue#getFineAmount()
+     * @param from the first day of the report, or null to start at the first
+     *             recorded issue
+     * @param to   the last day of the report, or null to end at the last recorded
+     *             issue
+     * @throws Exception if the start date is after the end date
+     * @see BorrowingRollup
+     */
+    public void borrowingReports(LocalDate from, LocalDate to) throws Exception {
+        System.out.println("Result -\n");
+        if (this.borrowingRollup.getFirstDate() == null) {
+            System.out.println("Error: No book issues found");
+            System.out.println("=====================================");
+            return;
+        }
+        from = from != null ? from : this.borrowingRollup.getFirstDate();
+        to = to != null ? to : this.borrowingRollup.getLastDate();
+        if (from.isAfter(to)) {
+            throw new Exception("Start date must not be after end date");
+        }
+
+        List<String[]> monthRows = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(from); !month.atDay(1).isAfter(to); month = month.plusMonths(1)) {
+            LocalDate start = month.atDay(1).isBefore(from) ? from : month.atDay(1);
+            LocalDate end = month.atEndOfMonth().isAfter(to) ? to : month.atEndOfMonth();
+            monthRows.add(new String[] { month.toString(),
+                    String.valueOf(this.borrowingRollup.query(start, end).getTotal()) });
+        }
+        utils.showTable(new String[] { "MONTH", "BORROWED" }, monthRows);
+
+        BorrowingRollup.Counts counts = this.borrowingRollup.query(from, to);
+        List<String[]> categoryRows = new ArrayList<>();
+        for (BookCategory category : BookCategory.values()) {
+            categoryRows.add(new String[] { category.toString(), String.valueOf(counts.getCategoryCount(category)) });
+        }
+        utils.showTable(new String[] { "CATEGORY", "BORROWED" }, categoryRows);
+
+        List<String[]> memberTypeRows = new ArrayList<>();
+        for (int i = 0; i < BorrowingRollup.MEMBER_TYPES.length; i++) {
+            memberTypeRows.add(new String[] { BorrowingRollup.MEMBER_TYPES[i],
+                    String.valueOf(counts.getMemberTypeCount(i)) });
+        }
+        utils.showTable(new String[] { "MEMBER TYPE", "BORROWED" }, memberTypeRows);
+
+        List<String[]> bookTypeRows = new ArrayList<>();
+        for (int i = 0; i < BorrowingRollup.BOOK_TYPES.length; i++) {
+            bookTypeRows.add(new String[] { BorrowingRollup.BOOK_TYPES[i],
+                    String.valueOf(counts.getBookTypeCount(i)) });
+        }
+        utils.showTable(new String[] { "BOOK TYPE", "BORROWED" }, bookTypeRows);
+
+        System.out.println("Total borrowed: " + counts.getTotal());
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Parses a yyyy-MM-dd date entered by the user.
+     *
+     * @return the date, or null if the input is empty
+     * @throws Exception if the input is not a valid date
+     */
+    private static LocalDate parseOptionalDate(String input) throws Exception {
+        if (input.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(input.trim());
+        } catch (DateTimeParseException e) {
+            throw new Exception("Invalid date");
+        }
+    }
+
+    /**
+     * Displays the fine collection summary.
+     * <p>
+     * All figures are running totals kept by the fine ledger, so the report
+     * costs the same regardless of how many issues or ledger entries exist.
+     *
+     * @throws Exception if there's an error accessing the fine ledger
+     * @see FineLedger
      */
     public void fineCollectionReports() throws Exception {
-        double totalFines = this.bookIssued.stream()
-                .mapToDouble(issue -> issue.getFineAmount())
-                .sum();
-        System.out.println(totalFines);
+        LocalDate today = utils.convertEpochToDate(utils.getEpochTime());
+        System.out.println("Result -\n");
+        System.out.println("Total fines assessed   : "
+                + FineLedger.format(this.fineLedger.getTotal(FineLedger.EntryType.ASSESSED)));
+        System.out.println("Total fines collected  : "
+                + FineLedger.format(this.fineLedger.getTotal(FineLedger.EntryType.PAID)));
+        System.out.println("Total fines waived     : "
+                + FineLedger.format(this.fineLedger.getTotal(FineLedger.EntryType.WAIVED)));
+        System.out.println("Outstanding fines      : " + FineLedger.format(this.fineLedger.getOutstanding()));
+        System.out.println("Assessed today         : "
+                + FineLedger.format(this.fineLedger.getDayTotal(today, FineLedger.EntryType.ASSESSED)));
+        System.out.println("Collected today        : "
+                + FineLedger.format(this.fineLedger.getDayTotal(today, FineLedger.EntryType.PAID)));
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Displays borrowing analytics for a single member or for all members of a
+     * type.
+     *
+     * @throws Exception if the member or member type is not found
+     * @see #showMemberAnalytics(long)
+     * @see #showCohortAnalytics(String)
+     */
+    public void getMemberAnalytics() throws Exception {
+        System.out.println("1. Single member");
+        System.out.println("2. Member type (Student, Faculty, Regular)");
+        System.out.print("Enter your choice: ");
+        String choice = scn.nextLine();
+        switch (choice) {
+            case "1":
+                System.out.print("Enter member ID: ");
+                showMemberAnalytics(Long.parseLong(scn.nextLine()));
+                break;
+            case "2":
+                System.out.print("Enter member type: ");
+                showCohortAnalytics(scn.nextLine());
+                break;
+            default:
+                throw new Exception("Invalid choice");
+        }
+    }
+
+    /**
+     * Displays the borrowing profile of a member together with their fine
+     * history.
+     * <p>
+     * The profile is read from the member profile store, so the cost does not
+     * depend on the size of the issue history.
+     *
+     * @param memberId the ID of the member
+     * @throws Exception if the member is not found
+     */
+    public void showMemberAnalytics(long memberId) throws Exception {
+        Member member = memberService.getMemberById(memberId);
+        if (member == null) {
+            throw new Exception("Member not found");
+        }
+        System.out.println("Result -\n");
+        System.out.println("Member            : " + member.getName() + " (" + member.getMemberType() + ")");
+        MemberProfileStore.Profile profile = this.memberProfiles.getMemberProfile(memberId);
+        if (profile == null) {
+            System.out.println("Error: No borrowing activity found");
+            System.out.println("=====================================");
+            return;
+        }
+        showProfile(profile);
+        System.out.println("Fines paid        : "
+                + FineLedger.format(this.fineLedger.getMemberTotal(memberId, FineLedger.EntryType.PAID)));
+        System.out.println("Fines waived      : "
+                + FineLedger.format(this.fineLedger.getMemberTotal(memberId, FineLedger.EntryType.WAIVED)));
+        System.out.println("Fines outstanding : " + FineLedger.format(this.fineLedger.getOutstanding(memberId)));
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Displays the combined borrowing profile of all members of a type.
+     *
+     * @param memberType the member type (Student, Faculty or Regular)
+     * @throws Exception if the member type is not valid
+     */
+    public void showCohortAnalytics(String memberType) throws Exception {
+        MemberProfileStore.Profile profile = this.memberProfiles.getCohortProfile(memberType);
+        if (profile == null) {
+            throw new Exception("Invalid member type");
+        }
+        System.out.println("Result -\n");
+        System.out.println("Member type       : " + memberType);
+        showProfile(profile);
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Displays the fields shared by member and cohort profiles.
+     */
+    private static void showProfile(MemberProfileStore.Profile profile) {
+        System.out.println("Books borrowed    : " + profile.getBorrowCount());
+        System.out.println("Books returned    : " + profile.getReturnCount());
+        System.out.println("Avg loan (days)   : " + Math.round(profile.getAverageLoanDays() * 10) / 10.0);
+        System.out.println("Overdue rate      : " + Math.round(profile.getOverdueRate() * 1000) / 10.0 + "%");
+        System.out.println("Last borrowed     : " + (profile.getLastBorrowAt() == 0 ? "-"
+                : utils.convertEpochToDate(profile.getLastBorrowAt()).toString()));
+        System.out.println("Favorite genres   : " + profile.getFavoriteCategories(3));
+        System.out.println("Favorite authors  : " + profile.getFavoriteAuthors());
+        System.out.println("Fined returns     : " + profile.getFinedCount());
+        System.out.println("Fines assessed    : " + FineLedger.format(profile.getFineAssessed()));
+        System.out.println("Last fined        : " + (profile.getLastFineAt() == 0 ? "-"
+                : utils.convertEpochToDate(profile.getLastFineAt()).toString()));
+    }
+
+    /**
+     * Displays member engagement segments and borrow frequency deciles.
+     * <p>
+     * Members are segmented by their latest loan: active (within
+     * {@value #ACTIVE_DAYS} days), lapsing (within {@value #LAPSING_DAYS} days)
+     * or dormant (earlier or never). Borrow frequency is the number of loans in
+     * the last {@value #FREQUENCY_DAYS} days; its deciles are reported for each
+     * member type and department. The loan history is read in a single parallel
+     * scan over the loan columns.
+     *
+     * @throws Exception if there's an error processing the member data
+     * @see LoanColumns#scanMemberActivity(int)
+     */
+    public void memberEngagementReports() throws Exception {
+        System.out.println("Result -\n");
+        List<Member> members = this.memberService.getMemberList();
+        if (members.isEmpty()) {
+            System.out.println("Error: No members found");
+            System.out.println("=====================================");
+            return;
+        }
+
+        int today = (int) utils.convertEpochToDate(utils.getEpochTime()).toEpochDay();
+        LoanColumns.MemberActivity activity = this.loanColumns.scanMemberActivity(today - FREQUENCY_DAYS + 1);
+
+        Map<String, EngagementGroup> groups = new TreeMap<>();
+        EngagementGroup total = new EngagementGroup("All", "-", members.size());
+        for (Member member : members) {
+            String department = getDepartment(member);
+            EngagementGroup group = groups.computeIfAbsent(member.getMemberType() + "/" + department,
+                    key -> new EngagementGroup(member.getMemberType(), department, members.size()));
+            int ordinal = this.loanColumns.getOrdinal(member.getMemberId());
+            int recentLoans = ordinal < 0 ? 0 : activity.getRecentLoans(ordinal);
+            int lastLoanDay = ordinal < 0 ? Integer.MIN_VALUE : activity.getLastLoanDay(ordinal);
+            group.add(today, lastLoanDay, recentLoans);
+            total.add(today, lastLoanDay, recentLoans);
+        }
+
+        String[] headers = { "MEMBER TYPE", "DEPARTMENT", "MEMBERS", "ACTIVE", "LAPSING", "DORMANT",
+                "LOANS/YEAR DECILES (10%..90%)" };
+        List<String[]> rows = new ArrayList<>();
+        for (EngagementGroup group : groups.values()) {
+            rows.add(group.toRow());
+        }
+        rows.add(total.toRow());
+        utils.showTable(headers, rows);
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Returns the department of a student or faculty member, or "-" for other
+     * members.
+     */
+    private static String getDepartment(Member member) {
+        String department = null;
+        if (member instanceof StudentMember) {
+            department = ((StudentMember) member).getDepartment();
+        } else if (member instanceof FacultyMember) {
+            department = ((FacultyMember) member).getDepartment();
+        }
+        return department == null || department.isEmpty() ? "-" : department;
+    }
+
+    /**
+     * Engagement counters and borrow frequencies of one member type and
+     * department.
+     */
+    private static class EngagementGroup {
+        final String memberType;
+        final String department;
+        int active;
+        int lapsing;
+        int dormant;
+        int[] recentLoans;
+        int size;
+
+        EngagementGroup(String memberType, String department, int capacity) {
+            this.memberType = memberType;
+            this.department = department;
+            this.recentLoans = new int[Math.min(capacity, 16)];
+        }
+
+        void add(int today, int lastLoanDay, int loans) {
+            long daysSince = (long) today - lastLoanDay;
+            if (daysSince <= ACTIVE_DAYS) {
+                this.active++;
+            } else if (daysSince <= LAPSING_DAYS) {
+                this.lapsing++;
+            } else {
+                this.dormant++;
+            }
+            if (this.size == this.recentLoans.length) {
+                this.recentLoans = Arrays.copyOf(this.recentLoans, this.size * 2);
+            }
+            this.recentLoans[this.size++] = loans;
+        }
+
+        String[] toRow() {
+            int[] sorted = Arrays.copyOf(this.recentLoans, this.size);
+            Arrays.sort(sorted);
+            StringBuilder deciles = new StringBuilder();
+            for (int decile = 1; decile <= 9; decile++) {
+                // Nearest-rank percentile
+                int rank = (int) Math.ceil(decile / 10.0 * sorted.length);
+                deciles.append(decile > 1 ? "/" : "").append(sorted[Math.max(rank, 1) - 1]);
+            }
+            return new String[] { this.memberType, this.department, String.valueOf(this.size),
+                    String.valueOf(this.active), String.valueOf(this.lapsing), String.valueOf(this.dormant),
+                    deciles.toString() };
+        }
+    }
+
+    /**
+     * Displays the fine management menu and performs the chosen operation.
+     * <p>
+     * Librarians can view a member's fines, record a payment, waive a fine or
+     * reconcile the fine ledger against the issue records.
+     *
+     * @throws Exception if the chosen operation fails
+     */
+    public void fineManagement() throws Exception {
+        System.out.println("1. View member fines");
+        System.out.println("2. Pay fine");
+        System.out.println("3. Waive fine");
+        System.out.println("4. Reconcile fine ledger");
+        System.out.print("Enter your choice: ");
+        String choice = scn.nextLine();
+        switch (choice) {
+            case "1": {
+                System.out.print("Enter member ID: ");
+                long memberId = Long.parseLong(scn.nextLine());
+                showMemberFines(memberId);
+                break;
+            }
+            case "2":
+            case "3": {
+                System.out.print("Enter member ID: ");
+                long memberId = Long.parseLong(scn.nextLine());
+                System.out.print("Enter the amount: ");
+                double amount = Double.parseDouble(scn.nextLine());
+                if (choice.equals("2")) {
+                    payFine(memberId, amount);
+                } else {
+                    waiveFine(memberId, amount);
+                }
+                showMemberFines(memberId);
+                break;
+            }
+            case "4":
+                reconcileFines();
+                break;
+            default:
+                throw new Exception("Invalid choice");
+        }
+    }
+
+    /**
+     * Displays the fine totals of one member.
+     *
+     * @param memberId the ID of the member
+     * @throws Exception if the member is not found
+     */
+    public void showMemberFines(long memberId) throws Exception {
+        Member member = memberService.getMemberById(memberId);
+        if (member == null) {
+            throw new Exception("Member not found");
+        }
+        System.out.println("Result -\n");
+        System.out.println("Member      : " + member.getName());
+        System.out.println("Assessed    : "
+                + FineLedger.format(this.fineLedger.getMemberTotal(memberId, FineLedger.EntryType.ASSESSED)));
+        System.out.println("Paid        : "
+                + FineLedger.format(this.fineLedger.getMemberTotal(memberId, FineLedger.EntryType.PAID)));
+        System.out.println("Waived      : "
+                + FineLedger.format(this.fineLedger.getMemberTotal(memberId, FineLedger.EntryType.WAIVED)));
+        System.out.println("Outstanding : " + FineLedger.format(this.fineLedger.getOutstanding(memberId)));
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Records a fine payment by a member.
+     *
+     * @param memberId the ID of the paying member
+     * @param amount   the amount paid
+     * @throws Exception if the member is not found or the amount is not positive
+     *                   or exceeds the outstanding fines
+     */
+    public void payFine(long memberId, double amount) throws Exception {
+        settleFine(memberId, amount, FineLedger.EntryType.PAID);
+    }
+
+    /**
+     * Waives part or all of a member's outstanding fines.
+     *
+     * @param memberId the ID of the member
+     * @param amount   the amount to waive
+     * @throws Exception if the member is not found or the amount is not positive
+     *                   or exceeds the outstanding fines
+     */
+    public void waiveFine(long memberId, double amount) throws Exception {
+        settleFine(memberId, amount, FineLedger.EntryType.WAIVED);
+    }
+
+    /**
+     * Reduces a member's outstanding fines and records why in the ledger.
+     */
+    private void settleFine(long memberId, double amount, FineLedger.EntryType type) throws Exception {
+        Member member = memberService.getMemberById(memberId);
+        if (member == null) {
+            throw new Exception("Member not found");
+        }
+        long minorUnits = FineLedger.toMinorUnits(amount);
+        if (minorUnits <= 0) {
+            throw new Exception("Invalid amount");
+        }
+        if (minorUnits > this.fineLedger.getOutstanding(memberId)) {
+            throw new Exception("Amount exceeds the outstanding fines");
+        }
+
+        this.fineLedger.append(new FineLedger.Entry(type, memberId, 0, minorUnits, utils.getEpochTime()));
+        member.payFine(Math.min(amount, member.getTotalFineAmount()));
+        memberService.updateMemberInList(member);
+        memberService.updateMemberInDatabase();
+    }
+
+    /**
+     * Checks the fine ledger against the issue and member records.
+     * <p>
+     * The ledger file is streamed once to total the assessments per issue and the
+     * outstanding amount per member, which are then compared with the fine on
+     * each issue and the fine balance on each member. Any differences are
+     * listed.
+     *
+     * @throws Exception if the fine ledger cannot be read
+     */
+    public void reconcileFines() throws Exception {
+        Map<Long, Long> assessedByIssue = new HashMap<>();
+        Map<Long, Long> outstandingByMember = new HashMap<>();
+        this.fineLedger.forEachEntry(entry -> {
+            if (entry.getType() == FineLedger.EntryType.ASSESSED) {
+                if (entry.getIssueId() != 0) {
+                    assessedByIssue.merge(entry.getIssueId(), entry.getAmount(), Long::sum);
+                }
+                outstandingByMember.merge(entry.getMemberId(), entry.getAmount(), Long::sum);
+            } else {
+                outstandingByMember.merge(entry.getMemberId(), -entry.getAmount(), Long::sum);
+            }
+        });
+
+        System.out.println("Result -\n");
+        int[] issueMismatches = { 0 };
+        this.forEachBookIssue(Long.MIN_VALUE, Long.MAX_VALUE, issue -> {
+            long recorded = FineLedger.toMinorUnits(issue.getFineAmount());
+            long ledger = assessedByIssue.getOrDefault(issue.getIssueId(), 0L);
+            if (recorded != ledger) {
+                issueMismatches[0]++;
+                System.out.println("Issue " + issue.getIssueId() + ": recorded " + FineLedger.format(recorded)
+                        + ", ledger " + FineLedger.format(ledger));
+            }
+        });
+
+        int memberMismatches = 0;
+        for (Map.Entry<Long, Long> outstanding : outstandingByMember.entrySet()) {
+            Member member = memberService.getMemberById(outstanding.getKey());
+            long recorded = member != null ? FineLedger.toMinorUnits(member.getTotalFineAmount()) : 0;
+            if (recorded != outstanding.getValue()) {
+                memberMismatches++;
+                System.out.println("Member " + outstanding.getKey() + ": recorded " + FineLedger.format(recorded)
+                        + ", ledger " + FineLedger.format(outstanding.getValue()));
+            }
+        }
+
+        System.out.println("Ledger entries checked : " + this.fineLedger.getEntryCount());
+        System.out.println("Issue mismatches       : " + issueMismatches[0]);
+        System.out.println("Member mismatches      : " + memberMismatches);
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Displays every loan of a member, oldest first.
+     *
+     * @param memberId the ID of the member
+     * @throws Exception if the loan history cannot be read
+     * @see #getMemberLoanHistory(long)
+     */
+    public void showLoanHistory(long memberId) throws Exception {
+        this.showIssueList(this.getMemberLoanHistory(memberId));
+    }
+
+    /**
+     * Returns every loan of a member, oldest first.
+     * <p>
+     * The loans are read from the member index of the loan history, so the
+     * cost follows the member's own loans rather than the whole history. If
+     * the loan history is not available the archived and live issues are
+     * scanned.
+     *
+     * @param memberId the ID of the member
+     * @return the member's loans
+     * @throws Exception if the loan history cannot be read
+     */
+    public List<BookIssue> getMemberLoanHistory(long memberId) throws Exception {
+        if (this.loanHistory != null) {
+            return this.loanHistory.find(HISTORY_BY_MEMBER, memberId);
+        }
+        List<BookIssue> loans = new ArrayList<>();
+        if (!this.archiveStale) {
+            this.archive.forEach(LoanArchiveCodec.MEMBER, memberId, memberId, loans::add);
+        }
+        for (BookIssue issue : this.bookIssued) {
+            if (issue.getMemberId() == memberId) {
+                loans.add(issue);
+            }
+        }
+        loans.sort((a, b) -> Long.compare(a.getIssueDate(), b.getIssueDate()));
+        return loans;
+    }
+
+    /**
+     * Returns every loan of a book, oldest first, read from the ISBN index of
+     * the loan history, or from the archived and live issues if the history
+     * is not available.
+     *
+     * @param isbn the ISBN of the book
+     * @return the book's loans
+     * @throws Exception if the loan history cannot be read
+     */
+    public List<BookIssue> getBookLoanHistory(long isbn) throws Exception {
+        if (this.loanHistory != null) {
+            return this.loanHistory.find(HISTORY_BY_BOOK, isbn);
+        }
+        List<BookIssue> loans = new ArrayList<>();
+        if (!this.archiveStale) {
+            this.archive.forEach(LoanArchiveCodec.BOOK, isbn, isbn, loans::add);
+        }
+        for (BookIssue issue : this.bookIssued) {
+            if (issue.getISBN() == isbn) {
+                loans.add(issue);
+            }
+        }
+        loans.sort((a, b) -> Long.compare(a.getIssueDate(), b.getIssueDate()));
+        return loans;
     }
 
     /**
@@ -647,20 +1966,236 @@ public class BookIssueService {
      * 
      * @param bookIssued the new list of book issues
      */
+    /**
+     * Returns the current list of book issues: every open loan and the loans
+     * returned too recently to be archived.
+     *
+     * @return the list of live book issues
+     * @see #getAllBookIssues()
+     */
+    protected List<BookIssue> getBookIssueList() {
+        return this.bookIssued;
+    }
+
+    /**
+     * Returns the whole loan history, the archived loans followed by the
+     * issue list, read into a new list. This gives other services read access
+     * to every loan, for example to write the text view.
+     *
+     * @return every book issue
+     * @throws IOException if the archive cannot be read
+     */
+    protected List<BookIssue> getAllBookIssues() throws IOException {
+        List<BookIssue> issues = this.archiveStale ? new ArrayList<>() : this.archive.readAll();
+        issues.addAll(this.bookIssued);
+        return issues;
+    }
+
+    /**
+     * Visits every loan issued in a range, archived or not, without reading
+     * the history into memory. Archive segments outside the range are
+     * skipped.
+     *
+     * @param fromMillis the first issue date included
+     * @param toMillis   the last issue date included
+     * @param visitor    receives the issues
+     * @throws IOException if the archive cannot be read or the visitor fails
+     */
+    protected void forEachBookIssue(long fromMillis, long toMillis, ArchiveStore.RecordVisitor<BookIssue> visitor)
+            throws IOException {
+        this.forEachBookIssue(this.bookIssued, fromMillis, toMillis, visitor);
+    }
+
+    /**
+     * Visits every loan issued in a range from the archive and the given live
+     * issues.
+     */
+    private void forEachBookIssue(List<BookIssue> live, long fromMillis, long toMillis,
+            ArchiveStore.RecordVisitor<BookIssue> visitor) throws IOException {
+        if (!this.archiveStale) {
+            this.archive.forEach(fromMillis, toMillis, visitor);
+        }
+        for (BookIssue issue : live) {
+            if (issue.getIssueDate() >= fromMillis && issue.getIssueDate() <= toMillis) {
+                visitor.visit(issue);
+            }
+        }
+    }
+
+    /**
+     * Returns the loans that have not been returned yet.
+     *
+     * @return the open loans, oldest first
+     */
+    public List<BookIssue> getOpenLoans() {
+        List<BookIssue> open = new ArrayList<>();
+        for (BookIssue issue : this.bookIssued) {
+            if (issue.getReturnDate() == 0) {
+                open.add(issue);
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Returns the ISBNs of books with at least one loan that has not been
+     * returned yet.
+     *
+     * @return the ISBNs of books currently on loan
+     */
+    protected Set<Long> getOpenLoanIsbns() {
+        Set<Long> isbns = new HashSet<>();
+        for (BookIssue issue : this.bookIssued) {
+            if (issue.getReturnDate() == 0 && issue.getBook() != null) {
+                isbns.add(issue.getBook().getISBN());
+            }
+        }
+        return isbns;
+    }
+
+    /**
+     * Recomputes the circulation counts that follow from the open loans.
+     * <p>
+     * The loans that have not been returned are counted per member and per book
+     * in a single pass. Every member's borrowed count is set to their number of
+     * open loans, and every physical book's available copies to its total
+     * copies less its open loans and reserved copies. Members and books are
+     * only saved when a count changed.
+     *
+     * @return the number of members and books whose counts changed
+     * @throws Exception if saving members or books fails
+     */
+    protected int applyOpenLoanCounts() throws Exception {
+        Map<Long, Integer> loansByMember = new HashMap<>();
+        Map<Long, Integer> loansByBook = new HashMap<>();
+        for (BookIssue issue : this.bookIssued) {
+            if (issue.getReturnDate() == 0 && issue.getMember() != null && issue.getBook() != null) {
+                loansByMember.merge((long) issue.getMember().getMemberId(), 1, Integer::sum);
+                loansByBook.merge(issue.getBook().getISBN(), 1, Integer::sum);
+            }
+        }
+
+        int changedMembers = 0;
+        for (Member member : this.memberService.getMemberList()) {
+            int borrowed = loansByMember.getOrDefault((long) member.getMemberId(), 0);
+            if (member.getCurrentBorrowedBooks() != borrowed) {
+                member.setCurrentBorrowedBooks(borrowed);
+                this.memberService.markMemberChanged(member);
+                changedMembers++;
+            }
+        }
+
+        int changedBooks = 0;
+        for (Book book : this.bookService.getBookList()) {
+            if (book instanceof PhysicalBook) {
+                PhysicalBook physicalBook = (PhysicalBook) book;
+                int available = Math.max(0, physicalBook.getTotalCopies()
+                        - loansByBook.getOrDefault(book.getISBN(), 0) - physicalBook.getReservedCopies());
+                if (physicalBook.getAvailableCopies() != available) {
+                    physicalBook.setAvailableCopies(available);
+                    this.bookService.markBookChanged(book);
+                    changedBooks++;
+                }
+            }
+        }
+
+        if (changedMembers > 0) {
+            this.memberService.updateMemberInDatabase();
+        }
+        if (changedBooks > 0) {
+            this.bookService.updateBookInDatabase();
+        }
+        return changedMembers + changedBooks;
+    }
+
     /**
      * Replaces the current list of book issues with a new list.
      * <p>
      * This method is primarily used for loading book issues from persistent storage
      * or for testing purposes. It completely replaces the existing list of book
-     * issues.
+     * issues. The new list is taken to be the whole history, so the loan
+     * archive is cleared when it is saved. The fine ledger is restarted from
+     * the fines recorded on the new issues.
      *
      * @param bookIssued the new list of book issues to use
      * @throws IllegalArgumentException if the provided list is null
+     * @throws Exception                if the fine ledger cannot be written
      */
-    protected void replaceBookIssueList(List<BookIssue> bookIssued) {
+    protected void replaceBookIssueList(List<BookIssue> bookIssued) throws Exception {
         if (bookIssued == null) {
             throw new IllegalArgumentException("Book issues list cannot be null");
         }
         this.bookIssued = bookIssued;
+        this.store.markAllChanged();
+        this.archiveStale = true;
+        this.loanHistoryStale = true;
+        this.rebuildReports(this.bookIssued);
+        this.startFineLedger(this.bookIssued, this.getOutstandingFines());
+    }
+
+    /**
+     * Stores archived loans as columns: issue date as a steady sequence,
+     * issue ID bit-packed since IDs are random, member ID, ISBN and loan
+     * length through dictionaries, days until return bit-packed, and the fine
+     * in cents as runs. The member and
+     * book of a loan are looked up again when it is read, so the archive
+     * holds only their IDs.
+     */
+    public static class LoanArchiveCodec implements ArchiveStore.RowCodec<BookIssue> {
+        /** Column of the member ID */
+        public static final int MEMBER = 2;
+        /** Column of the ISBN */
+        public static final int BOOK = 3;
+
+        private static final ColumnEncoding[] ENCODINGS = {
+                ColumnEncoding.DELTA_OF_DELTA, // issue date
+                ColumnEncoding.BIT_PACKED, // issue ID
+                ColumnEncoding.DICTIONARY, // member ID
+                ColumnEncoding.DICTIONARY, // ISBN
+                ColumnEncoding.DICTIONARY, // due date - issue date
+                ColumnEncoding.BIT_PACKED, // return date - issue date
+                ColumnEncoding.RUN_LENGTH // fine in cents
+        };
+
+        private final LongFunction<Member> members;
+        private final LongFunction<Book> books;
+
+        /**
+         * Creates a codec resolving member and book IDs with the given
+         * lookups.
+         *
+         * @param members returns the member with an ID, or null
+         * @param books   returns the book with an ISBN, or null
+         */
+        public LoanArchiveCodec(LongFunction<Member> members, LongFunction<Book> books) {
+            this.members = members;
+            this.books = books;
+        }
+
+        @Override
+        public ColumnEncoding[] getEncodings() {
+            return ENCODINGS;
+        }
+
+        @Override
+        public void toRow(BookIssue issue, long[] row) {
+            row[0] = issue.getIssueDate();
+            row[1] = issue.getIssueId();
+            row[MEMBER] = issue.getMemberId();
+            row[BOOK] = issue.getISBN();
+            row[4] = issue.getDueDate() - issue.getIssueDate();
+            row[5] = issue.getReturnDate() - issue.getIssueDate();
+            row[6] = FineLedger.toMinorUnits(issue.getFineAmount());
+        }
+
+        @Override
+        public BookIssue fromRow(long[] row) {
+            BookIssue issue = new BookIssue(this.members.apply(row[MEMBER]), this.books.apply(row[BOOK]),
+                    row[6] / 100.0, row[0], row[0] + row[4], row[0] + row[5]);
+            issue.setIssueId(row[1]);
+            issue.setMemberId(row[MEMBER]);
+            issue.setISBN(row[BOOK]);
+            return issue;
+        }
     }
-}
\ No newline at end of file
+}
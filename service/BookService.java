@@ -2,12 +2,21 @@ package service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import common.BookCategory;
+import common.DeltaStore;
+import common.MergeResult;
+import common.SearchResultCache;
 import common.utils;
 import model.AudioBook;
 import model.Book;
@@ -30,23 +39,52 @@ import model.PhysicalBook;
  * @see AudioBook
  */
 public class BookService {
+    /** Maximum number of title and author search results kept in the cache */
+    private static final int SEARCH_CACHE_CAPACITY = 256;
+
     /** Scanner instance for reading user input */
     private Scanner scn = new Scanner(System.in);
     
     /** List to store all books in the library */
     private List<Book> books = new ArrayList<>();
 
+    /** Store of the books list, which saves only the books marked as changed */
+    private final DeltaStore<Book> store = new DeltaStore<>(utils.DB_DIR + "/books.ser", Book::getISBN);
+
+    /** Index of the books list by ISBN for constant-time lookups */
+    private Map<Long, Book> booksByIsbn = new HashMap<>();
+
+    /** Incremented whenever a change can alter title or author search results */
+    private long catalogVersion;
+
+    /** Recent title and author search results, tagged with the catalog version */
+    private final SearchResultCache<List<Book>> searchCache = new SearchResultCache<>(SEARCH_CACHE_CAPACITY);
+
     /**
      * Loads book data from persistent storage.
      * <p>
-     * This method reads book data from the serialized file located at "./db/books.ser"
-     * and populates the internal books list. If the file doesn't exist or is empty,
-     * the books list will be initialized as an empty list.
+     * This method reads book data from the serialized file located at "./db/books.ser",
+     * replays the changes logged since it was last written, and populates the
+     * internal books list. If the file doesn't exist or is empty, the books list
+     * will be initialized as an empty list.
      * 
-     * @see utils#loadData(String)
+     * @see DeltaStore#load()
      */
     public void loadBooks() {
-        this.books = utils.loadData("./db/books.ser");
+        this.books = this.store.load();
+        this.rebuildIndex();
+    }
+
+    /**
+     * Rebuilds the ISBN index from the current books list and invalidates
+     * cached search results.
+     */
+    private void rebuildIndex() {
+        this.catalogVersion++;
+        this.booksByIsbn = new HashMap<>(this.books.size() * 2);
+        for (Book book : this.books) {
+            this.booksByIsbn.put(book.getISBN(), book);
+        }
     }
 
     /**
@@ -242,6 +280,8 @@ public class BookService {
             PhysicalBook physicalBook = new PhysicalBook(title, author, publisher, publicationYear, bookCategory,
                     pages, totalCopies);
             this.books.add(physicalBook);
+            this.booksByIsbn.put(physicalBook.getISBN(), physicalBook);
+            this.store.markChanged(physicalBook);
         }
 
         if (type == 2) {
@@ -259,6 +299,8 @@ public class BookService {
 
             EBook eBook = new EBook(title, author, publisher, publicationYear, bookCategory, fileFormat, drmProtected);
             this.books.add(eBook);
+            this.booksByIsbn.put(eBook.getISBN(), eBook);
+            this.store.markChanged(eBook);
         }
 
         if (type == 3) {
@@ -283,8 +325,11 @@ public class BookService {
             AudioBook audioBook = new AudioBook(title, author, publisher, publicationYear, bookCategory, narratorName,
                     audioFormat, audioLength);
             this.books.add(audioBook);
+            this.booksByIsbn.put(audioBook.getISBN(), audioBook);
+            this.store.markChanged(audioBook);
         }
 
+        this.catalogVersion++;
         this.updateBookInDatabase();
     }
 
@@ -374,6 +419,8 @@ public class BookService {
         }
 
         this.books.set(bookIndex, book);
+        this.store.markChanged(book);
+        this.catalogVersion++;
         this.updateBookInDatabase();
         System.out.println("Book updated successfully");
 
@@ -469,18 +516,40 @@ public class BookService {
             throw new Exception("Invalid book title");
         }
 
-        ArrayList<Book> book = new ArrayList<Book>();
-        for (Book b : this.books) {
-            if (b.getTitle().toLowerCase().contains(title.toLowerCase())) {
-                book.add(b);
-            }
-        }
+        List<Book> book = findBooksByTitle(title);
         if (book.isEmpty()) {
             throw new Exception("Book not found");
         }
         showBookList(book);
     }
 
+    /**
+     * Finds books whose titles contain the given text (case-insensitive).
+     * <p>
+     * This is the headless counterpart of {@link #searchBookByTitle()}. Results
+     * are served from the search cache until the catalog changes.
+     *
+     * @param title the text to look for in book titles
+     * @return the matching books as an unmodifiable list, empty if none match
+     */
+    public List<Book> findBooksByTitle(String title) {
+        String query = title.toLowerCase();
+        String key = "title:" + query;
+        List<Book> result = this.searchCache.get(key, this.catalogVersion);
+        if (result != null) {
+            return result;
+        }
+        result = new ArrayList<>();
+        for (Book b : this.books) {
+            if (b.getTitle().toLowerCase().contains(query)) {
+                result.add(b);
+            }
+        }
+        result = Collections.unmodifiableList(result);
+        this.searchCache.put(key, result, this.catalogVersion);
+        return result;
+    }
+
     /**
      * Searches for books by author.
      * <p>
@@ -499,18 +568,40 @@ public class BookService {
             throw new Exception("Invalid book author");
         }
 
-        ArrayList<Book> book = new ArrayList<Book>();
-        for (Book b : this.books) {
-            if (b.getAuthor().toLowerCase().contains(author.toLowerCase())) {
-                book.add(b);
-            }
-        }
+        List<Book> book = findBooksByAuthor(author);
         if (book.isEmpty()) {
             throw new Exception("Book not found");
         }
         showBookList(book);
     }
 
+    /**
+     * Finds books whose authors' names contain the given text (case-insensitive).
+     * <p>
+     * This is the headless counterpart of {@link #searchBookByAuthor()}. Results
+     * are served from the search cache until the catalog changes.
+     *
+     * @param author the text to look for in author names
+     * @return the matching books as an unmodifiable list, empty if none match
+     */
+    public List<Book> findBooksByAuthor(String author) {
+        String query = author.toLowerCase();
+        String key = "author:" + query;
+        List<Book> result = this.searchCache.get(key, this.catalogVersion);
+        if (result != null) {
+            return result;
+        }
+        result = new ArrayList<>();
+        for (Book b : this.books) {
+            if (b.getAuthor().toLowerCase().contains(query)) {
+                result.add(b);
+            }
+        }
+        result = Collections.unmodifiableList(result);
+        this.searchCache.put(key, result, this.catalogVersion);
+        return result;
+    }
+
     /**
      * Displays detailed information about a specific book.
      * <p>
@@ -587,6 +678,8 @@ public class BookService {
 
     /**
      * Retrieves a book from the collection by its ISBN.
+     * <p>
+     * The lookup goes through the ISBN index and takes constant time.
      *
      * @param isbn The ISBN of the book to retrieve
      * @return The book with the matching ISBN, or null if not found
@@ -594,12 +687,7 @@ public class BookService {
      * @see Book#getISBN()
      */
     protected Book getBookById(long isbn) {
-        for (Book b : this.books) {
-            if (b.getISBN() == isbn) {
-                return b;
-            }
-        }
-        return null;
+        return this.booksByIsbn.get(isbn);
     }
 
     /**
@@ -621,22 +709,40 @@ public class BookService {
         if (bookIndex == -1) {
             throw new Exception("Book not found");
         }
+        // Copy counts are read from the cached Book objects themselves, so only
+        // replacing the object with a different instance makes results stale
+        if (this.books.get(bookIndex) != book) {
+            this.catalogVersion++;
+        }
         this.books.set(bookIndex, book);
+        this.booksByIsbn.put(book.getISBN(), book);
+        this.store.markChanged(book);
+    }
+
+    /**
+     * Marks a book whose fields were changed in place, so the next save
+     * writes it.
+     *
+     * @param book the changed book
+     */
+    protected void markBookChanged(Book book) {
+        this.store.markChanged(book);
     }
 
     /**
      * Saves the current book collection to persistent storage.
      * <p>
-     * This method serializes the current list of books and saves it to
-     * "./db/books.ser". It should be called after any modifications to
-     * the book collection to ensure data persistence.
+     * Only the books marked as changed since the last save are written, as
+     * changes logged next to "./db/books.ser"; the whole list is rewritten when
+     * that is cheaper. It should be called after any modifications to the book
+     * collection to ensure data persistence.
      *
      * @throws Exception If an error occurs during file I/O operations
-     * @see utils#saveData(String, Object)
+     * @see DeltaStore#persist(List)
      */
     protected void updateBookInDatabase() throws Exception {
         try {
-            utils.saveData("./db/books.ser", this.books);
+            this.store.persist(this.books);
         } catch (Exception e) {
             throw new Exception("Failed to save book data: " + e.getMessage(), e);
         }
@@ -657,6 +763,18 @@ public class BookService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Returns the current list of books.
+     * This method gives other services and the command line tools read access
+     * to the whole catalog, for example to recompute copy counts after an
+     * import. Callers must not modify the list.
+     *
+     * @return the list of all books
+     */
+    public List<Book> getBookList() {
+        return this.books;
+    }
+
     /**
      * Replaces the current book collection with a new list of books.
      * <p>
@@ -669,6 +787,153 @@ public class BookService {
      */
     protected void replaceBookList(List<Book> books) {
         this.books = books;
+        this.store.markAllChanged();
+        this.rebuildIndex();
+    }
+
+    /**
+     * Merges imported books into the catalog, matching them on ISBN.
+     * <p>
+     * New ISBNs are appended and indexed; existing books are updated field by
+     * field in place, so loans and reservations keep pointing at the same
+     * objects. Circulation owns the available and reserved copy counts of an
+     * existing physical book: a change in total copies is applied to the
+     * available copies instead of overwriting them. A record whose book type
+     * differs from the catalog entry is skipped. The catalog is only saved, and
+     * cached searches only invalidated, when something changed.
+     *
+     * @param incoming        the imported books
+     * @param withdrawMissing whether to remove catalog books the import does
+     *                        not list
+     * @param onLoan          ISBNs with open loans; these are never withdrawn
+     * @param reserved        ISBNs with pending reservations; these, and
+     *                        physical books with reserved copies, are never
+     *                        withdrawn
+     * @return the counts of inserted, updated, unchanged, withdrawn and skipped
+     *         books
+     * @throws Exception if saving the catalog fails
+     */
+    protected MergeResult mergeBooks(List<Book> incoming, boolean withdrawMissing, Set<Long> onLoan,
+            Set<Long> reserved) throws Exception {
+        MergeResult result = new MergeResult();
+        Set<Long> listed = new HashSet<>(incoming.size() * 2);
+        for (Book book : incoming) {
+            listed.add(book.getISBN());
+            Book current = this.booksByIsbn.get(book.getISBN());
+            if (current == null) {
+                this.books.add(book);
+                this.booksByIsbn.put(book.getISBN(), book);
+                this.store.markChanged(book);
+                result.inserted();
+            } else if (!current.getBookType().equals(book.getBookType())) {
+                result.skipped("ISBN " + book.getISBN() + ": book type cannot change from "
+                        + current.getBookType() + " to " + book.getBookType());
+            } else if (copyFields(current, book)) {
+                this.store.markChanged(current);
+                result.updated();
+            } else {
+                result.unchanged();
+            }
+        }
+
+        if (withdrawMissing && listed.size() < this.books.size()) {
+            this.books.removeIf(book -> {
+                if (listed.contains(book.getISBN())) {
+                    return false;
+                }
+                if (onLoan.contains(book.getISBN())) {
+                    result.skipped("ISBN " + book.getISBN() + ": not withdrawn, copies are on loan");
+                    return false;
+                }
+                if (reserved.contains(book.getISBN())
+                        || (book instanceof PhysicalBook && ((PhysicalBook) book).getReservedCopies() > 0)) {
+                    result.skipped("ISBN " + book.getISBN() + ": not withdrawn, the book is reserved");
+                    return false;
+                }
+                this.booksByIsbn.remove(book.getISBN());
+                this.store.markRemoved(book);
+                result.withdrawn();
+                return true;
+            });
+        }
+
+        if (result.hasChanges()) {
+            this.catalogVersion++;
+            this.updateBookInDatabase();
+        }
+        return result;
+    }
+
+    /**
+     * Copies the catalog fields of an imported book onto an existing book of
+     * the same type.
+     *
+     * @return true if any field changed
+     */
+    private static boolean copyFields(Book target, Book source) {
+        boolean changed = false;
+        if (!Objects.equals(target.getTitle(), source.getTitle())) {
+            target.setTitle(source.getTitle());
+            changed = true;
+        }
+        if (!Objects.equals(target.getAuthor(), source.getAuthor())) {
+            target.setAuthor(source.getAuthor());
+            changed = true;
+        }
+        if (!Objects.equals(target.getPublisher(), source.getPublisher())) {
+            target.setPublisher(source.getPublisher());
+            changed = true;
+        }
+        if (target.getPublicationYear() != source.getPublicationYear()) {
+            target.setPublicationYear(source.getPublicationYear());
+            changed = true;
+        }
+        if (target.getCategory() != source.getCategory()) {
+            target.setCategory(source.getCategory());
+            changed = true;
+        }
+
+        if (target instanceof PhysicalBook) {
+            PhysicalBook physicalTarget = (PhysicalBook) target;
+            PhysicalBook physicalSource = (PhysicalBook) source;
+            if (physicalTarget.getPages() != physicalSource.getPages()) {
+                physicalTarget.setPages(physicalSource.getPages());
+                changed = true;
+            }
+            int addedCopies = physicalSource.getTotalCopies() - physicalTarget.getTotalCopies();
+            if (addedCopies != 0) {
+                physicalTarget.setTotalCopies(physicalSource.getTotalCopies());
+                physicalTarget.setAvailableCopies(Math.max(0, physicalTarget.getAvailableCopies() + addedCopies));
+                changed = true;
+            }
+        } else if (target instanceof EBook) {
+            EBook eBookTarget = (EBook) target;
+            EBook eBookSource = (EBook) source;
+            if (!Objects.equals(eBookTarget.getFileFormat(), eBookSource.getFileFormat())) {
+                eBookTarget.setFileFormat(eBookSource.getFileFormat());
+                changed = true;
+            }
+            if (eBookTarget.isDrmProtected() != eBookSource.isDrmProtected()) {
+                eBookTarget.setDrmProtected(eBookSource.isDrmProtected());
+                changed = true;
+            }
+        } else if (target instanceof AudioBook) {
+            AudioBook audioTarget = (AudioBook) target;
+            AudioBook audioSource = (AudioBook) source;
+            if (!Objects.equals(audioTarget.getNarratorName(), audioSource.getNarratorName())) {
+                audioTarget.setNarratorName(audioSource.getNarratorName());
+                changed = true;
+            }
+            if (!Objects.equals(audioTarget.getAudioFormat(), audioSource.getAudioFormat())) {
+                audioTarget.setAudioFormat(audioSource.getAudioFormat());
+                changed = true;
+            }
+            if (audioTarget.getAudioLength() != audioSource.getAudioLength()) {
+                audioTarget.setAudioLength(audioSource.getAudioLength());
+                changed = true;
+            }
+        }
+        return changed;
     }
 
     /**
@@ -724,4 +989,21 @@ public class BookService {
                 .collect(Collectors.toList());
         showBookList(result);
     }
+
+    /**
+     * Displays the search cache configuration and hit/miss statistics.
+     */
+    public void showSearchCacheStats() {
+        System.out.println("Result -\n");
+        System.out.println("Search cache capacity  : " + this.searchCache.getCapacity());
+        System.out.println("Cached results         : " + this.searchCache.size());
+        System.out.println("Catalog version        : " + this.catalogVersion);
+        System.out.println("Cache hits             : " + this.searchCache.getHits());
+        System.out.println("Cache misses           : " + this.searchCache.getMisses()
+                + " (stale: " + this.searchCache.getStaleMisses() + ")");
+        System.out.println("Cache evictions        : " + this.searchCache.getEvictions());
+        System.out.println("Cache hit rate         : "
+                + String.format("%.1f%%", this.searchCache.getHitRate() * 100));
+        System.out.println("=====================================");
+    }
 }
@@ -1,16 +1,23 @@
 package service;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.Map;
 import java.util.Scanner;
 
 import common.BookCategory;
+import common.ChunkedImporter;
+import common.ExportFilter;
+import common.ExportFormat;
 import common.MemberStatus;
+import common.MergeResult;
+import common.RecordExporter;
+import common.RecordParser;
 import common.utils;
 import model.AudioBook;
 import model.Book;
@@ -19,6 +26,7 @@ import model.EBook;
 import model.FacultyMember;
 import model.Member;
 import model.PhysicalBook;
+import model.Reservation;
 import model.RegularMember;
 import model.StudentMember;
 
@@ -28,26 +36,340 @@ public class ImportExportService {
     private MemberService memberService;
     private BookService bookService;
     private BookIssueService bookIssueService;
+    private ReservationService reservationService;
+
+    /** Parses import files in parallel chunks on the common fork/join pool */
+    private final ChunkedImporter importer = new ChunkedImporter();
 
     public ImportExportService(MemberService memberService, BookService bookService,
-            BookIssueService bookIssueService) {
+            BookIssueService bookIssueService, ReservationService reservationService) {
         this.memberService = memberService;
         this.bookService = bookService;
         this.bookIssueService = bookIssueService;
+        this.reservationService = reservationService;
     }
 
-    private static Map<String, String> parseLine(String line) {
-        Map<String, String> result = new HashMap<>();
-        String[] keyValuePairs = line.split(",\\s*");
+    /** Field names of a book import record, indexed by the BOOK_* constants */
+    private static final String[] BOOK_FIELDS = { "title", "author", "publisher", "publicationYear", "category",
+            "bookType", "pages", "totalCopies", "availableCopies", "reservedCopies", "narratorName", "audioFormat",
+            "audioLength", "fileFormat", "isDrmProtected", "drmProtected", "ISBN" };
+    private static final int BOOK_TITLE = 0;
+    private static final int BOOK_AUTHOR = 1;
+    private static final int BOOK_PUBLISHER = 2;
+    private static final int BOOK_PUBLICATION_YEAR = 3;
+    private static final int BOOK_CATEGORY = 4;
+    private static final int BOOK_TYPE = 5;
+    private static final int BOOK_PAGES = 6;
+    private static final int BOOK_TOTAL_COPIES = 7;
+    private static final int BOOK_AVAILABLE_COPIES = 8;
+    private static final int BOOK_RESERVED_COPIES = 9;
+    private static final int BOOK_NARRATOR_NAME = 10;
+    private static final int BOOK_AUDIO_FORMAT = 11;
+    private static final int BOOK_AUDIO_LENGTH = 12;
+    private static final int BOOK_FILE_FORMAT = 13;
+    private static final int BOOK_IS_DRM_PROTECTED = 14;
+    private static final int BOOK_DRM_PROTECTED = 15;
+    private static final int BOOK_ISBN = 16;
+
+    /** Field names of a member import record, indexed by the MEMBER_* constants */
+    private static final String[] MEMBER_FIELDS = { "name", "email", "phone", "memberType", "membershipStatus",
+            "membershipDate", "currentBorrowedBooks", "totalFineAmount", "renewalCount", "studentId",
+            "academicYear", "department", "facultyId", "designation", "memberId" };
+    private static final int MEMBER_NAME = 0;
+    private static final int MEMBER_EMAIL = 1;
+    private static final int MEMBER_PHONE = 2;
+    private static final int MEMBER_TYPE = 3;
+    private static final int MEMBER_STATUS = 4;
+    private static final int MEMBER_DATE = 5;
+    private static final int MEMBER_BORROWED = 6;
+    private static final int MEMBER_FINE = 7;
+    private static final int MEMBER_RENEWALS = 8;
+    private static final int MEMBER_STUDENT_ID = 9;
+    private static final int MEMBER_ACADEMIC_YEAR = 10;
+    private static final int MEMBER_DEPARTMENT = 11;
+    private static final int MEMBER_FACULTY_ID = 12;
+    private static final int MEMBER_DESIGNATION = 13;
+    private static final int MEMBER_ID = 14;
+
+    /** Field names of a book issue import record, indexed by the ISSUE_* constants */
+    private static final String[] ISSUE_FIELDS = { "memberId", "bookId", "fineAmount", "issueDate", "dueDate",
+            "returnDate" };
+    private static final int ISSUE_MEMBER_ID = 0;
+    private static final int ISSUE_BOOK_ID = 1;
+    private static final int ISSUE_FINE = 2;
+    private static final int ISSUE_DATE = 3;
+    private static final int ISSUE_DUE_DATE = 4;
+    private static final int ISSUE_RETURN_DATE = 5;
+
+    /** Field names of an exported book, indexed by the EXPORT_BOOK_* constants */
+    private static final String[] EXPORT_BOOK_FIELDS = { "ISBN", "title", "author", "publisher",
+            "publicationYear", "category", "bookType", "pages", "totalCopies", "availableCopies", "reservedCopies",
+            "fileFormat", "isDrmProtected", "narratorName", "audioFormat", "audioLength" };
+    private static final int EXPORT_BOOK_ISBN = 0;
+    private static final int EXPORT_BOOK_TITLE = 1;
+    private static final int EXPORT_BOOK_AUTHOR = 2;
+    private static final int EXPORT_BOOK_PUBLISHER = 3;
+    private static final int EXPORT_BOOK_PUBLICATION_YEAR = 4;
+    private static final int EXPORT_BOOK_CATEGORY = 5;
+    private static final int EXPORT_BOOK_TYPE = 6;
+    private static final int EXPORT_BOOK_PAGES = 7;
+    private static final int EXPORT_BOOK_TOTAL_COPIES = 8;
+    private static final int EXPORT_BOOK_AVAILABLE_COPIES = 9;
+    private static final int EXPORT_BOOK_RESERVED_COPIES = 10;
+    private static final int EXPORT_BOOK_FILE_FORMAT = 11;
+    private static final int EXPORT_BOOK_DRM_PROTECTED = 12;
+    private static final int EXPORT_BOOK_NARRATOR_NAME = 13;
+    private static final int EXPORT_BOOK_AUDIO_FORMAT = 14;
+    private static final int EXPORT_BOOK_AUDIO_LENGTH = 15;
+
+    /** Field names of an exported member, indexed by the EXPORT_MEMBER_* constants */
+    private static final String[] EXPORT_MEMBER_FIELDS = { "memberId", "name", "email", "phone", "membershipDate",
+            "memberType", "currentBorrowedBooks", "renewalCount", "totalFineAmount", "membershipStatus",
+            "studentId", "academicYear", "facultyId", "department", "designation" };
+    private static final int EXPORT_MEMBER_ID = 0;
+    private static final int EXPORT_MEMBER_NAME = 1;
+    private static final int EXPORT_MEMBER_EMAIL = 2;
+    private static final int EXPORT_MEMBER_PHONE = 3;
+    private static final int EXPORT_MEMBER_DATE = 4;
+    private static final int EXPORT_MEMBER_TYPE = 5;
+    private static final int EXPORT_MEMBER_BORROWED = 6;
+    private static final int EXPORT_MEMBER_RENEWALS = 7;
+    private static final int EXPORT_MEMBER_FINE = 8;
+    private static final int EXPORT_MEMBER_STATUS = 9;
+    private static final int EXPORT_MEMBER_STUDENT_ID = 10;
+    private static final int EXPORT_MEMBER_ACADEMIC_YEAR = 11;
+    private static final int EXPORT_MEMBER_FACULTY_ID = 12;
+    private static final int EXPORT_MEMBER_DEPARTMENT = 13;
+    private static final int EXPORT_MEMBER_DESIGNATION = 14;
+
+    /** Field names of an exported book issue, indexed by the EXPORT_ISSUE_* constants */
+    private static final String[] EXPORT_ISSUE_FIELDS = { "issueId", "memberId", "bookId", "issueDate", "dueDate",
+            "returnDate", "fineAmount" };
+    private static final int EXPORT_ISSUE_ID = 0;
+    private static final int EXPORT_ISSUE_MEMBER_ID = 1;
+    private static final int EXPORT_ISSUE_BOOK_ID = 2;
+    private static final int EXPORT_ISSUE_DATE = 3;
+    private static final int EXPORT_ISSUE_DUE_DATE = 4;
+    private static final int EXPORT_ISSUE_RETURN_DATE = 5;
+    private static final int EXPORT_ISSUE_FINE = 6;
+
+    /** Field names of an exported reservation, indexed by the EXPORT_RESERVATION_* constants */
+    private static final String[] EXPORT_RESERVATION_FIELDS = { "bookId", "memberId", "reservationDate" };
+    private static final int EXPORT_RESERVATION_BOOK_ID = 0;
+    private static final int EXPORT_RESERVATION_MEMBER_ID = 1;
+    private static final int EXPORT_RESERVATION_DATE = 2;
+
+    /** Kinds of data that can be exported, in menu order */
+    public static final String[] EXPORT_KINDS = { "books", "members", "issues", "reservations" };
+
+    /** Directory export files are written to */
+    private static final String EXPORT_DIR = "export";
 
-        for (String pair : keyValuePairs) {
-            String[] entry = pair.split("=", 2);
-            if (entry.length == 2) {
-                result.put(entry[0].trim(), entry[1].trim());
+    /** Number of rejected lines listed after an import */
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private static final String[] BOOK_TYPES = { "Physical Book", "Audio Book", "EBook" };
+    private static final String[] MEMBER_TYPES = { "Student", "Faculty", "Regular" };
+    private static final BookCategory[] CATEGORIES = BookCategory.values();
+    private static final String[] CATEGORY_NAMES = names(CATEGORIES);
+    private static final MemberStatus[] STATUSES = MemberStatus.values();
+    private static final String[] STATUS_NAMES = names(STATUSES);
+
+    private static String[] names(Enum<?>[] values) {
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name();
+        }
+        return names;
+    }
+
+    /**
+     * Reads every book record of an import file in parallel chunks.
+     * <p>
+     * Books keep the ISBN given in the file; a book without one gets a
+     * generated ISBN unless an ISBN is required.
+     *
+     * @param importer    the importer to parse the file with
+     * @param file        the import file
+     * @param requireIsbn whether records without an ISBN are rejected
+     * @return the books in file order and the rejected lines
+     * @throws Exception if the file cannot be read
+     */
+    public static ChunkedImporter.Result<Book> readBooks(ChunkedImporter importer, File file, boolean requireIsbn)
+            throws Exception {
+        return importer.read(file, BOOK_FIELDS, parser -> {
+            Book book = parseBook(parser);
+            if (requireIsbn || parser.isPresent(BOOK_ISBN)) {
+                book.setISBN(parser.getLong(BOOK_ISBN));
             }
+            return book;
+        });
+    }
+
+    /**
+     * Builds a book from the current record of a parser.
+     */
+    private static Book parseBook(RecordParser parser) {
+        String title = parser.getString(BOOK_TITLE);
+        String author = parser.getString(BOOK_AUTHOR);
+        String publisher = parser.getString(BOOK_PUBLISHER);
+        int publicationYear = parser.getInt(BOOK_PUBLICATION_YEAR);
+        if (publicationYear <= 0) {
+            throw parser.invalid(BOOK_PUBLICATION_YEAR);
         }
+        int category = parser.indexOf(BOOK_CATEGORY, CATEGORY_NAMES, true);
+        if (category < 0) {
+            throw parser.invalid(BOOK_CATEGORY);
+        }
+        switch (parser.indexOf(BOOK_TYPE, BOOK_TYPES, false)) {
+            case 0:
+                int totalCopies = parser.getInt(BOOK_TOTAL_COPIES);
+                int availableCopies = parser.getInt(BOOK_AVAILABLE_COPIES);
+                int reservedCopies = parser.getInt(BOOK_RESERVED_COPIES);
+                if (totalCopies < 0 || availableCopies < 0 || reservedCopies < 0
+                        || availableCopies + reservedCopies > totalCopies) {
+                    throw new IllegalArgumentException("Inconsistent copies: total " + totalCopies + ", available "
+                            + availableCopies + ", reserved " + reservedCopies);
+                }
+                return new PhysicalBook(title, author, publisher, publicationYear, CATEGORIES[category],
+                        parser.getInt(BOOK_PAGES), totalCopies, availableCopies, reservedCopies);
+            case 1:
+                return new AudioBook(title, author, publisher, publicationYear, CATEGORIES[category],
+                        parser.getString(BOOK_NARRATOR_NAME), parser.getString(BOOK_AUDIO_FORMAT),
+                        parser.getInt(BOOK_AUDIO_LENGTH));
+            case 2:
+                // EBook.toString writes isDrmProtected; older files used drmProtected
+                boolean drmProtected = parser.isPresent(BOOK_IS_DRM_PROTECTED)
+                        ? parser.getBoolean(BOOK_IS_DRM_PROTECTED)
+                        : parser.isPresent(BOOK_DRM_PROTECTED) && parser.getBoolean(BOOK_DRM_PROTECTED);
+                return new EBook(title, author, publisher, publicationYear, CATEGORIES[category],
+                        parser.getString(BOOK_FILE_FORMAT), drmProtected);
+            default:
+                throw parser.invalid(BOOK_TYPE);
+        }
+    }
 
-        return result;
+    /**
+     * Reads every member record of an import file in parallel chunks.
+     * <p>
+     * Members keep the member ID given in the file; a member without one gets a
+     * generated ID unless an ID is required.
+     *
+     * @param importer the importer to parse the file with
+     * @param file     the import file
+     * @param requireId whether records without a member ID are rejected
+     * @return the members in file order and the rejected lines
+     * @throws Exception if the file cannot be read
+     */
+    public static ChunkedImporter.Result<Member> readMembers(ChunkedImporter importer, File file,
+            boolean requireId) throws Exception {
+        return importer.read(file, MEMBER_FIELDS, parser -> {
+            Member member = parseMember(parser);
+            if (requireId || parser.isPresent(MEMBER_ID)) {
+                member.setMemberId(parser.getInt(MEMBER_ID));
+            }
+            return member;
+        });
+    }
+
+    /**
+     * Builds a member from the current record of a parser.
+     */
+    private static Member parseMember(RecordParser parser) {
+        String name = parser.getString(MEMBER_NAME);
+        String email = parser.getString(MEMBER_EMAIL);
+        long phone = parser.getLong(MEMBER_PHONE);
+        int status = parser.indexOf(MEMBER_STATUS, STATUS_NAMES, true);
+        if (status < 0) {
+            throw parser.invalid(MEMBER_STATUS);
+        }
+        long membershipDate = parser.getLong(MEMBER_DATE);
+        int borrowed = parser.getInt(MEMBER_BORROWED);
+        double fine = parser.getDouble(MEMBER_FINE);
+        int renewals = parser.getInt(MEMBER_RENEWALS);
+        switch (parser.indexOf(MEMBER_TYPE, MEMBER_TYPES, false)) {
+            case 0:
+                return new StudentMember(name, email, phone, parser.getString(MEMBER_STUDENT_ID),
+                        parser.getString(MEMBER_ACADEMIC_YEAR), parser.getString(MEMBER_DEPARTMENT),
+                        STATUSES[status], membershipDate, borrowed, fine, renewals);
+            case 1:
+                return new FacultyMember(name, email, phone, parser.getString(MEMBER_FACULTY_ID),
+                        parser.getString(MEMBER_DEPARTMENT), parser.getString(MEMBER_DESIGNATION),
+                        STATUSES[status], membershipDate, borrowed, fine, renewals);
+            case 2:
+                return new RegularMember(name, email, phone, STATUSES[status], membershipDate, borrowed, fine,
+                        renewals);
+            default:
+                throw parser.invalid(MEMBER_TYPE);
+        }
+    }
+
+    /**
+     * Prints how many records were imported and the first rejected lines, and
+     * writes every rejected line to a {@code .rejected} file next to the import
+     * file so it can be corrected and imported again.
+     */
+    private static void reportResult(ChunkedImporter.Result<?> result, String kind, File file) throws IOException {
+        System.out.println("Read " + result.getRecords().size() + " " + kind + " from " + result.getLineCount()
+                + " lines");
+        List<ChunkedImporter.LineError> errors = result.getErrors();
+        if (errors.isEmpty()) {
+            return;
+        }
+        File rejected = new File(file.getPath() + ".rejected");
+        try (Writer writer = new BufferedWriter(new FileWriter(rejected))) {
+            for (ChunkedImporter.LineError error : errors) {
+                writer.write(error.getText());
+                writer.write('\n');
+            }
+        }
+        System.out.println("Skipped " + errors.size() + " invalid lines, written to " + rejected.getPath() + ":");
+        for (int i = 0; i < Math.min(errors.size(), MAX_REPORTED_ERRORS); i++) {
+            System.out.println("  Line " + errors.get(i).getLine() + ": " + errors.get(i).getMessage());
+        }
+        if (errors.size() > MAX_REPORTED_ERRORS) {
+            System.out.println("  ... and " + (errors.size() - MAX_REPORTED_ERRORS) + " more");
+        }
+    }
+
+    /**
+     * Asks whether an import replaces the whole collection or merges into it.
+     *
+     * @return true for a merge
+     */
+    private boolean askMergeMode(String kind, String key) {
+        System.out.println("Import mode:");
+        System.out.println("1. Replace all " + kind);
+        System.out.println("2. Merge by " + key + " (insert new, update changed)");
+        return "2".equals(scn.nextLine().trim());
+    }
+
+    private boolean askYesNo(String question) {
+        System.out.print(question);
+        return scn.nextLine().trim().equalsIgnoreCase("y");
+    }
+
+    /**
+     * Prints the outcome of a merge and the first skipped records.
+     */
+    private static void reportMerge(MergeResult result, String kind, String withdrawnLabel) {
+        System.out.println("Merged " + kind + ": " + result.getInserted() + " inserted, " + result.getUpdated()
+                + " updated, " + result.getUnchanged() + " unchanged, " + result.getWithdrawn() + " "
+                + withdrawnLabel);
+        if (!result.hasChanges()) {
+            System.out.println("Nothing changed, " + kind + " were not saved");
+        }
+        List<String> skipped = result.getSkipped();
+        if (skipped.isEmpty()) {
+            return;
+        }
+        System.out.println("Skipped " + skipped.size() + " records:");
+        for (int i = 0; i < Math.min(skipped.size(), MAX_REPORTED_ERRORS); i++) {
+            System.out.println("  " + skipped.get(i));
+        }
+        if (skipped.size() > MAX_REPORTED_ERRORS) {
+            System.out.println("  ... and " + (skipped.size() - MAX_REPORTED_ERRORS) + " more");
+        }
     }
 
     /**
@@ -60,6 +382,7 @@ public class ImportExportService {
         System.out.println("Choose what to import:");
         System.out.println("1. Books");
         System.out.println("2. Members");
+        System.out.println("3. Book Issues");
         String choice = scn.nextLine();
         switch (choice) {
             case "1":
@@ -98,38 +421,18 @@ public class ImportExportService {
             return;
         }
 
-        // Import books from file
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        String line;
-        List<Book> books = new ArrayList<>();
-        while ((line = reader.readLine()) != null) {
-            Map<String, String> book = parseLine(line);
-
-            // Create book object
-            Book b = null;
-            if (book.get("bookType").equals("Physical Book")) {
-                b = new PhysicalBook(book.get("title"), book.get("author"), book.get("publisher"),
-                        Integer.parseInt(book.get("publicationYear")),
-                        BookCategory.getCategoryByName(book.get("category")), Integer.parseInt(book.get("pages")),
-                        Integer.parseInt(book.get("totalCopies")), Integer.parseInt(book.get("availableCopies")),
-                        Integer.parseInt(book.get("reservedCopies")));
-            } else if (book.get("bookType").equals("Audio Book")) {
-                b = new AudioBook(book.get("title"), book.get("author"), book.get("publisher"),
-                        Integer.parseInt(book.get("publicationYear")),
-                        BookCategory.getCategoryByName(book.get("category")), book.get("narratorName"),
-                        book.get("audioFormat"), Integer.parseInt(book.get("audioLength")));
-            } else if (book.get("bookType").equals("EBook")) {
-                b = new EBook(book.get("title"), book.get("author"), book.get("publisher"),
-                        Integer.parseInt(book.get("publicationYear")),
-                        BookCategory.getCategoryByName(book.get("category")), book.get("fileFormat"),
-                        Boolean.parseBoolean(book.get("drmProtected")));
-            }
-            books.add(b);
-
-        }
-        if (books.size() > 0) {
-            utils.saveData("./db/books.txt", books);
+        boolean merge = askMergeMode("books", "ISBN");
+        ChunkedImporter.Result<Book> result = readBooks(this.importer, file, merge);
+        reportResult(result, "books", file);
+        List<Book> books = result.getRecords();
+        if (merge) {
+            boolean withdrawMissing = askYesNo("Withdraw catalog books missing from the file? (y/n): ");
+            MergeResult mergeResult = this.bookService.mergeBooks(books, withdrawMissing,
+                    this.bookIssueService.getOpenLoanIsbns(), this.reservationService.getReservedIsbns());
+            reportMerge(mergeResult, "books", "withdrawn");
+        } else if (books.size() > 0) {
             this.bookService.replaceBookList(books);
+            this.bookService.updateBookInDatabase();
         }
         System.out.println("====================== END - Importing books ========================");
     }
@@ -154,46 +457,17 @@ public class ImportExportService {
             return;
         }
 
-        // Import books from file
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        String line;
-        List<Member> members = new ArrayList<>();
-        while ((line = reader.readLine()) != null) {
-            Map<String, String> member = parseLine(line);
-
-            // Create book object
-            Member m = null;
-            if (member.get("memberType").equals("Student")) {
-                m = new StudentMember(member.get("name"), member.get("email"),
-                        Long.parseLong(member.get("phone")), member.get("studentId"), member.get("academicYear"),
-                        member.get("department"), MemberStatus.getStatusByName(member.get("membershipStatus")),
-                        Long.parseLong(member.get("membershipDate")),
-                        Integer.parseInt(member.get("currentBorrowedBooks")),
-                        Double.parseDouble(member.get("totalFineAmount")),
-                        Integer.parseInt(member.get("renewalCount")));
-            } else if (member.get("memberType").equals("Faculty")) {
-                m = new FacultyMember(member.get("name"), member.get("email"),
-                        Long.parseLong(member.get("phone")), member.get("facultyId"), member.get("department"),
-                        member.get("designation"), MemberStatus.getStatusByName(member.get("membershipStatus")),
-                        Long.parseLong(member.get("membershipDate")),
-                        Integer.parseInt(member.get("currentBorrowedBooks")),
-                        Double.parseDouble(member.get("totalFineAmount")),
-                        Integer.parseInt(member.get("renewalCount")));
-            } else if (member.get("memberType").equals("Regular")) {
-                m = new RegularMember(member.get("name"), member.get("email"),
-                        Long.parseLong(member.get("phone")),
-                        MemberStatus.getStatusByName(member.get("membershipStatus")),
-                        Long.parseLong(member.get("membershipDate")),
-                        Integer.parseInt(member.get("currentBorrowedBooks")),
-                        Double.parseDouble(member.get("totalFineAmount")),
-                        Integer.parseInt(member.get("renewalCount")));
-            }
-            members.add(m);
-
-        }
-        if (members.size() > 0) {
-            utils.saveData("./db/members.txt", members);
+        boolean merge = askMergeMode("members", "member ID");
+        ChunkedImporter.Result<Member> result = readMembers(this.importer, file, merge);
+        reportResult(result, "members", file);
+        List<Member> members = result.getRecords();
+        if (merge) {
+            boolean expireMissing = askYesNo("Expire members missing from the file? (y/n): ");
+            MergeResult mergeResult = this.memberService.mergeMembers(members, expireMissing);
+            reportMerge(mergeResult, "members", "expired");
+        } else if (members.size() > 0) {
             this.memberService.replaceMemberList(members);
+            this.memberService.updateMemberInDatabase();
         }
         System.out.println("====================== END - Importing Members ========================");
     }
@@ -218,27 +492,326 @@ public class ImportExportService {
             return;
         }
 
-        // Import book issued data from file
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        String line;
-        List<BookIssue> bookIssued = new ArrayList<>();
-        while ((line = reader.readLine()) != null) {
-            Map<String, String> bookIssuedData = parseLine(line);
-            long memberId = Long.parseLong(bookIssuedData.get("memberId"));
-            long bookId = Long.parseLong(bookIssuedData.get("bookId"));
+        // Members and books are resolved through the hash indexes of their
+        // services, which are only read while the chunks are parsed in parallel.
+        // A loan whose member or book does not exist is rejected, not stored with
+        // a null reference.
+        ChunkedImporter.Result<BookIssue> result = this.importer.read(file, ISSUE_FIELDS, parser -> {
+            long memberId = parser.getLong(ISSUE_MEMBER_ID);
             Member member = this.memberService.getMemberById(memberId);
-            Book book = this.bookService.getBookById(bookId);
-
-            // Create book issued object
-            BookIssue b = new BookIssue(member, book, Double.parseDouble(bookIssuedData.get("fineAmount")),
-                    Long.parseLong(bookIssuedData.get("issueDate")), Long.parseLong(bookIssuedData.get("dueDate")),
-                    Long.parseLong(bookIssuedData.get("returnDate")));
-            bookIssued.add(b);
-        }
+            if (member == null) {
+                throw new Exception("Unknown member " + memberId);
+            }
+            long isbn = parser.getLong(ISSUE_BOOK_ID);
+            Book book = this.bookService.getBookById(isbn);
+            if (book == null) {
+                throw new Exception("Unknown book " + isbn);
+            }
+            return new BookIssue(member, book, parser.getDouble(ISSUE_FINE), parser.getLong(ISSUE_DATE),
+                    parser.getLong(ISSUE_DUE_DATE), parser.getLong(ISSUE_RETURN_DATE));
+        });
+        reportResult(result, "book issues", file);
+        List<BookIssue> bookIssued = result.getRecords();
         if (bookIssued.size() > 0) {
-            utils.saveData("./db/bookIssues.txt", bookIssued);
             this.bookIssueService.replaceBookIssueList(bookIssued);
+            this.bookIssueService.updateBookIssueInDatabase();
+            int changed = this.bookIssueService.applyOpenLoanCounts();
+            System.out.println("Updated borrowed and available counts of " + changed + " members and books");
         }
         System.out.println("====================== END - Importing Book Issued ========================");
     }
+
+    /**
+     * Asks whether to import or export data and runs the chosen operation.
+     *
+     * @throws Exception if the import or export fails
+     */
+    public void importExportData() throws Exception {
+        System.out.println("1. Import data");
+        System.out.println("2. Export data");
+        System.out.println("3. Write the text view of the database");
+        switch (scn.nextLine().trim()) {
+            case "1":
+                importData();
+                break;
+            case "2":
+                exportData();
+                break;
+            case "3":
+                writeTextView(new File(utils.DB_DIR));
+                break;
+            default:
+                System.out.println("Invalid choice");
+                break;
+        }
+    }
+
+    /**
+     * Exports books, members, book issues or reservations to a file in the
+     * export directory, asking for the format and the filters to apply.
+     *
+     * @throws Exception if an error occurs during export
+     */
+    public void exportData() throws Exception {
+        System.out.println("====================== START - Exporting data ======================");
+        System.out.println("Choose what to export:");
+        System.out.println("1. Books");
+        System.out.println("2. Members");
+        System.out.println("3. Book Issues");
+        System.out.println("4. Reservations");
+        int choice;
+        try {
+            choice = Integer.parseInt(scn.nextLine().trim());
+        } catch (NumberFormatException e) {
+            choice = 0;
+        }
+        if (choice < 1 || choice > EXPORT_KINDS.length) {
+            System.out.println("Invalid choice");
+            return;
+        }
+        String kind = EXPORT_KINDS[choice - 1];
+
+        System.out.println("Choose the format:");
+        System.out.println("1. key=value text (can be imported again)");
+        System.out.println("2. CSV");
+        System.out.println("3. Binary");
+        ExportFormat format = ExportFormat.getFormatByNumber(Integer.parseInt(scn.nextLine().trim()));
+
+        long fromMillis = Long.MIN_VALUE;
+        long toMillis = Long.MAX_VALUE;
+        BookCategory category = null;
+        String memberType = null;
+        if (!kind.equals("books")) {
+            fromMillis = askDate("From date (yyyy-MM-dd, blank for no limit): ", Long.MIN_VALUE, 0);
+            toMillis = askDate("To date, inclusive (yyyy-MM-dd, blank for no limit): ", Long.MAX_VALUE, 1);
+        }
+        if (!kind.equals("members")) {
+            System.out.print("Category (blank for all): ");
+            String name = scn.nextLine().trim();
+            category = name.isEmpty() ? null : BookCategory.getCategoryByName(name);
+        }
+        if (!kind.equals("books")) {
+            System.out.print("Member type (Student/Faculty/Regular, blank for all): ");
+            String type = scn.nextLine().trim();
+            memberType = type.isEmpty() ? null : type;
+        }
+
+        System.out.println("Enter the file name to export to:");
+        String fileName = scn.nextLine().trim();
+        if (fileName.isEmpty()) {
+            fileName = kind + "." + format.getExtension();
+        }
+        File directory = new File(EXPORT_DIR);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory.getPath());
+        }
+        File file = new File(directory, fileName);
+
+        long start = System.nanoTime();
+        long records = exportData(kind, file, format, new ExportFilter(fromMillis, toMillis, category, memberType));
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println("Exported " + records + " " + kind + " to " + file.getPath() + " (" + file.length()
+                + " bytes) in " + millis + " ms");
+        System.out.println("====================== END - Exporting data ========================");
+    }
+
+    /**
+     * Writes the human-readable text view of every store, one
+     * {@code toString()} line per record, as {@code books.txt},
+     * {@code members.txt}, {@code bookIssues.txt} and {@code reservations.txt}.
+     * The issues include those moved to the loan archive.
+     * <p>
+     * Saves only write the serialized stores, so these files are a snapshot
+     * taken when this runs and are not kept up to date.
+     *
+     * @param directory the directory to write the files to
+     * @throws IOException if a file cannot be written
+     */
+    public void writeTextView(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory.getPath());
+        }
+        long start = System.nanoTime();
+        List<BookIssue> bookIssues = this.bookIssueService.getAllBookIssues();
+        utils.writeText(new File(directory, "books.txt").getPath(), this.bookService.getBookList());
+        utils.writeText(new File(directory, "members.txt").getPath(), this.memberService.getMemberList());
+        utils.writeText(new File(directory, "bookIssues.txt").getPath(), bookIssues);
+        utils.writeText(new File(directory, "reservations.txt").getPath(),
+                this.reservationService.getReservationList());
+        System.out.println("Result -\n");
+        System.out.println("Text view written to   : " + directory.getPath());
+        System.out.println("Records                : " + this.bookService.getBookList().size() + " books, "
+                + this.memberService.getMemberList().size() + " members, "
+                + bookIssues.size() + " issues, "
+                + this.reservationService.getReservationList().size() + " reservations");
+        System.out.println("Time taken             : " + (System.nanoTime() - start) / 1000000 + " ms");
+        System.out.println("=====================================");
+    }
+
+    /**
+     * Asks for a date and converts it to the start of that day, or of the day
+     * after, in the system time zone.
+     */
+    private long askDate(String question, long none, int daysAfter) {
+        System.out.print(question);
+        String text = scn.nextLine().trim();
+        if (text.isEmpty()) {
+            return none;
+        }
+        return LocalDate.parse(text).plusDays(daysAfter).atStartOfDay(ZoneId.systemDefault()).toInstant()
+                .toEpochMilli();
+    }
+
+    /**
+     * Streams one kind of data to an export file.
+     * <p>
+     * Records are written straight from the in-memory collections, and
+     * archived issues one archive segment at a time, through a
+     * {@link RecordExporter}, without building the file contents or copies of
+     * the collections, so memory use stays flat however large the history
+     * grows. The date range applies to the membership, issue or reservation
+     * date and is ignored for books; the category and member type are resolved
+     * through the book and member indexes.
+     *
+     * @param kind   one of {@link #EXPORT_KINDS}
+     * @param file   the export file, created or replaced
+     * @param format the file format
+     * @param filter the records to export
+     * @return the number of records written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportData(String kind, File file, ExportFormat format, ExportFilter filter) throws IOException {
+        switch (kind) {
+            case "books":
+                try (RecordExporter exporter = new RecordExporter(file, format, EXPORT_BOOK_FIELDS)) {
+                    for (Book book : this.bookService.getBookList()) {
+                        if (filter.matchesCategory(book.getCategory())) {
+                            writeBook(exporter, book);
+                        }
+                    }
+                    return exporter.getRecordCount();
+                }
+            case "members":
+                try (RecordExporter exporter = new RecordExporter(file, format, EXPORT_MEMBER_FIELDS)) {
+                    for (Member member : this.memberService.getMemberList()) {
+                        if (filter.matchesDate(member.getMembershipDate())
+                                && filter.matchesMemberType(member.getMemberType())) {
+                            writeMember(exporter, member);
+                        }
+                    }
+                    return exporter.getRecordCount();
+                }
+            case "issues":
+                try (RecordExporter exporter = new RecordExporter(file, format, EXPORT_ISSUE_FIELDS)) {
+                    this.bookIssueService.forEachBookIssue(filter.getFromMillis(), filter.getToMillis() - 1, issue -> {
+                        Book book = issue.getBook();
+                        Member member = issue.getMember();
+                        if (filter.matchesDate(issue.getIssueDate())
+                                && filter.matchesCategory(book != null ? book.getCategory() : null)
+                                && filter.matchesMemberType(member != null ? member.getMemberType() : null)) {
+                            writeIssue(exporter, issue);
+                        }
+                    });
+                    return exporter.getRecordCount();
+                }
+            case "reservations":
+                try (RecordExporter exporter = new RecordExporter(file, format, EXPORT_RESERVATION_FIELDS)) {
+                    for (Reservation reservation : this.reservationService.getReservationList()) {
+                        if (filter.matchesDate(reservation.getReservationDate())
+                                && (!filter.hasCategory() || filter.matchesCategory(
+                                        categoryOf(this.bookService.getBookById(reservation.getBookId()))))
+                                && (!filter.hasMemberType() || filter.matchesMemberType(
+                                        typeOf(this.memberService.getMemberById(reservation.getMemberId()))))) {
+                            exporter.begin();
+                            exporter.put(EXPORT_RESERVATION_BOOK_ID, reservation.getBookId());
+                            exporter.put(EXPORT_RESERVATION_MEMBER_ID, reservation.getMemberId());
+                            exporter.put(EXPORT_RESERVATION_DATE, reservation.getReservationDate());
+                            exporter.end();
+                        }
+                    }
+                    return exporter.getRecordCount();
+                }
+            default:
+                throw new IllegalArgumentException("Unknown export kind: " + kind);
+        }
+    }
+
+    private static BookCategory categoryOf(Book book) {
+        return book != null ? book.getCategory() : null;
+    }
+
+    private static String typeOf(Member member) {
+        return member != null ? member.getMemberType() : null;
+    }
+
+    private static void writeBook(RecordExporter exporter, Book book) throws IOException {
+        exporter.begin();
+        exporter.put(EXPORT_BOOK_ISBN, book.getISBN());
+        exporter.put(EXPORT_BOOK_TITLE, book.getTitle());
+        exporter.put(EXPORT_BOOK_AUTHOR, book.getAuthor());
+        exporter.put(EXPORT_BOOK_PUBLISHER, book.getPublisher());
+        exporter.put(EXPORT_BOOK_PUBLICATION_YEAR, book.getPublicationYear());
+        exporter.put(EXPORT_BOOK_CATEGORY, book.getCategory() != null ? book.getCategory().name() : null);
+        exporter.put(EXPORT_BOOK_TYPE, book.getBookType());
+        if (book instanceof PhysicalBook) {
+            PhysicalBook physicalBook = (PhysicalBook) book;
+            exporter.put(EXPORT_BOOK_PAGES, physicalBook.getPages());
+            exporter.put(EXPORT_BOOK_TOTAL_COPIES, physicalBook.getTotalCopies());
+            exporter.put(EXPORT_BOOK_AVAILABLE_COPIES, physicalBook.getAvailableCopies());
+            exporter.put(EXPORT_BOOK_RESERVED_COPIES, physicalBook.getReservedCopies());
+        } else if (book instanceof EBook) {
+            EBook eBook = (EBook) book;
+            exporter.put(EXPORT_BOOK_FILE_FORMAT, eBook.getFileFormat());
+            exporter.put(EXPORT_BOOK_DRM_PROTECTED, eBook.isDrmProtected());
+        } else if (book instanceof AudioBook) {
+            AudioBook audioBook = (AudioBook) book;
+            exporter.put(EXPORT_BOOK_NARRATOR_NAME, audioBook.getNarratorName());
+            exporter.put(EXPORT_BOOK_AUDIO_FORMAT, audioBook.getAudioFormat());
+            exporter.put(EXPORT_BOOK_AUDIO_LENGTH, audioBook.getAudioLength());
+        }
+        exporter.end();
+    }
+
+    private static void writeMember(RecordExporter exporter, Member member) throws IOException {
+        exporter.begin();
+        exporter.put(EXPORT_MEMBER_ID, member.getMemberId());
+        exporter.put(EXPORT_MEMBER_NAME, member.getName());
+        exporter.put(EXPORT_MEMBER_EMAIL, member.getEmail());
+        exporter.put(EXPORT_MEMBER_PHONE, member.getPhone());
+        exporter.put(EXPORT_MEMBER_DATE, member.getMembershipDate());
+        exporter.put(EXPORT_MEMBER_TYPE, member.getMemberType());
+        exporter.put(EXPORT_MEMBER_BORROWED, member.getCurrentBorrowedBooks());
+        exporter.put(EXPORT_MEMBER_RENEWALS, member.getRenewalCount());
+        exporter.put(EXPORT_MEMBER_FINE, member.getTotalFineAmount());
+        exporter.put(EXPORT_MEMBER_STATUS,
+                member.getMembershipStatus() != null ? member.getMembershipStatus().name() : null);
+        if (member instanceof StudentMember) {
+            StudentMember student = (StudentMember) member;
+            exporter.put(EXPORT_MEMBER_STUDENT_ID, student.getStudentId());
+            exporter.put(EXPORT_MEMBER_ACADEMIC_YEAR, student.getAcademicYear());
+            exporter.put(EXPORT_MEMBER_DEPARTMENT, student.getDepartment());
+        } else if (member instanceof FacultyMember) {
+            FacultyMember faculty = (FacultyMember) member;
+            exporter.put(EXPORT_MEMBER_FACULTY_ID, faculty.getFacultyId());
+            exporter.put(EXPORT_MEMBER_DEPARTMENT, faculty.getDepartment());
+            exporter.put(EXPORT_MEMBER_DESIGNATION, faculty.getDesignation());
+        }
+        exporter.end();
+    }
+
+    private static void writeIssue(RecordExporter exporter, BookIssue issue) throws IOException {
+        exporter.begin();
+        exporter.put(EXPORT_ISSUE_ID, issue.getIssueId());
+        if (issue.getMemberId() != 0) {
+            exporter.put(EXPORT_ISSUE_MEMBER_ID, issue.getMemberId());
+        }
+        if (issue.getISBN() != 0) {
+            exporter.put(EXPORT_ISSUE_BOOK_ID, issue.getISBN());
+        }
+        exporter.put(EXPORT_ISSUE_DATE, issue.getIssueDate());
+        exporter.put(EXPORT_ISSUE_DUE_DATE, issue.getDueDate());
+        exporter.put(EXPORT_ISSUE_RETURN_DATE, issue.getReturnDate());
+        exporter.put(EXPORT_ISSUE_FINE, issue.getFineAmount());
+        exporter.end();
+    }
 }
@@ -1,11 +1,18 @@
 package service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.stream.IntStream;
 
+import common.DeltaStore;
 import common.MemberStatus;
+import common.MergeResult;
 import common.utils;
 import model.FacultyMember;
 import model.Member;
@@ -30,6 +37,12 @@ public class MemberService {
     /** List to store all member records in memory */
     private List<Member> members = new ArrayList<>();
 
+    /** Store of the members list, which saves only the members marked as changed */
+    private final DeltaStore<Member> store = new DeltaStore<>(utils.DB_DIR + "/members.ser", Member::getMemberId);
+
+    /** Index of the members list by member ID for constant-time lookups */
+    private Map<Long, Member> membersById = new HashMap<>();
+
     /**
      * Loads member data from the serialized file into memory.
      * The data is loaded from './db/members.ser' and populates the internal members
@@ -40,14 +53,26 @@ public class MemberService {
      */
     /**
      * Loads member data from the serialized file into memory.
-     * The data is loaded from './db/members.ser' and populates the internal members
+     * The data is loaded from './db/members.ser', with the changes logged since
+     * it was last written replayed over it, and populates the internal members
      * list.
      * If the file doesn't exist or contains invalid data, an empty list is created.
      * 
-     * @see utils#loadData(String)
+     * @see DeltaStore#load()
      */
     public void loadMembers() {
-        this.members = utils.loadData("./db/members.ser");
+        this.members = this.store.load();
+        this.rebuildIndex();
+    }
+
+    /**
+     * Rebuilds the member ID index from the current members list.
+     */
+    private void rebuildIndex() {
+        this.membersById = new HashMap<>(this.members.size() * 2);
+        for (Member member : this.members) {
+            this.membersById.put((long) member.getMemberId(), member);
+        }
     }
 
     /**
@@ -234,6 +259,8 @@ public class MemberService {
 
             StudentMember studentMember = new StudentMember(name, email, phone, studentId, academicYear, department);
             this.members.add(studentMember);
+            this.membersById.put((long) studentMember.getMemberId(), studentMember);
+            this.store.markChanged(studentMember);
         }
 
         if (memberType == 2) {
@@ -260,11 +287,15 @@ public class MemberService {
 
             FacultyMember facultyMember = new FacultyMember(name, email, phone, facultyId, department, designation);
             this.members.add(facultyMember);
+            this.membersById.put((long) facultyMember.getMemberId(), facultyMember);
+            this.store.markChanged(facultyMember);
         }
 
         if (memberType == 3) {
             RegularMember regularMember = new RegularMember(name, email, phone);
             this.members.add(regularMember);
+            this.membersById.put((long) regularMember.getMemberId(), regularMember);
+            this.store.markChanged(regularMember);
         }
 
         this.updateMemberInDatabase();
@@ -347,6 +378,7 @@ public class MemberService {
         }
         member.setMembershipStatus(MemberStatus.getStatus(memberStatus));
         this.members.set(memberIndex, member);
+        this.store.markChanged(member);
 
         this.updateMemberInDatabase();
     }
@@ -482,12 +514,7 @@ public class MemberService {
      * @see Member
      */
     protected Member getMemberById(long memberId) {
-        for (Member m : this.members) {
-            if (m.getMemberId() == memberId) {
-                return m;
-            }
-        }
-        return null;
+        return this.membersById.get(memberId);
     }
 
     /**
@@ -507,20 +534,46 @@ public class MemberService {
             throw new Exception("Member not found");
         }
         this.members.set(memberIndex, member);
+        this.membersById.put((long) member.getMemberId(), member);
+        this.store.markChanged(member);
+    }
+
+    /**
+     * Marks a member whose fields were changed in place, so the next save
+     * writes it.
+     *
+     * @param member the changed member
+     */
+    protected void markMemberChanged(Member member) {
+        this.store.markChanged(member);
     }
 
     /**
      * Saves the current list of members to the database file.
-     * The members are serialized and saved to './db/members.ser'.
+     * Only the members marked as changed since the last save are written, as
+     * changes logged next to './db/members.ser'; the whole list is rewritten
+     * when that is cheaper.
      * This method should be called after any modifications to the members list
      * to ensure data persistence.
      *
      * @throws Exception if there is an error during the save operation
      * 
-     * @see utils#saveData(String, Object)
+     * @see DeltaStore#persist(List)
      */
     protected void updateMemberInDatabase() throws Exception {
-        utils.saveData("./db/members.txt", this.members);
+        this.store.persist(this.members);
+    }
+
+    /**
+     * Returns the current list of members.
+     * This method gives other services and the command line tools read access
+     * to every member, for example to build reports that include members
+     * without any borrowing activity. Callers must not modify the list.
+     *
+     * @return the list of all members
+     */
+    public List<Member> getMemberList() {
+        return this.members;
     }
 
     /**
@@ -538,6 +591,125 @@ public class MemberService {
             throw new IllegalArgumentException("Members list cannot be null");
         }
         this.members = new ArrayList<>(members);
+        this.store.markAllChanged();
+        this.rebuildIndex();
+    }
+
+    /**
+     * Merges imported members into the member list, matching them on member ID.
+     * <p>
+     * New IDs are appended and indexed; existing members get their contact,
+     * status and type-specific details updated in place, so loans keep pointing
+     * at the same objects. Circulation owns the borrowed book count, fines,
+     * renewals and membership date of an existing member, so those are not
+     * overwritten. A record whose member type differs from the existing member
+     * is skipped. Members missing from the import can be marked
+     * {@link MemberStatus#EXPIRED} rather than deleted, which keeps their loan
+     * history intact. The members file is only saved when something changed.
+     *
+     * @param incoming      the imported members
+     * @param expireMissing whether to expire members the import does not list
+     * @return the counts of inserted, updated, unchanged, expired and skipped
+     *         members
+     * @throws Exception if saving the members fails
+     */
+    protected MergeResult mergeMembers(List<Member> incoming, boolean expireMissing) throws Exception {
+        MergeResult result = new MergeResult();
+        Set<Long> listed = new HashSet<>(incoming.size() * 2);
+        for (Member member : incoming) {
+            long memberId = member.getMemberId();
+            listed.add(memberId);
+            Member current = this.membersById.get(memberId);
+            if (current == null) {
+                this.members.add(member);
+                this.membersById.put(memberId, member);
+                this.store.markChanged(member);
+                result.inserted();
+            } else if (!current.getMemberType().equals(member.getMemberType())) {
+                result.skipped("Member " + memberId + ": member type cannot change from "
+                        + current.getMemberType() + " to " + member.getMemberType());
+            } else if (copyFields(current, member)) {
+                this.store.markChanged(current);
+                result.updated();
+            } else {
+                result.unchanged();
+            }
+        }
+
+        if (expireMissing && listed.size() < this.members.size()) {
+            for (Member member : this.members) {
+                if (!listed.contains((long) member.getMemberId())
+                        && member.getMembershipStatus() != MemberStatus.EXPIRED) {
+                    member.setMembershipStatus(MemberStatus.EXPIRED);
+                    this.store.markChanged(member);
+                    result.withdrawn();
+                }
+            }
+        }
+
+        if (result.hasChanges()) {
+            this.updateMemberInDatabase();
+        }
+        return result;
+    }
+
+    /**
+     * Copies the registration fields of an imported member onto an existing
+     * member of the same type.
+     *
+     * @return true if any field changed
+     */
+    private static boolean copyFields(Member target, Member source) {
+        boolean changed = false;
+        if (!Objects.equals(target.getName(), source.getName())) {
+            target.setName(source.getName());
+            changed = true;
+        }
+        if (!Objects.equals(target.getEmail(), source.getEmail())) {
+            target.setEmail(source.getEmail());
+            changed = true;
+        }
+        if (target.getPhone() != source.getPhone()) {
+            target.setPhone(source.getPhone());
+            changed = true;
+        }
+        if (target.getMembershipStatus() != source.getMembershipStatus()) {
+            target.setMembershipStatus(source.getMembershipStatus());
+            changed = true;
+        }
+
+        if (target instanceof StudentMember) {
+            StudentMember studentTarget = (StudentMember) target;
+            StudentMember studentSource = (StudentMember) source;
+            if (!Objects.equals(studentTarget.getStudentId(), studentSource.getStudentId())) {
+                studentTarget.setStudentId(studentSource.getStudentId());
+                changed = true;
+            }
+            if (!Objects.equals(studentTarget.getAcademicYear(), studentSource.getAcademicYear())) {
+                studentTarget.setAcademicYear(studentSource.getAcademicYear());
+                changed = true;
+            }
+            if (!Objects.equals(studentTarget.getDepartment(), studentSource.getDepartment())) {
+                studentTarget.setDepartment(studentSource.getDepartment());
+                changed = true;
+            }
+        } else if (target instanceof FacultyMember) {
+            FacultyMember facultyTarget = (FacultyMember) target;
+            FacultyMember facultySource = (FacultyMember) source;
+            if (!Objects.equals(facultyTarget.getFacultyId(), facultySource.getFacultyId())) {
+                facultyTarget.setFacultyId(facultySource.getFacultyId());
+                changed = true;
+            }
+            if (!Objects.equals(facultyTarget.getDepartment(), facultySource.getDepartment())) {
+                facultyTarget.setDepartment(facultySource.getDepartment());
+                changed = true;
+            }
+            if (!Objects.equals(facultyTarget.getDesignation(), facultySource.getDesignation())) {
+                facultyTarget.setDesignation(facultySource.getDesignation());
+                changed = true;
+            }
+        }
+        return changed;
     }
 
     /**
@@ -546,19 +718,20 @@ public class MemberService {
      * history, including their membership details, borrowed books, and fine amount.
      * If the member is not found, an error message is displayed.
      * 
+     * @return the ID of the member shown, or -1 if no member was found
      * @throws NumberFormatException if the input is not a valid number
      * @throws Exception             if the member ID is negative or if no member is
      *                               found
      * 
      * @see #getMemberById(long)
      */
-    public void viewMemberHistory() {
+    public long viewMemberHistory() {
         System.out.print("Enter member ID: ");
         long memberId = Long.parseLong(scn.nextLine());
         Member member = getMemberById(memberId);
         if (member == null) {
             System.out.println("Member not found");
-            return;
+            return -1;
         }
         System.out.println("Member history for " + member.getName());
         System.out.println("=====================================");
@@ -569,5 +742,6 @@ public class MemberService {
         System.out.println("Borrowed Books: " + member.getCurrentBorrowedBooks());
         System.out.println("Total Fine Amount: " + member.getTotalFineAmount());
         System.out.println("=====================================");
+        return memberId;
     }
 }
@@ -2,9 +2,12 @@ package service;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 
+import common.DeltaStore;
 import common.utils;
 import model.Book;
 import model.Member;
@@ -50,9 +53,20 @@ public class ReservationService implements Serializable {
     /** Reference to BookService for book validation and inventory management */
     BookService bookService;
 
+    /** Reference to TrendingService, fed with every new reservation */
+    TrendingService trendingService;
+
     /** List containing all active reservations in the system */
     List<Reservation> reservations = new ArrayList<>();
 
+    /**
+     * Store of the reservation list, which saves only the reservations marked
+     * as added or removed. A member holds at most one reservation per book, so
+     * the pair identifies a reservation.
+     */
+    DeltaStore<Reservation> store = new DeltaStore<>(utils.DB_DIR + "/reservations.ser",
+            reservation -> reservation.getMemberId() + ":" + reservation.getBookId());
+
     /**
      * Loads reservation data from the serialized database file.
      * This method reads the reservation records from the persistent storage
@@ -62,7 +76,8 @@ public class ReservationService implements Serializable {
      * @throws Exception if there's an error reading the reservation data file
      */
     public void loadReservationData() throws Exception {
-        this.reservations = utils.loadData("./db/reservations.ser");
+        this.reservations = this.store.load();
+        this.trendingService.replayReservations(this.reservations);
     }
 
     /**
@@ -70,12 +85,17 @@ public class ReservationService implements Serializable {
      * This constructor initializes the service with dependencies needed for
      * reservation operations, including member validation and book management.
      * 
-     * @param memberService The MemberService instance for member-related operations
-     * @param bookService   The BookService instance for book-related operations
+     * @param memberService   The MemberService instance for member-related
+     *                        operations
+     * @param bookService     The BookService instance for book-related operations
+     * @param trendingService The TrendingService instance that tracks trending
+     *                        titles
      */
-    public ReservationService(MemberService memberService, BookService bookService) {
+    public ReservationService(MemberService memberService, BookService bookService,
+            TrendingService trendingService) {
         this.memberService = memberService;
         this.bookService = bookService;
+        this.trendingService = trendingService;
     }
 
     /**
@@ -103,7 +123,8 @@ public class ReservationService implements Serializable {
      * Removes a specific reservation from the reservation list.
      * This method is typically called when a book is issued to a member who had
      * reserved it, or when a member cancels their reservation. It uses a lambda
-     * expression with removeIf for efficient removal based on member and book IDs.
+     * expression with removeIf for efficient removal based on member and book IDs,
+     * and marks each removed reservation for the next save.
      * 
      * @param memberId The unique identifier of the member whose reservation to
      *                 remove
@@ -111,21 +132,49 @@ public class ReservationService implements Serializable {
      *                 remove
      */
     protected void removeReservation(long memberId, long bookId) {
-        this.reservations
-                .removeIf(reservation -> reservation.getMemberId() == memberId && reservation.getBookId() == bookId);
+        this.reservations.removeIf(reservation -> {
+            if (reservation.getMemberId() != memberId || reservation.getBookId() != bookId) {
+                return false;
+            }
+            this.store.markRemoved(reservation);
+            return true;
+        });
     }
 
     /**
-     * Saves the current reservation list to the database files.
-     * This method persists all reservation data to both text and serialized formats
-     * for data durability and backup purposes. The text file provides
-     * human-readable
-     * format while the serialized file enables efficient object loading.
+     * Saves the current reservation list to the database file.
+     * This method persists the reservations added or removed since the last
+     * save to the serialized store; the human-readable text view is written on
+     * demand from the import/export menu.
      * 
      * @throws Exception if there's an error writing to the database files
      */
     protected void updateReservationToDatabase() throws Exception {
-        utils.saveData("./db/reservations.txt", this.reservations);
+        this.store.persist(this.reservations);
+    }
+
+    /**
+     * Returns the current list of reservations.
+     * This method gives other services read access to every reservation, for
+     * example to export them.
+     *
+     * @return the list of all reservations
+     */
+    protected List<Reservation> getReservationList() {
+        return this.reservations;
+    }
+
+    /**
+     * Returns the ISBNs of the books that have pending reservations.
+     *
+     * @return the reserved ISBNs
+     */
+    protected Set<Long> getReservedIsbns() {
+        Set<Long> isbns = new HashSet<>();
+        for (Reservation reservation : this.reservations) {
+            isbns.add(reservation.getBookId());
+        }
+        return isbns;
     }
 
     /**
@@ -194,6 +243,21 @@ public class ReservationService implements Serializable {
     public void reserveBook() throws Exception {
         System.out.print("Enter member ID: ");
         long memberId = Long.parseLong(scn.nextLine());
+        System.out.print("Enter book ID: ");
+        long bookId = Long.parseLong(scn.nextLine());
+        reserveBook(memberId, bookId);
+    }
+
+    /**
+     * Processes a book reservation request without any console interaction.
+     * This is the headless counterpart of {@link #reserveBook()} and applies the
+     * same validations and inventory updates.
+     *
+     * @param memberId The unique identifier of the member reserving the book
+     * @param bookId   The unique identifier (ISBN) of the book to reserve
+     * @throws Exception if the reservation fails any of the validations
+     */
+    public void reserveBook(long memberId, long bookId) throws Exception {
         if (memberId < 0) {
             throw new Exception("Invalid member ID");
         }
@@ -205,8 +269,6 @@ public class ReservationService implements Serializable {
             throw new Exception("This member can't able to borrow books");
         }
 
-        System.out.print("Enter book ID: ");
-        long bookId = Long.parseLong(scn.nextLine());
         if (bookId < 0) {
             throw new Exception("Invalid book ID");
         }
@@ -233,6 +295,8 @@ public class ReservationService implements Serializable {
             physicalBook.setAvailableCopies(physicalBook.getAvailableCopies() - 1);
         }
         this.reservations.add(reservation);
+        this.store.markChanged(reservation);
+        this.trendingService.recordReservation(book, reservation.getReservationDate());
         this.bookService.updateBookInList(book);
         this.bookService.updateBookInDatabase();
 
@@ -242,18 +306,12 @@ public class ReservationService implements Serializable {
     /**
      * Persists the current reservation data to the database files.
      * This method is a duplicate of updateReservationToDatabase() and serves
-     * the same purpose of saving reservation data to both text and serialized
-     * formats.
-     * It ensures data consistency and provides backup mechanisms for reservation
-     * records.
-     * 
-     * The method saves to:
-     * - reservations.txt: Human-readable text format for manual inspection
-     * - reservations.ser: Serialized binary format for efficient loading
+     * the same purpose of saving reservation data to the serialized store,
+     * reservations.ser.
      * 
      * @throws Exception if there's an error writing to the database files
      */
     protected void updateReservationInDatabase() throws Exception {
-        utils.saveData("./db/reservations.txt", this.reservations);
+        this.store.persist(this.reservations);
     }
 }
@@ -0,0 +1,246 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import common.BookCategory;
+import common.SlidingWindowHeavyHitters;
+import common.utils;
+import model.Book;
+import model.BookIssue;
+import model.Reservation;
+
+/**
+ * Service that tracks which books, authors and categories are trending right
+ * now.
+ * <p>
+ * Every issue and reservation is fed into sliding-window heavy-hitter sketches
+ * for the last hour and the last week. Each window keeps a fixed number of
+ * counters, so memory and query cost stay constant no matter how many events
+ * the library sees. Counts are estimates: a title can only be overcounted, and
+ * any title that makes up a noticeable share of the window is always reported.
+ * <p>
+ * Issues and reservations are tracked separately so that either history can be
+ * reloaded on its own; reports combine both signals.
+ *
+ * @author Library Management System Team
+ * @version 1.0
+ * @since 2026-10-18
+ * @see SlidingWindowHeavyHitters
+ * @see BookIssueService
+ * @see ReservationService
+ */
+public class TrendingService {
+    /** Length of the short trending window */
+    private static final long HOUR_MILLIS = 60L * 60 * 1000;
+
+    /** Length of the long trending window */
+    static final long WEEK_MILLIS = 7L * 24 * HOUR_MILLIS;
+
+    /** Number of slots the hourly window ages out in (5 minutes each) */
+    private static final int HOUR_SLOTS = 12;
+
+    /** Number of slots the weekly window ages out in (1 day each) */
+    private static final int WEEK_SLOTS = 7;
+
+    /** Number of counters kept per slot */
+    private static final int SLOT_CAPACITY = 64;
+
+    /** Number of entries shown per trending table */
+    private static final int TRENDING_LIMIT = 5;
+
+    private final BookService bookService;
+    private final Signals issueSignals = new Signals();
+    private final Signals reservationSignals = new Signals();
+
+    /**
+     * Hourly and weekly sketches for books, authors and categories fed by one
+     * kind of event.
+     */
+    private static class Signals {
+        final SlidingWindowHeavyHitters<Long> booksLastHour = hourWindow();
+        final SlidingWindowHeavyHitters<Long> booksLastWeek = weekWindow();
+        final SlidingWindowHeavyHitters<String> authorsLastHour = hourWindow();
+        final SlidingWindowHeavyHitters<String> authorsLastWeek = weekWindow();
+        final SlidingWindowHeavyHitters<BookCategory> categoriesLastHour = hourWindow();
+        final SlidingWindowHeavyHitters<BookCategory> categoriesLastWeek = weekWindow();
+
+        void record(Book book, long timestamp) {
+            this.booksLastHour.add(book.getISBN(), timestamp);
+            this.booksLastWeek.add(book.getISBN(), timestamp);
+            this.authorsLastHour.add(book.getAuthor(), timestamp);
+            this.authorsLastWeek.add(book.getAuthor(), timestamp);
+            this.categoriesLastHour.add(book.getCategory(), timestamp);
+            this.categoriesLastWeek.add(book.getCategory(), timestamp);
+        }
+
+        void clearAll() {
+            this.booksLastHour.clear();
+            this.booksLastWeek.clear();
+            this.authorsLastHour.clear();
+            this.authorsLastWeek.clear();
+            this.categoriesLastHour.clear();
+            this.categoriesLastWeek.clear();
+        }
+
+        private static <K> SlidingWindowHeavyHitters<K> hourWindow() {
+            return new SlidingWindowHeavyHitters<>(HOUR_MILLIS, HOUR_SLOTS, SLOT_CAPACITY);
+        }
+
+        private static <K> SlidingWindowHeavyHitters<K> weekWindow() {
+            return new SlidingWindowHeavyHitters<>(WEEK_MILLIS, WEEK_SLOTS, SLOT_CAPACITY);
+        }
+    }
+
+    /**
+     * Constructs a new TrendingService.
+     *
+     * @param bookService the service used to resolve trending ISBNs to titles
+     * @throws IllegalArgumentException if bookService is null
+     */
+    public TrendingService(BookService bookService) {
+        if (bookService == null) {
+            throw new IllegalArgumentException("Dependencies cannot be null");
+        }
+        this.bookService = bookService;
+    }
+
+    /**
+     * Records that a book was issued.
+     *
+     * @param book      the issued book
+     * @param timestamp the issue time in epoch milliseconds
+     */
+    public void recordIssue(Book book, long timestamp) {
+        this.issueSignals.record(book, timestamp);
+    }
+
+    /**
+     * Records that a book was reserved.
+     *
+     * @param book      the reserved book
+     * @param timestamp the reservation time in epoch milliseconds
+     */
+    public void recordReservation(Book book, long timestamp) {
+        this.reservationSignals.record(book, timestamp);
+    }
+
+    /**
+     * Rebuilds the issue signals from an issue history.
+     * <p>
+     * Only issues from the last week are replayed, oldest first, so the cost
+     * depends on recent activity rather than the size of the history.
+     *
+     * @param issues the full issue history
+     */
+    public void replayIssues(List<BookIssue> issues) {
+        long cutoff = utils.getEpochTime() - WEEK_MILLIS;
+        List<BookIssue> recent = new ArrayList<>();
+        for (BookIssue issue : issues) {
+            if (issue.getBook() != null && issue.getIssueDate() >= cutoff) {
+                recent.add(issue);
+            }
+        }
+        recent.sort((a, b) -> Long.compare(a.getIssueDate(), b.getIssueDate()));
+
+        this.issueSignals.clearAll();
+        for (BookIssue issue : recent) {
+            this.issueSignals.record(issue.getBook(), issue.getIssueDate());
+        }
+    }
+
+    /**
+     * Rebuilds the reservation signals from the current reservations.
+     * <p>
+     * Reservations whose book is no longer in the catalog are skipped.
+     *
+     * @param reservations the current reservations
+     */
+    public void replayReservations(List<Reservation> reservations) {
+        long cutoff = utils.getEpochTime() - WEEK_MILLIS;
+        List<Reservation> recent = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            if (reservation.getReservationDate() >= cutoff) {
+                recent.add(reservation);
+            }
+        }
+        recent.sort((a, b) -> Long.compare(a.getReservationDate(), b.getReservationDate()));
+
+        this.reservationSignals.clearAll();
+        for (Reservation reservation : recent) {
+            Book book = this.bookService.getBookById(reservation.getBookId());
+            if (book != null) {
+                this.reservationSignals.record(book, reservation.getReservationDate());
+            }
+        }
+    }
+
+    /**
+     * Displays the trending books, authors and categories for the last hour
+     * and the last week.
+     * <p>
+     * Each entry counts issues plus reservations within the window.
+     */
+    public void showTrending() {
+        long now = utils.getEpochTime();
+
+        System.out.println("Trending in the last hour -\n");
+        showTrendingWindow(
+                combine(this.issueSignals.booksLastHour, this.reservationSignals.booksLastHour, now),
+                combine(this.issueSignals.authorsLastHour, this.reservationSignals.authorsLastHour, now),
+                combine(this.issueSignals.categoriesLastHour, this.reservationSignals.categoriesLastHour, now));
+
+        System.out.println("Trending in the last week -\n");
+        showTrendingWindow(
+                combine(this.issueSignals.booksLastWeek, this.reservationSignals.booksLastWeek, now),
+                combine(this.issueSignals.authorsLastWeek, this.reservationSignals.authorsLastWeek, now),
+                combine(this.issueSignals.categoriesLastWeek, this.reservationSignals.categoriesLastWeek, now));
+    }
+
+    /**
+     * Merges the issue and reservation counts of one window and returns the
+     * top entries.
+     */
+    private static <K> List<Map.Entry<K, Long>> combine(SlidingWindowHeavyHitters<K> issues,
+            SlidingWindowHeavyHitters<K> reservations, long now) {
+        Map<K, Long> totals = new HashMap<>();
+        issues.addCountsTo(totals, now);
+        reservations.addCountsTo(totals, now);
+        return SlidingWindowHeavyHitters.topEntries(totals, TRENDING_LIMIT);
+    }
+
+    /**
+     * Displays the three trending tables of one window.
+     */
+    private void showTrendingWindow(List<Map.Entry<Long, Long>> books, List<Map.Entry<String, Long>> authors,
+            List<Map.Entry<BookCategory, Long>> categories) {
+        if (books.isEmpty()) {
+            System.out.println("Error: No recent activity found");
+            System.out.println("=====================================");
+            return;
+        }
+
+        List<String[]> bookRows = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : books) {
+            Book book = this.bookService.getBookById(entry.getKey());
+            String title = book != null ? book.getTitle() : String.valueOf(entry.getKey());
+            bookRows.add(new String[] { title, String.valueOf(entry.getValue()) });
+        }
+        utils.showTable(new String[] { "TITLE", "ACTIVITY" }, bookRows);
+
+        List<String[]> authorRows = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : authors) {
+            authorRows.add(new String[] { entry.getKey(), String.valueOf(entry.getValue()) });
+        }
+        utils.showTable(new String[] { "AUTHOR", "ACTIVITY" }, authorRows);
+
+        List<String[]> categoryRows = new ArrayList<>();
+        for (Map.Entry<BookCategory, Long> entry : categories) {
+            categoryRows.add(new String[] { entry.getKey().toString(), String.valueOf(entry.getValue()) });
+        }
+        utils.showTable(new String[] { "CATEGORY", "ACTIVITY" }, categoryRows);
+        System.out.println("=====================================");
+    }
+}